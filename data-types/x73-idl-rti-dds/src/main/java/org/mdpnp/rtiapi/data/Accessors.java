@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.rtiapi.data;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.Supplier;
+
+/**
+ * Binds methods of generated types, found once by name, to functional
+ * interfaces so that each later call is an ordinary interface invocation.
+ * 
+ * @see ReaderAccessor
+ * @see WriterAccessor
+ */
+final class Accessors {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private Accessors() {
+    }
+
+    /**
+     * @param functionalInterface
+     *            an interface of this package declaring a single method whose
+     *            first parameter receives the target of the bound method
+     * @param method
+     *            a public instance method
+     */
+    static <T> T bind(Class<T> functionalInterface, Method method) {
+        try {
+            return metafactory(functionalInterface, LOOKUP.unreflect(method));
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return a Supplier invoking the public no argument constructor of cls
+     */
+    @SuppressWarnings("unchecked")
+    static <T> Supplier<T> constructor(Class<? extends T> cls) {
+        try {
+            return metafactory(Supplier.class, LOOKUP.findConstructor(cls, MethodType.methodType(void.class)));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static <T> T metafactory(Class<T> functionalInterface, MethodHandle impl) {
+        Method sam = null;
+        for (Method m : functionalInterface.getMethods()) {
+            if (Modifier.isAbstract(m.getModifiers())) {
+                sam = m;
+                break;
+            }
+        }
+        if (null == sam) {
+            throw new IllegalArgumentException(functionalInterface + " declares no abstract method");
+        }
+        MethodType samType = MethodType.methodType(sam.getReturnType(), sam.getParameterTypes());
+        MethodType instantiatedType = impl.type();
+        if (void.class.equals(samType.returnType())) {
+            instantiatedType = instantiatedType.changeReturnType(void.class);
+        }
+        try {
+            CallSite site = LambdaMetafactory.metafactory(LOOKUP, sam.getName(), MethodType.methodType(functionalInterface), samType, impl,
+                    instantiatedType);
+            return functionalInterface.cast(site.getTarget().invoke());
+        } catch (Throwable t) {
+            throw new RuntimeException("Unable to bind " + impl + " to " + functionalInterface.getName(), t);
+        }
+    }
+}
@@ -12,10 +12,10 @@
  ******************************************************************************/
 package org.mdpnp.rtiapi.data;
 
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,10 +29,15 @@ import com.rti.dds.infrastructure.WaitSet;
 import com.rti.dds.infrastructure.WaitSetProperty_t;
 
 /**
+ * Dispatches DDS conditions and queued work on a single service thread.
+ * Work and handler mutations may be submitted from any thread; they are
+ * placed on lock-free queues and drained by the service thread in bounded
+ * batches so that one busy producer cannot starve the attached conditions.
+ * 
  * @author Jeff Plourde
  *
  */
-public class EventLoop {
+public class EventLoop implements EventLoopMXBean {
 
     private static final Logger log = LoggerFactory.getLogger(EventLoop.class);
 
@@ -40,61 +45,106 @@ public class EventLoop {
         void conditionChanged(Condition condition);
     }
 
+    /**
+     * Maximum number of queued items serviced per trigger of the associated
+     * GuardCondition; any remainder is serviced on a subsequent pass.
+     */
+    static final int MAX_BATCH = 256;
+
     private final Map<Condition, ConditionHandler> conditionHandlers = new HashMap<Condition, ConditionHandler>();
-    private final List<Mutation> queuedMutations = new ArrayList<Mutation>();
-    private final List<Runnable> queuedRunnables = new ArrayList<Runnable>();
     private final WaitSet waitSet;
     private final GuardCondition mutate = new GuardCondition();
     private final GuardCondition runnable = new GuardCondition();
+    private final WorkQueue<Mutation> queuedMutations = new WorkQueue<Mutation>(new WorkQueue.Trigger() {
+        @Override
+        public void set(boolean value) {
+            mutate.set_trigger_value(value);
+        }
+    });
+    private final WorkQueue<Runnable> queuedRunnables = new WorkQueue<Runnable>(new WorkQueue.Trigger() {
+        @Override
+        public void set(boolean value) {
+            runnable.set_trigger_value(value);
+        }
+    });
+
+    private final LatencyHistogram conditionHandlerLatency = new LatencyHistogram();
+    private final LatencyHistogram runnableLatency = new LatencyHistogram();
+    private final AtomicLong slowHandlers = new AtomicLong();
+    private volatile long warningElapsedTimeNanoseconds = WARNING_ELAPSED_TIME_NANOSECONDS;
 
     protected void handleMutation(Mutation m) {
-        if (m.isAdd()) {
-            // log.debug("Handling an add mutation for " + m.getCondition());
-            conditionHandlers.put(m.getCondition(), m.getConditionHandler());
-            waitSet.attach_condition(m.getCondition());
-        } else {
-            // log.debug("Handling a remove mutation for " + m.getCondition());
-            if (null == conditionHandlers.remove(m.getCondition())) {
-                log.warn("Attempt to detach unknown condition:" + m.getCondition());
-                for (int i = 0; i < m.getTrace().length; i++) {
-                    log.warn("\tat " + m.getTrace()[i]);
-                }
+        try {
+            if (m.isAdd()) {
+                // log.debug("Handling an add mutation for " + m.getCondition());
+                conditionHandlers.put(m.getCondition(), m.getConditionHandler());
+                waitSet.attach_condition(m.getCondition());
             } else {
-                waitSet.detach_condition(m.getCondition());
+                // log.debug("Handling a remove mutation for " + m.getCondition());
+                if (null == conditionHandlers.remove(m.getCondition())) {
+                    log.warn("Attempt to detach unknown condition:" + m.getCondition());
+                    for (int i = 0; i < m.getTrace().length; i++) {
+                        log.warn("\tat " + m.getTrace()[i]);
+                    }
+                } else {
+                    waitSet.detach_condition(m.getCondition());
+                }
             }
+        } finally {
+            m.done();
         }
-        m.done();
     }
 
     private final ConditionHandler mutateHandler = new ConditionHandler() {
         @Override
         public void conditionChanged(Condition condition) {
-            Mutation[] mutations = new Mutation[0];
-            synchronized (queuedMutations) {
-                mutations = queuedMutations.toArray(mutations);
-                queuedMutations.clear();
-                ((GuardCondition) condition).set_trigger_value(false);
-            }
-            for (Mutation m : mutations) {
-                handleMutation(m);
+            queuedMutations.beginDrain();
+            try {
+                Mutation m;
+                for (int i = 0; i < MAX_BATCH && null != (m = queuedMutations.poll()); i++) {
+                    handleMutation(m);
+                }
+            } finally {
+                queuedMutations.endDrain();
             }
         }
+        
+        @Override
+        public String toString() {
+            return "EventLoop.mutateHandler";
+        }
     };
 
-    private Thread currentServiceThread;
+    private volatile Thread currentServiceThread;
 
     private final ConditionHandler runnableHandler = new ConditionHandler() {
         public void conditionChanged(Condition condition) {
-            Runnable[] runnables = new Runnable[0];
-            synchronized (queuedRunnables) {
-                runnables = queuedRunnables.toArray(runnables);
-                queuedRunnables.clear();
-                ((GuardCondition) condition).set_trigger_value(false);
-            }
-            for (Runnable r : runnables) {
-                r.run();
+            queuedRunnables.beginDrain();
+            try {
+                Runnable r;
+                for (int i = 0; i < MAX_BATCH && null != (r = queuedRunnables.poll()); i++) {
+                    long s = System.nanoTime();
+                    try {
+                        r.run();
+                    } catch (Throwable t) {
+                        log.error("Unexpected in queued Runnable " + r, t);
+                    }
+                    long elapsed = System.nanoTime() - s;
+                    runnableLatency.record(elapsed);
+                    if (elapsed >= warningElapsedTimeNanoseconds) {
+                        slowHandlers.incrementAndGet();
+                        log.warn(elapsed + "ns to run " + r);
+                    }
+                }
+            } finally {
+                queuedRunnables.endDrain();
             }
         }
+        
+        @Override
+        public String toString() {
+            return "EventLoop.runnableHandler";
+        }
     };
 
     private static class Mutation {
@@ -191,7 +241,9 @@ public class EventLoop {
                     long s = System.nanoTime();
                     ch.conditionChanged(c);
                     long elapsed = System.nanoTime() - s;
-                    if(elapsed >= WARNING_ELAPSED_TIME_NANOSECONDS) {
+                    conditionHandlerLatency.record(elapsed);
+                    if(elapsed >= warningElapsedTimeNanoseconds) {
+                        slowHandlers.incrementAndGet();
                         log.warn(elapsed + "ns to service " + ch);
                     }
                 } else {
@@ -209,46 +261,53 @@ public class EventLoop {
         }
     }
 
-    public synchronized boolean isCurrentServiceThread() {
+    public boolean isCurrentServiceThread() {
         return Thread.currentThread().equals(currentServiceThread);
     }
 
+    /**
+     * Whether the calling thread is the one that services the given condition.
+     * For a single loop this is the same as {@link #isCurrentServiceThread()}.
+     */
+    public boolean isCurrentServiceThread(Condition condition) {
+        return isCurrentServiceThread();
+    }
+
+    /**
+     * Attaches the condition to this loop. When called from a thread other than
+     * the service thread the attachment is queued and this method returns
+     * without waiting; mutations are applied in the order they were submitted.
+     */
     public void addHandler(Condition condition, ConditionHandler conditionHandler) {
         Mutation m = new Mutation(true, condition, conditionHandler);
         if (isCurrentServiceThread()) {
             handleMutation(m);
         } else {
-            synchronized (queuedMutations) {
-                // log.debug("Queue add condition:"+condition);
-                queuedMutations.add(m);
-                mutate.set_trigger_value(true);
-            }
-            m.await();
+            // log.debug("Queue add condition:"+condition);
+            queuedMutations.offer(m);
         }
         // log.debug("addHandler complete for " + condition);
     }
 
+    /**
+     * Detaches the condition from this loop. Blocks until the service thread has
+     * detached it so that the caller may safely delete the condition afterward.
+     */
     public void removeHandler(Condition condition) {
 
         Mutation m = new Mutation(false, condition, null);
         if (isCurrentServiceThread()) {
             handleMutation(m);
         } else {
-            synchronized (queuedMutations) {
-                // log.debug("Queue remove condition:"+condition);
-                queuedMutations.add(m);
-                mutate.set_trigger_value(true);
-            }
+            // log.debug("Queue remove condition:"+condition);
+            queuedMutations.offer(m);
             m.await();
         }
         // log.debug("removeHandler complete for " + condition);
     }
 
     public void doLater(Runnable r) {
-        synchronized (queuedRunnables) {
-            queuedRunnables.add(r);
-            runnable.set_trigger_value(true);
-        }
+        queuedRunnables.offer(r);
     }
     
     public void doNow(Runnable r) {
@@ -256,14 +315,78 @@ public class EventLoop {
             r.run();
         } else {
             NestedRunnable nr = new NestedRunnable(r);
-            synchronized (queuedRunnables) {
-                queuedRunnables.add(nr);
-                runnable.set_trigger_value(true);
-            }
+            queuedRunnables.offer(nr);
             nr.waitTillDone();
         }
     }
 
+    @Override
+    public int getQueuedRunnables() {
+        return queuedRunnables.size();
+    }
+
+    @Override
+    public int getQueuedMutations() {
+        return queuedMutations.size();
+    }
+
+    @Override
+    public long getHandledConditions() {
+        return conditionHandlerLatency.getCount();
+    }
+
+    @Override
+    public long getExecutedRunnables() {
+        return runnableLatency.getCount();
+    }
+
+    @Override
+    public long getSlowHandlers() {
+        return slowHandlers.get();
+    }
+
+    @Override
+    public long getSlowHandlerThresholdMilliseconds() {
+        return TimeUnit.NANOSECONDS.toMillis(warningElapsedTimeNanoseconds);
+    }
+
+    @Override
+    public void setSlowHandlerThresholdMilliseconds(long slowHandlerThresholdMilliseconds) {
+        this.warningElapsedTimeNanoseconds = TimeUnit.MILLISECONDS.toNanos(slowHandlerThresholdMilliseconds);
+    }
+
+    @Override
+    public long[] getConditionHandlerLatencyHistogram() {
+        return conditionHandlerLatency.getCounts();
+    }
+
+    @Override
+    public long getConditionHandlerLatencyMaxNanoseconds() {
+        return conditionHandlerLatency.getMaxNanoseconds();
+    }
+
+    @Override
+    public long getConditionHandlerLatency99thPercentileNanoseconds() {
+        return conditionHandlerLatency.getPercentileNanoseconds(0.99);
+    }
+
+    @Override
+    public long[] getRunnableLatencyHistogram() {
+        return runnableLatency.getCounts();
+    }
+
+    @Override
+    public long getRunnableLatencyMaxNanoseconds() {
+        return runnableLatency.getMaxNanoseconds();
+    }
+
+    @Override
+    public void resetStatistics() {
+        conditionHandlerLatency.reset();
+        runnableLatency.reset();
+        slowHandlers.set(0L);
+    }
+
     private static class NestedRunnable implements Runnable {
         private final Runnable runnable;
         private boolean done = false;
@@ -0,0 +1,343 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.rtiapi.data;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.rti.dds.infrastructure.Condition;
+import com.rti.dds.infrastructure.ConditionSeq;
+import com.rti.dds.infrastructure.Duration_t;
+import com.rti.dds.infrastructure.Entity;
+import com.rti.dds.infrastructure.GuardCondition;
+import com.rti.dds.infrastructure.StatusCondition;
+import com.rti.dds.infrastructure.WaitSetProperty_t;
+import com.rti.dds.subscription.DataReader;
+import com.rti.dds.subscription.ReadCondition;
+
+/**
+ * An {@link EventLoop} that spreads attached conditions across several
+ * WaitSets, each serviced by its own thread. Read, query and status conditions
+ * of a DataReader are assigned to a shard by topic name so every condition of
+ * a topic is always handled on the same thread and in order; any other
+ * condition (e.g. a GuardCondition) stays on shard 0.
+ * <p>
+ * Shard 0 is this loop itself and is serviced, as with a plain EventLoop, by
+ * whoever calls {@link #waitAndHandle(ConditionSeq, Duration_t)}. It also runs
+ * everything submitted through {@link #doLater(Runnable)} and
+ * {@link #doNow(Runnable)}. The remaining shards are serviced by daemon threads
+ * owned by the group and stopped with {@link #shutdown()}.
+ * <p>
+ * {@link #isCurrentServiceThread()} is true only on shard 0's thread, the one
+ * that runs doLater and doNow work. A handler that needs to know whether it is
+ * on the thread owning a particular reader asks
+ * {@link #isCurrentServiceThread(Condition)}. doNow called from another shard
+ * blocks until shard 0 has run it, so shard 0 must never wait on a shard that
+ * may in turn be inside doNow.
+ * <p>
+ * Handlers on different topics run concurrently. A handler is shard-safe when
+ * everything it touches belongs to its own reader, or is guarded:
+ * <ul>
+ * <li>InstanceModelImpl and its listeners are, provided listeners spanning
+ * several topics synchronize (as DeviceListModelImpl does on its pending
+ * map) and hand UI work to the FX thread.</li>
+ * <li>AbstractFxList is; it confines its state to one reader and hands
+ * changes to the FX thread.</li>
+ * <li>MDSHandler is, but fires its listeners on the MDSConnectivity shard
+ * rather than shard 0.</li>
+ * <li>TimeManager is not: its HeartBeat handler shares unsynchronized maps
+ * with stop(), which runs on shard 0.</li>
+ * <li>AbstractDevice, SimInfusionPump and GlobalSimulationObjectiveMonitor
+ * handlers write to device state that the device's own threads also touch;
+ * they were never confined to the event loop and are unaffected.</li>
+ * </ul>
+ * Deployments relying on handlers that are not shard-safe keep the default of
+ * a single shard, in which case the group behaves exactly as an EventLoop.
+ * 
+ * @author Jeff Plourde
+ *
+ */
+public class EventLoopGroup extends EventLoop implements EventLoopGroupMXBean {
+
+    private static final Logger log = LoggerFactory.getLogger(EventLoopGroup.class);
+
+    private final Shard[] shards;
+    private final Map<Condition, EventLoop> assignments = new ConcurrentHashMap<Condition, EventLoop>();
+
+    /**
+     * A loop beyond shard 0 together with the thread servicing it.
+     */
+    private static final class Shard implements Runnable, ConditionHandler {
+        private final EventLoop eventLoop;
+        private final GuardCondition exitCondition = new GuardCondition();
+        private final Thread thread;
+        private volatile boolean keepGoing = true;
+
+        Shard(int index, WaitSetProperty_t properties) {
+            eventLoop = new EventLoop(properties);
+            thread = new Thread(this, "EventLoopGroup-" + index);
+            thread.setDaemon(true);
+            thread.start();
+            eventLoop.addHandler(exitCondition, this);
+        }
+
+        @Override
+        public void run() {
+            ConditionSeq condSeq = new ConditionSeq();
+            Duration_t dur = new Duration_t(Duration_t.DURATION_INFINITY_SEC, Duration_t.DURATION_INFINITY_NSEC);
+            while (keepGoing) {
+                try {
+                    eventLoop.waitAndHandle(condSeq, dur);
+                } catch (Throwable t) {
+                    log.error("Unexpected in ConditionHandler", t);
+                }
+            }
+            log.debug(thread.getName() + " ends");
+        }
+
+        void shutdown() throws InterruptedException {
+            keepGoing = false;
+            exitCondition.set_trigger_value(true);
+            thread.join();
+        }
+
+        @Override
+        public void conditionChanged(Condition condition) {
+
+        }
+    }
+
+    /**
+     * @param shardCount
+     *            total number of WaitSets including shard 0; one (the default
+     *            in RtConfig.xml) disables sharding, zero or less means one
+     *            per available processor
+     */
+    public EventLoopGroup(int shardCount) {
+        this(shardCount, null);
+    }
+
+    public EventLoopGroup(int shardCount, WaitSetProperty_t properties) {
+        super(properties);
+        if (shardCount <= 0) {
+            shardCount = Runtime.getRuntime().availableProcessors();
+        }
+        shards = new Shard[shardCount - 1];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard(i + 1, properties);
+        }
+        log.debug("EventLoopGroup with " + shardCount + " shards");
+    }
+
+    public void shutdown() throws InterruptedException {
+        for (Shard shard : shards) {
+            shard.shutdown();
+        }
+    }
+
+    private static Object affinityKey(Condition condition) {
+        Entity entity = null;
+        if (condition instanceof ReadCondition) {
+            entity = ((ReadCondition) condition).get_datareader();
+        } else if (condition instanceof StatusCondition) {
+            entity = ((StatusCondition) condition).get_entity();
+        }
+        if (entity instanceof DataReader) {
+            return ((DataReader) entity).get_topicdescription().get_name();
+        }
+        return null;
+    }
+
+    private EventLoop shardFor(Condition condition) {
+        if (0 == shards.length) {
+            return this;
+        }
+        Object key = affinityKey(condition);
+        if (null == key) {
+            return this;
+        }
+        int idx = Math.floorMod(key.hashCode(), shards.length + 1);
+        return 0 == idx ? this : shards[idx - 1].eventLoop;
+    }
+
+    @Override
+    public void addHandler(Condition condition, ConditionHandler conditionHandler) {
+        EventLoop target = shardFor(condition);
+        assignments.put(condition, target);
+        if (target == this) {
+            super.addHandler(condition, conditionHandler);
+        } else {
+            target.addHandler(condition, conditionHandler);
+        }
+    }
+
+    /**
+     * Detaches the condition from whichever shard it was assigned to, blocking
+     * until that shard has done so. Callers on one shard removing conditions
+     * owned by another should avoid doing so while that shard may be waiting on
+     * them in turn.
+     */
+    @Override
+    public void removeHandler(Condition condition) {
+        EventLoop target = assignments.remove(condition);
+        if (null == target || target == this) {
+            super.removeHandler(condition);
+        } else {
+            target.removeHandler(condition);
+        }
+    }
+
+    /**
+     * True only on the thread servicing the shard the condition is, or would
+     * be, assigned to.
+     */
+    @Override
+    public boolean isCurrentServiceThread(Condition condition) {
+        EventLoop target = shardFor(condition);
+        return target == this ? isCurrentServiceThread() : target.isCurrentServiceThread();
+    }
+
+    @Override
+    public int getShardCount() {
+        return shards.length + 1;
+    }
+
+    @Override
+    public int[] getConditionsPerShard() {
+        int[] counts = new int[shards.length + 1];
+        for (EventLoop target : assignments.values()) {
+            if (target == this) {
+                counts[0]++;
+            } else {
+                for (int i = 0; i < shards.length; i++) {
+                    if (target == shards[i].eventLoop) {
+                        counts[i + 1]++;
+                        break;
+                    }
+                }
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public int getQueuedRunnables() {
+        int n = super.getQueuedRunnables();
+        for (Shard shard : shards) {
+            n += shard.eventLoop.getQueuedRunnables();
+        }
+        return n;
+    }
+
+    @Override
+    public int getQueuedMutations() {
+        int n = super.getQueuedMutations();
+        for (Shard shard : shards) {
+            n += shard.eventLoop.getQueuedMutations();
+        }
+        return n;
+    }
+
+    @Override
+    public long getHandledConditions() {
+        long n = super.getHandledConditions();
+        for (Shard shard : shards) {
+            n += shard.eventLoop.getHandledConditions();
+        }
+        return n;
+    }
+
+    @Override
+    public long getExecutedRunnables() {
+        long n = super.getExecutedRunnables();
+        for (Shard shard : shards) {
+            n += shard.eventLoop.getExecutedRunnables();
+        }
+        return n;
+    }
+
+    @Override
+    public long getSlowHandlers() {
+        long n = super.getSlowHandlers();
+        for (Shard shard : shards) {
+            n += shard.eventLoop.getSlowHandlers();
+        }
+        return n;
+    }
+
+    @Override
+    public void setSlowHandlerThresholdMilliseconds(long slowHandlerThresholdMilliseconds) {
+        super.setSlowHandlerThresholdMilliseconds(slowHandlerThresholdMilliseconds);
+        for (Shard shard : shards) {
+            shard.eventLoop.setSlowHandlerThresholdMilliseconds(slowHandlerThresholdMilliseconds);
+        }
+    }
+
+    @Override
+    public long[] getConditionHandlerLatencyHistogram() {
+        long[] counts = super.getConditionHandlerLatencyHistogram();
+        for (Shard shard : shards) {
+            add(counts, shard.eventLoop.getConditionHandlerLatencyHistogram());
+        }
+        return counts;
+    }
+
+    @Override
+    public long getConditionHandlerLatencyMaxNanoseconds() {
+        long max = super.getConditionHandlerLatencyMaxNanoseconds();
+        for (Shard shard : shards) {
+            max = Math.max(max, shard.eventLoop.getConditionHandlerLatencyMaxNanoseconds());
+        }
+        return max;
+    }
+
+    @Override
+    public long getConditionHandlerLatency99thPercentileNanoseconds() {
+        return LatencyHistogram.percentileNanoseconds(getConditionHandlerLatencyHistogram(), getConditionHandlerLatencyMaxNanoseconds(), 0.99);
+    }
+
+    @Override
+    public long[] getRunnableLatencyHistogram() {
+        long[] counts = super.getRunnableLatencyHistogram();
+        for (Shard shard : shards) {
+            add(counts, shard.eventLoop.getRunnableLatencyHistogram());
+        }
+        return counts;
+    }
+
+    @Override
+    public long getRunnableLatencyMaxNanoseconds() {
+        long max = super.getRunnableLatencyMaxNanoseconds();
+        for (Shard shard : shards) {
+            max = Math.max(max, shard.eventLoop.getRunnableLatencyMaxNanoseconds());
+        }
+        return max;
+    }
+
+    @Override
+    public void resetStatistics() {
+        super.resetStatistics();
+        for (Shard shard : shards) {
+            shard.eventLoop.resetStatistics();
+        }
+    }
+
+    private static void add(long[] sum, long[] counts) {
+        for (int i = 0; i < sum.length; i++) {
+            sum[i] += counts[i];
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.rtiapi.data;
+
+/**
+ * Management view of an {@link EventLoop}; latency histograms are reported as
+ * counts per power-of-two microsecond bucket as described by {@link LatencyHistogram}.
+ */
+public interface EventLoopMXBean {
+    int getQueuedRunnables();
+
+    int getQueuedMutations();
+
+    long getHandledConditions();
+
+    long getExecutedRunnables();
+
+    long getSlowHandlers();
+
+    long getSlowHandlerThresholdMilliseconds();
+
+    void setSlowHandlerThresholdMilliseconds(long slowHandlerThresholdMilliseconds);
+
+    long[] getConditionHandlerLatencyHistogram();
+
+    long getConditionHandlerLatencyMaxNanoseconds();
+
+    long getConditionHandlerLatency99thPercentileNanoseconds();
+
+    long[] getRunnableLatencyHistogram();
+
+    long getRunnableLatencyMaxNanoseconds();
+
+    void resetStatistics();
+}
@@ -1,7 +1,5 @@
 package org.mdpnp.rtiapi.data;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.Iterator;
 import java.util.List;
 
@@ -74,7 +72,7 @@ public class InstanceModelImpl<D extends Copyable, R extends DataReader, W exten
         while(itr.hasNext()) {
             InstanceHandle_t handle = itr.next();
             try {
-                readInstance.invoke(reader, sa_seq, info_seq, maxSamples, handle, SampleStateKind.ANY_SAMPLE_STATE, ViewStateKind.ANY_VIEW_STATE, InstanceStateKind.ALIVE_INSTANCE_STATE);
+                readerAccessor.read_instance(reader, sa_seq, info_seq, maxSamples, handle, SampleStateKind.ANY_SAMPLE_STATE, ViewStateKind.ANY_VIEW_STATE, InstanceStateKind.ALIVE_INSTANCE_STATE);
                 boolean reportedAlive = false;
                 for(int i = 0; i < info_seq.size(); i++) {
                     if(!reportedAlive) {
@@ -85,14 +83,13 @@ public class InstanceModelImpl<D extends Copyable, R extends DataReader, W exten
                         listener.instanceSample(this, reader, (D)sa_seq.get(i), (SampleInfo) info_seq.get(i));
                     }
                 }
+            } catch (RETCODE_NO_DATA noData) {
+
             } catch (Exception e) {
-                if(!(e.getCause() instanceof RETCODE_NO_DATA)) {
-                    log.error("read_instance", e);
-                }
-                
+                log.error("read_instance", e);
             } finally {
                 try {
-                    returnLoan.invoke(reader, sa_seq, info_seq);
+                    readerAccessor.return_loan(reader, sa_seq, info_seq);
                 } catch (Exception e) {
                     log.error("return_loan", e);
                 }
@@ -167,20 +164,12 @@ public class InstanceModelImpl<D extends Copyable, R extends DataReader, W exten
     
     protected final ThreadLocal<Sequence> sa_seq = new ThreadLocal<Sequence>() {
         protected Sequence initialValue() {
-            try {
-                return sequenceClass.newInstance();
-            } catch (Exception e) {
-                throw new RuntimeException(e);
-            }
+            return readerAccessor.newSequence();
         };
     };
     protected final ThreadLocal<Sequence> sa_seq1 = new ThreadLocal<Sequence>() {
         protected Sequence initialValue() {
-            try {
-                return sequenceClass.newInstance();
-            } catch (Exception e) {
-                throw new RuntimeException(e);
-            }
+            return readerAccessor.newSequence();
         };
     };
     protected final ThreadLocal<SampleInfoSeq> info_seq = new ThreadLocal<SampleInfoSeq>() {
@@ -216,7 +205,7 @@ public class InstanceModelImpl<D extends Copyable, R extends DataReader, W exten
             SampleInfoSeq info_seq = InstanceModelImpl.this.info_seq.get();
             R reader = InstanceModelImpl.this.reader;
             try {
-                readWCondition.invoke(reader, sa_seq, info_seq, ResourceLimitsQosPolicy.LENGTH_UNLIMITED, (ReadCondition) condition);
+                readerAccessor.read_w_condition(reader, sa_seq, info_seq, ResourceLimitsQosPolicy.LENGTH_UNLIMITED, (ReadCondition) condition);
                 InstanceHandle_t lastHandle = InstanceHandle_t.HANDLE_NIL;
                 
                 final int sz = info_seq.size();
@@ -226,7 +215,7 @@ public class InstanceModelImpl<D extends Copyable, R extends DataReader, W exten
                     D d = (D) sa_seq.get(i);
                     if (0 != (sampleInfo.instance_state & InstanceStateKind.NOT_ALIVE_INSTANCE_STATE)) {
                         if(!sampleInfo.valid_data) {
-                            getKeyValue.invoke(reader, d, sampleInfo.instance_handle);
+                            readerAccessor.get_key_value(reader, d, sampleInfo.instance_handle);
                         }
                         fireInstanceNotAlive(d, sampleInfo);
                         int idx = instances.indexOf(sampleInfo.instance_handle);
@@ -251,15 +240,13 @@ public class InstanceModelImpl<D extends Copyable, R extends DataReader, W exten
                     }
                     lastHandle = sampleInfo.instance_handle;
                 }
-            } catch (InvocationTargetException ite) {
-                if(!(ite.getCause() instanceof RETCODE_NO_DATA)) {
-                    log.error("reading", ite);
-                }
+            } catch (RETCODE_NO_DATA noData) {
+
             } catch (Exception e) {
                 log.error("reading ", e);
             } finally {
                 try {
-                    returnLoan.invoke(reader, sa_seq, info_seq);
+                    readerAccessor.return_loan(reader, sa_seq, info_seq);
                 } catch (Exception e) {
                     log.error("return_loan", e);
                 }
@@ -273,7 +260,8 @@ public class InstanceModelImpl<D extends Copyable, R extends DataReader, W exten
     protected final Class<? extends TypeSupport> typeSupportClass;
     protected final Class<? extends Sequence> sequenceClass;
     
-    protected final Method getKeyValue, returnLoan, readWCondition, readInstance, write;
+    protected final ReaderAccessor<D, R> readerAccessor;
+    protected final WriterAccessor<D, W> writerAccessor;
     
     private final LogEntityStatus logEntityStatus;
     
@@ -283,15 +271,9 @@ public class InstanceModelImpl<D extends Copyable, R extends DataReader, W exten
         this.typeSupportClass = typeSupportClass;
         this.sequenceClass = sequenceClass;
         this.logEntityStatus = new LogEntityStatus(log, topicName);
-        try {
-            getKeyValue = readerClass.getMethod("get_key_value", dataClass, InstanceHandle_t.class);
-            returnLoan = readerClass.getMethod("return_loan", sequenceClass, SampleInfoSeq.class);
-            readWCondition = readerClass.getMethod("read_w_condition", sequenceClass, SampleInfoSeq.class, int.class, ReadCondition.class);
-            readInstance = readerClass.getMethod("read_instance", sequenceClass, SampleInfoSeq.class, int.class, InstanceHandle_t.class, int.class, int.class, int.class);
-            write = writerClass.getMethod("write", dataClass, InstanceHandle_t.class);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+        this.readerAccessor = new ReaderAccessor<D, R>(dataClass, readerClass, sequenceClass);
+        // Builtin topic models are read only
+        this.writerAccessor = null == writerClass ? null : new WriterAccessor<D, W>(dataClass, writerClass);
     }
 
     @Override
@@ -471,8 +453,8 @@ public class InstanceModelImpl<D extends Copyable, R extends DataReader, W exten
     @Override
     public void write(D data) {
         try {
-            write.invoke(writer, data, InstanceHandle_t.HANDLE_NIL);
-        } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
+            writerAccessor.write(writer, data, InstanceHandle_t.HANDLE_NIL);
+        } catch (RuntimeException e) {
             log.error("write error", e);
         }
     }
@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.rtiapi.data;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size histogram of elapsed times with power-of-two microsecond buckets.
+ * Bucket 0 counts everything under 1us, bucket i counts [2^(i-1), 2^i) us and
+ * the last bucket collects everything longer. Recording never allocates and is
+ * safe from any thread.
+ */
+public class LatencyHistogram {
+    public static final int BUCKETS = 24;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanoseconds = new AtomicLong();
+    private final AtomicLong maxNanoseconds = new AtomicLong();
+
+    static int bucketOf(long nanoseconds) {
+        long micros = nanoseconds / 1000L;
+        if (micros <= 0L) {
+            return 0;
+        }
+        int bucket = 64 - Long.numberOfLeadingZeros(micros);
+        return bucket >= BUCKETS ? BUCKETS - 1 : bucket;
+    }
+
+    public void record(long nanoseconds) {
+        counts.incrementAndGet(bucketOf(nanoseconds));
+        count.incrementAndGet();
+        totalNanoseconds.addAndGet(nanoseconds);
+        long max;
+        while (nanoseconds > (max = maxNanoseconds.get())) {
+            if (maxNanoseconds.compareAndSet(max, nanoseconds)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * @return counts per bucket, index i covering elapsed times below 2^i microseconds
+     */
+    public long[] getCounts() {
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+        }
+        return snapshot;
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMaxNanoseconds() {
+        return maxNanoseconds.get();
+    }
+
+    public long getMeanNanoseconds() {
+        long n = count.get();
+        return 0L == n ? 0L : totalNanoseconds.get() / n;
+    }
+
+    /**
+     * @return an upper bound, in nanoseconds, of the elapsed time below which the given
+     *         fraction of recorded values fell
+     */
+    public long getPercentileNanoseconds(double fraction) {
+        return percentileNanoseconds(getCounts(), getMaxNanoseconds(), fraction);
+    }
+
+    /**
+     * Percentile over a bucket snapshot, possibly summed over several histograms.
+     * 
+     * @param counts
+     *            counts per bucket as returned by {@link #getCounts()}
+     * @param maxNanoseconds
+     *            reported when the percentile falls in the overflow bucket
+     */
+    public static long percentileNanoseconds(long[] counts, long maxNanoseconds, double fraction) {
+        long total = 0L;
+        for (long c : counts) {
+            total += c;
+        }
+        if (0L == total) {
+            return 0L;
+        }
+        long threshold = (long) Math.ceil(fraction * total);
+        long seen = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= threshold) {
+                return i == BUCKETS - 1 ? maxNanoseconds : (1L << i) * 1000L;
+            }
+        }
+        return maxNanoseconds;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0L);
+        }
+        count.set(0L);
+        totalNanoseconds.set(0L);
+        maxNanoseconds.set(0L);
+    }
+
+    @Override
+    public String toString() {
+        return "[count=" + getCount() + ",mean=" + getMeanNanoseconds() + "ns,p99<=" + getPercentileNanoseconds(0.99) + "ns,max="
+                + getMaxNanoseconds() + "ns]";
+    }
+}
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.rtiapi.data;
+
+import java.util.function.Supplier;
+
+import com.rti.dds.infrastructure.InstanceHandle_t;
+import com.rti.dds.subscription.ReadCondition;
+import com.rti.dds.subscription.SampleInfoSeq;
+import com.rti.dds.util.Sequence;
+
+/**
+ * Typed access to the read operations of a generated DataReader. The generated
+ * readers share no interface for these methods so they are looked up by name
+ * once per type and bound with {@link java.lang.invoke.LambdaMetafactory};
+ * exceptions thrown by the reader (e.g. RETCODE_NO_DATA) propagate unwrapped.
+ * 
+ * @param <D>
+ *            the data type
+ * @param <R>
+ *            the generated DataReader type
+ */
+public final class ReaderAccessor<D, R> {
+
+    interface ReadWCondition {
+        void read_w_condition(Object reader, Sequence dataSeq, SampleInfoSeq infoSeq, int maxSamples, ReadCondition condition);
+    }
+
+    interface ReadInstance {
+        void read_instance(Object reader, Sequence dataSeq, SampleInfoSeq infoSeq, int maxSamples, InstanceHandle_t handle, int sampleStates,
+                int viewStates, int instanceStates);
+    }
+
+    interface ReturnLoan {
+        void return_loan(Object reader, Sequence dataSeq, SampleInfoSeq infoSeq);
+    }
+
+    interface GetKeyValue {
+        void get_key_value(Object reader, Object keyHolder, InstanceHandle_t handle);
+    }
+
+    private final ReadWCondition readWCondition;
+    private final ReadInstance readInstance;
+    private final ReturnLoan returnLoan;
+    private final GetKeyValue getKeyValue;
+    private final Supplier<D> dataFactory;
+    private final Supplier<Sequence> sequenceFactory;
+
+    public ReaderAccessor(Class<D> dataClass, Class<R> readerClass, Class<? extends Sequence> sequenceClass) {
+        try {
+            readWCondition = Accessors.bind(ReadWCondition.class,
+                    readerClass.getMethod("read_w_condition", sequenceClass, SampleInfoSeq.class, int.class, ReadCondition.class));
+            readInstance = Accessors.bind(ReadInstance.class, readerClass.getMethod("read_instance", sequenceClass, SampleInfoSeq.class, int.class,
+                    InstanceHandle_t.class, int.class, int.class, int.class));
+            returnLoan = Accessors.bind(ReturnLoan.class, readerClass.getMethod("return_loan", sequenceClass, SampleInfoSeq.class));
+            getKeyValue = Accessors.bind(GetKeyValue.class, readerClass.getMethod("get_key_value", dataClass, InstanceHandle_t.class));
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException(e);
+        }
+        dataFactory = Accessors.constructor(dataClass);
+        sequenceFactory = Accessors.constructor(sequenceClass);
+    }
+
+    public void read_w_condition(R reader, Sequence dataSeq, SampleInfoSeq infoSeq, int maxSamples, ReadCondition condition) {
+        readWCondition.read_w_condition(reader, dataSeq, infoSeq, maxSamples, condition);
+    }
+
+    public void read_instance(R reader, Sequence dataSeq, SampleInfoSeq infoSeq, int maxSamples, InstanceHandle_t handle, int sampleStates,
+            int viewStates, int instanceStates) {
+        readInstance.read_instance(reader, dataSeq, infoSeq, maxSamples, handle, sampleStates, viewStates, instanceStates);
+    }
+
+    public void return_loan(R reader, Sequence dataSeq, SampleInfoSeq infoSeq) {
+        returnLoan.return_loan(reader, dataSeq, infoSeq);
+    }
+
+    public void get_key_value(R reader, D keyHolder, InstanceHandle_t handle) {
+        getKeyValue.get_key_value(reader, keyHolder, handle);
+    }
+
+    public D newData() {
+        return dataFactory.get();
+    }
+
+    public Sequence newSequence() {
+        return sequenceFactory.get();
+    }
+}
@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.rtiapi.data;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Multiple producer, single consumer queue that tracks its own depth and
+ * whether its trigger has already been raised so that producers only touch the
+ * trigger when the queue becomes non-empty.
+ */
+class WorkQueue<T> {
+    /**
+     * Raises or clears whatever wakes the consumer, ordinarily a GuardCondition
+     */
+    interface Trigger {
+        void set(boolean value);
+    }
+
+    private final Queue<T> queue = new ConcurrentLinkedQueue<T>();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicBoolean triggered = new AtomicBoolean();
+    private final Trigger trigger;
+
+    WorkQueue(Trigger trigger) {
+        this.trigger = trigger;
+    }
+
+    void offer(T t) {
+        queue.offer(t);
+        depth.incrementAndGet();
+        if (triggered.compareAndSet(false, true)) {
+            trigger.set(true);
+        }
+    }
+
+    /**
+     * Called by the consumer before draining. The trigger is cleared before the
+     * flag so that a producer raising the trigger in between cannot have it
+     * cleared afterward; items offered after this point raise it anew.
+     */
+    void beginDrain() {
+        trigger.set(false);
+        triggered.set(false);
+    }
+
+    /**
+     * Called by the consumer after draining a batch; raises the trigger again
+     * whenever items remain.
+     */
+    void endDrain() {
+        if (!queue.isEmpty()) {
+            triggered.set(true);
+            trigger.set(true);
+        }
+    }
+
+    T poll() {
+        T t = queue.poll();
+        if (null != t) {
+            depth.decrementAndGet();
+        }
+        return t;
+    }
+
+    int size() {
+        return depth.get();
+    }
+}
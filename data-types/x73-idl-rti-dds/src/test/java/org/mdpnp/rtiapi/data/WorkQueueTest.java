@@ -0,0 +1,73 @@
+package org.mdpnp.rtiapi.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public class WorkQueueTest {
+
+    @Test
+    public void testConcurrentProducersAreAllDrained() throws InterruptedException {
+        final int producers = 8, items = 100000, batch = 16;
+        // stands in for the GuardCondition the service thread waits on
+        final AtomicBoolean condition = new AtomicBoolean();
+        final WorkQueue<Integer> queue = new WorkQueue<Integer>(new WorkQueue.Trigger() {
+            @Override
+            public void set(boolean value) {
+                if (!value) {
+                    // widen the window in which a producer may raise the condition
+                    Thread.yield();
+                }
+                condition.set(value);
+            }
+        });
+
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            threads[p] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < items; i++) {
+                        queue.offer(i);
+                    }
+                }
+            });
+            threads[p].start();
+        }
+        start.countDown();
+
+        long drained = 0L;
+        final long expected = (long) producers * items;
+        long deadline = System.currentTimeMillis() + 30000L;
+        while (drained < expected) {
+            // like the WaitSet, only service the queue once the condition is raised
+            while (!condition.get()) {
+                assertTrue("stalled after " + drained + " of " + expected, System.currentTimeMillis() < deadline);
+                Thread.yield();
+            }
+            queue.beginDrain();
+            try {
+                for (int i = 0; i < batch && null != queue.poll(); i++) {
+                    drained++;
+                }
+            } finally {
+                queue.endDrain();
+            }
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(expected, drained);
+        assertEquals(0, queue.size());
+    }
+}
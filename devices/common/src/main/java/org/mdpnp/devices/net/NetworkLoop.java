@@ -19,11 +19,20 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Selects on the channels of registered connections and runs scheduled tasks
+ * on a single thread. Channels are registered and unregistered by that thread;
+ * other threads queue the change and wake the selector rather than pausing the
+ * loop.
+ * 
  * @author Jeff Plourde
  *
  */
@@ -37,18 +46,6 @@ public class NetworkLoop implements Runnable {
          * Running state, processing continues
          */
         Resumed,
-        /**
-         * The interrupt has concluded, processing may continue
-         */
-        Resuming,
-        /**
-         * Processing has been successfully interrupted
-         */
-        Paused,
-        /**
-         * Interrupt of processing is requested
-         */
-        Pausing,
         /**
          * Termination of runLoop has been requested
          */
@@ -75,48 +72,35 @@ public class NetworkLoop implements Runnable {
         this.select = select;
     }
 
-    private synchronized void pause(String action) {
-        long start = System.currentTimeMillis();
-        if (!Thread.currentThread().equals(myThread)) {
-            while (!LoopState.Paused.equals(loopState)) {
-                long now = System.currentTimeMillis();
-                switch (loopState) {
-                case New:
-                    if (now >= (start + 5000L)) {
-                        throw new IllegalStateException("RunLoop not started after five seconds, unable to register connection");
-                    }
-                    break;
-                case Terminating:
-                case Terminated:
-                    throw new IllegalStateException("Cannot " + action + "; runLoop is " + loopState);
-                case Resuming:
-                case Pausing:
-                case Paused:
-                    break;
-                case Resumed:
-                    loopState = LoopState.Pausing;
-                    select.wakeup();
-                    break;
-                }
+    /**
+     * A registration or unregistration queued for the loop thread
+     */
+    private static final class Pending {
+        private final NetworkConnection conn;
+        private final SelectableChannel channel;
+        private final SelectionKey key;
+        private final long queued = System.nanoTime();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private SelectionKey result;
+        private Throwable failure;
 
-                try {
-                    this.wait(250L);
-                } catch (InterruptedException e) {
-                    log.error("Interrupted", e);
-                }
-            }
+        Pending(NetworkConnection conn, SelectableChannel channel, SelectionKey key) {
+            this.conn = conn;
+            this.channel = channel;
+            this.key = key;
         }
     }
 
-    private synchronized void resume() {
-        loopState = LoopState.Resuming;
-        this.notifyAll();
-    }
+    private final Queue<Pending> pending = new ConcurrentLinkedQueue<Pending>();
+
+    // utilization and registration latency since the metrics were last reset
+    private long metricsStart = System.nanoTime(), selectTime, registrations, registrationTime, maxRegistrationTime;
+    private final Object metricsLock = new Object();
 
     public SelectionKey register(NetworkConnection conn, SelectableChannel channel) throws ClosedChannelException {
         SelectionKey key = null;
         synchronized (this) {
-            if (LoopState.New.equals(loopState)) {
+            if (LoopState.New.equals(loopState) || Thread.currentThread().equals(myThread)) {
                 key = channel.register(select, SelectionKey.OP_READ, conn);
             }
         }
@@ -124,18 +108,22 @@ public class NetworkLoop implements Runnable {
             conn.registered(this, key);
             return key;
         } else {
-            pause("register a new connection");
-            key = channel.register(select, SelectionKey.OP_READ, conn);
-            conn.registered(this, key);
-            resume();
-            return key;
+            Pending p = await(new Pending(conn, channel, null), "register a new connection");
+            if (p.failure instanceof ClosedChannelException) {
+                throw (ClosedChannelException) p.failure;
+            } else if (p.failure instanceof RuntimeException) {
+                throw (RuntimeException) p.failure;
+            } else if (null != p.failure) {
+                throw new IllegalStateException("Unable to register a new connection", p.failure);
+            }
+            return p.result;
         }
     }
 
     public void unregister(SelectionKey key, NetworkConnection conn) {
         boolean canceled = false;
         synchronized (this) {
-            if (LoopState.New.equals(loopState)) {
+            if (LoopState.New.equals(loopState) || Thread.currentThread().equals(myThread)) {
                 key.cancel();
                 canceled = true;
             }
@@ -143,10 +131,130 @@ public class NetworkLoop implements Runnable {
         if (canceled) {
             conn.unregistered(this, key);
         } else {
-            pause("unregister a connection");
-            key.cancel();
-            conn.unregistered(this, key);
-            resume();
+            Pending p = await(new Pending(conn, null, key), "unregister a connection");
+            if (p.failure instanceof RuntimeException) {
+                throw (RuntimeException) p.failure;
+            } else if (null != p.failure) {
+                throw new IllegalStateException("Unable to unregister a connection", p.failure);
+            }
+        }
+    }
+
+    private Pending await(Pending p, String action) {
+        synchronized (this) {
+            // fail at once rather than after the first wait; anything queued
+            // before Terminated is set is failed by runLoop on its way out
+            switch (loopState) {
+            case Terminating:
+            case Terminated:
+                throw new IllegalStateException("Cannot " + action + "; runLoop is " + loopState);
+            default:
+                break;
+            }
+            pending.add(p);
+        }
+        select.wakeup();
+        try {
+            while (!p.done.await(250L, TimeUnit.MILLISECONDS)) {
+                synchronized (this) {
+                    switch (loopState) {
+                    case Terminating:
+                    case Terminated:
+                        // unless the loop thread has already taken it
+                        if (pending.remove(p)) {
+                            throw new IllegalStateException("Cannot " + action + "; runLoop is " + loopState);
+                        }
+                        break;
+                    default:
+                        break;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            pending.remove(p);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted trying to " + action, e);
+        }
+        return p;
+    }
+
+    private void doPending() {
+        Pending p;
+        while (null != (p = pending.poll())) {
+            try {
+                if (null == p.key) {
+                    p.result = p.channel.register(select, SelectionKey.OP_READ, p.conn);
+                    p.conn.registered(this, p.result);
+                } else {
+                    p.key.cancel();
+                    p.conn.unregistered(this, p.key);
+                }
+            } catch (Throwable t) {
+                p.failure = t;
+            }
+            long latency = System.nanoTime() - p.queued;
+            synchronized (metricsLock) {
+                registrations++;
+                registrationTime += latency;
+                maxRegistrationTime = Math.max(maxRegistrationTime, latency);
+            }
+            p.done.countDown();
+        }
+    }
+
+    private void failPending(String reason) {
+        Pending p;
+        while (null != (p = pending.poll())) {
+            p.failure = new IllegalStateException(reason);
+            p.done.countDown();
+        }
+    }
+
+    /**
+     * @return the fraction of the time since the metrics were last reset that
+     *         this loop was not waiting in select
+     */
+    public double getUtilization() {
+        synchronized (metricsLock) {
+            long elapsed = System.nanoTime() - metricsStart;
+            return elapsed <= 0L ? 0.0 : Math.max(0.0, 1.0 - (double) selectTime / elapsed);
+        }
+    }
+
+    /**
+     * @return the number of registrations and unregistrations queued by other
+     *         threads since the metrics were last reset
+     */
+    public long getRegistrations() {
+        synchronized (metricsLock) {
+            return registrations;
+        }
+    }
+
+    /**
+     * @return mean ms from queuing a registration or unregistration until the
+     *         loop thread completed it
+     */
+    public double getMeanRegistrationLatency() {
+        synchronized (metricsLock) {
+            return 0L == registrations ? 0.0 : registrationTime / 1000000.0 / registrations;
+        }
+    }
+
+    /**
+     * @return the most ms from queuing a registration or unregistration until
+     *         the loop thread completed it
+     */
+    public double getMaxRegistrationLatency() {
+        synchronized (metricsLock) {
+            return maxRegistrationTime / 1000000.0;
+        }
+    }
+
+    public void resetMetrics() {
+        synchronized (metricsLock) {
+            metricsStart = System.nanoTime();
+            selectTime = registrations = registrationTime = maxRegistrationTime = 0L;
         }
     }
 
@@ -233,8 +341,14 @@ public class NetworkLoop implements Runnable {
     }
     
     public void runLoop() {
+        boolean canceled = false;
         synchronized (this) {
-            if (!LoopState.New.equals(loopState)) {
+            if (LoopState.Terminating.equals(loopState) && null == myThread) {
+                // cancelThread was called before runLoop
+                canceled = true;
+                loopState = LoopState.Terminated;
+                this.notifyAll();
+            } else if (!LoopState.New.equals(loopState)) {
                 throw new IllegalStateException("runLoop has already been called, loopState=" + loopState);
             } else if (null != myThread) {
                 throw new IllegalStateException("Do not invoke the runLoop from multiple threads");
@@ -244,39 +358,36 @@ public class NetworkLoop implements Runnable {
                 this.notifyAll();
             }
         }
+        if (canceled) {
+            failPending("runLoop is " + LoopState.Terminated);
+            return;
+        }
 
+        resetMetrics();
         try {
             while (true) {
                 synchronized (this) {
-                    while (!LoopState.Resumed.equals(loopState)) {
-                        switch (loopState) {
-                        case New:
-                        case Terminated:
-                            throw new IllegalStateException();
-                        case Terminating:
-                            log.info("runLoop in Terminating state; runLoop will end");
-                            return;
-                        case Pausing:
-                            loopState = LoopState.Paused;
-                            this.notifyAll();
-                            break;
-                        case Resuming:
-                            loopState = LoopState.Resumed;
-                            this.notifyAll();
-                            continue;
-                        case Paused:
-                        case Resumed:
-                        }
-                        try {
-                            this.wait();
-                        } catch (InterruptedException e) {
-                            log.error("Interrupted", e);
-                        }
+                    switch (loopState) {
+                    case New:
+                    case Terminated:
+                        throw new IllegalStateException();
+                    case Terminating:
+                        log.info("runLoop in Terminating state; runLoop will end");
+                        return;
+                    case Resumed:
                     }
                 }
 
+                doPending();
+
                 try {
-                    select(taskQueue.doExpiredTasks(System.currentTimeMillis()));
+                    long timeout = taskQueue.doExpiredTasks(System.currentTimeMillis());
+                    long start = System.nanoTime();
+                    select(timeout);
+                    long selected = System.nanoTime() - start;
+                    synchronized (metricsLock) {
+                        selectTime += selected;
+                    }
                 } catch (IOException e) {
                     log.error("in select", e);
                     break;
@@ -341,6 +452,8 @@ public class NetworkLoop implements Runnable {
                     // }
                     // }
                 }
+                // only keys selected again are serviced next time
+                keys.clear();
             }
         } catch(Throwable t) {
             log.error("NetworkLoop.runLoop exiting on uncaught Throwable; this should not happen", t);
@@ -350,32 +463,35 @@ public class NetworkLoop implements Runnable {
                 loopState = LoopState.Terminated;
                 this.notifyAll();
             }
+            failPending("runLoop is " + LoopState.Terminated);
         }
     }
 
+    /**
+     * Asks runLoop to end; if it has not yet been called it will return as
+     * soon as it is
+     */
     public synchronized void cancelThread() {
-        while (!LoopState.Resumed.equals(loopState)) {
-            switch (loopState) {
-            case New:
-                throw new IllegalStateException("runLoop has not been started");
-            case Paused:
-            case Pausing:
-            case Resuming:
-            case Resumed:
-                break;
-            case Terminating:
-            case Terminated:
-                return;
-            }
+        switch (loopState) {
+        case New:
+        case Resumed:
+            this.loopState = LoopState.Terminating;
+            this.notifyAll();
+            select.wakeup();
+            break;
+        case Terminating:
+        case Terminated:
+            break;
+        }
+    }
 
-            try {
-                this.wait();
-            } catch (InterruptedException e) {
-                log.error("Interrupted", e);
-            }
+    /**
+     * Waits until runLoop has been called (or the loop canceled)
+     */
+    synchronized void awaitStarted() throws InterruptedException {
+        while (LoopState.New.equals(loopState)) {
+            this.wait();
         }
-        this.loopState = LoopState.Terminating;
-        select.wakeup();
     }
 
     public void cancelThreadAndWait() {
@@ -391,9 +507,13 @@ public class NetworkLoop implements Runnable {
         }
     }
 
-    public void add(TaskQueue.Task<?> task) {
-        taskQueue.add(task);
+    /**
+     * @return a handle by which the task can be canceled
+     */
+    public TaskQueue.Handle add(TaskQueue.Task<?> task) {
+        TaskQueue.Handle handle = taskQueue.add(task);
         select.wakeup();
+        return handle;
     }
 
     public void clearTasks() {
@@ -401,6 +521,13 @@ public class NetworkLoop implements Runnable {
         select.wakeup();
     }
 
+    /**
+     * @return the tasks of this loop, for their lateness metrics
+     */
+    public TaskQueue getTaskQueue() {
+        return taskQueue;
+    }
+
     public void wakeup() {
         select.wakeup();
     }
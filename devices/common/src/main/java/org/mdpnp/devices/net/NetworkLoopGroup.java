@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.net;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A fixed number of NetworkLoops, each running on its own daemon thread, over
+ * which connections are spread either round robin or by an affinity key so
+ * that related connections share a loop.
+ * 
+ * The number of loops defaults to the system property mdpnp.net.loops or else
+ * to the number of processors, up to four.
+ */
+public class NetworkLoopGroup {
+    private final NetworkLoop[] loops;
+    private final Thread[] threads;
+    private final AtomicInteger next = new AtomicInteger();
+
+    private static final Logger log = LoggerFactory.getLogger(NetworkLoopGroup.class);
+
+    public static int defaultSize() {
+        return Math.max(1, Integer.getInteger("mdpnp.net.loops", Math.min(4, Runtime.getRuntime().availableProcessors())));
+    }
+
+    public NetworkLoopGroup(ThreadGroup threadGroup, String name) throws IOException {
+        this(threadGroup, name, defaultSize());
+    }
+
+    public NetworkLoopGroup(ThreadGroup threadGroup, String name, int size) throws IOException {
+        if (size < 1) {
+            throw new IllegalArgumentException("A NetworkLoopGroup needs at least one loop, not " + size);
+        }
+        loops = new NetworkLoop[size];
+        threads = new Thread[size];
+        for (int i = 0; i < size; i++) {
+            final NetworkLoop loop = loops[i] = new NetworkLoop();
+            threads[i] = new Thread(threadGroup, new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        loop.runLoop();
+                    } finally {
+                        log.info("NetworkLoop.runLoop ended");
+                    }
+                }
+            }, name + " " + i);
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+        // so that every connection registered from here on is handed to a running loop
+        try {
+            for (NetworkLoop loop : loops) {
+                loop.awaitStarted();
+            }
+        } catch (InterruptedException e) {
+            shutdown();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted starting " + name);
+        }
+    }
+
+    public int size() {
+        return loops.length;
+    }
+
+    public NetworkLoop get(int i) {
+        return loops[i];
+    }
+
+    /**
+     * @return the loops in turn
+     */
+    public NetworkLoop next() {
+        return loops[Math.floorMod(next.getAndIncrement(), loops.length)];
+    }
+
+    /**
+     * @return the same loop for every key with the same hashCode
+     */
+    public NetworkLoop forKey(Object key) {
+        return loops[Math.floorMod(key.hashCode(), loops.length)];
+    }
+
+    /**
+     * Registers the connection on the next loop in turn; the connection learns
+     * which through {@link NetworkConnection#registered(NetworkLoop, SelectionKey)}
+     */
+    public SelectionKey register(NetworkConnection conn, SelectableChannel channel) throws ClosedChannelException {
+        return next().register(conn, channel);
+    }
+
+    public void shutdown() {
+        for (NetworkLoop loop : loops) {
+            loop.clearTasks();
+            loop.cancelThread();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                log.error("Interrupted", e);
+            }
+        }
+    }
+}
@@ -13,51 +13,68 @@
 package org.mdpnp.devices.net;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Tasks kept in a binary heap ordered by scheduled time and, among tasks
+ * scheduled for the same time, by the order in which they were added. Adding,
+ * canceling and running each expired task are O(log n).
+ * 
  * @author Jeff Plourde
  *
  */
 public class TaskQueue {
-    private final ThreadLocal<List<Task<?>>> tasksToDo = new ThreadLocal<List<Task<?>>>() {
-        protected java.util.List<TaskQueue.Task<?>> initialValue() {
-            return new ArrayList<Task<?>>();
+    private final ThreadLocal<List<Handle>> tasksToDo = new ThreadLocal<List<Handle>>() {
+        protected java.util.List<Handle> initialValue() {
+            return new ArrayList<Handle>();
         }
     };
 
     public long doExpiredTasks(long now) {
-        List<Task<?>> tasksToDo = this.tasksToDo.get();
+        List<Handle> tasksToDo = this.tasksToDo.get();
 
         tasksToDo.clear();
 
         synchronized (this) {
-            for (Task<?> t : queue) {
-                if (t.getScheduledTime() <= now) {
-                    tasksToDo.add(t);
-                }
+            while (size > 0 && heap[0].time <= now) {
+                tasksToDo.add(removeAt(0));
             }
-            queue.removeAll(tasksToDo);
             this.notifyAll();
         }
         if (!tasksToDo.isEmpty()) {
-            for (Task<?> t : tasksToDo) {
-                t.execute(this);
+            for (Handle h : tasksToDo) {
+                long start = System.currentTimeMillis();
+                synchronized (this) {
+                    long lateness = Math.max(0L, start - h.due);
+                    executed++;
+                    totalLateness += lateness;
+                    maxLateness = Math.max(maxLateness, lateness);
+                }
+                h.task.execute(this);
+                synchronized (this) {
+                    // unless it was added again while executing
+                    if (h.index < 0 && handles.get(h.task) == h) {
+                        handles.remove(h.task);
+                    }
+                }
             }
+            tasksToDo.clear();
         }
         return timeToNextTask(now);
     }
 
     public final synchronized long timeToNextTask(long now) {
-        if (queue.isEmpty()) {
+        if (0 == size) {
             return 0L;
         } else {
-            return queue.first().getScheduledTime() - now;
+            return heap[0].time - now;
         }
     }
 
@@ -78,6 +95,9 @@ public class TaskQueue {
     }
 
     public abstract static class TaskImpl<T> implements Task<T> {
+        private static final AtomicLong sequences = new AtomicLong();
+
+        private final long sequence = sequences.getAndIncrement();
         private long scheduledTime;
         private T t;
         private Throwable e;
@@ -142,15 +162,14 @@ public class TaskQueue {
                 return -1;
             } else if (scheduledTime > o.getScheduledTime()) {
                 return 1;
+            } else if (this == o) {
+                return 0;
+            } else if (o instanceof TaskImpl) {
+                // the task created first comes first
+                return Long.compare(sequence, ((TaskImpl<?>) o).sequence);
             } else {
-                if (this.equals(o)) {
-                    return 0;
-                } else {
-                    // TODO terribly arbitrary
-                    return -1;
-                }
+                return Integer.compare(System.identityHashCode(this), System.identityHashCode(o));
             }
-
         }
 
         public boolean isRecurrent() {
@@ -169,13 +188,197 @@ public class TaskQueue {
 
     }
 
-    private final SortedSet<Task<?>> queue = new TreeSet<Task<?>>();
+    /**
+     * The place of a task in the queue, also through any recurrences of it
+     */
+    public static final class Handle {
+        private final TaskQueue queue;
+        private final Task<?> task;
+        // scheduled time, the order in which it was added and the time it was
+        // due, which is the later of the scheduled time and the time added
+        private long time, sequence, due;
+        // position in the heap or -1 when not in it
+        private int index = -1;
+        private boolean canceled;
+
+        private Handle(TaskQueue queue, Task<?> task) {
+            this.queue = queue;
+            this.task = task;
+        }
 
-    public synchronized void add(Task<?> task) {
-        queue.add(task);
+        public Task<?> getTask() {
+            return task;
+        }
+
+        /**
+         * Removes the task from the queue; a recurrent task that is executing
+         * at the time will not be scheduled again.
+         * 
+         * @return false if the task had already been canceled
+         */
+        public boolean cancel() {
+            return queue.cancel(this);
+        }
+
+        public boolean isCanceled() {
+            synchronized (queue) {
+                return canceled;
+            }
+        }
+    }
+
+    private Handle[] heap = new Handle[16];
+    private int size;
+    private long sequence;
+    private final Map<Task<?>, Handle> handles = new IdentityHashMap<Task<?>, Handle>();
+
+    private long executed, totalLateness, maxLateness;
+
+    /**
+     * Schedules the task for its scheduled time, rescheduling it if it is
+     * already in the queue
+     * 
+     * @return a handle by which the task can be canceled
+     */
+    public synchronized Handle add(Task<?> task) {
+        Handle h = handles.get(task);
+        if (null == h) {
+            h = new Handle(this, task);
+            handles.put(task, h);
+        } else if (h.canceled) {
+            return h;
+        } else if (h.index >= 0) {
+            removeAt(h.index);
+        }
+        h.time = task.getScheduledTime();
+        h.sequence = sequence++;
+        h.due = Math.max(h.time, System.currentTimeMillis());
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, 2 * size);
+        }
+        heap[size] = h;
+        h.index = size++;
+        siftUp(h.index);
+        return h;
+    }
+
+    /**
+     * @return false if the task was not in the queue
+     */
+    public synchronized boolean remove(Task<?> task) {
+        Handle h = handles.get(task);
+        return null != h && cancel(h);
     }
 
     public synchronized void clear() {
-        queue.clear();
+        for (Handle h : handles.values()) {
+            h.canceled = true;
+        }
+        // tasks executing remain until they are done so they are not scheduled again
+        for (int i = 0; i < size; i++) {
+            handles.remove(heap[i].task);
+            heap[i].index = -1;
+            heap[i] = null;
+        }
+        size = 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of tasks executed since the metrics were last reset
+     */
+    public synchronized long getExecutedTasks() {
+        return executed;
+    }
+
+    /**
+     * @return mean ms by which tasks executed since the metrics were last reset
+     *         started after they were due
+     */
+    public synchronized double getMeanLateness() {
+        return 0L == executed ? 0.0 : (double) totalLateness / executed;
+    }
+
+    /**
+     * @return the most ms by which a task executed since the metrics were last
+     *         reset started after it was due
+     */
+    public synchronized long getMaxLateness() {
+        return maxLateness;
+    }
+
+    public synchronized void resetMetrics() {
+        executed = totalLateness = maxLateness = 0L;
+    }
+
+    private synchronized boolean cancel(Handle h) {
+        if (h.canceled) {
+            return false;
+        }
+        h.canceled = true;
+        if (h.index >= 0) {
+            removeAt(h.index);
+            handles.remove(h.task);
+        }
+        return true;
+    }
+
+    private static boolean before(Handle a, Handle b) {
+        return a.time < b.time || (a.time == b.time && a.sequence < b.sequence);
+    }
+
+    private Handle removeAt(int i) {
+        Handle h = heap[i];
+        Handle last = heap[--size];
+        heap[size] = null;
+        h.index = -1;
+        if (i < size) {
+            heap[i] = last;
+            last.index = i;
+            siftDown(i);
+            if (heap[i] == last) {
+                siftUp(i);
+            }
+        }
+        return h;
+    }
+
+    private void siftUp(int i) {
+        Handle h = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            Handle p = heap[parent];
+            if (!before(h, p)) {
+                break;
+            }
+            heap[i] = p;
+            p.index = i;
+            i = parent;
+        }
+        heap[i] = h;
+        h.index = i;
+    }
+
+    private void siftDown(int i) {
+        Handle h = heap[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && before(heap[right], heap[child])) {
+                child = right;
+            }
+            if (!before(heap[child], h)) {
+                break;
+            }
+            heap[i] = heap[child];
+            heap[i].index = i;
+            i = child;
+        }
+        heap[i] = h;
+        h.index = i;
     }
 }
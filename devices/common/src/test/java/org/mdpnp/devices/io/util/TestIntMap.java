@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.io.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * @author Jeff Plourde
+ *
+ */
+public class TestIntMap {
+    @Test
+    public void testPutGetRemove() {
+        IntMap<String> map = new IntMap<String>();
+        assertNull(map.put(0x1234, "a"));
+        assertEquals("a", map.put(0x1234, "b"));
+        assertEquals("b", map.get(0x1234));
+        assertTrue(map.containsKey(0x1234));
+        assertFalse(map.containsKey(0x4321));
+        assertEquals(1, map.size());
+        assertEquals("b", map.put(0x1234, null));
+        assertTrue(map.isEmpty());
+        assertNull(map.get(0x1234));
+    }
+
+    @Test
+    public void testAgainstHashMap() {
+        // Keys drawn from a small range so that collisions, growth and
+        // removal from the middle of probe runs are all exercised
+        Random random = new Random(0L);
+        IntMap<Integer> map = new IntMap<Integer>(2);
+        Map<Integer, Integer> reference = new HashMap<Integer, Integer>();
+        for (int i = 0; i < 100000; i++) {
+            int key = random.nextInt(512) - 256;
+            if (random.nextInt(3) == 0) {
+                assertEquals(reference.remove(key), map.remove(key));
+            } else {
+                assertEquals(reference.put(key, i), map.put(key, i));
+            }
+            assertEquals(reference.size(), map.size());
+        }
+        for (int key = -256; key < 256; key++) {
+            assertEquals(reference.get(key), map.get(key));
+        }
+        int[] keys = map.keys(null);
+        int[] expected = new int[reference.size()];
+        int n = 0;
+        for (Integer key : reference.keySet()) {
+            expected[n++] = key;
+        }
+        keys = Arrays.copyOf(keys, map.size());
+        Arrays.sort(keys);
+        Arrays.sort(expected);
+        assertTrue(Arrays.equals(expected, keys));
+    }
+
+    @Test
+    public void testLongKeys() {
+        LongMap<String> map = new LongMap<String>();
+        map.put(0x100000000L, "high");
+        map.put(0L, "low");
+        assertEquals("high", map.get(0x100000000L));
+        assertEquals("low", map.get(0L));
+        assertNull(map.get(1L));
+        map.clear();
+        assertEquals(0, map.size());
+        assertNull(map.get(0L));
+    }
+}
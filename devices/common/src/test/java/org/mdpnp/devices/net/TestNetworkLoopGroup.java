@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TestNetworkLoopGroup {
+
+    private static class Receiver implements NetworkConnection {
+        private final CountDownLatch received = new CountDownLatch(1);
+        private final ByteBuffer buffer = ByteBuffer.allocate(64);
+        private volatile NetworkLoop loop;
+        private volatile Thread readThread;
+
+        @Override
+        public void read(SelectionKey sk) throws IOException {
+            buffer.clear();
+            if (null != ((DatagramChannel) sk.channel()).receive(buffer)) {
+                readThread = Thread.currentThread();
+                received.countDown();
+            }
+        }
+
+        @Override
+        public void write(SelectionKey sk) throws IOException {
+        }
+
+        @Override
+        public void registered(NetworkLoop networkLoop, SelectionKey sk) {
+            loop = networkLoop;
+        }
+
+        @Override
+        public void unregistered(NetworkLoop networkLoop, SelectionKey sk) {
+            loop = null;
+        }
+    }
+
+    @Test
+    public void testRegisterWhileRunning() throws IOException, InterruptedException {
+        NetworkLoopGroup group = new NetworkLoopGroup(Thread.currentThread().getThreadGroup(), "Test Loop", 2);
+        try {
+            assertSame(group.get(0), group.next());
+            assertSame(group.get(1), group.next());
+            assertSame(group.get(0), group.next());
+            assertSame(group.forKey("monitor"), group.forKey("monitor"));
+
+            Receiver receiver = new Receiver();
+            DatagramChannel channel = DatagramChannel.open();
+            channel.configureBlocking(false);
+            channel.bind(new InetSocketAddress("127.0.0.1", 0));
+            SelectionKey key = group.register(receiver, channel);
+            assertSame(group.get(1), receiver.loop);
+            assertEquals(1L, group.get(1).getRegistrations());
+            assertTrue(group.get(1).getMaxRegistrationLatency() < 250.0);
+
+            DatagramChannel sender = DatagramChannel.open();
+            sender.send(ByteBuffer.wrap(new byte[] { 1, 2, 3 }), channel.getLocalAddress());
+            assertTrue(receiver.received.await(5L, TimeUnit.SECONDS));
+            assertNotEquals(Thread.currentThread(), receiver.readThread);
+
+            group.get(1).unregister(key, receiver);
+            assertEquals(null, receiver.loop);
+            assertEquals(2L, group.get(1).getRegistrations());
+            assertTrue(group.get(1).getUtilization() < 1.0);
+
+            sender.close();
+            channel.close();
+        } finally {
+            group.shutdown();
+        }
+    }
+
+    @Test
+    public void testRegisterAfterShutdownFailsAtOnce() throws IOException, InterruptedException {
+        NetworkLoopGroup group = new NetworkLoopGroup(Thread.currentThread().getThreadGroup(), "Test Loop", 1);
+        group.shutdown();
+
+        DatagramChannel channel = DatagramChannel.open();
+        channel.configureBlocking(false);
+        long start = System.nanoTime();
+        try {
+            group.get(0).register(new Receiver(), channel);
+            fail("registered with a terminated loop");
+        } catch (IllegalStateException e) {
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 250L);
+        } finally {
+            channel.close();
+        }
+    }
+
+    @Test
+    public void testCancelBeforeRunLoop() throws IOException, InterruptedException {
+        final NetworkLoop loop = new NetworkLoop();
+        loop.cancelThread();
+        Thread thread = new Thread(loop, "Test Loop");
+        thread.start();
+        // runLoop returns at once rather than waiting for another cancel
+        thread.join(5000L);
+        assertTrue(!thread.isAlive());
+
+        DatagramChannel channel = DatagramChannel.open();
+        channel.configureBlocking(false);
+        try {
+            loop.register(new Receiver(), channel);
+            fail("registered with a canceled loop");
+        } catch (IllegalStateException e) {
+            // expected
+        } finally {
+            channel.close();
+        }
+    }
+}
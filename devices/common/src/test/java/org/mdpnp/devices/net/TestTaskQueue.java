@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestTaskQueue {
+
+    private static class Recorder extends TaskQueue.TaskImpl<Void> {
+        private final List<Recorder> executed;
+
+        Recorder(List<Recorder> executed, long scheduledTime) {
+            this.executed = executed;
+            setScheduledTime(scheduledTime);
+        }
+
+        @Override
+        public Void doExecute(TaskQueue queue) {
+            executed.add(this);
+            return null;
+        }
+    }
+
+    @Test
+    public void testOrder() {
+        TaskQueue queue = new TaskQueue();
+        List<Recorder> executed = new ArrayList<Recorder>();
+        List<Recorder> tasks = new ArrayList<Recorder>();
+        Random random = new Random(2);
+        for (int i = 0; i < 1000; i++) {
+            Recorder r = new Recorder(executed, 1 + random.nextInt(100));
+            tasks.add(r);
+            queue.add(r);
+        }
+        assertEquals(1000, queue.size());
+        assertEquals(1L, queue.timeToNextTask(0L));
+
+        assertEquals(0L, queue.doExpiredTasks(1000L));
+        assertEquals(1000, executed.size());
+        for (int i = 1; i < executed.size(); i++) {
+            Recorder a = executed.get(i - 1), b = executed.get(i);
+            assertTrue(a.getScheduledTime() <= b.getScheduledTime());
+            if (a.getScheduledTime() == b.getScheduledTime()) {
+                // equal times in the order added
+                assertTrue(tasks.indexOf(a) < tasks.indexOf(b));
+                assertTrue(a.compareTo(b) < 0);
+                assertTrue(b.compareTo(a) > 0);
+            }
+        }
+    }
+
+    @Test
+    public void testExpired() {
+        TaskQueue queue = new TaskQueue();
+        List<Recorder> executed = new ArrayList<Recorder>();
+        Recorder early = new Recorder(executed, 10L), late = new Recorder(executed, 20L);
+        queue.add(late);
+        queue.add(early);
+        assertEquals(5L, queue.doExpiredTasks(5L));
+        assertTrue(executed.isEmpty());
+        assertEquals(5L, queue.doExpiredTasks(15L));
+        assertEquals(1, executed.size());
+        assertEquals(early, executed.get(0));
+        assertEquals(0L, queue.doExpiredTasks(20L));
+        assertEquals(2, executed.size());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testCancel() {
+        TaskQueue queue = new TaskQueue();
+        List<Recorder> executed = new ArrayList<Recorder>();
+        List<TaskQueue.Handle> handles = new ArrayList<TaskQueue.Handle>();
+        for (int i = 0; i < 100; i++) {
+            handles.add(queue.add(new Recorder(executed, i)));
+        }
+        for (int i = 0; i < 100; i += 2) {
+            assertTrue(handles.get(i).cancel());
+            assertTrue(handles.get(i).isCanceled());
+            assertFalse(handles.get(i).cancel());
+        }
+        assertFalse(queue.remove(handles.get(0).getTask()));
+        assertTrue(queue.remove(handles.get(1).getTask()));
+        assertEquals(49, queue.size());
+        queue.doExpiredTasks(100L);
+        assertEquals(49, executed.size());
+        for (int i = 0; i < executed.size(); i++) {
+            assertEquals(2L * i + 3L, executed.get(i).getScheduledTime());
+        }
+    }
+
+    @Test
+    public void testCancelRecurrent() {
+        final TaskQueue queue = new TaskQueue();
+        final List<Recorder> executed = new ArrayList<Recorder>();
+        Recorder r = new Recorder(executed, 0L) {
+            @Override
+            public Void doExecute(TaskQueue q) {
+                super.doExecute(q);
+                // canceled while executing so not scheduled again
+                q.remove(this);
+                return null;
+            }
+        };
+        r.setInterval(1000L);
+        queue.add(r);
+        queue.doExpiredTasks(System.currentTimeMillis());
+        assertEquals(1, executed.size());
+        assertEquals(0, queue.size());
+
+        Recorder s = new Recorder(executed, 0L);
+        s.setInterval(1000L);
+        TaskQueue.Handle h = queue.add(s);
+        queue.doExpiredTasks(System.currentTimeMillis());
+        assertEquals(1, queue.size());
+        assertTrue(h.cancel());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testLateness() {
+        TaskQueue queue = new TaskQueue();
+        List<Recorder> executed = new ArrayList<Recorder>();
+        long now = System.currentTimeMillis();
+        queue.add(new Recorder(executed, now - 100L));
+        queue.add(new Recorder(executed, now - 300L));
+        queue.add(new Recorder(executed, now + 60000L));
+        queue.doExpiredTasks(now);
+        assertEquals(2L, queue.getExecutedTasks());
+        // due when added since they were added after their scheduled time
+        assertTrue(queue.getMaxLateness() < 100L);
+
+        queue.resetMetrics();
+        assertEquals(0L, queue.getExecutedTasks());
+        assertEquals(0.0, queue.getMeanLateness(), 0.0);
+    }
+}
@@ -18,11 +18,10 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -63,7 +62,10 @@ import org.slf4j.LoggerFactory;
  * Consumers of this API should designate a thread to repeatedly run the
  * receive() method as long as the receive() call returns true. When receive()
  * returns false processing has stopped and the connection is no longer viable.
- * 
+ * That thread reads the InputStream in bulk and handles both the realtime
+ * bytes (fastByte) and the slow frames (receiveCommand and receiveResponse)
+ * as they are separated.
+ *
  * 
  * @author Jeff Plourde
  * 
@@ -74,7 +76,7 @@ public class Medibus {
     private int versionMajor = 3;
     private int versionMinor = 0;
 
-    protected final InputStream slowIn;
+    protected final InputStream in;
     protected final ChecksumOutputStream out;
 
     /**
@@ -90,52 +92,15 @@ public class Medibus {
      * @throws IOException 
      */
     public Medibus(InputStream in, OutputStream out) throws IOException {
-        // partition the slow and fast data
-        // fast data have the high order bit set and slow data do not
-        InputStreamPartition isp = new InputStreamPartition(new InputStreamPartition.Filter[] { 
-                new InputStreamPartition.Filter() {
-
-                    @Override
-                    public boolean passes(int b) {
-                        if(0 != (b & 0x80)) {
-                            fastByte(b);
-                            return true;
-                        } else {
-                            return false;
-                        }
-
-                    }
-                    // This is an optimization.  Data will be handled in the passes call and there is 
-                    // not need to enqueue data onto a pipe
-                    public boolean createPipe() { return false; }
-
-                }, new InputStreamPartition.Filter() {
-
-            @Override
-            public boolean passes(int b) {
-                switch(b) {
-                case ASCIIByte.DC1:
-                    log.warn("DC1 (0x11) ignored in stream");
-                    return false;
-                case ASCIIByte.DC3:
-                    log.warn("DC3 (0x13) ignored in stream");
-                    return false;
-                }
-                return 0 == (b & 0x80);
-            }
-            
-            @Override
-            public boolean createPipe() {
-                return true;
-            }
-
-        },  }, in);
-        isp.getProcessingThread().setName("Medibus I/O Multiplexor");
-        this.slowIn = isp.getInputStream(1);
+        this.in = in;
         this.out = new ChecksumOutputStream(out);
         log.trace("Initialized Medibus");
     }
 
+    /**
+     * Called by receive() for each realtime byte (those with the high order bit
+     * set) in the order they arrive
+     */
     protected void fastByte(int b) {
         
     }
@@ -411,30 +376,138 @@ public class Medibus {
     
     static final class Data {
         Object code;
-        String data;
+        final Field data = new Field();
         Data next;
 
         @Override
         public String toString() {
             return "[code=" + Medibus.toString(code) + ", data=" + data + "]";
         }
-        
-        private static Data root;
-        
-        public synchronized static final Data alloc() {
-            if(null == root) {
-                return new Data();
-            } else {
-                Data root = Data.root;
-                Data.root = root.next;
-                return root;
+    }
+
+    /**
+     * The characters of one field of a received frame, viewed in place. Like the
+     * Data that holds it, it is only valid during the receiveXXX call it is
+     * passed to; toString() copies it.
+     */
+    static final class Field implements CharSequence {
+        private byte[] buffer;
+        private int offset, length;
+
+        Field set(byte[] buffer, int offset, int length) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+            return this;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException(Integer.toString(index));
             }
+            return (char) (0xFF & buffer[offset + index]);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().subSequence(start, end);
         }
-        public synchronized static final void free(Data data) {
-            if(null != data) {
-                data.next = Data.root;
-                Data.root = data;
+
+        @Override
+        public String toString() {
+            return null == buffer ? "" : new String(buffer, offset, length, ASCII);
+        }
+
+        /**
+         * Parses the field as Float.parseFloat would parse it trimmed, without
+         * first copying it into a String when it is plain digits with an
+         * optional sign and decimal point
+         */
+        float floatValue() throws NumberFormatException {
+            int i = offset, end = offset + length;
+            while (i < end && buffer[i] <= ' ') {
+                i++;
+            }
+            while (end > i && buffer[end - 1] <= ' ') {
+                end--;
+            }
+            boolean negative = false;
+            if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+                negative = buffer[i++] == '-';
+            }
+            long mantissa = 0L;
+            int digits = 0, scale = -1;
+            for (; i < end; i++) {
+                int b = buffer[i];
+                if (b >= '0' && b <= '9') {
+                    if (++digits > 15) {
+                        break;
+                    }
+                    mantissa = 10L * mantissa + (b - '0');
+                    if (scale >= 0) {
+                        scale++;
+                    }
+                } else if (b == '.' && scale < 0) {
+                    scale = 0;
+                } else {
+                    break;
+                }
             }
+            if (i < end || 0 == digits) {
+                // anything else is left to the platform, which throws for what it cannot parse
+                return Float.parseFloat(toString().trim());
+            }
+            double v = scale > 0 ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+            return (float) (negative ? -v : v);
+        }
+
+        private static final double[] POWERS_OF_TEN = new double[] { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13,
+                1e14, 1e15 };
+    }
+
+    // Free lists of this instance; frames are only parsed by the thread running receive()
+    private Data freeData;
+    private Alarm freeAlarm;
+
+    private Data allocData() {
+        Data d = freeData;
+        if (null == d) {
+            return new Data();
+        }
+        freeData = d.next;
+        d.next = null;
+        return d;
+    }
+
+    private void free(Data d) {
+        if (null != d) {
+            d.code = null;
+            d.data.set(null, 0, 0);
+            d.next = freeData;
+            freeData = d;
+        }
+    }
+
+    private Alarm allocAlarm() {
+        Alarm a = freeAlarm;
+        if (null == a) {
+            return new Alarm();
+        }
+        freeAlarm = a.next;
+        a.next = null;
+        return a;
+    }
+
+    private void free(Alarm a) {
+        if (null != a) {
+            a.next = freeAlarm;
+            freeAlarm = a;
         }
     }
 
@@ -459,11 +532,13 @@ public class Medibus {
         len -= 3;
         int n = len / 6;
         if(data.length < n) {
-            data = new Data[n];
+            data = Arrays.copyOf(data, n);
         }
 
         for (int i = 0; i < n; i++) {
-            data[i] = Data.alloc();
+            if (null == data[i]) {
+                data[i] = allocData();
+            }
             switch (codepage) {
             case 1:
                 data[i].code = MeasuredDataCP1.fromByteIf((byte) recvASCIIHex(response, 1 + i * 6));
@@ -473,10 +548,10 @@ public class Medibus {
                 break;
             }
 
-            data[i].data = new String(response, 1 + i * 6 + 2, 4).intern();
+            data[i].data.set(response, 1 + i * 6 + 2, 4);
         }
         for(int i = n; i < data.length; i++) {
-            Data.free(data[i]);
+            free(data[i]);
             data[i] = null;
         }
         switch (cmdEcho) {
@@ -550,32 +625,17 @@ public class Medibus {
         public String toString() {
             return "[priority=" + priority + ", alarmCode=" + Medibus.toString(alarmCode) + ", alarmPhrase=" + alarmPhrase + "]";
         }
-        private static Alarm root;
-        
-        public synchronized static final Alarm alloc() {
-            if(null == root) {
-                return new Alarm();
-            } else {
-                Alarm root = Alarm.root;
-                Alarm.root = root.next;
-                return root;
-            }
-        }
-        public synchronized static final void free(Alarm alarm) {
-            if(null != alarm) {
-                alarm.next = Alarm.root;
-                Alarm.root = alarm;
-            }
-        }        
     }
     private Alarm[] alarm = new Alarm[1];
     protected void receiveAlarmCodes(Command cmdEcho, byte[] response, int len) throws CorruptMedibusException {
         int n = len / 15;
         if(alarm.length < n) {
-            alarm = new Alarm[n];
+            alarm = Arrays.copyOf(alarm, n);
         }
         for (int i = 0; i < n; i++) {
-            alarm[i] = Alarm.alloc();
+            if (null == alarm[i]) {
+                alarm[i] = allocAlarm();
+            }
             alarm[i].priority = (byte)(response[1 + 15 * i] - '0');
             switch (cmdEcho) {
             case ReqAlarmsCP1:
@@ -591,7 +651,7 @@ public class Medibus {
             alarm[i].alarmPhrase = new String(response, 1 + 15 * i + 3, 12).intern();
         }
         for(int i = n; i < alarm.length; i++) {
-            Alarm.free(alarm[i]);
+            free(alarm[i]);
             alarm[i] = null;
         }
         receiveAlarms(alarm);
@@ -684,16 +744,18 @@ public class Medibus {
         len -= 3; // leading command and trailing 2byte checksum
         int n = len / 7;
         if(data.length < n) {
-            data = new Data[n];
+            data = Arrays.copyOf(data, n);
         }
         
         for (int i = 0; i < n; i++) {
-            data[i] = Data.alloc();
+            if (null == data[i]) {
+                data[i] = allocData();
+            }
             data[i].code = Setting.fromByteIf((byte) recvASCIIHex(response, 1 + i * 7));
-            data[i].data = new String(response, 1 + i * 7 + 2, 5).intern();
+            data[i].data.set(response, 1 + i * 7 + 2, 5);
         }
         for(int i = n; i < data.length; i++) {
-            Data.free(data[i]);
+            free(data[i]);
             data[i] = null;
         }
         receiveDeviceSetting(data);
@@ -720,18 +782,18 @@ public class Medibus {
             n++;
         }
         if(data.length < n) {
-            data = new Data[n];
+            data = Arrays.copyOf(data, n);
         }
         off = 0; 
         for(int i = 0; i < n; i++) {
-            Data d = data[i] = Data.alloc();
+            Data d = null == data[i] ? data[i] = allocData() : data[i];
             d.code = TextMessage.fromByteIf((byte) recvASCIIHex(response, 1 + off));
             int length = (0xFF & response[1 + off + 2]) - 0x30;
-            d.data = new String(response, 1 + off + 3, length);
+            d.data.set(response, 1 + off + 3, length);
             off += 4 + length; // 4 = 2byte code, 1 byte length, 1 byte trailing ETX
         }
         for(int i = n; i < data.length; i++) {
-            Data.free(data[i]);
+            free(data[i]);
             data[i] = null;
         }
         
@@ -825,91 +887,142 @@ public class Medibus {
             return receiveBuffer;
         }
 
-        public void addByte(byte b) {
+        /**
+         * @return false if the buffer is full and the byte was not added
+         */
+        public boolean addByte(byte b) {
+            if (count == receiveBuffer.length) {
+                return false;
+            }
             receiveBuffer[count++] = b;
+            return true;
+        }
+
+        /**
+         * Whether the frame overflowed; its remaining bytes are swallowed up to
+         * its CR
+         */
+        public boolean isDiscarding() {
+            return discarding;
+        }
+
+        public void discard() {
+            discarding = true;
         }
 
         public Buffer reset(Type type) {
             this.type = type;
             this.count = 0;
+            this.discarding = false;
             return this;
         }
 
         private final byte[] receiveBuffer = new byte[8000];
         private int count;
         private Type type;
+        private boolean discarding;
 
         public enum Type {
             Command, Response
         }
     }
 
-    private static final Buffer aFreeBuffer(Buffer.Type type, List<Buffer> freeBuffers) {
-        if (freeBuffers.isEmpty()) {
-            return new Buffer(type);
-        } else {
-            return freeBuffers.remove(0).reset(type);
+    /**
+     * Bytes requested from the InputStream at a time; at 38400 baud this is
+     * around two seconds of traffic so each read returns whatever has arrived
+     */
+    private static final int READ_SIZE = 8192;
+
+    // Frames begun and not yet ended, innermost last; a command may begin in the
+    // middle of a response. Buffers beyond depth are free for reuse.
+    private Buffer[] frames = new Buffer[4];
+    private int depth;
+
+    private Buffer beginFrame(Buffer.Type type) {
+        if (depth == frames.length) {
+            frames = Arrays.copyOf(frames, 2 * depth);
         }
+        Buffer b = frames[depth];
+        frames[depth++] = null == b ? new Buffer(type) : b.reset(type);
+        return frames[depth - 1];
     }
 
     public boolean receive() throws IOException {
-        int leading = 0;
-
-        List<Buffer> buffers = new ArrayList<Buffer>();
-        List<Buffer> freeBuffers = new ArrayList<Buffer>();
-
-        Buffer topBuffer = null;
+        final byte[] bytes = new byte[READ_SIZE];
+        depth = 0;
 
         while (true) {
-            leading = slowIn.read();
-            if (leading < 0) {
-                log.trace("receive got " + leading + " from slowIn.read");
+            int n = in.read(bytes, 0, bytes.length);
+            if (n < 0) {
+                log.trace("receive got " + n + " from in.read");
                 // EOF
                 return false;
             }
+            for (int i = 0; i < n; i++) {
+                int b = 0xFF & bytes[i];
+                // realtime data have the high order bit set and slow data do not
+                if (0 != (b & 0x80)) {
+                    fastByte(b);
+                } else {
+                    slowByte(b);
+                }
+            }
+        }
+    }
 
-            switch (leading) {
-            case ASCIIByte.SOH:
-                buffers.add(0, topBuffer = aFreeBuffer(Buffer.Type.Response, freeBuffers));
-                break;
-            case ASCIIByte.ESC:
-                buffers.add(0, topBuffer = aFreeBuffer(Buffer.Type.Command, freeBuffers));
-                break;
-            case ASCIIByte.CR:
-                if (null != topBuffer) {
-                    if(log.isTraceEnabled()) {
-                        String msg = topBuffer.getType() + ":"+HexUtil.dump(ByteBuffer.wrap(topBuffer.receiveBuffer, 0, topBuffer.getCount()), 80);
-                        log.trace(msg);
-                    }
-                    try {
-                        switch (topBuffer.getType()) {
-                        case Command:
-                            receiveCommand(topBuffer.getReceiveBuffer(), topBuffer.getCount());
-                            break;
-                        case Response:
-                            receiveResponse(topBuffer.getReceiveBuffer(), topBuffer.getCount());
-                            break;
-                        }
-                    } catch (CorruptMedibusException cme) {
-                        // The contents of this frame were invalid, but we will continue onto the next frame
-                        // depending on intended use this might not be a desired behaviour; or perhaps more likely
-                        // better reporting of this type of error is required.
-                        String msg = topBuffer.getType() + ":"+HexUtil.dump(ByteBuffer.wrap(topBuffer.receiveBuffer, 0, topBuffer.getCount()), 80);
-                        log.error(msg);
+    private void slowByte(int b) throws IOException {
+        switch (b) {
+        case ASCIIByte.DC1:
+            log.warn("DC1 (0x11) ignored in stream");
+            break;
+        case ASCIIByte.DC3:
+            log.warn("DC3 (0x13) ignored in stream");
+            break;
+        case ASCIIByte.SOH:
+            beginFrame(Buffer.Type.Response);
+            break;
+        case ASCIIByte.ESC:
+            beginFrame(Buffer.Type.Command);
+            break;
+        case ASCIIByte.CR:
+            if (depth > 0) {
+                Buffer topBuffer = frames[--depth];
+                if (topBuffer.isDiscarding()) {
+                    break;
+                }
+                if(log.isTraceEnabled()) {
+                    String msg = topBuffer.getType() + ":"+HexUtil.dump(ByteBuffer.wrap(topBuffer.receiveBuffer, 0, topBuffer.getCount()), 80);
+                    log.trace(msg);
+                }
+                try {
+                    switch (topBuffer.getType()) {
+                    case Command:
+                        receiveCommand(topBuffer.getReceiveBuffer(), topBuffer.getCount());
+                        break;
+                    case Response:
+                        receiveResponse(topBuffer.getReceiveBuffer(), topBuffer.getCount());
+                        break;
                     }
-                    freeBuffers.add(topBuffer);
-                    buffers.remove(0);
-                    topBuffer = buffers.isEmpty() ? null : buffers.get(0);
-                } else {
-                    log.warn("Received a CR with no matching SOH or ESC");
+                } catch (CorruptMedibusException cme) {
+                    // The contents of this frame were invalid, but we will continue onto the next frame
+                    // depending on intended use this might not be a desired behaviour; or perhaps more likely
+                    // better reporting of this type of error is required.
+                    String msg = topBuffer.getType() + ":"+HexUtil.dump(ByteBuffer.wrap(topBuffer.receiveBuffer, 0, topBuffer.getCount()), 80);
+                    log.error(msg);
                 }
-                break;
-            default:
-                if (topBuffer != null) {
-                    topBuffer.addByte((byte) leading);
-                } else {
-                    log.error("Unknown byte: 0x" + Integer.toHexString(leading));
+            } else {
+                log.warn("Received a CR with no matching SOH or ESC");
+            }
+            break;
+        default:
+            if (depth > 0) {
+                Buffer topBuffer = frames[depth - 1];
+                if (!topBuffer.isDiscarding() && !topBuffer.addByte((byte) b)) {
+                    log.error("Discarding a " + topBuffer.getType() + " that exceeds " + topBuffer.getReceiveBuffer().length + " bytes");
+                    topBuffer.discard();
                 }
+            } else {
+                log.error("Unknown byte: 0x" + Integer.toHexString(b));
             }
         }
     }
@@ -2,13 +2,27 @@ package org.mdpnp.devices.draeger.medibus;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.List;
+import java.util.Locale;
 import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.mdpnp.devices.ASCIIByte;
+import org.mdpnp.devices.draeger.medibus.types.Command;
+import org.mdpnp.devices.draeger.medibus.types.MeasuredDataCP1;
 
 public class TestMedibus {
 
@@ -80,4 +94,204 @@ public class TestMedibus {
         }
     }
 
+    @Test
+    public void testFraming() throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        Medibus.sendASCIIHex(payload, MeasuredDataCP1.values()[0].toByte());
+        payload.write(" 123".getBytes("ASCII"));
+        Medibus.sendASCIIHex(payload, MeasuredDataCP1.values()[1].toByte());
+        payload.write("-4.5".getBytes("ASCII"));
+
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        Medibus encoder = new Medibus(new ByteArrayInputStream(new byte[0]), frames);
+        for (int i = 0; i < 3; i++) {
+            encoder.sendResponse(Command.ReqMeasuredDataCP1, payload.toByteArray());
+        }
+        byte[] slow = frames.toByteArray();
+
+        // realtime bytes and flow control interleaved with the slow frames
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        List<Integer> expectedFast = new ArrayList<Integer>();
+        for (int i = 0; i < slow.length; i++) {
+            stream.write(slow[i]);
+            if (0 == i % 3) {
+                int fast = 0x80 | (i & 0x7F);
+                stream.write(fast);
+                expectedFast.add(fast);
+            }
+            if (0 == i % 11) {
+                stream.write(ASCIIByte.DC1);
+            }
+        }
+
+        final List<Integer> fast = new ArrayList<Integer>();
+        final List<String> received = new ArrayList<String>();
+        // deliver a few bytes at a time so frames span reads
+        Medibus medibus = new Medibus(new ByteArrayInputStream(stream.toByteArray()) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 5));
+            }
+        }, new ByteArrayOutputStream()) {
+            @Override
+            protected void fastByte(int b) {
+                fast.add(b);
+            }
+
+            @Override
+            protected void receiveMeasuredData(int codepage, Data[] data) {
+                for (Data d : data) {
+                    if (null != d) {
+                        received.add(d.code + "=" + d.data);
+                    }
+                }
+            }
+        };
+        assertFalse(medibus.receive());
+        assertEquals(expectedFast, fast);
+        assertEquals(6, received.size());
+        assertEquals(MeasuredDataCP1.values()[0] + "= 123", received.get(0));
+        assertEquals(MeasuredDataCP1.values()[1] + "=-4.5", received.get(5));
+    }
+
+    @Test
+    public void testOversizedFrame() throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        Medibus.sendASCIIHex(payload, MeasuredDataCP1.values()[0].toByte());
+        payload.write(" 123".getBytes("ASCII"));
+
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        Medibus encoder = new Medibus(new ByteArrayInputStream(new byte[0]), frames);
+        encoder.sendResponse(Command.ReqMeasuredDataCP1, payload.toByteArray());
+        byte[] response = frames.toByteArray();
+
+        byte[] oversized = new byte[9000];
+        Arrays.fill(oversized, (byte) 'A');
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        // an oversized response on its own
+        stream.write(ASCIIByte.SOH);
+        stream.write(oversized);
+        stream.write(ASCIIByte.CR);
+        stream.write(response);
+        // an oversized command in the middle of a response
+        stream.write(response, 0, 4);
+        stream.write(ASCIIByte.ESC);
+        stream.write(oversized);
+        stream.write(ASCIIByte.CR);
+        stream.write(response, 4, response.length - 4);
+
+        final List<String> received = new ArrayList<String>();
+        final List<String> corrupt = new ArrayList<String>();
+        Medibus medibus = new Medibus(new ByteArrayInputStream(stream.toByteArray()), new ByteArrayOutputStream()) {
+            @Override
+            protected void receiveMeasuredData(int codepage, Data[] data) {
+                for (Data d : data) {
+                    if (null != d) {
+                        received.add(d.code + "=" + d.data);
+                    }
+                }
+            }
+
+            @Override
+            protected void receiveCorruptResponse() {
+                corrupt.add("response");
+            }
+
+            @Override
+            protected void receiveCommand(byte[] buffer, int len) {
+                corrupt.add("command");
+            }
+        };
+        assertFalse(medibus.receive());
+        assertEquals(2, received.size());
+        assertEquals(MeasuredDataCP1.values()[0] + "= 123", received.get(1));
+        assertTrue(corrupt.isEmpty());
+    }
+
+    @Test
+    public void testFieldFloatValue() throws Exception {
+        String[] fields = new String[] { " 123", "-4.5", "12.3", "  .5", "0.01", "  -0", "1.  ", "9999", "+7.5", " 1e2" };
+        Medibus.Field field = new Medibus.Field();
+        for (String s : fields) {
+            byte[] b = ("x" + s + "y").getBytes("ASCII");
+            assertEquals(s, Float.parseFloat(s.trim()), field.set(b, 1, s.length()).floatValue(), 0f);
+            assertEquals(s, field.toString());
+        }
+        // every value a 5 character setting field can hold with one decimal place
+        for (int i = -9999; i <= 99999; i++) {
+            String s = String.format(Locale.ROOT, "%5.1f", i / 10.0);
+            byte[] b = s.getBytes("ASCII");
+            assertEquals(s, Float.parseFloat(s.trim()), field.set(b, 0, b.length).floatValue(), 0f);
+        }
+        for (String s : new String[] { "----", "    ", "1-2 ", "..5 " }) {
+            byte[] b = s.getBytes("ASCII");
+            try {
+                field.set(b, 0, b.length).floatValue();
+                fail(s);
+            } catch (NumberFormatException nfe) {
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentParsers() throws Exception {
+        final int PARSERS = 16, FRAMES = 2000, CODES = 20;
+        final MeasuredDataCP1[] codes = new MeasuredDataCP1[CODES];
+        int n = 0;
+        for (MeasuredDataCP1 m : MeasuredDataCP1.values()) {
+            if (n < CODES && m == MeasuredDataCP1.fromByte(m.toByte())) {
+                codes[n++] = m;
+            }
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(PARSERS);
+        try {
+            List<Future<Void>> results = new ArrayList<Future<Void>>();
+            for (int p = 0; p < PARSERS; p++) {
+                final int parser = p;
+                results.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        // each parser sees values of its own so any sharing between them shows
+                        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+                        Medibus encoder = new Medibus(new ByteArrayInputStream(new byte[0]), frames);
+                        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+                        for (int f = 0; f < FRAMES; f++) {
+                            payload.reset();
+                            for (int c = 0; c < CODES; c++) {
+                                Medibus.sendASCIIHex(payload, codes[c].toByte());
+                                payload.write(String.format("%4d", (parser * 31 + f + c) % 10000).getBytes("ASCII"));
+                            }
+                            encoder.sendResponse(Command.ReqMeasuredDataCP1, payload.toByteArray());
+                        }
+                        final int[] frame = new int[1];
+                        Medibus medibus = new Medibus(new ByteArrayInputStream(frames.toByteArray()), new ByteArrayOutputStream()) {
+                            @Override
+                            protected void receiveMeasuredData(int codepage, Data[] data) {
+                                int c = 0;
+                                for (Data d : data) {
+                                    if (null != d) {
+                                        assertEquals(codes[c], d.code);
+                                        assertEquals((parser * 31 + frame[0] + c) % 10000, d.data.floatValue(), 0f);
+                                        c++;
+                                    }
+                                }
+                                assertEquals(CODES, c);
+                                frame[0]++;
+                            }
+                        };
+                        assertFalse(medibus.receive());
+                        assertEquals(FRAMES, frame[0]);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> f : results) {
+                f.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
 }
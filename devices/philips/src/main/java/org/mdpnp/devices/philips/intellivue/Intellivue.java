@@ -28,8 +28,10 @@ import java.util.List;
 import org.mdpnp.devices.io.util.HexUtil;
 import org.mdpnp.devices.net.NetworkConnection;
 import org.mdpnp.devices.net.NetworkLoop;
+import org.mdpnp.devices.philips.intellivue.action.ExtendedPollDataReader;
 import org.mdpnp.devices.philips.intellivue.action.ExtendedPollDataRequest;
 import org.mdpnp.devices.philips.intellivue.action.ExtendedPollDataResult;
+import org.mdpnp.devices.philips.intellivue.action.ExtendedPollDataVisitor;
 import org.mdpnp.devices.philips.intellivue.action.SinglePollDataRequest;
 import org.mdpnp.devices.philips.intellivue.action.SinglePollDataResult;
 import org.mdpnp.devices.philips.intellivue.action.impl.ExtendedPollDataRequestImpl;
@@ -88,6 +90,7 @@ public class Intellivue implements NetworkConnection {
     private final ByteBuffer inBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
     private final ByteBuffer outBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
     private final Protocol protocol = new CompoundProtocol();
+    private volatile ExtendedPollDataVisitor extendedPollDataVisitor;
 
     public Intellivue() {
         inBuffer.order(ByteOrder.BIG_ENDIAN);
@@ -97,6 +100,21 @@ public class Intellivue implements NetworkConnection {
 
     private static final Logger log = LoggerFactory.getLogger(Intellivue.class);
 
+    /**
+     * Extended poll results accepted by the visitor are walked in place in the
+     * receive buffer and never reach {@link #handle(ExtendedPollDataResult)}.
+     * 
+     * @param extendedPollDataVisitor
+     *            null to parse every message in full
+     */
+    public void setExtendedPollDataVisitor(ExtendedPollDataVisitor extendedPollDataVisitor) {
+        this.extendedPollDataVisitor = extendedPollDataVisitor;
+    }
+
+    public ExtendedPollDataVisitor getExtendedPollDataVisitor() {
+        return extendedPollDataVisitor;
+    }
+
     protected static final String lineWrap(String str) {
         return lineWrap(str, CHARS_PER_LINE);
     }
@@ -657,7 +675,10 @@ public class Intellivue implements NetworkConnection {
                     time.setTime(System.currentTimeMillis());
                     log.trace("From " + channel.getRemoteAddress() + " on " + channel.socket().getLocalAddress() + "\n" + HexUtil.dump(inBuffer, 50));
                 }
-                handle(sockaddr, protocol.parse(inBuffer), sk);
+                ExtendedPollDataVisitor visitor = extendedPollDataVisitor;
+                if (null == visitor || !ExtendedPollDataReader.read(inBuffer, visitor)) {
+                    handle(sockaddr, protocol.parse(inBuffer), sk);
+                }
             }
         }
     }
@@ -12,10 +12,13 @@
  ******************************************************************************/
 package org.mdpnp.devices.philips.intellivue;
 
-import java.util.HashMap;
-import java.util.Map;
+import org.mdpnp.devices.io.util.IntMap;
+import org.mdpnp.devices.io.util.LongMap;
 
 /**
+ * Lookup tables from wire values to enum constants. The tables are keyed by
+ * primitives so that decoding a value does not box it.
+ * 
  * @author Jeff Plourde
  *
  */
@@ -24,8 +27,8 @@ public class OrdinalEnum {
         short asShort();
     }
 
-    public static final <T extends ShortType> Map<Short, T> buildShort(Class<T> cls) {
-        Map<Short, T> map = new HashMap<Short, T>();
+    public static final <T extends ShortType> IntMap<T> buildShort(Class<T> cls) {
+        IntMap<T> map = new IntMap<T>(cls.getEnumConstants().length);
         for (T t : cls.getEnumConstants()) {
             if (map.containsKey(t.asShort())) {
                 throw new IllegalStateException("" + t.asShort() + " is ordinal for " + t + " and " + map.get(t.asShort()));
@@ -39,8 +42,8 @@ public class OrdinalEnum {
         int asInt();
     }
 
-    public static final <T extends IntType> Map<Integer, T> buildInt(Class<T> cls) {
-        Map<Integer, T> map = new HashMap<Integer, T>();
+    public static final <T extends IntType> IntMap<T> buildInt(Class<T> cls) {
+        IntMap<T> map = new IntMap<T>(cls.getEnumConstants().length);
         for (T t : cls.getEnumConstants()) {
             if (map.containsKey(t.asInt())) {
                 throw new IllegalStateException("" + t.asInt() + " is ordinal for " + t + " and " + map.get(t.asInt()));
@@ -54,8 +57,8 @@ public class OrdinalEnum {
         long asLong();
     }
 
-    public static final <T extends LongType> Map<Long, T> buildLong(Class<T> cls) {
-        Map<Long, T> map = new HashMap<Long, T>();
+    public static final <T extends LongType> LongMap<T> buildLong(Class<T> cls) {
+        LongMap<T> map = new LongMap<T>(cls.getEnumConstants().length);
         for (T t : cls.getEnumConstants()) {
             if (map.containsKey(t.asLong())) {
                 throw new IllegalStateException("" + t.asLong() + " is ordinal for " + t + " and " + map.get(t.asLong()));
@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.philips.intellivue.action;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import org.mdpnp.devices.philips.intellivue.data.AttributeId;
+import org.mdpnp.devices.philips.intellivue.data.NomPartition;
+import org.mdpnp.devices.philips.intellivue.data.ObjectClass;
+import org.mdpnp.devices.philips.intellivue.dataexport.CommandType;
+import org.mdpnp.devices.philips.intellivue.dataexport.RemoteOperation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Walks a data export result carrying an extended poll (one datagram, linked
+ * or not) without building the message, command, poll and attribute objects
+ * that {@link org.mdpnp.devices.philips.intellivue.CompoundProtocol} would.
+ * Handles, physio ids and sample bytes are read where they lie in the receive
+ * buffer and handed to an {@link ExtendedPollDataVisitor}.
+ *
+ * @author Jeff Plourde
+ *
+ */
+public final class ExtendedPollDataReader {
+    private static final Logger log = LoggerFactory.getLogger(ExtendedPollDataReader.class);
+
+    private static final int DATA_EXPORT_SESSION = 0xE100;
+
+    // session header, remote operation, linked state, result, action result,
+    // poll header and the poll info list prefix
+    private static final int MAXIMUM_HEADER_LENGTH = 4 + 4 + 2 + 6 + 10 + 22 + 4;
+
+    private static final int SA_VAL_OBS = AttributeId.NOM_ATTR_SA_VAL_OBS.asInt();
+    private static final int SA_CMPD_VAL_OBS = AttributeId.NOM_ATTR_SA_CMPD_VAL_OBS.asInt();
+
+    private ExtendedPollDataReader() {
+
+    }
+
+    private static int getUnsignedShort(ByteBuffer bb, int index) {
+        return 0xFFFF & bb.getShort(index);
+    }
+
+    /**
+     * @return false, with bb untouched, if bb does not hold an extended poll
+     *         result or the visitor declined it; true if the result was
+     *         visited, in which case bb is positioned at its limit
+     */
+    public static boolean read(ByteBuffer bb, ExtendedPollDataVisitor visitor) {
+        final int limit = bb.limit();
+        int pos = bb.position();
+        if (bb.remaining() < MAXIMUM_HEADER_LENGTH || DATA_EXPORT_SESSION != getUnsignedShort(bb, pos)) {
+            return false;
+        }
+        pos += 4;
+
+        int remoteOperation = getUnsignedShort(bb, pos);
+        pos += 4;
+        if (RemoteOperation.LinkedResult.asInt() == remoteOperation) {
+            // linked state and count
+            pos += 2;
+        } else if (RemoteOperation.Result.asInt() != remoteOperation) {
+            return false;
+        }
+
+        if (CommandType.ConfirmedAction.asInt() != getUnsignedShort(bb, pos + 2)) {
+            return false;
+        }
+        // invoke id, command type, length, managed object
+        pos += 12;
+        if (ObjectClass.NOM_ACT_POLL_MDIB_DATA_EXT.asInt() != getUnsignedShort(bb, pos)) {
+            return false;
+        }
+        pos += 4;
+
+        int pollNumber = getUnsignedShort(bb, pos);
+        int sequenceNumber = getUnsignedShort(bb, pos + 2);
+        long relativeTime = 0xFFFFFFFFL & bb.getInt(pos + 4);
+        // relative and absolute time
+        pos += 16;
+        int partition = getUnsignedShort(bb, pos);
+        int objectClass = getUnsignedShort(bb, pos + 2);
+        int attributeGroup = getUnsignedShort(bb, pos + 4);
+        pos += 6;
+        if (NomPartition.Object.asShort() != partition || !visitor.accept(objectClass, attributeGroup)) {
+            return false;
+        }
+
+        visitor.begin(pollNumber, sequenceNumber, relativeTime);
+        try {
+            int contexts = getUnsignedShort(bb, pos);
+            pos += 4;
+            for (int i = 0; i < contexts; i++) {
+                // mds context
+                pos += 2;
+                int polls = getUnsignedShort(bb, pos);
+                pos += 4;
+                for (int j = 0; j < polls; j++) {
+                    int handle = getUnsignedShort(bb, pos);
+                    int attributes = getUnsignedShort(bb, pos + 2);
+                    pos += 6;
+                    for (int k = 0; k < attributes; k++) {
+                        int oid = getUnsignedShort(bb, pos);
+                        int value = pos + 4;
+                        int next = value + getUnsignedShort(bb, pos + 2);
+                        if (next > limit) {
+                            throw new BufferUnderflowException();
+                        }
+                        if (SA_VAL_OBS == oid) {
+                            sampleArray(bb, handle, value, next, visitor);
+                        } else if (SA_CMPD_VAL_OBS == oid) {
+                            int count = getUnsignedShort(bb, value);
+                            value += 4;
+                            for (int n = 0; n < count; n++) {
+                                value = sampleArray(bb, handle, value, next, visitor);
+                            }
+                        } else {
+                            bb.limit(next).position(pos);
+                            try {
+                                visitor.attribute(handle, oid, bb);
+                            } finally {
+                                bb.limit(limit);
+                            }
+                        }
+                        pos = next;
+                    }
+                }
+            }
+        } catch (RuntimeException re) {
+            log.error("Error reading extended poll result at " + pos, re);
+        } finally {
+            bb.position(limit);
+            visitor.end();
+        }
+        return true;
+    }
+
+    private static int sampleArray(ByteBuffer bb, int handle, int pos, int end, ExtendedPollDataVisitor visitor) {
+        int physioId = getUnsignedShort(bb, pos);
+        int state = getUnsignedShort(bb, pos + 2);
+        int length = getUnsignedShort(bb, pos + 4);
+        int offset = pos + 6;
+        if (offset + length > end) {
+            throw new BufferUnderflowException();
+        }
+        visitor.sampleArray(handle, physioId, state, bb, offset, length);
+        return offset + length;
+    }
+}
@@ -0,0 +1,58 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.philips.intellivue.action;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Receives the contents of an extended poll result while it is walked in
+ * place in the receive buffer by {@link ExtendedPollDataReader}. Nothing
+ * passed to these methods may be retained after the call returns; the buffer
+ * is reused for the next datagram.
+ *
+ * @author Jeff Plourde
+ *
+ */
+public interface ExtendedPollDataVisitor {
+    /**
+     * @param polledObjectClass
+     *            ObjectClass of the polled objects (partition Object)
+     * @param polledAttributeGroup
+     *            OID of the polled attribute group
+     * @return true to walk this result in place, false to have it parsed
+     *         into an {@link ExtendedPollDataResult} as usual
+     */
+    boolean accept(int polledObjectClass, int polledAttributeGroup);
+
+    void begin(int pollNumber, int sequenceNumber, long relativeTime);
+
+    /**
+     * A NOM_ATTR_SA_VAL_OBS, or one element of a NOM_ATTR_SA_CMPD_VAL_OBS
+     *
+     * @param offset
+     *            absolute index in bb of the first sample byte
+     * @param length
+     *            number of sample bytes
+     */
+    void sampleArray(int handle, int physioId, int measurementState, ByteBuffer bb, int offset, int length);
+
+    /**
+     * Any other attribute. bb is positioned at the attribute id and limited to
+     * the end of the attribute value, so that an
+     * {@link org.mdpnp.devices.philips.intellivue.attribute.Attribute} can
+     * parse it directly.
+     */
+    void attribute(int handle, int oid, ByteBuffer bb);
+
+    void end();
+}
@@ -12,8 +12,7 @@
  ******************************************************************************/
 package org.mdpnp.devices.philips.intellivue.association;
 
-import java.util.Map;
-
+import org.mdpnp.devices.io.util.IntMap;
 import org.mdpnp.devices.philips.intellivue.OrdinalEnum;
 
 /**
@@ -57,7 +56,7 @@ public enum AssociationMessageType implements OrdinalEnum.ShortType {
         this.x = x;
     }
 
-    private static final Map<Short, AssociationMessageType> map = OrdinalEnum.buildShort(AssociationMessageType.class);
+    private static final IntMap<AssociationMessageType> map = OrdinalEnum.buildShort(AssociationMessageType.class);
 
     public final short asShort() {
         return x;
@@ -12,8 +12,7 @@
  ******************************************************************************/
 package org.mdpnp.devices.philips.intellivue.data;
 
-import java.util.Map;
-
+import org.mdpnp.devices.io.util.IntMap;
 import org.mdpnp.devices.philips.intellivue.OrdinalEnum;
 
 /**
@@ -29,7 +28,7 @@ public enum ComponentId implements OrdinalEnum.IntType {
         this.x = x;
     }
 
-    private static final Map<Integer, ComponentId> map = OrdinalEnum.buildInt(ComponentId.class);
+    private static final IntMap<ComponentId> map = OrdinalEnum.buildInt(ComponentId.class);
 
     public static ComponentId valueOf(int x) {
         return map.get(x);
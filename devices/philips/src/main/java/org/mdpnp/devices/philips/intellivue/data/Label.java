@@ -12,8 +12,7 @@
  ******************************************************************************/
 package org.mdpnp.devices.philips.intellivue.data;
 
-import java.util.Map;
-
+import org.mdpnp.devices.io.util.LongMap;
 import org.mdpnp.devices.philips.intellivue.OrdinalEnum;
 
 /**
@@ -2800,7 +2799,7 @@ public enum Label implements OrdinalEnum.LongType {
         this.x = x;
     }
 
-    private final static Map<Long, Label> map = OrdinalEnum.buildLong(Label.class);
+    private final static LongMap<Label> map = OrdinalEnum.buildLong(Label.class);
 
     public final long asLong() {
         return x;
@@ -12,8 +12,7 @@
  ******************************************************************************/
 package org.mdpnp.devices.philips.intellivue.data;
 
-import java.util.Map;
-
+import org.mdpnp.devices.io.util.IntMap;
 import org.mdpnp.devices.philips.intellivue.OrdinalEnum;
 
 /**
@@ -36,7 +35,7 @@ public enum Language implements OrdinalEnum.ShortType {
         this.x = x;
     }
 
-    private static final Map<Short, Language> map = OrdinalEnum.buildShort(Language.class);
+    private static final IntMap<Language> map = OrdinalEnum.buildShort(Language.class);
 
     public short asShort() {
         return x;
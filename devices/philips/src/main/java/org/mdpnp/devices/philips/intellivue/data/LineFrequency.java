@@ -13,9 +13,9 @@
 package org.mdpnp.devices.philips.intellivue.data;
 
 import java.nio.ByteBuffer;
-import java.util.Map;
 
 import org.mdpnp.devices.io.util.Bits;
+import org.mdpnp.devices.io.util.IntMap;
 import org.mdpnp.devices.philips.intellivue.OrdinalEnum;
 
 /**
@@ -40,7 +40,7 @@ public enum LineFrequency implements EnumMessage<LineFrequency>, OrdinalEnum.Int
         this.x = x;
     }
 
-    private static final Map<Integer, LineFrequency> map = OrdinalEnum.buildInt(LineFrequency.class);
+    private static final IntMap<LineFrequency> map = OrdinalEnum.buildInt(LineFrequency.class);
 
     public static LineFrequency valueOf(int x) {
         return map.get(x);
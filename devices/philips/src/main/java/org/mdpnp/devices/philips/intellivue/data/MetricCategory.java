@@ -12,8 +12,7 @@
  ******************************************************************************/
 package org.mdpnp.devices.philips.intellivue.data;
 
-import java.util.Map;
-
+import org.mdpnp.devices.io.util.IntMap;
 import org.mdpnp.devices.philips.intellivue.OrdinalEnum;
 
 /**
@@ -69,7 +68,7 @@ public enum MetricCategory implements OrdinalEnum.IntType {
 
     private final int x;
 
-    private static final Map<Integer, MetricCategory> map = OrdinalEnum.buildInt(MetricCategory.class);
+    private static final IntMap<MetricCategory> map = OrdinalEnum.buildInt(MetricCategory.class);
 
     private MetricCategory(int x) {
         this.x = x;
@@ -13,9 +13,9 @@
 package org.mdpnp.devices.philips.intellivue.data;
 
 import java.nio.ByteBuffer;
-import java.util.Map;
 
 import org.mdpnp.devices.io.util.Bits;
+import org.mdpnp.devices.io.util.IntMap;
 import org.mdpnp.devices.philips.intellivue.OrdinalEnum;
 
 // ought this be a bitfield and not an enum?
@@ -42,7 +42,7 @@ public enum MetricModality implements EnumMessage<MetricModality>, OrdinalEnum.I
         this.x = x;
     }
 
-    private static final Map<Integer, MetricModality> map = OrdinalEnum.buildInt(MetricModality.class);
+    private static final IntMap<MetricModality> map = OrdinalEnum.buildInt(MetricModality.class);
 
     public static final MetricModality valueOf(int x) {
         return map.get(x);
@@ -12,8 +12,7 @@
  ******************************************************************************/
 package org.mdpnp.devices.philips.intellivue.data;
 
-import java.util.Map;
-
+import org.mdpnp.devices.io.util.IntMap;
 import org.mdpnp.devices.philips.intellivue.OrdinalEnum;
 
 /**
@@ -33,7 +32,7 @@ public enum NomPartition implements OrdinalEnum.ShortType {
         this.x = x;
     }
 
-    private static final Map<Short, NomPartition> map = OrdinalEnum.buildShort(NomPartition.class);
+    private static final IntMap<NomPartition> map = OrdinalEnum.buildShort(NomPartition.class);
 
     public short asShort() {
         return x;
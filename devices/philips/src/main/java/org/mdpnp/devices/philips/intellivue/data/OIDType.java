@@ -13,8 +13,6 @@
 package org.mdpnp.devices.philips.intellivue.data;
 
 import java.nio.ByteBuffer;
-import java.util.HashMap;
-import java.util.Map;
 
 import org.mdpnp.devices.io.util.Bits;
 import org.mdpnp.devices.philips.intellivue.Formatable;
@@ -26,16 +24,23 @@ import org.mdpnp.devices.philips.intellivue.Formatable;
 public class OIDType implements Formatable {
     private final int type;
 
-    private static final Map<Integer, OIDType> values = new HashMap<Integer, OIDType>();
+    /**
+     * OIDs are 16 bit on the wire so every instance has a slot indexed
+     * directly by its type. Populated lazily; a race at worst creates an
+     * extra, equal, instance.
+     */
+    private static final OIDType[] values = new OIDType[0x10000];
 
     public static OIDType lookup(int type) {
-        if (values.containsKey(type)) {
-            return values.get(type);
-        } else {
-            OIDType t = new OIDType(type);
-            values.put(type, t);
-            return t;
+        if (type < 0 || type >= values.length) {
+            return new OIDType(type);
+        }
+        OIDType t = values[type];
+        if (null == t) {
+            t = new OIDType(type);
+            values[type] = t;
         }
+        return t;
     }
 
     private OIDType(int type) {
@@ -12,8 +12,7 @@
  ******************************************************************************/
 package org.mdpnp.devices.philips.intellivue.data;
 
-import java.util.Map;
-
+import org.mdpnp.devices.io.util.IntMap;
 import org.mdpnp.devices.philips.intellivue.OrdinalEnum;
 
 /**
@@ -2809,7 +2808,7 @@ public enum ObservedValue implements OrdinalEnum.IntType {
         this.x = x;
     }
 
-    private static final Map<Integer, ObservedValue> map = OrdinalEnum.buildInt(ObservedValue.class);
+    private static final IntMap<ObservedValue> map = OrdinalEnum.buildInt(ObservedValue.class);
 
     public static final ObservedValue valueOf(int x) {
         return map.get(x);
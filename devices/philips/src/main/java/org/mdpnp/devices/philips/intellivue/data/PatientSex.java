@@ -13,9 +13,9 @@
 package org.mdpnp.devices.philips.intellivue.data;
 
 import java.nio.ByteBuffer;
-import java.util.Map;
 
 import org.mdpnp.devices.io.util.Bits;
+import org.mdpnp.devices.io.util.IntMap;
 import org.mdpnp.devices.philips.intellivue.OrdinalEnum;
 
 /**
@@ -41,7 +41,7 @@ public enum PatientSex implements EnumMessage<PatientSex>, OrdinalEnum.IntType {
         this.x = x;
     }
 
-    private static final Map<Integer, PatientSex> map = OrdinalEnum.buildInt(PatientSex.class);
+    private static final IntMap<PatientSex> map = OrdinalEnum.buildInt(PatientSex.class);
 
     public static PatientSex valueOf(int x) {
         return map.get(x);
@@ -12,8 +12,7 @@
  ******************************************************************************/
 package org.mdpnp.devices.philips.intellivue.dataexport;
 
-import java.util.Map;
-
+import org.mdpnp.devices.io.util.IntMap;
 import org.mdpnp.devices.philips.intellivue.OrdinalEnum;
 
 /**
@@ -29,7 +28,7 @@ public enum CommandType implements OrdinalEnum.IntType {
         this.x = x;
     }
 
-    private static final Map<Integer, CommandType> map = OrdinalEnum.buildInt(CommandType.class);
+    private static final IntMap<CommandType> map = OrdinalEnum.buildInt(CommandType.class);
 
     public static final CommandType valueOf(int x) {
         return map.get(x);
@@ -12,8 +12,7 @@
  ******************************************************************************/
 package org.mdpnp.devices.philips.intellivue.dataexport;
 
-import java.util.Map;
-
+import org.mdpnp.devices.io.util.IntMap;
 import org.mdpnp.devices.philips.intellivue.OrdinalEnum;
 
 /**
@@ -29,7 +28,7 @@ public enum RemoteOperation implements OrdinalEnum.IntType {
         this.x = x;
     }
 
-    private static final Map<Integer, RemoteOperation> map = OrdinalEnum.buildInt(RemoteOperation.class);
+    private static final IntMap<RemoteOperation> map = OrdinalEnum.buildInt(RemoteOperation.class);
 
     public static final RemoteOperation valueOf(int x) {
         return map.get(x);
@@ -12,8 +12,7 @@
  ******************************************************************************/
 package org.mdpnp.devices.philips.intellivue.dataexport.error;
 
-import java.util.Map;
-
+import org.mdpnp.devices.io.util.IntMap;
 import org.mdpnp.devices.philips.intellivue.OrdinalEnum;
 
 /**
@@ -30,7 +29,7 @@ public enum RemoteError implements OrdinalEnum.IntType {
         this.x = x;
     }
 
-    private static final Map<Integer, RemoteError> map = OrdinalEnum.buildInt(RemoteError.class);
+    private static final IntMap<RemoteError> map = OrdinalEnum.buildInt(RemoteError.class);
 
     public static final RemoteError valueOf(int x) {
         return map.get(x);
@@ -13,10 +13,9 @@
 package org.mdpnp.devices.philips.intellivue.dataexport.impl;
 
 import java.nio.ByteBuffer;
-import java.util.HashMap;
-import java.util.Map;
 
 import org.mdpnp.devices.io.util.Bits;
+import org.mdpnp.devices.io.util.IntMap;
 import org.mdpnp.devices.philips.intellivue.Message;
 import org.mdpnp.devices.philips.intellivue.dataexport.DataExportLinkedResult;
 import org.mdpnp.devices.philips.intellivue.dataexport.DataExportMessage;
@@ -38,7 +37,7 @@ public class DataExportProtocolImpl implements DataExportProtocol {
         return header;
     }
 
-    private final Map<Integer, DataExportLinkedResult> linked = new HashMap<Integer, DataExportLinkedResult>();
+    private final IntMap<DataExportLinkedResult> linked = new IntMap<DataExportLinkedResult>();
 
     @SuppressWarnings("unused")
     @Override
@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.philips.intellivue.action;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.mdpnp.devices.philips.intellivue.CompoundProtocol;
+import org.mdpnp.devices.philips.intellivue.Protocol;
+import org.mdpnp.devices.philips.intellivue.action.impl.ExtendedPollDataResultImpl;
+import org.mdpnp.devices.philips.intellivue.action.impl.ObservationPollImpl;
+import org.mdpnp.devices.philips.intellivue.action.impl.SingleContextPollImpl;
+import org.mdpnp.devices.philips.intellivue.attribute.Attribute;
+import org.mdpnp.devices.philips.intellivue.attribute.AttributeFactory;
+import org.mdpnp.devices.philips.intellivue.data.AttributeId;
+import org.mdpnp.devices.philips.intellivue.data.OIDType;
+import org.mdpnp.devices.philips.intellivue.data.ObjectClass;
+import org.mdpnp.devices.philips.intellivue.data.ObservedValue;
+import org.mdpnp.devices.philips.intellivue.data.RelativeTime;
+import org.mdpnp.devices.philips.intellivue.data.SampleArrayObservedValue;
+import org.mdpnp.devices.philips.intellivue.dataexport.CommandType;
+import org.mdpnp.devices.philips.intellivue.dataexport.DataExportResult;
+import org.mdpnp.devices.philips.intellivue.dataexport.command.ActionResult;
+import org.mdpnp.devices.philips.intellivue.dataexport.command.impl.ActionResultImpl;
+import org.mdpnp.devices.philips.intellivue.dataexport.impl.DataExportResultImpl;
+
+public class ExtendedPollDataReaderTest {
+
+    private static class Recorder implements ExtendedPollDataVisitor {
+        private final boolean accept;
+        int objectClass, pollNumber, begun, ended;
+        final List<Integer> handles = new ArrayList<Integer>();
+        final List<Integer> physioIds = new ArrayList<Integer>();
+        final List<short[]> samples = new ArrayList<short[]>();
+        final List<Long> periods = new ArrayList<Long>();
+        private final Attribute<RelativeTime> period = AttributeFactory.getAttribute(AttributeId.NOM_ATTR_TIME_PD_SAMP, RelativeTime.class);
+
+        Recorder(boolean accept) {
+            this.accept = accept;
+        }
+
+        @Override
+        public boolean accept(int polledObjectClass, int polledAttributeGroup) {
+            this.objectClass = polledObjectClass;
+            return accept;
+        }
+
+        @Override
+        public void begin(int pollNumber, int sequenceNumber, long relativeTime) {
+            this.pollNumber = pollNumber;
+            begun++;
+        }
+
+        @Override
+        public void sampleArray(int handle, int physioId, int measurementState, ByteBuffer bb, int offset, int length) {
+            short[] s = new short[length];
+            for (int i = 0; i < length; i++) {
+                s[i] = (short) (0xFF & bb.get(offset + i));
+            }
+            handles.add(handle);
+            physioIds.add(physioId);
+            samples.add(s);
+        }
+
+        @Override
+        public void attribute(int handle, int oid, ByteBuffer bb) {
+            if (oid == period.getOid().getType()) {
+                period.parse(bb);
+                periods.add(period.getValue().toMicroseconds());
+            }
+        }
+
+        @Override
+        public void end() {
+            ended++;
+        }
+    }
+
+    private static short[] wave(int length) {
+        short[] s = new short[length];
+        for (int i = 0; i < length; i++) {
+            s[i] = (short) (0xFF & (i * 7));
+        }
+        return s;
+    }
+
+    private static ByteBuffer extendedPoll(ObjectClass objectClass) {
+        Attribute<SampleArrayObservedValue> v = AttributeFactory.getAttribute(AttributeId.NOM_ATTR_SA_VAL_OBS, SampleArrayObservedValue.class);
+        v.getValue().setPhysioId(ObservedValue.NOM_ECG_ELEC_POTL_II.asOID());
+        v.getValue().setLength(64);
+        v.getValue().setValue(wave(64));
+
+        Attribute<RelativeTime> period = AttributeFactory.getAttribute(AttributeId.NOM_ATTR_TIME_PD_SAMP, RelativeTime.class);
+        period.getValue().fromMicroseconds(2000L);
+
+        ObservationPollImpl op = new ObservationPollImpl();
+        op.getHandle().setHandle(0x1234);
+        op.getAttributes().add(period);
+        op.getAttributes().add(v);
+
+        SingleContextPollImpl scp = new SingleContextPollImpl();
+        scp.getPollInfo().add(op);
+
+        ExtendedPollDataResultImpl result = new ExtendedPollDataResultImpl();
+        result.setPollNumber(17);
+        result.getPolledObjType().setOidType(OIDType.lookup(objectClass.asInt()));
+        result.getPollInfoList().add(scp);
+
+        ActionResultImpl action = new ActionResultImpl();
+        action.setActionType(OIDType.lookup(ObjectClass.NOM_ACT_POLL_MDIB_DATA_EXT.asInt()));
+        action.setAction(result);
+
+        DataExportResultImpl message = new DataExportResultImpl();
+        message.setCommandType(CommandType.ConfirmedAction);
+        message.setCommand(action);
+
+        ByteBuffer bb = ByteBuffer.allocateDirect(5000).order(ByteOrder.BIG_ENDIAN);
+        new CompoundProtocol().format(message, bb);
+        bb.flip();
+        return bb;
+    }
+
+    @Test
+    public void testVisitInPlace() {
+        ByteBuffer bb = extendedPoll(ObjectClass.NOM_MOC_VMO_METRIC_SA_RT);
+        Recorder r = new Recorder(true);
+        assertTrue(ExtendedPollDataReader.read(bb, r));
+        assertEquals(bb.limit(), bb.position());
+        assertEquals(ObjectClass.NOM_MOC_VMO_METRIC_SA_RT.asInt(), r.objectClass);
+        assertEquals(17, r.pollNumber);
+        assertEquals(1, r.begun);
+        assertEquals(1, r.ended);
+        assertEquals(1, r.handles.size());
+        assertEquals(0x1234, (int) r.handles.get(0));
+        assertEquals(ObservedValue.NOM_ECG_ELEC_POTL_II.asInt(), (int) r.physioIds.get(0));
+        assertArrayEquals(wave(64), r.samples.get(0));
+        assertEquals(1, r.periods.size());
+        assertEquals(2000L, (long) r.periods.get(0));
+    }
+
+    @Test
+    public void testDeclinedIsParsedInFull() {
+        ByteBuffer bb = extendedPoll(ObjectClass.NOM_MOC_VMO_METRIC_NU);
+        Recorder r = new Recorder(false);
+        assertFalse(ExtendedPollDataReader.read(bb, r));
+        assertEquals(0, bb.position());
+        assertEquals(0, r.begun);
+
+        Protocol protocol = new CompoundProtocol();
+        DataExportResult message = (DataExportResult) protocol.parse(bb);
+        assertNotNull(message);
+        ExtendedPollDataResult result = (ExtendedPollDataResult) ((ActionResult) message.getCommand()).getAction();
+        assertEquals(17, result.getPollNumber());
+        assertEquals(1, result.getPollInfoList().get(0).getPollInfo().size());
+    }
+
+    @Test
+    public void testNotAnExtendedPoll() {
+        ByteBuffer bb = ByteBuffer.allocate(100);
+        bb.putShort((short) 0x0D00).flip();
+        Recorder r = new Recorder(true);
+        assertFalse(ExtendedPollDataReader.read(bb, r));
+        assertEquals(0, bb.position());
+    }
+}
@@ -52,9 +52,9 @@ public class SimulatedElectroCardioGram {
     }
 
     private final class DataPublisher implements Runnable {
-        private final Number[] iValues = new Number[samplesPerUpdate];
-        private final Number[] iiValues = new Number[samplesPerUpdate];
-        private final Number[] iiiValues = new Number[samplesPerUpdate];
+        private final float[] iValues = new float[samplesPerUpdate];
+        private final float[] iiValues = new float[samplesPerUpdate];
+        private final float[] iiiValues = new float[samplesPerUpdate];
 
         public DataPublisher() {
         }
@@ -63,13 +63,13 @@ public class SimulatedElectroCardioGram {
         public void run() {
 
             for (int i = 0; i < iValues.length; i++) {
-                iValues[i] = SimulatedElectroCardioGram.this.i[postIncrCounti()];
+                iValues[i] = (float) SimulatedElectroCardioGram.this.i[postIncrCounti()];
             }
             for (int i = 0; i < iiValues.length; i++) {
-                iiValues[i] = ii[postIncrCountii()];
+                iiValues[i] = (float) ii[postIncrCountii()];
             }
             for (int i = 0; i < iiiValues.length; i++) {
-                iiiValues[i] = iii[postIncrCountiii()];
+                iiiValues[i] = (float) iii[postIncrCountiii()];
             }
 
             DeviceClock.Reading  t = deviceClock.instant();
@@ -82,7 +82,7 @@ public class SimulatedElectroCardioGram {
 
     }
 
-    protected void receiveECG(DeviceClock.Reading sampleTime, Number[] i, Number[] ii, Number[] iii, int heartRate, int respiratoryRate, int frequency) {
+    protected void receiveECG(DeviceClock.Reading sampleTime, float[] i, float[] ii, float[] iii, int heartRate, int respiratoryRate, int frequency) {
 
     }
 
@@ -37,7 +37,7 @@ public class SimulatedInvasiveBloodPressure {
     }
 
     private final class DataPublisher implements Runnable {
-        private final Number[] waveValues = new Number[SAMPLES_PER_UPDATE];
+        private final float[] waveValues = new float[SAMPLES_PER_UPDATE];
 
         public DataPublisher() {
         }
@@ -46,7 +46,7 @@ public class SimulatedInvasiveBloodPressure {
         public void run() {
             try {
                 for (int i = 0; i < waveValues.length; i++) {
-                    waveValues[i] = wave[postIncrCount()];
+                    waveValues[i] = (float) wave[postIncrCount()];
                 }
 
                 int val[] = nextDraw();
@@ -62,7 +62,7 @@ public class SimulatedInvasiveBloodPressure {
 
     };
 
-    protected void receivePressure(DeviceClock.Reading timestamp, int systolic, int diastolic, Number[] waveValues, int frequency) {
+    protected void receivePressure(DeviceClock.Reading timestamp, int systolic, int diastolic, float[] waveValues, int frequency) {
 
     }
 
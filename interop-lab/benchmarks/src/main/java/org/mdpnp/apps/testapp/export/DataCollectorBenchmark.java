@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.apps.testapp.export;
+
+import java.util.concurrent.TimeUnit;
+
+import org.mdpnp.apps.fxbeans.NumericFxList;
+import org.mdpnp.apps.fxbeans.SampleArrayFx;
+import org.mdpnp.apps.fxbeans.SampleArrayFxList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.rti.dds.subscription.SampleInfo;
+
+/**
+ * Delivery of one SampleArray by {@link DataCollector#add(SampleArrayFx)} to a
+ * single listener, either exploded into per value events or as one
+ * {@link DataSampleBatch}. The lists the collectors observe are never
+ * started so they stay empty and nothing needs a DDS domain.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataCollectorBenchmark {
+    private static final int VALUES_PER_SAMPLE = 64;
+
+    private final DataCollector collector = newCollector();
+    private final DataCollector batchCollector = newCollector();
+    private final SampleArrayFx fx = new SampleArrayFx();
+    private double delivered;
+
+    private static DataCollector newCollector() {
+        return new DataCollector(new SampleArrayFxList(ice.SampleArrayTopic.VALUE), new NumericFxList(ice.NumericTopic.VALUE));
+    }
+
+    @Setup
+    public void setUp() {
+        ice.SampleArray sample = new ice.SampleArray();
+        sample.unique_device_identifier = "BENCHMARK";
+        sample.metric_id = ice.MDC_ECG_LEAD_II.VALUE;
+        sample.frequency = 250;
+        sample.presentation_time.sec = (int) (System.currentTimeMillis() / 1000L);
+        for (int i = 0; i < VALUES_PER_SAMPLE; i++) {
+            sample.values.userData.addFloat((float) Math.sin(i * 2.0 * Math.PI / VALUES_PER_SAMPLE));
+        }
+        fx.update(sample, new SampleInfo());
+
+        collector.addDataSampleListener(new DataCollector.DataSampleEventListener() {
+            @Override
+            public void handleDataSampleEvent(DataCollector.DataSampleEvent evt) throws Exception {
+                delivered += ((Value) evt.getSource()).getValue();
+            }
+        });
+
+        batchCollector.addDataSampleListener(new BatchListener());
+    }
+
+    private class BatchListener implements DataCollector.DataSampleEventListener, DataCollector.DataSampleBatchListener {
+        @Override
+        public void handleDataSampleEvent(DataCollector.DataSampleEvent evt) throws Exception {
+            delivered += ((Value) evt.getSource()).getValue();
+        }
+
+        @Override
+        public void handleDataSampleBatch(DataSampleBatch batch) throws Exception {
+            float[] values = batch.getValues();
+            for (int i = 0; i < batch.getCount(); i++) {
+                delivered += values[i];
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        collector.destroy();
+        batchCollector.destroy();
+    }
+
+    @Benchmark
+    public double addSampleArray() {
+        collector.add(fx);
+        return delivered;
+    }
+
+    @Benchmark
+    public double addSampleArrayBatch() {
+        batchCollector.add(fx);
+        return delivered;
+    }
+}
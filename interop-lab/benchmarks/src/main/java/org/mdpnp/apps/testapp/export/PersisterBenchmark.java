@@ -0,0 +1,244 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.apps.testapp.export;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost per value of each of the export persisters as DataCollector drives them;
+ * one {@link DataCollector.DataSampleEvent} per call.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PersisterBenchmark {
+
+    @State(Scope.Thread)
+    public static class Values {
+        private long time = System.currentTimeMillis();
+        private int n;
+
+        DataCollector.DataSampleEvent next() {
+            n++;
+            time += 4L;
+            return new DataCollector.DataSampleEvent(DataCollector.toValue("BENCHMARK", ice.MDC_ECG_LEAD_II.VALUE, 0, time,
+                    Math.sin(n * 2.0 * Math.PI / 64)));
+        }
+    }
+
+    /**
+     * 64 point arrays for each of 256 waves in turn, as a 20 bed unit with a
+     * dozen or so waves per bed would produce them
+     */
+    @State(Scope.Thread)
+    public static class Batches {
+        static final int WAVES = 256;
+        static final int POINTS = 64;
+        private final String[] metrics = new String[WAVES];
+        private final DataSampleBatch batch = new DataSampleBatch();
+        private long time = System.currentTimeMillis();
+        private int n;
+
+        @Setup
+        public void setUp() {
+            for (int i = 0; i < WAVES; i++) {
+                metrics[i] = ice.MDC_ECG_LEAD_II.VALUE + "_" + i;
+            }
+        }
+
+        DataSampleBatch next() {
+            int wave = n++ % WAVES;
+            if (0 == wave) {
+                time += 4L * POINTS;
+            }
+            batch.set("BENCHMARK", metrics[wave], 0, time, 4L);
+            float[] values = batch.ensureCapacity(POINTS);
+            for (int i = 0; i < POINTS; i++) {
+                values[i] = (float) Math.sin((n * POINTS + i) * 2.0 * Math.PI / 1000);
+            }
+            return batch;
+        }
+    }
+
+    /**
+     * Every wave to its own file in a temporary directory with fewer files
+     * allowed open than there are waves
+     */
+    @State(Scope.Thread)
+    public static class VcdFiles {
+        private File dir;
+        private VerilogVCDPersister.OneWavePerVCD persister;
+
+        @Setup
+        public void setUp() throws Exception {
+            dir = Files.createTempDirectory("PersisterBenchmark").toFile();
+            persister = new VerilogVCDPersister.OneWavePerVCD(dir, Long.MAX_VALUE);
+            persister.setMaxOpenFiles(64);
+            persister.start();
+        }
+
+        @TearDown
+        public void tearDown() throws Exception {
+            persister.stop();
+            deleteRecursively(dir);
+        }
+    }
+
+    /**
+     * The rolling CSV writer that CSVPersister writes through, into a temporary
+     * directory and with the default settings of the UI
+     */
+    @State(Scope.Thread)
+    public static class Csv {
+        private File dir;
+        private RollingCsvWriter writer;
+
+        @Setup
+        public void setUp() throws Exception {
+            dir = Files.createTempDirectory("PersisterBenchmark").toFile();
+            writer = new RollingCsvWriter(new File(dir, "benchmark.csv"), 1024 * 1024);
+            writer.setMaxBackupIndex(1);
+            writer.setMaxFileSize(RollingCsvWriter.parseFileSize("10MB"));
+        }
+
+        @TearDown
+        public void tearDown() throws Exception {
+            writer.close();
+            deleteRecursively(dir);
+        }
+    }
+
+    /**
+     * Output of the VCD writer is discarded so that the cost of formatting is
+     * not hidden behind the file system
+     */
+    @State(Scope.Thread)
+    public static class Vcd {
+        private VerilogVCDPersister.OneWavePerVCD persister;
+
+        @Setup
+        public void setUp() throws Exception {
+            persister = new VerilogVCDPersister.OneWavePerVCD(null, VerilogVCDPersister.FZ_10MB) {
+                @Override
+                protected OutputStream makeStream(String key) {
+                    return new OutputStream() {
+                        @Override
+                        public void write(int b) {
+                        }
+
+                        @Override
+                        public void write(byte[] b, int off, int len) {
+                        }
+                    };
+                }
+            };
+            persister.start();
+        }
+
+        @TearDown
+        public void tearDown() throws Exception {
+            persister.stop();
+        }
+    }
+
+    /**
+     * In memory HSQLDB, emptied after every iteration. The writer blocks rather
+     * than drops when its queue is full so that the score is the sustained
+     * rate at which rows are committed.
+     */
+    @State(Scope.Thread)
+    public static class Jdbc {
+        private JdbcPersister persister;
+
+        @Setup
+        public void setUp() throws Exception {
+            persister = new JdbcPersister() {
+                @Override
+                Connection createConnection() throws Exception {
+                    Connection c = createConnection("org.hsqldb.jdbcDriver", "jdbc:hsqldb:mem:benchmark", "sa", "");
+                    JdbcPersister.createSchema(c);
+                    return c;
+                }
+            };
+            persister.setOverflowPolicy(JdbcBatchWriter.OverflowPolicy.Block);
+            persister.start();
+        }
+
+        @TearDown(Level.Iteration)
+        public void truncate() throws Exception {
+            persister.flush();
+            persister.getConnection().createStatement().execute("DELETE FROM VITAL_VALUES");
+            persister.getConnection().commit();
+        }
+
+        @TearDown
+        public void tearDown() throws Exception {
+            persister.getConnection().createStatement().execute("SHUTDOWN");
+            persister.stop();
+        }
+    }
+
+    @Benchmark
+    public void csv(Csv csv, Values values) throws Exception {
+        Value value = (Value) values.next().getSource();
+        csv.writer.write(value.getUniqueDeviceIdentifier(), value.getMetricId(), value.getInstanceId(),
+                value.getDevTime(), value.getValue());
+    }
+
+    @Benchmark
+    public void vcd(Vcd vcd, Values values) throws Exception {
+        vcd.persister.persist((Value) values.next().getSource());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(64)
+    public void vcdFiles(VcdFiles vcd, Batches batches) throws Exception {
+        vcd.persister.persist(batches.next());
+    }
+
+    @Benchmark
+    public void jdbc(Jdbc jdbc, Values values) throws Exception {
+        // persist rather than the FX side handler, which never blocks
+        jdbc.persister.persist((Value) values.next().getSource());
+    }
+
+    private static void deleteRecursively(File f) {
+        File[] children = f.listFiles();
+        if (null != children) {
+            for (File c : children) {
+                deleteRecursively(c);
+            }
+        }
+        f.delete();
+    }
+}
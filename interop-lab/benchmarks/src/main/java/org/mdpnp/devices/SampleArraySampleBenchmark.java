@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.mdpnp.devices.AbstractDevice.InstanceHolder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.rti.dds.infrastructure.FloatSeq;
+
+import ice.SampleArray;
+
+/**
+ * The part of AbstractDevice.sampleArraySample that copies a device's samples
+ * into the instance held for publication, for each of the forms in which
+ * devices hand them over. A device cannot be built without a DomainParticipant
+ * so the copies are made here as AbstractDevice makes them, through the same
+ * FloatSeq calls; publication itself needs a live DataWriter and is left out.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SampleArraySampleBenchmark {
+    private static final int VALUES_PER_SAMPLE = 64;
+
+    private final InstanceHolder<SampleArray> holder = new InstanceHolder<SampleArray>(new SampleArray(), null);
+
+    private Number[] boxed;
+    private List<Number> collection;
+    private float[] primitive;
+    private FloatBuffer buffer;
+
+    @Setup
+    public void setUp() {
+        boxed = new Number[VALUES_PER_SAMPLE];
+        collection = new ArrayList<Number>(VALUES_PER_SAMPLE);
+        primitive = new float[VALUES_PER_SAMPLE];
+        for (int i = 0; i < VALUES_PER_SAMPLE; i++) {
+            float f = (float) Math.sin(i * 2.0 * Math.PI / VALUES_PER_SAMPLE);
+            boxed[i] = f;
+            collection.add(f);
+            primitive[i] = f;
+        }
+        buffer = FloatBuffer.wrap(primitive);
+    }
+
+    @Benchmark
+    public SampleArray numberArray() {
+        FloatSeq values = holder.data.values.userData;
+        values.clear();
+        for (Number n : boxed) {
+            values.addFloat(n.floatValue());
+        }
+        return holder.data;
+    }
+
+    @Benchmark
+    public SampleArray numberCollection() {
+        FloatSeq values = holder.data.values.userData;
+        values.clear();
+        for (Number n : collection) {
+            values.addFloat(n.floatValue());
+        }
+        return holder.data;
+    }
+
+    @Benchmark
+    public SampleArray floatArray() {
+        FloatSeq values = holder.data.values.userData;
+        values.clear();
+        for (int i = 0; i < primitive.length; i++) {
+            values.addFloat(primitive[i]);
+        }
+        return holder.data;
+    }
+
+    @Benchmark
+    public SampleArray floatBuffer() {
+        FloatSeq values = holder.data.values.userData;
+        values.clear();
+        for (int i = buffer.position(), end = buffer.limit(); i < end; i++) {
+            values.addFloat(buffer.get(i));
+        }
+        return holder.data;
+    }
+}
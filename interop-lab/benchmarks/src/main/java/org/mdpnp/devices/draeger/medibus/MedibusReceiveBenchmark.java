@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.draeger.medibus;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.mdpnp.devices.draeger.medibus.types.Command;
+import org.mdpnp.devices.draeger.medibus.types.MeasuredDataCP1;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Framing and decoding of measured data responses by {@link Medibus#receive()}.
+ * Each invocation connects a new Medibus to a recorded burst of responses and
+ * runs it to end of stream.
+ *
+ * With traffic "realtime" two realtime bytes follow every slow byte, about the
+ * mix of a V500 at 38400 baud sending curves, so that separating the realtime
+ * bytes is measured too. Setting capture to the path of a raw serial capture
+ * replays that instead; an operation is then 1/256th of the capture.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MedibusReceiveBenchmark {
+    private static final int FRAMES = 256;
+    private static final int CODES_PER_FRAME = 24;
+
+    private static final OutputStream DISCARD = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    @Param({ "slow", "realtime" })
+    private String traffic;
+
+    @Param({ "" })
+    private String capture;
+
+    private byte[] recorded;
+
+    @Setup
+    public void setUp() throws IOException {
+        if (!capture.isEmpty()) {
+            recorded = Files.readAllBytes(new File(capture).toPath());
+            return;
+        }
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        int codes = 0;
+        for (MeasuredDataCP1 m : MeasuredDataCP1.values()) {
+            if (codes == CODES_PER_FRAME) {
+                break;
+            }
+            if (m != MeasuredDataCP1.fromByte(m.toByte())) {
+                continue;
+            }
+            Medibus.sendASCIIHex(payload, m.toByte());
+            payload.write(String.format("%4d", 10 + codes).getBytes("ASCII"));
+            codes++;
+        }
+
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        Medibus encoder = new Medibus(new ByteArrayInputStream(new byte[0]), frames);
+        byte[] response = payload.toByteArray();
+        for (int i = 0; i < FRAMES; i++) {
+            encoder.sendResponse(Command.ReqMeasuredDataCP1, response);
+        }
+        recorded = frames.toByteArray();
+
+        if ("realtime".equals(traffic)) {
+            ByteArrayOutputStream mixed = new ByteArrayOutputStream();
+            for (int i = 0; i < recorded.length; i++) {
+                mixed.write(recorded[i]);
+                mixed.write(0x80 | (0x3F & i));
+                mixed.write(0x80 | (0x3F & (i >> 6)));
+            }
+            recorded = mixed.toByteArray();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public void receive(final Blackhole blackhole) throws IOException {
+        Medibus medibus = new Medibus(new ByteArrayInputStream(recorded), DISCARD) {
+            @Override
+            protected void fastByte(int b) {
+                blackhole.consume(b);
+            }
+
+            @Override
+            protected void receiveMeasuredData(int codepage, Data[] data) {
+                for (Data d : data) {
+                    if (null != d) {
+                        blackhole.consume(d.data.floatValue());
+                    }
+                }
+            }
+        };
+        // returns at end of the recording
+        medibus.receive();
+    }
+}
@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.philips.intellivue.data;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+import org.mdpnp.devices.philips.intellivue.attribute.Attribute;
+import org.mdpnp.devices.philips.intellivue.attribute.AttributeFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Decoding of one wave observation as it arrives in an Intellivue extended poll
+ * result; an attribute list carrying the object handle and a
+ * {@link SampleArrayObservedValue}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AttributeValueListBenchmark {
+    /**
+     * 128ms of a 500Hz ECG, the unit in which the monitor reports waves
+     */
+    private static final int SAMPLES_PER_OBSERVATION = 64;
+
+    private ByteBuffer encoded;
+    private final AttributeValueList attributes = new AttributeValueList();
+    private final Attribute<SampleArrayObservedValue> observed = AttributeFactory.getAttribute(AttributeId.NOM_ATTR_SA_VAL_OBS,
+            SampleArrayObservedValue.class);
+
+    @Setup
+    public void setUp() {
+        Attribute<Handle> handle = AttributeFactory.getAttribute(AttributeId.NOM_ATTR_ID_HANDLE, Handle.class);
+        handle.getValue().setHandle(0x1234);
+
+        Attribute<SampleArrayObservedValue> value = AttributeFactory.getAttribute(AttributeId.NOM_ATTR_SA_VAL_OBS,
+                SampleArrayObservedValue.class);
+        short[] samples = new short[SAMPLES_PER_OBSERVATION];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) (128 + 100 * Math.sin(i * 2.0 * Math.PI / samples.length));
+        }
+        value.getValue().setPhysioId(ObservedValue.NOM_ECG_ELEC_POTL_II.asOID());
+        value.getValue().setLength(samples.length);
+        value.getValue().setValue(samples);
+
+        AttributeValueList source = new AttributeValueList();
+        source.add(handle);
+        source.add(value);
+
+        ByteBuffer bb = ByteBuffer.allocate(1024).order(ByteOrder.BIG_ENDIAN);
+        source.format(bb);
+        bb.flip();
+        encoded = bb;
+    }
+
+    @Benchmark
+    public AttributeValueList parse() {
+        encoded.rewind();
+        attributes.reset();
+        attributes.parse(encoded);
+        return attributes;
+    }
+
+    @Benchmark
+    public void parseAndDecode(Blackhole blackhole) {
+        encoded.rewind();
+        attributes.reset();
+        attributes.parse(encoded);
+        Attribute<SampleArrayObservedValue> sa = attributes.getAttribute(AttributeId.NOM_ATTR_SA_VAL_OBS, SampleArrayObservedValue.class,
+                observed);
+        SampleArrayObservedValue v = sa.getValue();
+        short[] samples = v.getValue();
+        for (int i = 0; i < v.getLength(); i++) {
+            blackhole.consume(samples[i]);
+        }
+    }
+}
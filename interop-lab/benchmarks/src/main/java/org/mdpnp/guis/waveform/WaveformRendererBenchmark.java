@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.guis.waveform;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One frame of a waveform panel; {@link WaveformRenderer#render} over a ten
+ * second window of a 250Hz wave. Results are per sample passed to
+ * {@link WaveformRenderer#sample(long, float)}.
+ *
+ * The "count" canvas measures the renderer alone while "java2d" strokes the
+ * lines into an image the way the Swing panels do, so the difference is the
+ * cost of drawing what the renderer decided to draw.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WaveformRendererBenchmark {
+    private static final int FREQUENCY = 250;
+    private static final long WINDOW = 10000L;
+    private static final int SAMPLES = (int) (FREQUENCY * WINDOW / 1000L);
+
+    @Param({ "true", "false" })
+    public boolean overwrite;
+
+    @Param({ "true", "false" })
+    public boolean decimate;
+
+    @Param({ "300", "800" })
+    public int width;
+
+    @Param({ "count", "java2d" })
+    public String canvasType;
+
+    private final WaveformRenderer renderer = new WaveformRenderer();
+    private Canvas canvas;
+    private final Source source = new Source();
+    private long t2;
+
+    @Setup
+    public void setUp() {
+        renderer.setOverwrite(overwrite);
+        renderer.setDecimate(decimate);
+        canvas = "java2d".equals(canvasType) ? new Java2DCanvas(width) : new Canvas(width);
+        t2 = source.t0 + WINDOW;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public int render() {
+        renderer.render(source, canvas, t2 - WINDOW, t2);
+        return canvas.lines;
+    }
+
+    private static final class Source implements WaveformSource {
+        private final long t0 = System.currentTimeMillis();
+        private final float[] values = new float[SAMPLES];
+
+        Source() {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = (float) Math.sin(i * 2.0 * Math.PI / FREQUENCY);
+            }
+        }
+
+        @Override
+        public void iterate(WaveformIterator itr) {
+            itr.begin();
+            for (int i = 0; i < values.length; i++) {
+                itr.sample(t0 + i * 1000L / FREQUENCY, values[i]);
+            }
+            itr.end();
+        }
+
+        @Override
+        public String getIdentifier() {
+            return WaveformRendererBenchmark.class.getName();
+        }
+
+        @Override
+        public boolean loadingHistoricalData() {
+            return false;
+        }
+    }
+
+    /**
+     * A panel that only counts what it is asked to draw
+     */
+    private static class Canvas implements WaveformCanvas {
+        private final Extent extent;
+        protected int lines;
+
+        Canvas(int width) {
+            extent = new ExtentImpl(0, width, 0, 200);
+        }
+
+        @Override
+        public void drawLine(double x0, double y0, double x1, double y1) {
+            lines++;
+        }
+
+        @Override
+        public void clearRect(double x, double y, double width, double height) {
+            lines = 0;
+        }
+
+        @Override
+        public void drawString(String str, double x, double y) {
+        }
+
+        @Override
+        public Extent getExtent() {
+            return extent;
+        }
+    }
+
+    /**
+     * Draws into an image as SwingVectorWaveformCanvas draws into a panel
+     */
+    private static final class Java2DCanvas extends Canvas {
+        private final BufferedImage image;
+        private final Graphics2D g;
+
+        Java2DCanvas(int width) {
+            super(width);
+            image = new BufferedImage(width, 200, BufferedImage.TYPE_INT_RGB);
+            g = image.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        }
+
+        @Override
+        public void drawLine(double x0, double y0, double x1, double y1) {
+            lines++;
+            g.drawLine((int) x0, (int) (200 - y0), (int) x1, (int) (200 - y1));
+        }
+
+        @Override
+        public void clearRect(double x, double y, double width, double height) {
+            lines = 0;
+            g.clearRect((int) x, (int) y, (int) width, (int) height);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.rtiapi.data;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.rti.dds.infrastructure.Copyable;
+import com.rti.dds.infrastructure.InstanceHandle_t;
+import com.rti.dds.infrastructure.ResourceLimitsQosPolicy;
+import com.rti.dds.subscription.ReadCondition;
+import com.rti.dds.subscription.SampleInfoSeq;
+import com.rti.dds.util.Sequence;
+
+/**
+ * Compares the per sample read path of InstanceModelImpl and AbstractFxList as
+ * it was, through java.lang.reflect, against {@link ReaderAccessor}. Each
+ * operation reads one batch of samples, copies every sample as AbstractFxList
+ * does for the FX thread and returns the loan.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class AbstractReadPathBenchmark<D extends Copyable, R> {
+    protected static final int SAMPLES_PER_READ = 16;
+
+    private final Class<D> dataClass;
+    private final Class<R> readerClass;
+    private final Class<? extends Sequence> sequenceClass;
+
+    private R reader;
+    private Sequence dataSequence;
+    private final SampleInfoSeq sampleInfoSequence = new SampleInfoSeq();
+
+    private Method readWCondition, returnLoan;
+    private ReaderAccessor<D, R> readerAccessor;
+
+    protected AbstractReadPathBenchmark(Class<D> dataClass, Class<R> readerClass, Class<? extends Sequence> sequenceClass) {
+        this.dataClass = dataClass;
+        this.readerClass = readerClass;
+        this.sequenceClass = sequenceClass;
+    }
+
+    protected abstract D createSample(int index);
+
+    protected abstract R createReader(List<D> samples);
+
+    @Setup
+    public void setUp() throws Exception {
+        List<D> samples = new ArrayList<D>();
+        for (int i = 0; i < SAMPLES_PER_READ; i++) {
+            samples.add(createSample(i));
+        }
+        reader = createReader(samples);
+        dataSequence = sequenceClass.newInstance();
+        readWCondition = readerClass.getMethod("read_w_condition", sequenceClass, SampleInfoSeq.class, int.class, ReadCondition.class);
+        returnLoan = readerClass.getMethod("return_loan", sequenceClass, SampleInfoSeq.class);
+        // resolved as before even though the read path does not use it
+        readerClass.getMethod("get_key_value", dataClass, InstanceHandle_t.class);
+        readerAccessor = new ReaderAccessor<D, R>(dataClass, readerClass, sequenceClass);
+    }
+
+    @Benchmark
+    public void reflective(Blackhole blackhole) throws Exception {
+        readWCondition.invoke(reader, dataSequence, sampleInfoSequence, ResourceLimitsQosPolicy.LENGTH_UNLIMITED, null);
+        try {
+            final int sz = sampleInfoSequence.size();
+            for (int i = 0; i < sz; i++) {
+                D sample = dataClass.newInstance();
+                sample.copy_from(dataSequence.get(i));
+                blackhole.consume(sample);
+            }
+        } finally {
+            returnLoan.invoke(reader, dataSequence, sampleInfoSequence);
+        }
+    }
+
+    @Benchmark
+    public void typed(Blackhole blackhole) {
+        readerAccessor.read_w_condition(reader, dataSequence, sampleInfoSequence, ResourceLimitsQosPolicy.LENGTH_UNLIMITED, null);
+        try {
+            final int sz = sampleInfoSequence.size();
+            for (int i = 0; i < sz; i++) {
+                D sample = readerAccessor.newData();
+                sample.copy_from(dataSequence.get(i));
+                blackhole.consume(sample);
+            }
+        } finally {
+            readerAccessor.return_loan(reader, dataSequence, sampleInfoSequence);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.rtiapi.data;
+
+import java.util.List;
+
+public class NumericReadPathBenchmark extends AbstractReadPathBenchmark<ice.Numeric, StandInNumericDataReader> {
+    public NumericReadPathBenchmark() {
+        super(ice.Numeric.class, StandInNumericDataReader.class, ice.NumericSeq.class);
+    }
+
+    @Override
+    protected ice.Numeric createSample(int index) {
+        ice.Numeric n = new ice.Numeric();
+        n.unique_device_identifier = "BENCHMARK";
+        n.metric_id = rosetta.MDC_PULS_OXIM_SAT_O2.VALUE;
+        n.instance_id = index;
+        n.value = 98.0f;
+        return n;
+    }
+
+    @Override
+    protected StandInNumericDataReader createReader(List<ice.Numeric> samples) {
+        return new StandInNumericDataReader(samples);
+    }
+}
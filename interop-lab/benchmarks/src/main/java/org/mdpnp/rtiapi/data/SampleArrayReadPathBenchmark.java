@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.rtiapi.data;
+
+import java.util.List;
+
+public class SampleArrayReadPathBenchmark extends AbstractReadPathBenchmark<ice.SampleArray, StandInSampleArrayDataReader> {
+    /**
+     * A quarter second of a 250Hz waveform, typical of what devices publish
+     */
+    private static final int VALUES_PER_SAMPLE = 64;
+
+    public SampleArrayReadPathBenchmark() {
+        super(ice.SampleArray.class, StandInSampleArrayDataReader.class, ice.SampleArraySeq.class);
+    }
+
+    @Override
+    protected ice.SampleArray createSample(int index) {
+        ice.SampleArray sa = new ice.SampleArray();
+        sa.unique_device_identifier = "BENCHMARK";
+        sa.metric_id = ice.MDC_ECG_LEAD_II.VALUE;
+        sa.instance_id = index;
+        sa.frequency = 250;
+        for (int i = 0; i < VALUES_PER_SAMPLE; i++) {
+            sa.values.userData.addFloat((float) Math.sin(i * 2.0 * Math.PI / VALUES_PER_SAMPLE));
+        }
+        return sa;
+    }
+
+    @Override
+    protected StandInSampleArrayDataReader createReader(List<ice.SampleArray> samples) {
+        return new StandInSampleArrayDataReader(samples);
+    }
+}
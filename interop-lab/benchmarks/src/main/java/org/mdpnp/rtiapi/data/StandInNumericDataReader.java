@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.rtiapi.data;
+
+import java.util.List;
+
+import com.rti.dds.infrastructure.InstanceHandle_t;
+import com.rti.dds.subscription.ReadCondition;
+import com.rti.dds.subscription.SampleInfoSeq;
+
+/**
+ * Stand-in for ice.NumericDataReader; see {@link StandInDataReader}.
+ */
+public class StandInNumericDataReader extends StandInDataReader<ice.Numeric> {
+    public StandInNumericDataReader(List<ice.Numeric> samples) {
+        super(samples);
+    }
+
+    public void read_w_condition(ice.NumericSeq dataSeq, SampleInfoSeq infoSeq, int maxSamples, ReadCondition condition) {
+        loan(dataSeq, infoSeq);
+    }
+
+    public void read_instance(ice.NumericSeq dataSeq, SampleInfoSeq infoSeq, int maxSamples, InstanceHandle_t handle, int sampleStates,
+            int viewStates, int instanceStates) {
+        loan(dataSeq, infoSeq);
+    }
+
+    public void return_loan(ice.NumericSeq dataSeq, SampleInfoSeq infoSeq) {
+        unloan(dataSeq, infoSeq);
+    }
+
+    public void get_key_value(ice.Numeric keyHolder, InstanceHandle_t handle) {
+        keyValue(keyHolder, handle);
+    }
+}
@@ -16,9 +16,9 @@ import javafx.scene.paint.Paint;
 
 import org.mdpnp.apps.fxbeans.NumericFx;
 import org.mdpnp.apps.fxbeans.SampleArrayFx;
-import org.mdpnp.guis.waveform.SampleArrayWaveformSource;
 import org.mdpnp.guis.waveform.WaveformPanel;
 import org.mdpnp.guis.waveform.WaveformPanelFactory;
+import org.mdpnp.guis.waveform.WaveformSource;
 import org.mdpnp.guis.waveform.javafx.JavaFXWaveformPane;
 
 import com.sun.javafx.tk.FontMetrics;
@@ -121,7 +121,7 @@ public abstract class AbstractWaveAndParamsPanel extends DevicePanel {
       if(waveformMetrics.contains(data.getMetric_id())) {
           BorderPane bp = panelMap.get(data.getMetric_id());
           if (null == bp) {
-              SampleArrayWaveformSource saws = new SampleArrayWaveformSource(deviceMonitor.getSampleArrayList().getReader(), data.getHandle());
+              WaveformSource saws = deviceMonitor.getSampleArrayList().getWaveformSource(data.getHandle());
               WaveformPanel wuws = new WaveformPanelFactory().createWaveformPanel();
               wuws.setSource(saws);
               final int idx = panelMap.size();
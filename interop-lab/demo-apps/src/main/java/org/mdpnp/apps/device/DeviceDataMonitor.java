@@ -12,11 +12,8 @@
  ******************************************************************************/
 package org.mdpnp.apps.device;
 
-import java.util.function.Predicate;
-
 import javafx.collections.ObservableList;
 
-import org.mdpnp.apps.fxbeans.FilteredList;
 import org.mdpnp.apps.fxbeans.InfusionStatusFx;
 import org.mdpnp.apps.fxbeans.InfusionStatusFxList;
 import org.mdpnp.apps.fxbeans.NumericFx;
@@ -60,26 +57,10 @@ public class DeviceDataMonitor {
         this.numericList = numericList;
         this.sampleArrayList = sampleArrayList;
         this.infusionStatusList = infusionStatusList;
-        this.numeric = new FilteredList<>(numericList, new Predicate<NumericFx>() {
-            @Override
-            public boolean test(NumericFx t) {
-                return udi.equals(t.getUnique_device_identifier());
-            }
-        });
-        this.sampleArray = new FilteredList<>(sampleArrayList, new Predicate<SampleArrayFx>() {
-            @Override
-            public boolean test(SampleArrayFx t) {
-                return udi.equals(t.getUnique_device_identifier());
-            }
-        });
-        this.infusionStatus = new FilteredList<>(infusionStatusList, new Predicate<InfusionStatusFx>() {
-
-            @Override
-            public boolean test(InfusionStatusFx t) {
-                return udi.equals(t.getUnique_device_identifier());
-            }
-            
-        });
+        // each view sees only the changes to the rows of this device
+        this.numeric = numericList.getByUniqueDeviceIdentifier(udi);
+        this.sampleArray = sampleArrayList.getByUniqueDeviceIdentifier(udi);
+        this.infusionStatus = infusionStatusList.getByUniqueDeviceIdentifier(udi);
     }
 
     
@@ -1,17 +1,22 @@
 package org.mdpnp.apps.fxbeans;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javafx.application.Platform;
+import javafx.collections.FXCollections;
 import javafx.collections.ModifiableObservableListBase;
 import javafx.collections.ObservableList;
 
 import org.mdpnp.rtiapi.data.EventLoop;
 import org.mdpnp.rtiapi.data.LogEntityStatus;
+import org.mdpnp.rtiapi.data.ReaderAccessor;
 import org.mdpnp.rtiapi.data.TopicUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,7 +43,7 @@ import com.rti.dds.topic.TypeSupport;
 import com.rti.dds.util.Sequence;
 
 public class AbstractFxList<D extends Copyable, R extends DataReader, F extends Updatable<D>> extends ModifiableObservableListBase<F> implements
-        ObservableList<F> {
+        ObservableList<F>, FxListMXBean {
     // TODO Jeff Plourde hasn't ever tried this pattern but it seems reasonable...
     private final Logger log = LoggerFactory.getLogger(getClass());
 
@@ -58,7 +63,7 @@ public class AbstractFxList<D extends Copyable, R extends DataReader, F extends
     protected final Sequence dataSequence;
     protected final SampleInfoSeq sampleInfoSequence = new SampleInfoSeq();
 
-    protected final Method getKeyValue, returnLoan, readWCondition, readInstance;
+    protected final ReaderAccessor<D, R> readerAccessor;
 
     private final LogEntityStatus logEntityStatus;
 
@@ -72,16 +77,8 @@ public class AbstractFxList<D extends Copyable, R extends DataReader, F extends
         this.fxClass = fxClass;
         
         this.logEntityStatus = new LogEntityStatus(log, topicName);
-        try {
-            this.dataSequence = sequenceClass.newInstance();
-            getKeyValue = readerClass.getMethod("get_key_value", dataClass, InstanceHandle_t.class);
-            returnLoan = readerClass.getMethod("return_loan", sequenceClass, SampleInfoSeq.class);
-            readWCondition = readerClass.getMethod("read_w_condition", sequenceClass, SampleInfoSeq.class, int.class, ReadCondition.class);
-            readInstance = readerClass.getMethod("read_instance", sequenceClass, SampleInfoSeq.class, int.class, InstanceHandle_t.class, int.class,
-                    int.class, int.class);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+        this.readerAccessor = new ReaderAccessor<D, R>(dataClass, readerClass, sequenceClass);
+        this.dataSequence = readerAccessor.newSequence();
     }
 
     private Subscriber subscriber;
@@ -93,85 +90,284 @@ public class AbstractFxList<D extends Copyable, R extends DataReader, F extends
     private Topic readerTopic;
     private ContentFilteredTopic filteredTopic;
 
+    /**
+     * A change bound for the FX thread; a null sample marks the instance as no
+     * longer alive.
+     */
+    private static final class Update<D> {
+        private final InstanceHandle_t handle;
+        private D sample;
+        private SampleInfo sampleInfo;
+
+        Update(InstanceHandle_t handle, D sample, SampleInfo sampleInfo) {
+            this.handle = handle;
+            this.sample = sample;
+            this.sampleInfo = sampleInfo;
+        }
+    }
+
+    /**
+     * Row for each instance handle, maintained by doAdd/doSet/doRemove on the FX
+     * thread. When keeping history the most recently added row is indexed.
+     */
+    private final Map<InstanceHandle_t, F> rowsByHandle = new HashMap<>();
+
+    /**
+     * Rows of each device, kept in the same order as this list by doAdd/doSet/doRemove
+     * on the FX thread. Only lists that can say which device a row belongs to are
+     * partitioned. A partition is kept for as long as its view is referenced, even
+     * while empty, so that the view keeps working should the device return. Once
+     * nothing holds the view the partition is dropped, and built again from this
+     * list should it be asked for, so a hub that has seen many devices keeps only
+     * the partitions still being viewed.
+     */
+    private static final class Partition<F> {
+        private final ObservableList<F> rows = FXCollections.observableArrayList();
+        // the view listens to rows only weakly so this is all that keeps it
+        private WeakReference<ObservableList<F>> view = new WeakReference<>(null);
+
+        ObservableList<F> view() {
+            ObservableList<F> v = view.get();
+            if (null == v) {
+                v = FXCollections.unmodifiableObservableList(rows);
+                view = new WeakReference<>(v);
+            }
+            return v;
+        }
+
+        boolean isViewed() {
+            return null != view.get();
+        }
+
+        // rows compare equal by handle so find this one by identity
+        int indexOf(F element) {
+            for (int i = 0; i < rows.size(); i++) {
+                if (rows.get(i) == element) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private final Map<String, Partition<F>> partitions = new HashMap<>();
+
+    // Guarded by pendingLock; filled by the EventLoop and emptied by the FX thread
+    private final Object pendingLock = new Object();
+    private List<Update<D>> pending = new ArrayList<>();
+    private List<Update<D>> applying = new ArrayList<>();
+    private final Map<InstanceHandle_t, Update<D>> pendingByHandle = new HashMap<>();
+    private boolean flushScheduled;
+
+    private final AtomicLong droppedUpdates = new AtomicLong();
+    private final AtomicLong coalescedUpdates = new AtomicLong();
+
+    /**
+     * Sees each sample on the EventLoop as it is read, before any coalescing,
+     * including those that mark an instance as no longer alive. The sample is
+     * on loan for the duration of the call only.
+     */
+    public interface SampleListener<D> {
+        void sample(D data, SampleInfo sampleInfo);
+    }
+
+    private final List<SampleListener<D>> sampleListeners = new CopyOnWriteArrayList<>();
+
+    public void addSampleListener(SampleListener<D> listener) {
+        sampleListeners.add(listener);
+    }
+
+    public void removeSampleListener(SampleListener<D> listener) {
+        sampleListeners.remove(listener);
+    }
+
     private final EventLoop.ConditionHandler handler = new EventLoop.ConditionHandler() {
         @SuppressWarnings("unchecked")
         @Override
         public void conditionChanged(Condition condition) {
             try {
-                readWCondition.invoke(reader, dataSequence, sampleInfoSequence, ResourceLimitsQosPolicy.LENGTH_UNLIMITED, (ReadCondition) condition);
+                readerAccessor.read_w_condition(reader, dataSequence, sampleInfoSequence, ResourceLimitsQosPolicy.LENGTH_UNLIMITED, (ReadCondition) condition);
 
                 final int sz = sampleInfoSequence.size();
 
                 for (int i = 0; i < sz; i++) {
                     SampleInfo sampleInfo = (SampleInfo) sampleInfoSequence.get(i);
                     D d = (D) dataSequence.get(i);
+                    for (SampleListener<D> l : sampleListeners) {
+                        l.sample(d, sampleInfo);
+                    }
                     if (0 != (sampleInfo.instance_state & InstanceStateKind.NOT_ALIVE_INSTANCE_STATE)) {
                         // Keeping a history of samples makes the death of an instance immaterial
                         if(!keepHistory) {
-                            InstanceHandle_t removeHandle = new InstanceHandle_t(sampleInfo.instance_handle);
-                            Platform.runLater(() -> {
-                                Iterator<F> itr = iterator();
-                                while (itr.hasNext()) {
-                                    if (itr.next().getHandle().equals(removeHandle)) {
-                                        itr.remove();
-                                    }
-                                }
-                            });
+                            submit(sampleInfo.instance_handle, null, null);
                         }
                     } else {
-                        final InstanceHandle_t addUpdateHandle = new InstanceHandle_t(sampleInfo.instance_handle);
-                        final SampleInfo si = new SampleInfo();
-                        si.copy_from(sampleInfo);
-                        final D sample = dataClass.newInstance();
-                        sample.copy_from(d);
-
-                        Platform.runLater(() -> {
-                            // Keeping a history means never updating any existing row; only add new rows
-                            if(!keepHistory) {
-                                Iterator<F> itr = iterator();
-                                while (itr.hasNext()) {
-                                    Updatable<D> x = itr.next();
-                                    if (x.getHandle().equals(addUpdateHandle)) {
-                                        x.update(d, si);
-                                        return;
-                                    }
-                                }
-                            }
-                            try {
-                                F x = fxClass.newInstance();
-                                x.update(d, si);
-                                add(0, x);
-                            } catch (Exception e) {
-                                log.error("Unable to create a new instance of fx object", e);
-                            }
-                        });
+                        submit(sampleInfo.instance_handle, d, sampleInfo);
                     }
                 }
-            } catch (InvocationTargetException ite) {
-                if (!(ite.getCause() instanceof RETCODE_NO_DATA)) {
-                    log.error("reading", ite);
-                }
+            } catch (RETCODE_NO_DATA noData) {
+
             } catch (Exception e) {
                 log.error("reading for " + topicName, e);
             } finally {
                 try {
-                    returnLoan.invoke(reader, dataSequence, sampleInfoSequence);
+                    readerAccessor.return_loan(reader, dataSequence, sampleInfoSequence);
                 } catch (Exception e) {
                     log.error("return_loan for " + topicName, e);
                 }
             }
+            if (coalesce) {
+                scheduleFlush();
+            }
         }
     };
 
+    /**
+     * Copies the loaned sample (if any) and hands it toward the FX thread, either
+     * directly or by way of the pending batch.
+     */
+    void submit(InstanceHandle_t instanceHandle, D loaned, SampleInfo sampleInfo) {
+        if (coalesce) {
+            synchronized (pendingLock) {
+                Update<D> u = keepHistory ? null : pendingByHandle.get(instanceHandle);
+                if (null != u) {
+                    // Supersede the value not yet seen by the FX thread, reusing its copies
+                    droppedUpdates.incrementAndGet();
+                    if (null == loaned) {
+                        u.sample = null;
+                        u.sampleInfo = null;
+                    } else {
+                        if (null == u.sample) {
+                            u.sample = readerAccessor.newData();
+                            u.sampleInfo = new SampleInfo();
+                        }
+                        u.sample.copy_from(loaned);
+                        u.sampleInfo.copy_from(sampleInfo);
+                    }
+                } else {
+                    u = copy(instanceHandle, loaned, sampleInfo);
+                    pending.add(u);
+                    if (!keepHistory) {
+                        pendingByHandle.put(u.handle, u);
+                    }
+                }
+            }
+        } else {
+            final Update<D> u = copy(instanceHandle, loaned, sampleInfo);
+            Platform.runLater(() -> apply(u));
+        }
+    }
+
+    private Update<D> copy(InstanceHandle_t instanceHandle, D loaned, SampleInfo sampleInfo) {
+        InstanceHandle_t handle = new InstanceHandle_t(instanceHandle);
+        if (null == loaned) {
+            return new Update<D>(handle, null, null);
+        }
+        D sample = readerAccessor.newData();
+        sample.copy_from(loaned);
+        SampleInfo si = new SampleInfo();
+        si.copy_from(sampleInfo);
+        return new Update<D>(handle, sample, si);
+    }
+
+    private void scheduleFlush() {
+        synchronized (pendingLock) {
+            if (flushScheduled || pending.isEmpty()) {
+                return;
+            }
+            flushScheduled = true;
+        }
+        Platform.runLater(this::flush);
+    }
+
+    /**
+     * FX thread; applies everything pending in a single pulse.
+     */
+    void flush() {
+        List<Update<D>> updates;
+        synchronized (pendingLock) {
+            updates = pending;
+            pending = applying;
+            applying = updates;
+            pendingByHandle.clear();
+            flushScheduled = false;
+        }
+        if (updates.size() > 1) {
+            coalescedUpdates.addAndGet(updates.size());
+        }
+        try {
+            for (int i = 0; i < updates.size(); i++) {
+                apply(updates.get(i));
+            }
+        } finally {
+            updates.clear();
+        }
+    }
+
+    /**
+     * FX thread; brings the row for one instance up to date.
+     */
+    private void apply(Update<D> u) {
+        if (null == u.sample) {
+            F row = rowsByHandle.get(u.handle);
+            if (null != row) {
+                remove(row);
+            }
+            return;
+        }
+        // Keeping a history means never updating any existing row; only add new rows
+        if (!keepHistory) {
+            F row = rowsByHandle.get(u.handle);
+            if (null != row) {
+                row.update(u.sample, u.sampleInfo);
+                return;
+            }
+        }
+        try {
+            F x = fxClass.newInstance();
+            x.update(u.sample, u.sampleInfo);
+            add(0, x);
+        } catch (Exception e) {
+            log.error("Unable to create a new instance of fx object", e);
+        }
+    }
+
     protected boolean keepHistory = false;
     
     public void setKeepHistory(boolean keepHistory) {
         this.keepHistory = keepHistory;
     }
     
+    @Override
     public boolean isKeepHistory() {
         return keepHistory;
     }
+
+    protected volatile boolean coalesce = false;
+
+    /**
+     * When coalescing, all samples read from DDS are applied on the FX thread in
+     * a single pulse and, unless keeping history, only the latest sample for each
+     * instance is applied. Otherwise each sample is applied in a pulse of its own.
+     */
+    public void setCoalesce(boolean coalesce) {
+        this.coalesce = coalesce;
+    }
+
+    @Override
+    public boolean isCoalesce() {
+        return coalesce;
+    }
+
+    @Override
+    public long getDroppedUpdates() {
+        return droppedUpdates.get();
+    }
+
+    @Override
+    public long getCoalescedUpdates() {
+        return coalescedUpdates.get();
+    }
     
     @SuppressWarnings("unchecked")
     public void start(final Subscriber subscriber, final EventLoop eventLoop, final String expression, final StringSeq params,
@@ -243,6 +439,98 @@ public class AbstractFxList<D extends Copyable, R extends DataReader, F extends
         Platform.runLater(() -> clear());
     }
 
+    /**
+     * @return the unique device identifier of the device to which the row belongs
+     *         or null if this list is not partitioned by device
+     */
+    protected String getUniqueDeviceIdentifier(F element) {
+        return null;
+    }
+
+    /**
+     * FX thread; a live, read only view of the rows of one device which sees only
+     * the changes to those rows.
+     */
+    public ObservableList<F> getByUniqueDeviceIdentifier(String udi) {
+        ObservableList<F> view = partition(udi).view();
+        // sweep out those of devices that are no longer viewed
+        Iterator<Partition<F>> itr = partitions.values().iterator();
+        while (itr.hasNext()) {
+            if (!itr.next().isViewed()) {
+                itr.remove();
+            }
+        }
+        return view;
+    }
+
+    /**
+     * @return the number of devices for which rows are being partitioned
+     */
+    int getPartitionCount() {
+        return partitions.size();
+    }
+
+    private Partition<F> partition(String udi) {
+        Partition<F> p = partitions.get(udi);
+        if (null == p) {
+            p = new Partition<F>();
+            // rows already present are placed in the order they appear here
+            for (F f : data) {
+                if (udi.equals(getUniqueDeviceIdentifier(f))) {
+                    p.rows.add(f);
+                }
+            }
+            partitions.put(udi, p);
+        }
+        return p;
+    }
+
+    /**
+     * @param index where the element was added to this list; ignored when removing
+     */
+    private void partition(F element, int index, boolean add) {
+        String udi = getUniqueDeviceIdentifier(element);
+        Partition<F> p = null == udi ? null : partitions.get(udi);
+        if (null == p) {
+            return;
+        }
+        if (!p.isViewed()) {
+            partitions.remove(udi);
+            return;
+        }
+        if (add) {
+            // new rows go to the front of this list and rows added at either end
+            // are placed at once; elsewhere the rows of the device between the
+            // element and the nearer end of this list are counted
+            if (0 == index) {
+                p.rows.add(0, element);
+            } else if (data.size() - 1 == index) {
+                p.rows.add(element);
+            } else if (index < data.size() / 2) {
+                int before = 0;
+                for (int i = 0; i < index; i++) {
+                    if (udi.equals(getUniqueDeviceIdentifier(data.get(i)))) {
+                        before++;
+                    }
+                }
+                p.rows.add(before, element);
+            } else {
+                int after = 0;
+                for (int i = index + 1; i < data.size(); i++) {
+                    if (udi.equals(getUniqueDeviceIdentifier(data.get(i)))) {
+                        after++;
+                    }
+                }
+                p.rows.add(p.rows.size() - after, element);
+            }
+        } else {
+            int i = p.indexOf(element);
+            if (i >= 0) {
+                p.rows.remove(i);
+            }
+        }
+    }
+
     @Override
     public F get(int index) {
         return data.get(index);
@@ -256,18 +544,57 @@ public class AbstractFxList<D extends Copyable, R extends DataReader, F extends
     @Override
     protected void doAdd(int index, F element) {
         data.add(index, element);
+        index(element, index);
     }
 
     @Override
     protected F doSet(int index, F element) {
         F f = data.set(index, element);
+        String udi = getUniqueDeviceIdentifier(element);
+        if (null == udi || !udi.equals(getUniqueDeviceIdentifier(f))) {
+            unindex(f);
+            index(element, index);
+            return f;
+        }
+        // same device so the row keeps its place in the partition
+        unindexHandle(f);
+        indexHandle(element);
+        Partition<F> p = partitions.get(udi);
+        if (null != p) {
+            int i = p.indexOf(f);
+            if (i >= 0) {
+                p.rows.set(i, element);
+            }
+        }
         return f;
     }
 
     @Override
     protected F doRemove(int index) {
         F f = data.remove(index);
+        unindex(f);
         return f;
     }
 
+    private void index(F element, int index) {
+        indexHandle(element);
+        partition(element, index, true);
+    }
+
+    private void unindex(F element) {
+        unindexHandle(element);
+        partition(element, -1, false);
+    }
+
+    private void indexHandle(F element) {
+        // Keyed by a copy since an element may later alter its own handle
+        rowsByHandle.put(new InstanceHandle_t(element.getHandle()), element);
+    }
+
+    private void unindexHandle(F element) {
+        if (rowsByHandle.get(element.getHandle()) == element) {
+            rowsByHandle.remove(element.getHandle());
+        }
+    }
+
 }
@@ -12,6 +12,7 @@ public class AbstractFxListFactory {
     protected String expression;
     protected StringSeq params;
     protected String qosLibrary, qosProfile;
+    protected boolean coalesce;
     
     public AbstractFxListFactory() {
     }
@@ -58,5 +59,11 @@ public class AbstractFxListFactory {
     public String getQosProfile() {
         return qosProfile;
     }
+    public void setCoalesce(boolean coalesce) {
+        this.coalesce = coalesce;
+    }
+    public boolean isCoalesce() {
+        return coalesce;
+    }
     
 }
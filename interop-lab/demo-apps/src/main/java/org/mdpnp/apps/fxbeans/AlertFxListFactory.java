@@ -17,6 +17,7 @@ public class AlertFxListFactory extends AbstractFxListFactory implements Factory
     public AlertFxList getObject() throws Exception {
         if(null == instance) {
             instance = new AlertFxList(topicName);
+            instance.setCoalesce(coalesce);
             instance.start(subscriber, eventLoop, expression, params, qosLibrary, qosProfile);
         }
         return instance;
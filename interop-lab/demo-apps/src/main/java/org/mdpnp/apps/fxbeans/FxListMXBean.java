@@ -0,0 +1,22 @@
+package org.mdpnp.apps.fxbeans;
+
+/**
+ * Management view of an {@link AbstractFxList}; how much of what is read from
+ * DDS the FX thread is spared by coalescing.
+ */
+public interface FxListMXBean {
+    boolean isCoalesce();
+
+    boolean isKeepHistory();
+
+    /**
+     * @return samples superseded by a later sample for the same instance
+     *         before reaching the FX thread
+     */
+    long getDroppedUpdates();
+
+    /**
+     * @return samples applied on the FX thread in a pulse shared with others
+     */
+    long getCoalescedUpdates();
+}
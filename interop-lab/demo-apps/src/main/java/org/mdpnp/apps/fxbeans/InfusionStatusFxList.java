@@ -8,4 +8,9 @@ public class InfusionStatusFxList extends AbstractFxList<ice.InfusionStatus, ice
         super(topicName, ice.InfusionStatus.class, ice.InfusionStatusDataReader.class, 
                 ice.InfusionStatusTypeSupport.class, ice.InfusionStatusSeq.class, InfusionStatusFx.class);
     }
+
+    @Override
+    protected String getUniqueDeviceIdentifier(InfusionStatusFx element) {
+        return element.getUnique_device_identifier();
+    }
 }
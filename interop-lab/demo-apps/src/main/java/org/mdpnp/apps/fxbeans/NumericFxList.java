@@ -7,4 +7,9 @@ public class NumericFxList extends AbstractFxList<ice.Numeric, ice.NumericDataRe
         super(topicName, ice.Numeric.class, ice.NumericDataReader.class, ice.NumericTypeSupport.class, ice.NumericSeq.class, NumericFx.class);
     }
 
+    @Override
+    protected String getUniqueDeviceIdentifier(NumericFx element) {
+        return element.getUnique_device_identifier();
+    }
+
 }
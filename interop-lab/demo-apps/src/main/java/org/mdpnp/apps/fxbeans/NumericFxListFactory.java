@@ -21,6 +21,7 @@ public class NumericFxListFactory extends AbstractFxListFactory implements Facto
     public NumericFxList getObject() throws Exception {
         if(null == instance) {
             instance = new NumericFxList(topicName);
+            instance.setCoalesce(coalesce);
             instance.start(subscriber, eventLoop, expression, params, qosLibrary, qosProfile);
         }
         return instance;
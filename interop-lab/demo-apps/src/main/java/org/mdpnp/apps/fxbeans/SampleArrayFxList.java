@@ -1,12 +1,39 @@
 package org.mdpnp.apps.fxbeans;
 
+import org.mdpnp.guis.waveform.SampleArrayWaveformCache;
+import org.mdpnp.guis.waveform.WaveformSource;
 
+import com.rti.dds.infrastructure.InstanceHandle_t;
 
 public class SampleArrayFxList extends AbstractFxList<ice.SampleArray, ice.SampleArrayDataReader, SampleArrayFx> {
 
+    private SampleArrayWaveformCache waveformCache;
+
     public SampleArrayFxList(final String topicName) {
         super(topicName, ice.SampleArray.class, ice.SampleArrayDataReader.class, 
               ice.SampleArrayTypeSupport.class, ice.SampleArraySeq.class, SampleArrayFx.class);
     }
 
+    @Override
+    protected String getUniqueDeviceIdentifier(SampleArrayFx element) {
+        return element.getUnique_device_identifier();
+    }
+
+    /**
+     * Waveform cache shared by every view of the waves in this list
+     */
+    public synchronized SampleArrayWaveformCache getWaveformCache() {
+        if(null == waveformCache) {
+            waveformCache = new SampleArrayWaveformCache();
+            addSampleListener(waveformCache::sample);
+        }
+        return waveformCache;
+    }
+
+    /**
+     * @return a source for the wave of one instance, shared with any other view of it
+     */
+    public WaveformSource getWaveformSource(InstanceHandle_t handle) {
+        return getWaveformCache().getSource(getReader(), handle);
+    }
 }
@@ -18,8 +18,10 @@ import ice.DeviceIdentity;
 import ice.DeviceIdentityDataReader;
 import ice.HeartBeat;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javafx.application.Platform;
 import javafx.beans.Observable;
@@ -73,26 +75,21 @@ public class DeviceListModelImpl
         if(null == udi) {
             return null;
         }
-        for(Device d : contents) {
-            if(udi.equals(d.getUDI())) {
-                return d;
-            }
-        }
-        for(Device d : recycledContents) {
-            if(udi.equals(d.getUDI())) {
-                if(create) {
-                    log.debug("Resurrected " + udi);
-                    contents.add(0, d);
-                }
-                return d;
+        Device d = devices.get(udi);
+        if(null != d) {
+            if(create && null != recycledContents.remove(udi)) {
+                log.debug("Resurrected " + udi);
+                contents.add(0, d);
             }
+            return d;
         }
         // Add an inactive placeholder
-        Device d = new Device(udi);
+        d = new Device(udi);
+        devices.put(udi, d);
         if(create) {
             contents.add(d);
         } else {
-            recycledContents.add(d);
+            recycle(d);
         }
         return d;
     }
@@ -117,14 +114,93 @@ public class DeviceListModelImpl
         
     }
     
+    /**
+     * Everything heard about one device since the last FX pulse. Only the latest of
+     * each kind of update is kept; whether the device ends up in or out of the
+     * contents follows the last heartbeat, connectivity or identity update.
+     */
+    private static final class Pending {
+        private Boolean alive;
+        private String hostname;
+        private ice.DeviceConnectivity connectivity;
+        private ice.DeviceIdentity identity;
+        private ParticipantBuiltinTopicData participant;
+        private boolean synchronization;
+        private long clockDifference, roundtripLatency;
+    }
+    
+    // Guarded by pendingLock; filled by the EventLoop and TimeManager and emptied by the FX thread
+    private final Object pendingLock = new Object();
+    private Map<String, Pending> pending = new LinkedHashMap<String, Pending>();
+    private Map<String, Pending> applying = new LinkedHashMap<String, Pending>();
+    private boolean flushScheduled;
+    
+    // callers hold pendingLock
+    private Pending pending(String udi) {
+        Pending p = pending.get(udi);
+        if(null == p) {
+            p = new Pending();
+            pending.put(udi, p);
+        }
+        if(!flushScheduled) {
+            flushScheduled = true;
+            Platform.runLater(this::flush);
+        }
+        return p;
+    }
+    
+    /**
+     * FX thread; applies everything heard since the last pulse
+     */
+    void flush() {
+        Map<String, Pending> updates;
+        synchronized(pendingLock) {
+            updates = pending;
+            pending = applying;
+            applying = updates;
+            flushScheduled = false;
+        }
+        try {
+            for(Map.Entry<String, Pending> e : updates.entrySet()) {
+                Pending p = e.getValue();
+                Device device = getDevice(e.getKey(), Boolean.TRUE.equals(p.alive));
+                if(null == device) {
+                    continue;
+                }
+                if(null != p.identity) {
+                    device.setDeviceIdentity(p.identity, p.participant);
+                }
+                if(null != p.connectivity) {
+                    device.setDeviceConnectivity(p.connectivity);
+                }
+                if(null != p.hostname) {
+                    device.setHostname(p.hostname);
+                }
+                if(p.synchronization) {
+                    device.setClockDifference(p.clockDifference);
+                    device.setRoundtripLatency(p.roundtripLatency);
+                }
+                if(Boolean.FALSE.equals(p.alive)) {
+                    remove(device);
+                }
+            }
+        } finally {
+            updates.clear();
+        }
+    }
+    
     @Override
     public void aliveHeartbeat(final String unique_device_identifier, final String type, final String host_name) {
         if("Device".equals(type)) {
-            Platform.runLater(new Runnable() {
-                public void run() {
-                      getDevice(unique_device_identifier, true).setHostname(host_name);
-                }
-            });
+            if(null == unique_device_identifier) {
+                log.warn("Cannot create device with null udi");
+                return;
+            }
+            synchronized(pendingLock) {
+                Pending p = pending(unique_device_identifier);
+                p.alive = Boolean.TRUE;
+                p.hostname = host_name;
+            }
       } else {
           notADevice(unique_device_identifier, true);
       }
@@ -135,11 +211,13 @@ public class DeviceListModelImpl
     public void notAliveHeartbeat(final String unique_device_identifier, final String type) {
         if("Device".equals(type)) {
             log.debug(unique_device_identifier + " IS NO LONGER ALIVE");
-            Platform.runLater(new Runnable() {
-                public void run() {
-                    remove(getDevice(unique_device_identifier, false));
-                }
-            });
+            if(null == unique_device_identifier) {
+                log.debug("Tried to remove a null device");
+                return;
+            }
+            synchronized(pendingLock) {
+                pending(unique_device_identifier).alive = Boolean.FALSE;
+            }
             
         } else {
             notADevice(unique_device_identifier, false);
@@ -152,46 +230,53 @@ public class DeviceListModelImpl
 //        log.trace(remote_udi + " has latency="+latency+" and clockDifference="+clockDifference);
         final long clockDifference1 = 1000L * clockDifference.sec + clockDifference.nanosec / 1000000L;
         final long roundtripLatency1 = 1000L * latency.sec + latency.nanosec / 1000000L;
-        Platform.runLater(new Runnable() {
-            public void run() {
-                Device device = getDevice(remote_udi, false);
-                if(null != device) {
-                    device.setClockDifference(clockDifference1);
-                    device.setRoundtripLatency(roundtripLatency1);
-                }
-            }
-        });
+        if(null == remote_udi) {
+            return;
+        }
+        synchronized(pendingLock) {
+            Pending p = pending(remote_udi);
+            p.synchronization = true;
+            p.clockDifference = clockDifference1;
+            p.roundtripLatency = roundtripLatency1;
+        }
 
     }
     
-    private final void update(final DeviceConnectivity dc) {
-        if (!eventLoop.isCurrentServiceThread()) {
+    private final void update(final DeviceConnectivityDataReader reader, final DeviceConnectivity dc) {
+        if (!eventLoop.isCurrentServiceThread(reader.get_statuscondition())) {
             throw new IllegalStateException("Not called from EventLoop service thread, instead:" + Thread.currentThread());
         }
+        if(null == dc.unique_device_identifier) {
+            log.warn("Cannot create device with null udi");
+            return;
+        }
         final ice.DeviceConnectivity dc1 = new ice.DeviceConnectivity(dc);
-        Platform.runLater(new Runnable() {
-            public void run() {
-                Device device = getDevice(dc1.unique_device_identifier, true);
-                device.setDeviceConnectivity(dc1);
-            }
-        });
+        synchronized(pendingLock) {
+            Pending p = pending(dc1.unique_device_identifier);
+            p.alive = Boolean.TRUE;
+            p.connectivity = dc1;
+        }
     }
 
-    private final void update(final DeviceIdentity di, final ParticipantBuiltinTopicData data) {
+    private final void update(final DeviceIdentityDataReader reader, final DeviceIdentity di, final ParticipantBuiltinTopicData data) {
         
-        if (!eventLoop.isCurrentServiceThread()) {
+        if (!eventLoop.isCurrentServiceThread(reader.get_statuscondition())) {
             throw new IllegalStateException("Not called from EventLoop service thread, instead:" + Thread.currentThread());
         }
+        if(null == di.unique_device_identifier) {
+            log.warn("Cannot create device with null udi");
+            return;
+        }
         final ice.DeviceIdentity di1 = new ice.DeviceIdentity(di);
         final ParticipantBuiltinTopicData data1 = new ParticipantBuiltinTopicData();
         data1.copy_from(data);
         
-        Platform.runLater(new Runnable() {
-            public void run() {
-                Device device = getDevice(di1.unique_device_identifier, true); 
-                device.setDeviceIdentity(di1, data1);
-            }
-        });
+        synchronized(pendingLock) {
+            Pending p = pending(di1.unique_device_identifier);
+            p.alive = Boolean.TRUE;
+            p.identity = di1;
+            p.participant = data1;
+        }
     }
 
     
@@ -206,13 +291,31 @@ public class DeviceListModelImpl
             return;
         }
         
-        contents.remove(device);
-        recycledContents.add(device);
+        if(contents.remove(device)) {
+            recycle(device);
+        }
+    }
+    
+    private void recycle(Device device) {
+        // re-inserted so that it counts as the most recently recycled
+        recycledContents.remove(device.getUDI());
+        recycledContents.put(device.getUDI(), device);
+        // Forget the placeholders of the devices least recently seen
+        Iterator<Device> itr = recycledContents.values().iterator();
+        while(recycledContents.size() > maxRecycled && itr.hasNext()) {
+            Device d = itr.next();
+            itr.remove();
+            devices.remove(d.getUDI());
+        }
     }
     
     private static final Logger log = LoggerFactory.getLogger(DeviceListModelImpl.class);
 
-    protected final List<Device> recycledContents = new ArrayList<Device>();
+    // Every device in contents or recycledContents by UDI; FX thread only
+    private final Map<String, Device> devices = new HashMap<String, Device>();
+    // Devices no longer alive, least recently recycled first
+    protected final Map<String, Device> recycledContents = new LinkedHashMap<String, Device>();
+    private int maxRecycled = Integer.getInteger("mdpnp.devices.maxRecycled", 1000);
     protected final ObservableList<Device> contents = FXCollections.observableArrayList(new Callback<Device, Observable[]>() {
 
         @Override
@@ -228,6 +331,14 @@ public class DeviceListModelImpl
     protected DeviceConnectivityInstanceModel connModel;
     protected final TimeManager timeManager;
 
+    /**
+     * @param maxRecycled placeholders kept for devices no longer alive, beyond which the
+     *        least recently seen are forgotten
+     */
+    public void setMaxRecycled(int maxRecycled) {
+        this.maxRecycled = maxRecycled;
+    }
+    
     @Override
     public void start() {
         idModel.startReader(subscriber, eventLoop, QosProfiles.ice_library, QosProfiles.device_identity);
@@ -265,7 +376,7 @@ public class DeviceListModelImpl
                 } catch(Exception e) {
                     log.warn("Unable to get participant information for DeviceIdentity publication");
                 }
-                update(di, data);
+                update(reader, di, data);
             }
             
         }
@@ -287,7 +398,7 @@ public class DeviceListModelImpl
         public void instanceSample(ReaderInstanceModel<DeviceConnectivity, DeviceConnectivityDataReader> model, DeviceConnectivityDataReader reader,
                 DeviceConnectivity data, SampleInfo sampleInfo) {
             if (sampleInfo.valid_data) {
-                update(data);
+                update(reader, data);
             }
         }
         
@@ -4,11 +4,16 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.mdpnp.apps.device.OnListChange;
 import org.mdpnp.apps.testapp.vital.Value;
 import org.mdpnp.apps.testapp.vital.Vital;
+import org.mdpnp.timeseries.TimeSeriesStore;
 
+import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import javafx.collections.FXCollections;
@@ -29,10 +34,23 @@ public class Chart {
     @FXML Button removeButton;
     @FXML BorderPane main;
     
-    // TODO externalize this setting
-    private static final int MAX_POINTS = 25000;
+    // Values kept at full resolution for each series; at 1Hz a little over the 6 hours of history
+    private static final int MAX_POINTS = Integer.getInteger("mdpnp.chart.maxPoints", 25000);
     
     private Vital vital;
+    private DateAxis dateAxis;
+    // Points are only added to and dropped from the plot as the axis moves
+    private final InvalidationListener axisListener = (o) -> update();
+
+    // When set each series starts out with what the store holds of the last historySpan ms
+    private TimeSeriesStore history;
+    private long historySpan;
+    // Hours of history are read from the store away from the FX thread
+    private static final ExecutorService historyLoader = Executors.newSingleThreadExecutor((r) -> {
+        Thread t = new Thread(r, "Chart History");
+        t.setDaemon(true);
+        return t;
+    });
     
     public Vital getVital() {
         return vital;
@@ -44,6 +62,11 @@ public class Chart {
     private final OnListChange<Value> valueListener = new OnListChange<>(
             (t)->add(t), null, (t)->remove(t));
     
+    public void setHistory(TimeSeriesStore history, long historySpan) {
+        this.history = history;
+        this.historySpan = historySpan;
+    }
+
     public void setModel(Vital v, final DateAxis dateAxis) {
         
         if(null != this.vital) {
@@ -52,9 +75,15 @@ public class Chart {
             main.setCenter(null);
             lineChart.titleProperty().unbind();
             lineChart = null;
+            this.dateAxis.upperBoundProperty().removeListener(axisListener);
+            this.dateAxis.widthProperty().removeListener(axisListener);
+            this.dateAxis = null;
         }
         this.vital = v;
         if(null != v) {
+            this.dateAxis = dateAxis;
+            dateAxis.upperBoundProperty().addListener(axisListener);
+            dateAxis.widthProperty().addListener(axisListener);
             NumberAxis yAxis = new NumberAxis();
             lineChart = new LineChart<>(dateAxis, yAxis);
             lineChart.setMinHeight(250.0);
@@ -79,8 +108,8 @@ public class Chart {
         vsl.v = vital;
         values.add(vsl);
         
-        final ObservableList<XYChart.Data<Date, Number>> data = FXCollections.observableArrayList();
-        vsl.s = new XYChart.Series<>(data);
+        vsl.downsampled = new DownsampledSeries(MAX_POINTS);
+        vsl.s = new XYChart.Series<>(vsl.data);
         vsl.s.nameProperty().bind(vsl.v.getDevice().makeAndModelProperty());
         series.add(vsl.s);
         vsl.v.timestampProperty().addListener(vsl.l = new ChangeListener<Date>() {
@@ -88,16 +117,51 @@ public class Chart {
             @Override
             public void changed(ObservableValue<? extends Date> observable, Date oldValue, Date newValue) {
                 if(newValue != null) {
-                    if(data.size()>MAX_POINTS) {
-                        data.remove(0);
-                    }
-                    data.add(new XYChart.Data<>(newValue, vsl.v.getValue()));
+                    vsl.downsampled.add(newValue.getTime(), vsl.v.getValue());
                 }
             }
             
         });
+        update(vsl);
+        if(null != history) {
+            loadHistory(vsl);
+        }
+    }
 
-        
+    private void loadHistory(final ValueSeriesListener vsl) {
+        final TimeSeriesStore history = this.history;
+        final long now = System.currentTimeMillis(), from = now - historySpan;
+        final Value vital = vsl.v;
+        historyLoader.execute(() -> {
+            // past its capacity the series forgets the oldest
+            final DownsampledSeries loaded = new DownsampledSeries(MAX_POINTS);
+            history.query(vital.getUniqueDeviceIdentifier(), vital.getMetricId(), vital.getInstanceId(), from, now,
+                    (time, value) -> loaded.add(time, value));
+            Platform.runLater(() -> {
+                // the series may have been removed while loading
+                if(values.contains(vsl)) {
+                    loaded.addAll(vsl.downsampled);
+                    vsl.downsampled = loaded;
+                    update(vsl);
+                }
+            });
+        });
+    }
+    
+    private void update() {
+        for(ValueSeriesListener vsl : values) {
+            update(vsl);
+        }
+    }
+    
+    private void update(ValueSeriesListener vsl) {
+        if(null == dateAxis || null == dateAxis.getLowerBound() || null == dateAxis.getUpperBound()) {
+            return;
+        }
+        // before the first layout assume a typical width
+        int pixels = dateAxis.getWidth() > 0.0 ? (int) dateAxis.getWidth() : 800;
+        vsl.downsampled.update(dateAxis.getLowerBound().getTime(), dateAxis.getUpperBound().getTime(), pixels, vsl);
+        vsl.apply();
     }
     
     private void remove(final Value v) {
@@ -113,10 +177,61 @@ public class Chart {
 
     }
     
-    private static class ValueSeriesListener { 
+    private static class ValueSeriesListener implements DownsampledSeries.Sink { 
         public XYChart.Series<Date, Number> s;
         public Value v;
         public ChangeListener<Date> l;
+        public DownsampledSeries downsampled;
+        final ObservableList<XYChart.Data<Date, Number>> data = FXCollections.observableArrayList();
+
+        // changes are gathered so the chart lays out once per update
+        private boolean cleared;
+        private int removeFirst, removeLast;
+        private final List<XYChart.Data<Date, Number>> added = new ArrayList<>();
+
+        @Override
+        public void clear() {
+            cleared = true;
+            removeFirst = removeLast = 0;
+            added.clear();
+        }
+
+        @Override
+        public void removeFirst(int n) {
+            removeFirst += n;
+        }
+
+        @Override
+        public void removeLast(int n) {
+            // points added in this update are removed before those already plotted
+            int fromAdded = Math.min(n, added.size());
+            added.subList(added.size() - fromAdded, added.size()).clear();
+            removeLast += n - fromAdded;
+        }
+
+        @Override
+        public void add(long time, float value) {
+            added.add(new XYChart.Data<>(new Date(time), value));
+        }
+
+        void apply() {
+            if(cleared) {
+                data.setAll(added);
+            } else {
+                if(removeLast > 0) {
+                    data.remove(data.size() - removeLast, data.size());
+                }
+                if(!added.isEmpty()) {
+                    data.addAll(added);
+                }
+            }
+            if(removeFirst > 0) {
+                data.remove(0, removeFirst);
+            }
+            cleared = false;
+            removeFirst = removeLast = 0;
+            added.clear();
+        }
     }
     
 }
@@ -22,6 +22,7 @@ import javafx.util.Duration;
 import org.mdpnp.apps.testapp.pca.VitalSign;
 import org.mdpnp.apps.testapp.vital.Vital;
 import org.mdpnp.apps.testapp.vital.VitalModel;
+import org.mdpnp.timeseries.TimeSeriesStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,6 +31,7 @@ public class ChartApplication implements ListChangeListener<Vital>, EventHandler
     final DateAxis dateAxis = new DateAxis();
     @FXML Pane charts;
     VitalModel vitalModel; 
+    private TimeSeriesStore history;
     private Timeline timeline;
     @FXML ComboBox<VitalSign> vitalSigns;
     private long interval = 2 * 60 * 60 * 1000L;
@@ -73,6 +75,14 @@ public class ChartApplication implements ListChangeListener<Vital>, EventHandler
     }
     
     public void setModel(VitalModel vitalModel) {
+        setModel(vitalModel, null);
+    }
+
+    /**
+     * @param history recorded values to start new charts with; may be null
+     */
+    public void setModel(VitalModel vitalModel, TimeSeriesStore history) {
+        this.history = history;
         timeInterval.setItems(FXCollections.observableArrayList(TimeInterval.values()));
         vitalSigns.setItems(FXCollections.observableArrayList(VitalSign.values()));
         dateAxis.setAutoRanging(false);
@@ -120,6 +130,7 @@ public class ChartApplication implements ListChangeListener<Vital>, EventHandler
                 try {
                     Parent node = loader.load();
                     Chart chart = loader.getController();
+                    chart.setHistory(history, TimeInterval._6HOURS.getInterval());
                     chart.setModel(vi, dateAxis);
                     node.setUserData(chart);
                     chart.getRemoveButton().setOnAction(new EventHandler<ActionEvent>() {
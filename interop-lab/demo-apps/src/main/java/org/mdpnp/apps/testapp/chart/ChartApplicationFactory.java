@@ -8,6 +8,7 @@ import javafx.scene.Parent;
 
 import org.mdpnp.apps.testapp.IceApplicationProvider;
 import org.mdpnp.apps.testapp.vital.VitalModel;
+import org.mdpnp.timeseries.TimeSeriesStore;
 import org.springframework.context.ApplicationContext;
 
 public class ChartApplicationFactory implements IceApplicationProvider {
@@ -31,13 +32,17 @@ public class ChartApplicationFactory implements IceApplicationProvider {
 
         final VitalModel model = (VitalModel) parentContext.getBean("vitalModel");
 
+        // history is only available to charts if the application context provides a store
+        final TimeSeriesStore history = parentContext.containsBean("timeSeriesStore") ?
+                parentContext.getBean("timeSeriesStore", TimeSeriesStore.class) : null;
+
         FXMLLoader loader = new FXMLLoader(ChartApplication.class.getResource("ChartApplication.fxml"));
 
         final Parent ui = loader.load();
 
         final ChartApplication controller = ((ChartApplication) loader.getController());
 
-        controller.setModel(model);
+        controller.setModel(model, history);
         
         return new IceApplicationProvider.IceApp() {
 
@@ -0,0 +1,240 @@
+package org.mdpnp.apps.testapp.chart;
+
+import java.util.Arrays;
+
+/**
+ * Full resolution values of one chart series together with the largest
+ * triangle three bucket (LTTB) selection of them that is actually plotted,
+ * roughly one point per pixel of the time axis.
+ *
+ * Buckets are aligned to multiples of their width in absolute time so that
+ * as the axis slides only buckets that have newly completed are selected and
+ * points that have scrolled off are trimmed; the selection is only recomputed
+ * in full when the span or the width of the axis changes. The points of the
+ * buckets not yet complete are plotted as they are.
+ */
+class DownsampledSeries {
+
+    /**
+     * Receives changes to the plotted points, which are kept oldest first
+     */
+    interface Sink {
+        void clear();
+
+        void removeFirst(int n);
+
+        void removeLast(int n);
+
+        void add(long time, float value);
+    }
+
+    private final int capacity;
+
+    // full resolution, oldest first
+    private long[] times = new long[256];
+    private float[] values = new float[256];
+    private int size;
+
+    // bucket width in ms; 0 until the first update
+    private long width;
+    // start of the first bucket not yet selected from and the index of its first value
+    private long nextBucket;
+    private int nextIndex;
+
+    // the point most recently selected
+    private boolean selected;
+    private long selectedTime;
+    private float selectedValue;
+
+    // times of the selected points still plotted, oldest at plottedHead
+    private long[] plotted = new long[256];
+    private int plottedHead, plottedSize;
+    // number of unselected points plotted after the selected ones
+    private int tail;
+
+    DownsampledSeries(int capacity) {
+        this.capacity = capacity;
+    }
+
+    void add(long time, float value) {
+        if (size > 0 && time < times[size - 1]) {
+            // out of order values would defeat the bucketing so they are dropped
+            return;
+        }
+        if (size == capacity) {
+            // forget the oldest quarter
+            int drop = capacity / 4;
+            System.arraycopy(times, drop, times, 0, size - drop);
+            System.arraycopy(values, drop, values, 0, size - drop);
+            size -= drop;
+            nextIndex = Math.max(0, nextIndex - drop);
+        } else if (size == times.length) {
+            int n = Math.min(capacity, times.length * 2);
+            times = Arrays.copyOf(times, n);
+            values = Arrays.copyOf(values, n);
+        }
+        times[size] = time;
+        values[size] = value;
+        size++;
+    }
+
+    /**
+     * Takes the values of another series newer than any already held, as when
+     * values arrived live while this one was loaded from history
+     */
+    void addAll(DownsampledSeries later) {
+        for (int i = 0; i < later.size; i++) {
+            if (size == 0 || later.times[i] > times[size - 1]) {
+                add(later.times[i], later.values[i]);
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    long getWidth() {
+        return width;
+    }
+
+    /**
+     * @return a width of 1, 2 or 5 times a power of ten ms giving no more than
+     *         pixels buckets over span
+     */
+    static long bucketWidth(long span, int pixels) {
+        long w = Math.max(1L, (span + pixels - 1) / Math.max(1, pixels));
+        long decade = 1L;
+        while (decade * 10L < w) {
+            decade *= 10L;
+        }
+        if (w <= decade) {
+            return decade;
+        } else if (w <= 2L * decade) {
+            return 2L * decade;
+        } else if (w <= 5L * decade) {
+            return 5L * decade;
+        } else {
+            return 10L * decade;
+        }
+    }
+
+    // index of the first value at or after time, searching from index from
+    private int indexOf(long time, int from) {
+        int lo = from, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (times[mid] < time) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Brings the plotted points up to date for an axis from lower to upper
+     * drawn over the given number of pixels
+     */
+    void update(long lower, long upper, int pixels, Sink sink) {
+        long w = bucketWidth(upper - lower, pixels);
+        if (w != width) {
+            sink.clear();
+            width = w;
+            plottedHead = plottedSize = 0;
+            tail = 0;
+            selected = false;
+            nextBucket = Math.floorDiv(lower, w) * w;
+            nextIndex = indexOf(nextBucket, 0);
+        } else {
+            sink.removeLast(tail);
+            tail = 0;
+            long first = Math.floorDiv(lower, w) * w - w;
+            if (nextBucket < first) {
+                // the axis has jumped ahead; nothing before it will be plotted
+                nextBucket = first;
+                selected = false;
+                nextIndex = indexOf(nextBucket, 0);
+            } else if (nextIndex < size && times[nextIndex] < nextBucket) {
+                // values were forgotten from under the bucket
+                nextIndex = indexOf(nextBucket, 0);
+            }
+        }
+
+        if (size > 0) {
+            long newest = times[size - 1];
+            // a bucket is complete once the one after it is, since its selection
+            // depends on the average of the one after it
+            while (nextBucket + 2 * w <= newest) {
+                int start = nextIndex;
+                int end = indexOf(nextBucket + w, start);
+                if (start < end) {
+                    select(start, end, w, sink);
+                }
+                nextIndex = end;
+                nextBucket += w;
+            }
+            for (int i = nextIndex; i < size; i++) {
+                sink.add(times[i], values[i]);
+                tail++;
+            }
+        }
+
+        // points more than a bucket off the left edge of the axis
+        int trim = 0;
+        while (trim < plottedSize && plotted[(plottedHead + trim) % plotted.length] < lower - w) {
+            trim++;
+        }
+        if (trim > 0) {
+            plottedHead = (plottedHead + trim) % plotted.length;
+            plottedSize -= trim;
+            sink.removeFirst(trim);
+        }
+    }
+
+    // chooses one of the values start (inclusive) to end (exclusive)
+    private void select(int start, int end, long w, Sink sink) {
+        int best = start;
+        if (selected) {
+            // average of the next bucket or else the next value
+            int nextEnd = indexOf(nextBucket + 2 * w, end);
+            double cx = 0.0, cy = 0.0;
+            if (nextEnd > end) {
+                for (int i = end; i < nextEnd; i++) {
+                    cx += times[i] - selectedTime;
+                    cy += values[i];
+                }
+                cx /= nextEnd - end;
+                cy /= nextEnd - end;
+            } else {
+                cx = times[end] - selectedTime;
+                cy = values[end];
+            }
+            double bestArea = -1.0;
+            for (int i = start; i < end; i++) {
+                // twice the area of the triangle with the selected point at the origin
+                double area = Math.abs((times[i] - selectedTime) * (cy - selectedValue) - cx * (values[i] - selectedValue));
+                if (area > bestArea) {
+                    bestArea = area;
+                    best = i;
+                }
+            }
+        }
+        selected = true;
+        selectedTime = times[best];
+        selectedValue = values[best];
+        sink.add(selectedTime, selectedValue);
+
+        if (plottedSize == plotted.length) {
+            long[] p = new long[plotted.length * 2];
+            for (int i = 0; i < plottedSize; i++) {
+                p[i] = plotted[(plottedHead + i) % plotted.length];
+            }
+            plotted = p;
+            plottedHead = 0;
+        }
+        plotted[(plottedHead + plottedSize) % plotted.length] = selectedTime;
+        plottedSize++;
+    }
+}
@@ -2,9 +2,8 @@ package org.mdpnp.apps.testapp.export;
 
 
 import java.io.File;
-import java.text.NumberFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
@@ -12,17 +11,26 @@ import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
 import javafx.stage.FileChooser;
 
-import org.apache.log4j.Level;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-public class CSVPersister extends FileAdapterApplicationFactory.PersisterUIController implements DataCollector.DataSampleEventListener  {
+public class CSVPersister extends FileAdapterApplicationFactory.PersisterUIController implements DataCollector.DataSampleEventListener, DataCollector.DataSampleBatchListener  {
+
+    private static final Logger log = LoggerFactory.getLogger(CSVPersister.class);
+
+    // Writer configuration beyond what the UI offers
+    private int bufferSize = Integer.getInteger("mdpnp.csv.bufferSize", 1024 * 1024);
+    private long flushInterval = Long.getLong("mdpnp.csv.flushInterval", 1000L);
+    private long maxFileAge = Long.getLong("mdpnp.csv.maxFileAge", 0L);
+    private boolean gzip = Boolean.getBoolean("mdpnp.csv.gzip");
+    private RollingCsvWriter.SyncPolicy syncPolicy =
+            RollingCsvWriter.SyncPolicy.valueOf(System.getProperty("mdpnp.csv.syncPolicy", RollingCsvWriter.SyncPolicy.None.name()));
+
+    private File file;
+    private int maxBackupIndex = 1;
+    private long maxFileSize = 10L * 1024L * 1024L;
+    private volatile RollingCsvWriter writer;
 
-    static ThreadLocal<SimpleDateFormat> dateFormats = new ThreadLocal<SimpleDateFormat>()
-    {
-        protected SimpleDateFormat initialValue() {
-            return new SimpleDateFormat("yyyyMMddHHmmssZ");
-        }
-    };
-    
     @FXML Label filePathLabel;
     @FXML ComboBox<String> backupIndex, fSize;
 
@@ -32,44 +40,59 @@ public class CSVPersister extends FileAdapterApplicationFactory.PersisterUIContr
     }
 
     @Override
-    public boolean start() throws Exception {
+    public synchronized boolean start() throws Exception {
+        if(null == writer && null != file) {
+            writer = createWriter();
+        }
         return true;
     }
 
     @Override
-    public void stop() throws Exception {
-        appender.rollOver();
+    public synchronized void stop() throws Exception {
+        RollingCsvWriter writer = this.writer;
+        this.writer = null;
+        if(null != writer) {
+            writer.rollOver();
+            writer.close();
+        }
     }
-    
-    private static NumberFormat valueFormat = NumberFormat.getNumberInstance();
-    static {
-        valueFormat.setMaximumFractionDigits(2);
-        valueFormat.setMinimumFractionDigits(2);
+
+    private RollingCsvWriter createWriter() {
+        RollingCsvWriter w = new RollingCsvWriter(file, bufferSize);
+        w.setMaxBackupIndex(maxBackupIndex);
+        w.setMaxFileSize(maxFileSize);
+        w.setMaxFileAge(maxFileAge);
+        w.setFlushInterval(flushInterval);
+        w.setGzip(gzip);
+        w.setSyncPolicy(syncPolicy);
+        return w;
     }
 
     static String toCSVLine(Value value) {
-        StringBuilder sb = new StringBuilder();
-
-        long ms = value.getDevTime();
-        String devTime = dateFormats.get().format(new Date(ms));
-
-        sb.append(value.getUniqueDeviceIdentifier()).append(",")
-            .append(value.getMetricId()).append(",")
-            .append(value.getInstanceId()).append(",")
-            .append(devTime).append(",")
-            .append(valueFormat.format(value.getValue()));
-
-        return sb.toString();
+        ByteBuffer bb = ByteBuffer.allocate(CsvRowFormat.MAX_ROW_OVERHEAD + 512);
+        int n = new CsvRowFormat().format(bb, value.getUniqueDeviceIdentifier(), value.getMetricId(), value.getInstanceId(),
+                                          value.getDevTime(), value.getValue());
+        // without the line terminator
+        return new String(bb.array(), 0, n - 1, StandardCharsets.UTF_8);
     }
 
     @Override
     public void handleDataSampleEvent(DataCollector.DataSampleEvent evt) throws Exception {
         Value vital = (Value)evt.getSource();
 
-        String s = toCSVLine(vital);
+        RollingCsvWriter writer = this.writer;
+        if(null != writer) {
+            writer.write(vital.getUniqueDeviceIdentifier(), vital.getMetricId(), vital.getInstanceId(),
+                         vital.getDevTime(), vital.getValue());
+        }
+    }
 
-        // LoggingEvent le = new LoggingEvent("", null, Level.ALL, sb.toString(), null);
-        cat.info(s);
+    @Override
+    public void handleDataSampleBatch(DataSampleBatch batch) throws Exception {
+        RollingCsvWriter writer = this.writer;
+        if(null != writer) {
+            writer.write(batch);
+        }
     }
 
     public CSVPersister() {
@@ -78,17 +101,19 @@ public class CSVPersister extends FileAdapterApplicationFactory.PersisterUIContr
     
     @FXML public void clickBackupIndex(ActionEvent evt) {
         String s = backupIndex.getSelectionModel().getSelectedItem();
-        if(appender != null) {
-            appender.setMaxBackupIndex(Integer.parseInt(s));
-            appender.activateOptions();
+        maxBackupIndex = Integer.parseInt(s);
+        RollingCsvWriter writer = this.writer;
+        if(writer != null) {
+            writer.setMaxBackupIndex(maxBackupIndex);
         }
     }
     
     @FXML public void clickFSize(ActionEvent evt) {
         String s = fSize.getSelectionModel().getSelectedItem();
-        if(appender != null) {
-            appender.setMaxFileSize(s);
-            appender.activateOptions();
+        maxFileSize = RollingCsvWriter.parseFileSize(s);
+        RollingCsvWriter writer = this.writer;
+        if(writer != null) {
+            writer.setMaxFileSize(maxFileSize);
         }
     }
     
@@ -100,8 +125,7 @@ public class CSVPersister extends FileAdapterApplicationFactory.PersisterUIContr
         File f = fc.showSaveDialog(null);
         if(null != f) {
             filePathLabel.setText(f.getAbsolutePath());
-            appender.setFile(f.getAbsolutePath());
-            appender.activateOptions();
+            changeFile(f);
         }
     }
     
@@ -149,20 +173,60 @@ public class CSVPersister extends FileAdapterApplicationFactory.PersisterUIContr
 
 
         // add file size controls.
-        appender = new org.apache.log4j.RollingFileAppender();
-        appender.setFile(defaultLogFileName.getAbsolutePath());
-        appender.setMaxBackupIndex(Integer.parseInt(backupIndex.getSelectionModel().getSelectedItem())-1);
-        appender.setMaxFileSize(fSize.getSelectionModel().getSelectedItem());
-        appender.setAppend(true);
-        appender.setLayout(new org.apache.log4j.PatternLayout("%m%n"));
-        appender.setThreshold(Level.ALL);
-        appender.activateOptions();
-        cat.setAdditivity(false);
-        cat.setLevel(Level.ALL);
-        cat.addAppender(appender);
-
-    }
-
-    private org.apache.log4j.RollingFileAppender appender = null;
-    private org.apache.log4j.Category cat = org.apache.log4j.Logger.getLogger("VitalSimpleTable.CVS");
+        configure(defaultLogFileName,
+                  Integer.parseInt(backupIndex.getSelectionModel().getSelectedItem())-1,
+                  fSize.getSelectionModel().getSelectedItem());
+    }
+
+    void configure(File file, int maxBackupIndex, String maxFileSize) {
+        this.maxBackupIndex = maxBackupIndex;
+        this.maxFileSize = RollingCsvWriter.parseFileSize(maxFileSize);
+        changeFile(file);
+    }
+
+    /**
+     * Subsequent rows go to the new file; the current one is closed where it is
+     */
+    private synchronized void changeFile(File file) {
+        this.file = file;
+        RollingCsvWriter old = this.writer;
+        if(null != old) {
+            writer = createWriter();
+            try {
+                old.close();
+            } catch (Exception e) {
+                log.error("closing " + old.getFile().getAbsolutePath(), e);
+            }
+        }
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public void setFlushInterval(long flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    public void setMaxFileAge(long maxFileAge) {
+        this.maxFileAge = maxFileAge;
+    }
+
+    public void setGzip(boolean gzip) {
+        this.gzip = gzip;
+    }
+
+    public void setSyncPolicy(RollingCsvWriter.SyncPolicy syncPolicy) {
+        this.syncPolicy = syncPolicy;
+    }
+
+    /**
+     * Writes out whatever rows are buffered
+     */
+    public void flush() throws Exception {
+        RollingCsvWriter writer = this.writer;
+        if(null != writer) {
+            writer.flush();
+        }
+    }
 }
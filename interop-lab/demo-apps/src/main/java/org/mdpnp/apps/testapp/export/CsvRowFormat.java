@@ -0,0 +1,129 @@
+package org.mdpnp.apps.testapp.export;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Formats device,metric,instance,time,value rows straight into a ByteBuffer
+ * without allocating once warm. Time is written as yyyyMMddHHmmssZ in the
+ * default time zone and values with exactly two decimal places.
+ *
+ * Not thread safe; each writer owns one.
+ */
+class CsvRowFormat {
+
+    /**
+     * Upper bound on the bytes in a row besides the device and metric identifiers
+     */
+    static final int MAX_ROW_OVERHEAD = 96;
+
+    private static final int MAX_CACHED_IDENTIFIERS = 4096;
+
+    private final Map<String, byte[]> identifiers = new HashMap<>();
+
+    private final Calendar calendar = Calendar.getInstance();
+    private final byte[] timestamp = new byte[19];
+    private long timestampSecond = Long.MIN_VALUE;
+
+    private final byte[] digits = new byte[20];
+
+    /**
+     * @return the number of bytes written
+     */
+    int format(ByteBuffer dst, String uniqueDeviceIdentifier, String metricId, int instanceId, long time, double value) {
+        int start = dst.position();
+        dst.put(identifier(uniqueDeviceIdentifier)).put((byte) ',');
+        dst.put(identifier(metricId)).put((byte) ',');
+        putLong(dst, instanceId);
+        dst.put((byte) ',');
+        dst.put(timestamp(time)).put((byte) ',');
+        putValue(dst, value);
+        dst.put((byte) '\n');
+        return dst.position() - start;
+    }
+
+    /**
+     * @return upper bound on the size of the row
+     */
+    int maxRowSize(String uniqueDeviceIdentifier, String metricId) {
+        return identifier(uniqueDeviceIdentifier).length + identifier(metricId).length + MAX_ROW_OVERHEAD;
+    }
+
+    private byte[] identifier(String s) {
+        byte[] b = identifiers.get(s);
+        if (null == b) {
+            if (identifiers.size() >= MAX_CACHED_IDENTIFIERS) {
+                identifiers.clear();
+            }
+            b = String.valueOf(s).getBytes(StandardCharsets.UTF_8);
+            identifiers.put(s, b);
+        }
+        return b;
+    }
+
+    // Only the seconds change from one row to the next so the text is rebuilt
+    // once per second of device time
+    private byte[] timestamp(long time) {
+        long second = Math.floorDiv(time, 1000L);
+        if (second != timestampSecond) {
+            calendar.setTimeInMillis(time);
+            put4(timestamp, 0, calendar.get(Calendar.YEAR));
+            put2(timestamp, 4, calendar.get(Calendar.MONTH) + 1);
+            put2(timestamp, 6, calendar.get(Calendar.DAY_OF_MONTH));
+            put2(timestamp, 8, calendar.get(Calendar.HOUR_OF_DAY));
+            put2(timestamp, 10, calendar.get(Calendar.MINUTE));
+            put2(timestamp, 12, calendar.get(Calendar.SECOND));
+            int offsetMinutes = (calendar.get(Calendar.ZONE_OFFSET) + calendar.get(Calendar.DST_OFFSET)) / 60000;
+            timestamp[14] = (byte) (offsetMinutes < 0 ? '-' : '+');
+            offsetMinutes = Math.abs(offsetMinutes);
+            put2(timestamp, 15, offsetMinutes / 60);
+            put2(timestamp, 17, offsetMinutes % 60);
+            timestampSecond = second;
+        }
+        return timestamp;
+    }
+
+    private void putValue(ByteBuffer dst, double value) {
+        // beyond what a long holds in hundredths there is nothing to gain
+        if (Double.isNaN(value) || Double.isInfinite(value) || Math.abs(value) >= 1e16) {
+            dst.put(Double.toString(value).getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+        long hundredths = Math.round(Math.abs(value) * 100.0);
+        if (value < 0 && hundredths != 0) {
+            dst.put((byte) '-');
+        }
+        putLong(dst, hundredths / 100);
+        dst.put((byte) '.');
+        int fraction = (int) (hundredths % 100);
+        dst.put((byte) ('0' + fraction / 10));
+        dst.put((byte) ('0' + fraction % 10));
+    }
+
+    // l is an int widened or a magnitude below 1e14 so -l cannot overflow
+    private void putLong(ByteBuffer dst, long l) {
+        if (l < 0) {
+            dst.put((byte) '-');
+            l = -l;
+        }
+        int i = digits.length;
+        do {
+            digits[--i] = (byte) ('0' + l % 10);
+            l /= 10;
+        } while (l != 0);
+        dst.put(digits, i, digits.length - i);
+    }
+
+    private static void put2(byte[] b, int off, int v) {
+        b[off] = (byte) ('0' + v / 10 % 10);
+        b[off + 1] = (byte) ('0' + v % 10);
+    }
+
+    private static void put4(byte[] b, int off, int v) {
+        put2(b, off, v / 100);
+        put2(b, off + 2, v % 100);
+    }
+}
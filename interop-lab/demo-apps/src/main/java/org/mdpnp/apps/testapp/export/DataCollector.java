@@ -41,6 +41,15 @@ public class DataCollector {
         public void handleDataSampleEvent(DataSampleEvent evt) throws Exception;
     }
 
+    /**
+     * Implemented by a {@link DataSampleEventListener} that would rather receive
+     * a waveform as one {@link DataSampleBatch} than one event per point. Listeners
+     * that do not implement it still see every point (see {@link #fireDataSampleBatch}).
+     */
+    public interface DataSampleBatchListener extends EventListener {
+        public void handleDataSampleBatch(DataSampleBatch batch) throws Exception;
+    }
+
     EventListenerList listenerList = new EventListenerList();
 
     public void addDataSampleListener(DataSampleEventListener l) {
@@ -58,6 +67,25 @@ public class DataCollector {
         }
     }
 
+    void fireDataSampleBatch(DataSampleBatch batch) throws Exception {
+        fireDataSampleBatch(listenerList, batch);
+    }
+
+    /**
+     * Delivers the batch whole to the listeners that accept batches and point by
+     * point to the rest.
+     */
+    static void fireDataSampleBatch(EventListenerList listenerList, DataSampleBatch batch) throws Exception {
+        DataSampleEventListener listeners[] = listenerList.getListeners(DataSampleEventListener.class);
+        for(DataSampleEventListener l : listeners) {
+            if(l instanceof DataSampleBatchListener) {
+                ((DataSampleBatchListener)l).handleDataSampleBatch(batch);
+            } else {
+                DataSampleBatch.explode(batch, l);
+            }
+        }
+    }
+
     private final NumericFxList numericList;
     private final SampleArrayFxList sampleArrayList;
     
@@ -75,6 +103,10 @@ public class DataCollector {
     
     private ElementObserver<SampleArrayFx> sampleArrayObserver;
     private ElementObserver<NumericFx> numericObserver;
+    // Arrays arrive on the one thread that services the list so a single batch
+    // (and its value buffer) is reused for every array
+    private final DataSampleBatch batch = new DataSampleBatch();
+
     public void add(SampleArrayFx fx) {
         Number[] values = fx.getValues();
         Date presentationTime = fx.getPresentation_time();
@@ -83,21 +115,20 @@ public class DataCollector {
         final int sz = values.length;
         if (0 < fx.getFrequency()) {
             int msPerSample = (int) (1000 / fx.getFrequency());
+            batch.set(fx.getUnique_device_identifier(), fx.getMetric_id(), fx.getInstance_id(),
+                      baseTime - (long) sz * msPerSample, msPerSample);
+            float[] f = batch.ensureCapacity(sz);
             for (int j = 0; j < sz; j++) {
-                long tm = baseTime - (sz - j) * msPerSample;
-                float value = values[j].floatValue();
-
-                if (log.isTraceEnabled())
-                    log.trace(dateFormats.get().format(new Date(tm)) + " " + fx.getMetric_id() + "=" + value);
-
-                Value v = toValue(fx.getUnique_device_identifier(), fx.getMetric_id(), fx.getInstance_id(), tm, value);
-                DataSampleEvent ev = new DataSampleEvent(v);
-                try {
-                    fireDataSampleEvent(ev);
-                } catch (Exception e) {
-                    log.error("firing data sample event", e);
-                }
+                f[j] = values[j].floatValue();
+            }
+
+            if (log.isTraceEnabled())
+                log.trace(dateFormats.get().format(new Date(batch.getBaseTime())) + " " + batch);
 
+            try {
+                fireDataSampleBatch(batch);
+            } catch (Exception e) {
+                log.error("firing data sample batch", e);
             }
         } else {
             log.warn("Invalid frequency " + fx.getFrequency() +
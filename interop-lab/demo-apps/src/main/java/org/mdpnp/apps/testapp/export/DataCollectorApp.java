@@ -5,6 +5,7 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 
@@ -37,12 +38,13 @@ import javafx.util.Callback;
 import org.mdpnp.apps.testapp.DeviceListModel;
 import org.mdpnp.apps.testapp.IceApplicationProvider;
 import org.mdpnp.apps.testapp.export.FileAdapterApplicationFactory.PersisterUIController;
+import org.mdpnp.timeseries.TimeSeriesStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.support.AbstractApplicationContext;
 import org.springframework.context.support.ClassPathXmlApplicationContext;
 
-public class DataCollectorApp implements DataCollector.DataSampleEventListener {
+public class DataCollectorApp implements DataCollector.DataSampleEventListener, DataCollector.DataSampleBatchListener {
 
     private static final Logger log = LoggerFactory.getLogger(DataCollectorApp.class);
 
@@ -102,6 +104,13 @@ public class DataCollectorApp implements DataCollector.DataSampleEventListener {
     
     
     public DataCollectorApp set(DataCollector dc, DeviceListModel deviceListModel) throws IOException {
+        return set(dc, deviceListModel, null);
+    }
+
+    /**
+     * @param timeSeriesStore where the history persister records to; the persister is not offered if null
+     */
+    public DataCollectorApp set(DataCollector dc, DeviceListModel deviceListModel, TimeSeriesStore timeSeriesStore) throws IOException {
         this.deviceListModel = deviceListModel;
         table.setItems(tblModel);
         // hold on to the references so that we we can unhook the listeners at the end
@@ -143,6 +152,9 @@ public class DataCollectorApp implements DataCollector.DataSampleEventListener {
         supportedPersisterURLs.add(CSVPersister.class.getResource("CSVPersister.fxml"));
         supportedPersisterURLs.add(JdbcPersister.class.getResource("JdbcPersister.fxml"));
         supportedPersisterURLs.add(VerilogVCDPersister.class.getResource("VerilogVCDPersister.fxml"));
+        if(null != timeSeriesStore) {
+            supportedPersisterURLs.add(TimeSeriesPersister.class.getResource("TimeSeriesPersister.fxml"));
+        }
 
         final ToggleGroup group = new ToggleGroup();
         StackPane cards = new StackPane();
@@ -153,6 +165,9 @@ public class DataCollectorApp implements DataCollector.DataSampleEventListener {
             FXMLLoader loader = new FXMLLoader(u);
             Node parent = loader.load();
             final PersisterUIController controller = loader.getController();
+            if(controller instanceof TimeSeriesPersister) {
+                ((TimeSeriesPersister)controller).setStore(timeSeriesStore);
+            }
             controller.setup();
             parent.setVisible(false);
             cards.getChildren().add(parent);
@@ -282,6 +297,28 @@ public class DataCollectorApp implements DataCollector.DataSampleEventListener {
         });
     }
 
+    @Override
+    public void handleDataSampleBatch(DataSampleBatch batch) throws Exception {
+        // Only the newest 250 rows are ever shown so don't build the rest; and
+        // hand the whole array to the FX thread at once.
+        final int n = Math.min(batch.getCount(), 250);
+        final Row[] rows = new Row[n];
+        final String instanceId = ""+batch.getInstanceId();
+        for(int i = 0; i < n; i++) {
+            int j = batch.getCount() - 1 - i;
+            String devTime = DataCollector.dateFormats.get().format(new Date(batch.getTime(j)));
+            rows[i] = new Row(batch.getUniqueDeviceIdentifier(), instanceId, batch.getMetricId(), devTime, batch.getValue(j));
+        }
+        Platform.runLater(new Runnable() {
+            public void run() {
+                tblModel.addAll(0, Arrays.asList(rows));
+                if(tblModel.size()>250) {
+                    tblModel.subList(250, tblModel.size()).clear();
+                }
+            }
+        });
+    }
+
     public static void main(String[] args) throws Exception {
 
         final AbstractApplicationContext context =
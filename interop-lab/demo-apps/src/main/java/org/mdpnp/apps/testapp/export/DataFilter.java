@@ -2,7 +2,7 @@ package org.mdpnp.apps.testapp.export;
 
 import javax.swing.event.EventListenerList;
 
-public class DataFilter implements DataCollector.DataSampleEventListener {
+public class DataFilter implements DataCollector.DataSampleEventListener, DataCollector.DataSampleBatchListener {
 
     private final DeviceTreeModel controller;
     private boolean enabled = true;
@@ -17,6 +17,11 @@ public class DataFilter implements DataCollector.DataSampleEventListener {
             fireDataSampleEvent(evt);
     }
 
+    public void handleDataSampleBatch(DataSampleBatch batch) throws Exception {
+        if(enabled && controller.isEnabled(batch.getUniqueDeviceIdentifier(), batch.getMetricId(), batch.getInstanceId()))
+            DataCollector.fireDataSampleBatch(listenerList, batch);
+    }
+
     private boolean isEnabledFor(Value value) {
         return enabled && controller.isEnabled(value);
     }
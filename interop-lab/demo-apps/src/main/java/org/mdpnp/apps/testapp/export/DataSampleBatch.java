@@ -0,0 +1,108 @@
+package org.mdpnp.apps.testapp.export;
+
+/**
+ * All the points of one waveform sample array in columnar form. Point i was
+ * sampled at baseTime + i * samplePeriod (ms).
+ *
+ * Instances are reused by the {@link DataCollector} from one array to the
+ * next; listeners must copy anything they wish to keep beyond the callback.
+ */
+public class DataSampleBatch {
+    private String uniqueDeviceIdentifier, metricId;
+    private int instanceId;
+    private long baseTime;
+    private long samplePeriod;
+    private float[] values = new float[0];
+    private int count;
+
+    public DataSampleBatch() {
+    }
+
+    public DataSampleBatch(final String uniqueDeviceIdentifier, final String metricId, final int instanceId,
+                           long baseTime, long samplePeriod, float[] values, int count) {
+        set(uniqueDeviceIdentifier, metricId, instanceId, baseTime, samplePeriod);
+        this.values = values;
+        this.count = count;
+    }
+
+    void set(final String uniqueDeviceIdentifier, final String metricId, final int instanceId,
+             long baseTime, long samplePeriod) {
+        this.uniqueDeviceIdentifier = uniqueDeviceIdentifier;
+        this.metricId = metricId;
+        this.instanceId = instanceId;
+        this.baseTime = baseTime;
+        this.samplePeriod = samplePeriod;
+        this.count = 0;
+    }
+
+    /**
+     * @return the value array, grown if need be to hold count points
+     */
+    float[] ensureCapacity(int count) {
+        if (values.length < count) {
+            values = new float[count];
+        }
+        this.count = count;
+        return values;
+    }
+
+    public String getUniqueDeviceIdentifier() {
+        return uniqueDeviceIdentifier;
+    }
+
+    public String getMetricId() {
+        return metricId;
+    }
+
+    public int getInstanceId() {
+        return instanceId;
+    }
+
+    public long getBaseTime() {
+        return baseTime;
+    }
+
+    public long getSamplePeriod() {
+        return samplePeriod;
+    }
+
+    /**
+     * @return the backing array; only the first {@link #getCount()} entries are valid
+     */
+    public float[] getValues() {
+        return values;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getTime(int i) {
+        return baseTime + i * samplePeriod;
+    }
+
+    public float getValue(int i) {
+        return values[i];
+    }
+
+    public Value toValue(int i) {
+        Value v = new Value(uniqueDeviceIdentifier, metricId, instanceId);
+        v.updateFrom(getTime(i), values[i]);
+        return v;
+    }
+
+    /**
+     * Compatibility for listeners that only understand per point events; each
+     * point in the batch is delivered as its own {@link DataCollector.DataSampleEvent}
+     */
+    public static void explode(DataSampleBatch batch, DataCollector.DataSampleEventListener l) throws Exception {
+        for (int i = 0; i < batch.count; i++) {
+            l.handleDataSampleEvent(new DataCollector.DataSampleEvent(batch.toValue(i)));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return uniqueDeviceIdentifier + "/" + metricId + "/" + instanceId + " " + count + " points from " + baseTime + " every " + samplePeriod + "ms";
+    }
+}
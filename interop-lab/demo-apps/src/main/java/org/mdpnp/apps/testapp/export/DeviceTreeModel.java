@@ -14,7 +14,7 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.MapMaker;
 
-public class DeviceTreeModel extends SelectableNode implements ListChangeListener<Device>, DataCollector.DataSampleEventListener {
+public class DeviceTreeModel extends SelectableNode implements ListChangeListener<Device>, DataCollector.DataSampleEventListener, DataCollector.DataSampleBatchListener {
 
     private static final Logger log = LoggerFactory.getLogger(DeviceTreeModel.class);
 
@@ -81,8 +81,20 @@ public class DeviceTreeModel extends SelectableNode implements ListChangeListene
         }
     }
 
+    @Override
+    public void handleDataSampleBatch(DataSampleBatch batch) throws Exception {
+        // Only the first point is needed to learn about a new metric
+        if (batch.getCount() > 0 && nodeLookup.get(toKey(batch.getUniqueDeviceIdentifier(), batch.getMetricId(), batch.getInstanceId())) == null) {
+            handleDataSampleEvent(new DataCollector.DataSampleEvent(batch.toValue(0)));
+        }
+    }
+
     static String toKey(Value value) {
-        return value.getUniqueDeviceIdentifier() + "/" + value.getMetricId() + "/" + value.getInstanceId();
+        return toKey(value.getUniqueDeviceIdentifier(), value.getMetricId(), value.getInstanceId());
+    }
+
+    static String toKey(String uniqueDeviceIdentifier, String metricId, int instanceId) {
+        return uniqueDeviceIdentifier + "/" + metricId + "/" + instanceId;
     }
 
     TreeItem<Object> ensureMetricNode(TreeItem<Object> d, Value value)
@@ -116,10 +128,15 @@ public class DeviceTreeModel extends SelectableNode implements ListChangeListene
     }
 
     public boolean isEnabled(Value value)
+    {
+        return isEnabled(value.getUniqueDeviceIdentifier(), value.getMetricId(), value.getInstanceId());
+    }
+
+    public boolean isEnabled(String uniqueDeviceIdentifier, String metricId, int instanceId)
     {
         // this call back is going to happen A LOT. need fast lookup of the nodes.
         //
-        final String key = toKey(value);
+        final String key = toKey(uniqueDeviceIdentifier, metricId, instanceId);
         TreeItem<Object> node = nodeLookup.get(key);
         if(node instanceof SelectableNode) {
             return ((SelectableNode)node).isSelected();
@@ -9,6 +9,7 @@ import org.mdpnp.apps.fxbeans.NumericFxList;
 import org.mdpnp.apps.fxbeans.SampleArrayFxList;
 import org.mdpnp.apps.testapp.DeviceListModel;
 import org.mdpnp.apps.testapp.IceApplicationProvider;
+import org.mdpnp.timeseries.TimeSeriesStore;
 import org.springframework.context.ApplicationContext;
 
 /**
@@ -32,13 +33,15 @@ public class FileAdapterApplicationFactory implements IceApplicationProvider {
         final NumericFxList numericList = parentContext.getBean("numericList", NumericFxList.class);
         final DeviceListModel deviceListModel = parentContext.getBean("deviceListModel", DeviceListModel.class);
         final DataCollector dataCollector = new DataCollector(sampleArrayList, numericList);
+        final TimeSeriesStore timeSeriesStore = parentContext.containsBean("timeSeriesStore") ?
+                parentContext.getBean("timeSeriesStore", TimeSeriesStore.class) : null;
         
         FXMLLoader loader = new FXMLLoader(DataCollectorApp.class.getResource("DataCollectorApp.fxml"));
         final Parent ui = loader.load();
         
         final DataCollectorApp controller = loader.getController();
         
-        controller.set(dataCollector, deviceListModel);
+        controller.set(dataCollector, deviceListModel, timeSeriesStore);
 
         return new IceApplicationProvider.IceApp() {
 
@@ -0,0 +1,502 @@
+package org.mdpnp.apps.testapp.export;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.mdpnp.rtiapi.data.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes rows of VITAL_VALUES from a background thread. Callers enqueue into a
+ * bounded ring of preallocated columns; the writer drains it in JDBC batches
+ * and commits once {@link #getCommitSize()} rows are outstanding or
+ * {@link #getCommitIntervalMilliseconds()} has elapsed, whichever is first.
+ * When the ring is full rows are either dropped (and counted) or the caller
+ * is blocked, according to the {@link OverflowPolicy}. The tryOffer methods
+ * never block, whatever the policy, and are for callers on the FX thread.
+ */
+public class JdbcBatchWriter implements JdbcBatchWriterMXBean {
+
+    private static final Logger log = LoggerFactory.getLogger(JdbcBatchWriter.class);
+
+    static final String INSERT = "INSERT INTO VITAL_VALUES (DEVICE_ID, METRIC_ID, INSTANCE_ID, TIME_TICK, VITAL_VALUE) VALUES(?,?,?,?,?)";
+
+    public enum OverflowPolicy {
+        /**
+         * Discard the row being offered
+         */
+        Drop,
+        /**
+         * Wait for the writer to make room
+         */
+        Block
+    }
+
+    private final Connection conn;
+    private final OverflowPolicy overflowPolicy;
+
+    // The ring, guarded by lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Condition committed = lock.newCondition();
+    private final String[] deviceIds, metricIds;
+    private final int[] instanceIds;
+    private final long[] times;
+    private final double[] values;
+    private int head, count;
+    private long enqueuedRows, committedRows;
+    private boolean flushRequested, running;
+
+    private volatile int batchSize = 500;
+    private volatile int commitSize = 5000;
+    private volatile long commitIntervalMilliseconds = 1000L;
+
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicLong rowsDropped = new AtomicLong();
+    private final AtomicLong rowsFailed = new AtomicLong();
+    private final LatencyHistogram commitLatency = new LatencyHistogram();
+    // rowsWritten as of the last rate reading; guarded by this
+    private long rateSince = System.nanoTime(), rateRowsSince;
+    private double rowsPerSecond;
+
+    private volatile Thread thread;
+
+    public JdbcBatchWriter(Connection conn, int capacity, OverflowPolicy overflowPolicy) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive " + capacity);
+        }
+        this.conn = conn;
+        this.overflowPolicy = overflowPolicy;
+        deviceIds = new String[capacity];
+        metricIds = new String[capacity];
+        instanceIds = new int[capacity];
+        times = new long[capacity];
+        values = new double[capacity];
+    }
+
+    public void start() throws SQLException {
+        conn.setAutoCommit(false);
+        final PreparedStatement ps = conn.prepareStatement(INSERT);
+        lock.lock();
+        try {
+            running = true;
+        } finally {
+            lock.unlock();
+        }
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    write(ps);
+                } catch (Throwable t) {
+                    log.error("Writer thread failed; rows will no longer be written", t);
+                } finally {
+                    // however the thread ends nobody may be left waiting on it
+                    lock.lock();
+                    try {
+                        running = false;
+                        notFull.signalAll();
+                        notEmpty.signalAll();
+                        committed.signalAll();
+                    } finally {
+                        lock.unlock();
+                    }
+                    try {
+                        ps.close();
+                    } catch (SQLException e) {
+                        log.warn("Unable to close statement", e);
+                    }
+                }
+            }
+        }, "JdbcBatchWriter");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Writes any queued rows, commits and stops the writer thread
+     */
+    public void stop() throws InterruptedException {
+        lock.lock();
+        try {
+            running = false;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (null != thread) {
+            thread.join();
+            thread = null;
+        }
+    }
+
+    /**
+     * @return false if the row was dropped
+     */
+    public boolean offer(String deviceId, String metricId, int instanceId, long time, double value) throws InterruptedException {
+        return offer(deviceId, metricId, instanceId, time, value, OverflowPolicy.Block.equals(overflowPolicy));
+    }
+
+    /**
+     * Queues the row or, when the ring is full, drops and counts it
+     * @return false if the row was dropped
+     */
+    public boolean tryOffer(String deviceId, String metricId, int instanceId, long time, double value) {
+        try {
+            return offer(deviceId, metricId, instanceId, time, value, false);
+        } catch (InterruptedException e) {
+            // not reached since the caller never waits
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private boolean offer(String deviceId, String metricId, int instanceId, long time, double value, boolean block) throws InterruptedException {
+        lock.lock();
+        try {
+            return enqueue(deviceId, metricId, instanceId, time, value, block);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queues every point of the batch under a single acquisition of the lock
+     * @return the number of rows accepted
+     */
+    public int offer(DataSampleBatch batch) throws InterruptedException {
+        return offer(batch, OverflowPolicy.Block.equals(overflowPolicy));
+    }
+
+    /**
+     * As {@link #offer(DataSampleBatch)} but points that do not fit are
+     * dropped and counted
+     * @return the number of rows accepted
+     */
+    public int tryOffer(DataSampleBatch batch) {
+        try {
+            return offer(batch, false);
+        } catch (InterruptedException e) {
+            // not reached since the caller never waits
+            Thread.currentThread().interrupt();
+            return 0;
+        }
+    }
+
+    private int offer(DataSampleBatch batch, boolean block) throws InterruptedException {
+        int accepted = 0;
+        lock.lock();
+        try {
+            for (int i = 0; i < batch.getCount(); i++) {
+                if (enqueue(batch.getUniqueDeviceIdentifier(), batch.getMetricId(), batch.getInstanceId(),
+                            batch.getTime(i), batch.getValue(i), block)) {
+                    accepted++;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return accepted;
+    }
+
+    // caller holds the lock
+    private boolean enqueue(String deviceId, String metricId, int instanceId, long time, double value, boolean block) throws InterruptedException {
+        while (count == deviceIds.length) {
+            if (block && running) {
+                notFull.await();
+            } else {
+                rowsDropped.incrementAndGet();
+                return false;
+            }
+        }
+        int tail = (head + count) % deviceIds.length;
+        deviceIds[tail] = deviceId;
+        metricIds[tail] = metricId;
+        instanceIds[tail] = instanceId;
+        times[tail] = time;
+        values[tail] = value;
+        if (0 == count++) {
+            notEmpty.signal();
+        }
+        enqueuedRows++;
+        return true;
+    }
+
+    public boolean offer(Value value) throws InterruptedException {
+        return offer(value.getUniqueDeviceIdentifier(), value.getMetricId(), value.getInstanceId(), value.getDevTime(), value.getValue());
+    }
+
+    public boolean tryOffer(Value value) {
+        return tryOffer(value.getUniqueDeviceIdentifier(), value.getMetricId(), value.getInstanceId(), value.getDevTime(), value.getValue());
+    }
+
+    /**
+     * Blocks until every row accepted before this call is committed (or has
+     * failed)
+     */
+    public void flush() throws InterruptedException {
+        lock.lock();
+        try {
+            long target = enqueuedRows;
+            flushRequested = true;
+            notEmpty.signal();
+            while (committedRows < target && null != thread && thread.isAlive()) {
+                committed.await(100L, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void write(PreparedStatement ps) {
+        int capacity = deviceIds.length;
+        String[] deviceIds = new String[Math.min(capacity, batchSize)];
+        String[] metricIds = new String[deviceIds.length];
+        int[] instanceIds = new int[deviceIds.length];
+        long[] times = new long[deviceIds.length];
+        double[] values = new double[deviceIds.length];
+        Timestamp timestamp = new Timestamp(0L);
+
+        long lastCommit = System.nanoTime();
+        int uncommitted = 0;
+        boolean stopping = false;
+
+        while (!stopping) {
+            int n;
+            boolean flush;
+            lock.lock();
+            try {
+                long deadline = lastCommit + TimeUnit.MILLISECONDS.toNanos(commitIntervalMilliseconds);
+                while (0 == count && running && !flushRequested && (0 == uncommitted || System.nanoTime() < deadline)) {
+                    if (0 == uncommitted) {
+                        notEmpty.await();
+                    } else {
+                        notEmpty.awaitNanos(deadline - System.nanoTime());
+                    }
+                }
+                int size = Math.min(capacity, batchSize);
+                if (deviceIds.length < size) {
+                    deviceIds = new String[size];
+                    metricIds = new String[size];
+                    instanceIds = new int[size];
+                    times = new long[size];
+                    values = new double[size];
+                }
+                n = Math.min(count, size);
+                for (int i = 0; i < n; i++) {
+                    int idx = (head + i) % capacity;
+                    deviceIds[i] = this.deviceIds[idx];
+                    metricIds[i] = this.metricIds[idx];
+                    instanceIds[i] = this.instanceIds[idx];
+                    times[i] = this.times[idx];
+                    values[i] = this.values[idx];
+                    this.deviceIds[idx] = null;
+                    this.metricIds[idx] = null;
+                }
+                head = (head + n) % capacity;
+                count -= n;
+                if (n > 0) {
+                    notFull.signalAll();
+                }
+                // Only honor the flush once everything queued has been taken
+                flush = flushRequested && 0 == count;
+                if (flush) {
+                    flushRequested = false;
+                }
+                stopping = !running && 0 == count;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            if (n > 0) {
+                try {
+                    for (int i = 0; i < n; i++) {
+                        timestamp.setTime(times[i]);
+                        ps.setString(1, deviceIds[i]);
+                        ps.setString(2, metricIds[i]);
+                        ps.setInt(3, instanceIds[i]);
+                        ps.setTimestamp(4, timestamp);
+                        ps.setDouble(5, values[i]);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                    rowsWritten.addAndGet(n);
+                } catch (SQLException e) {
+                    log.error("Unable to write " + n + " rows", e);
+                    rowsFailed.addAndGet(n);
+                    try {
+                        ps.clearBatch();
+                    } catch (SQLException e1) {
+                        log.warn("Unable to clear batch", e1);
+                    }
+                }
+                uncommitted += n;
+                Arrays.fill(deviceIds, 0, n, null);
+                Arrays.fill(metricIds, 0, n, null);
+            }
+
+            long now = System.nanoTime();
+            if (uncommitted > 0
+                    && (flush || stopping || uncommitted >= commitSize || now - lastCommit >= TimeUnit.MILLISECONDS.toNanos(commitIntervalMilliseconds))) {
+                try {
+                    conn.commit();
+                } catch (SQLException e) {
+                    log.error("Unable to commit " + uncommitted + " rows", e);
+                    rowsFailed.addAndGet(uncommitted);
+                }
+                long committedAt = System.nanoTime();
+                commitLatency.record(committedAt - now);
+                lastCommit = committedAt;
+                lock.lock();
+                try {
+                    committedRows += uncommitted;
+                    committed.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                uncommitted = 0;
+            } else if (flush) {
+                lock.lock();
+                try {
+                    committed.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    @Override
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int getQueueCapacity() {
+        return deviceIds.length;
+    }
+
+    @Override
+    public long getRowsWritten() {
+        return rowsWritten.get();
+    }
+
+    @Override
+    public long getRowsDropped() {
+        return rowsDropped.get();
+    }
+
+    @Override
+    public long getRowsFailed() {
+        return rowsFailed.get();
+    }
+
+    /**
+     * Rows written per second since the previous reading, or the reading
+     * before that if less than a second has passed
+     */
+    @Override
+    public synchronized double getRowsPerSecond() {
+        long now = System.nanoTime(), rows = rowsWritten.get();
+        if (now - rateSince >= 1000000000L) {
+            rowsPerSecond = 1e9 * (rows - rateRowsSince) / (now - rateSince);
+            rateSince = now;
+            rateRowsSince = rows;
+        }
+        return rowsPerSecond;
+    }
+
+    @Override
+    public long getCommits() {
+        return commitLatency.getCount();
+    }
+
+    @Override
+    public long[] getCommitLatencyHistogram() {
+        return commitLatency.getCounts();
+    }
+
+    @Override
+    public long getCommitLatencyMeanNanoseconds() {
+        return commitLatency.getMeanNanoseconds();
+    }
+
+    @Override
+    public long getCommitLatencyMaxNanoseconds() {
+        return commitLatency.getMaxNanoseconds();
+    }
+
+    @Override
+    public long getCommitLatency99thPercentileNanoseconds() {
+        return commitLatency.getPercentileNanoseconds(0.99);
+    }
+
+    @Override
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    @Override
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public int getCommitSize() {
+        return commitSize;
+    }
+
+    @Override
+    public void setCommitSize(int commitSize) {
+        this.commitSize = commitSize;
+    }
+
+    @Override
+    public long getCommitIntervalMilliseconds() {
+        return commitIntervalMilliseconds;
+    }
+
+    @Override
+    public void setCommitIntervalMilliseconds(long commitIntervalMilliseconds) {
+        this.commitIntervalMilliseconds = commitIntervalMilliseconds;
+    }
+
+    @Override
+    public String getOverflowPolicy() {
+        return overflowPolicy.name();
+    }
+
+    @Override
+    public void resetStatistics() {
+        synchronized (this) {
+            rowsWritten.set(0L);
+            rateSince = System.nanoTime();
+            rateRowsSince = 0L;
+            rowsPerSecond = 0.0;
+        }
+        rowsDropped.set(0L);
+        rowsFailed.set(0L);
+        commitLatency.reset();
+    }
+}
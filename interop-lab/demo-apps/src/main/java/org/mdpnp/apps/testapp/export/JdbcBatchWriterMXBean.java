@@ -0,0 +1,46 @@
+package org.mdpnp.apps.testapp.export;
+
+/**
+ * Management view of a {@link JdbcBatchWriter}; commit latencies are reported
+ * as counts per power-of-two microsecond bucket as described by
+ * {@link org.mdpnp.rtiapi.data.LatencyHistogram}.
+ */
+public interface JdbcBatchWriterMXBean {
+    int getQueueDepth();
+
+    int getQueueCapacity();
+
+    long getRowsWritten();
+
+    long getRowsDropped();
+
+    long getRowsFailed();
+
+    double getRowsPerSecond();
+
+    long getCommits();
+
+    long[] getCommitLatencyHistogram();
+
+    long getCommitLatencyMeanNanoseconds();
+
+    long getCommitLatencyMaxNanoseconds();
+
+    long getCommitLatency99thPercentileNanoseconds();
+
+    int getBatchSize();
+
+    void setBatchSize(int batchSize);
+
+    int getCommitSize();
+
+    void setCommitSize(int commitSize);
+
+    long getCommitIntervalMilliseconds();
+
+    void setCommitIntervalMilliseconds(long commitIntervalMilliseconds);
+
+    String getOverflowPolicy();
+
+    void resetStatistics();
+}
@@ -1,41 +1,79 @@
 package org.mdpnp.apps.testapp.export;
 
+import java.lang.management.ManagementFactory;
 import java.sql.Connection;
 import java.sql.DriverManager;
-import java.sql.PreparedStatement;
 import java.sql.SQLException;
 
 import javafx.fxml.FXML;
 import javafx.scene.control.PasswordField;
 import javafx.scene.control.TextField;
 
-public class JdbcPersister extends FileAdapterApplicationFactory.PersisterUIController implements DataCollector.DataSampleEventListener  {
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class JdbcPersister extends FileAdapterApplicationFactory.PersisterUIController implements DataCollector.DataSampleEventListener, DataCollector.DataSampleBatchListener  {
+
+    private static final Logger log = LoggerFactory.getLogger(JdbcPersister.class);
 
     private Connection conn = null;
-    private PreparedStatement ps = null;
+    private JdbcBatchWriter writer = null;
+    private ObjectName objectName = null;
+
+    // Group commit configuration; rows are written in batches of batchSize and
+    // committed every commitSize rows or commitInterval ms, whichever is first
+    private int queueCapacity = Integer.getInteger("mdpnp.jdbc.queueCapacity", 65536);
+    private int batchSize = Integer.getInteger("mdpnp.jdbc.batchSize", 500);
+    private int commitSize = Integer.getInteger("mdpnp.jdbc.commitSize", 5000);
+    private long commitInterval = Long.getLong("mdpnp.jdbc.commitInterval", 1000L);
+    private JdbcBatchWriter.OverflowPolicy overflowPolicy =
+            JdbcBatchWriter.OverflowPolicy.valueOf(System.getProperty("mdpnp.jdbc.overflowPolicy", JdbcBatchWriter.OverflowPolicy.Drop.name()));
 
     @FXML TextField fDriver, fURL, fUser;
     @FXML PasswordField fPassword;
 
+    /**
+     * Queues the value for the background writer; when the queue is full the
+     * value is dropped or the caller blocks according to the overflow policy.
+     * Not for the FX thread, which delivers samples through the handlers below.
+     */
     public void persist(Value value) throws Exception {
 
-        if(ps != null) {
-            ps.setString   (1, value.getUniqueDeviceIdentifier());
-            ps.setString   (2, value.getMetricId());
-            ps.setInt      (3, value.getInstanceId());
-            ps.setTimestamp(4, new java.sql.Timestamp(value.getDevTime()));
-            ps.setDouble   (5, value.getValue());
-
-            ps.execute();
+        JdbcBatchWriter writer = this.writer;
+        if(writer != null) {
+            writer.offer(value);
+        }
+    }
 
-            conn.commit();
+    /**
+     * Blocks until every value persisted so far is committed
+     */
+    public void flush() throws InterruptedException {
+        JdbcBatchWriter writer = this.writer;
+        if(writer != null) {
+            writer.flush();
         }
     }
 
+    // The DataCollector delivers on the FX thread so these never block; what
+    // does not fit is dropped and counted in the writer's rowsDropped
     @Override
     public void handleDataSampleEvent(DataCollector.DataSampleEvent evt) throws Exception {
-        Value vital = (Value)evt.getSource();
-        persist(vital);
+        JdbcBatchWriter writer = this.writer;
+        if(writer != null) {
+            writer.tryOffer((Value)evt.getSource());
+        }
+    }
+
+    @Override
+    public void handleDataSampleBatch(DataSampleBatch batch) throws Exception {
+        JdbcBatchWriter writer = this.writer;
+        if(writer != null) {
+            writer.tryOffer(batch);
+        }
     }
 
     static void createSchema(Connection conn) throws SQLException {
@@ -55,19 +93,77 @@ public class JdbcPersister extends FileAdapterApplicationFactory.PersisterUICont
     @Override
     public boolean start() throws Exception {
         conn = createConnection();
-        if(conn != null)
-            ps = conn.prepareStatement("INSERT INTO VITAL_VALUES (DEVICE_ID, METRIC_ID, INSTANCE_ID, TIME_TICK, VITAL_VALUE) VALUES(?,?,?,?,?)");
+        if(conn != null) {
+            JdbcBatchWriter w = new JdbcBatchWriter(conn, queueCapacity, overflowPolicy);
+            w.setBatchSize(batchSize);
+            w.setCommitSize(commitSize);
+            w.setCommitIntervalMilliseconds(commitInterval);
+            w.start();
+            writer = w;
+            registerMBean(w);
+        }
         return conn != null;
     }
 
     @Override
     public void stop() throws Exception {
-        if(ps != null) ps.close();
+        JdbcBatchWriter w = writer;
+        writer = null;
+        if(w != null) {
+            unregisterMBean();
+            w.stop();
+        }
         if(conn != null) conn.close();
-        ps = null;
         conn = null;
     }
 
+    private void registerMBean(JdbcBatchWriter w) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            // named like the EventLoop exported from RtConfig.xml so both are found together
+            ObjectName on = new ObjectName("mdpnp.export:type=JdbcBatchWriter,name=" + getName());
+            server.registerMBean(w, on);
+            objectName = on;
+        } catch (Exception e) {
+            log.warn("Unable to register JdbcBatchWriter statistics", e);
+        }
+    }
+
+    private void unregisterMBean() {
+        if(objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (Exception e) {
+                log.warn("Unable to unregister JdbcBatchWriter statistics", e);
+            }
+            objectName = null;
+        }
+    }
+
+    JdbcBatchWriter getWriter() {
+        return writer;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public void setCommitSize(int commitSize) {
+        this.commitSize = commitSize;
+    }
+
+    public void setCommitInterval(long commitInterval) {
+        this.commitInterval = commitInterval;
+    }
+
+    public void setOverflowPolicy(JdbcBatchWriter.OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
     Connection createConnection() throws Exception {
 
         String driver = fDriver.getText();
@@ -0,0 +1,322 @@
+package org.mdpnp.apps.testapp.export;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Appends CSV rows to a file through a FileChannel. Rows are formatted into a
+ * direct buffer by a {@link CsvRowFormat} and the buffer is written out when it
+ * fills, on {@link #flush()} or once a row has been buffered for flushInterval
+ * ms, by a background thread if no further row comes to do it.
+ *
+ * Once the file reaches maxFileSize bytes or has been open for maxFileAge ms
+ * it is rolled over in the manner of log4j's RollingFileAppender: file.1
+ * becomes file.2 and so on up to maxBackupIndex, and the file becomes file.1
+ * (optionally gzipped to file.1.gz). Renaming and compressing happen on the
+ * background thread so that the writer never waits on them.
+ */
+public class RollingCsvWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(RollingCsvWriter.class);
+
+    public enum SyncPolicy {
+        /**
+         * Leave it to the operating system
+         */
+        None,
+        /**
+         * fsync before a file is rolled over or closed
+         */
+        Rotate,
+        /**
+         * fsync every time the buffer is written out
+         */
+        Flush
+    }
+
+    private final File file;
+    private final ByteBuffer buffer;
+    private final CsvRowFormat format = new CsvRowFormat();
+
+    private FileChannel channel;
+    private long fileSize;
+    private long openedAt;
+    private long lastFlush = System.currentTimeMillis();
+    private int rolled;
+
+    private long maxFileSize = 10L * 1024L * 1024L;
+    private int maxBackupIndex = 1;
+    private long maxFileAge = 0L;
+    private long flushInterval = 1000L;
+    private boolean gzip = false;
+    private SyncPolicy syncPolicy = SyncPolicy.None;
+
+    // rolls files over and writes out rows left in the buffer
+    private ScheduledExecutorService background;
+    private ScheduledFuture<?> flushTask;
+
+    public RollingCsvWriter(File file, int bufferSize) {
+        this.file = file;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @param maxFileSize bytes after which the file is rolled over; 0 for no limit
+     */
+    public synchronized void setMaxFileSize(long maxFileSize) {
+        this.maxFileSize = maxFileSize;
+    }
+
+    public synchronized void setMaxBackupIndex(int maxBackupIndex) {
+        this.maxBackupIndex = maxBackupIndex;
+    }
+
+    /**
+     * @param maxFileAge ms after which the file is rolled over; 0 for no limit
+     */
+    public synchronized void setMaxFileAge(long maxFileAge) {
+        this.maxFileAge = maxFileAge;
+    }
+
+    /**
+     * @param flushInterval most ms a row may sit in the buffer
+     */
+    public synchronized void setFlushInterval(long flushInterval) {
+        this.flushInterval = flushInterval;
+        // rescheduled with the new interval by the next row
+        if (null != flushTask) {
+            flushTask.cancel(false);
+            flushTask = null;
+        }
+    }
+
+    public synchronized void setGzip(boolean gzip) {
+        this.gzip = gzip;
+    }
+
+    public synchronized void setSyncPolicy(SyncPolicy syncPolicy) {
+        this.syncPolicy = syncPolicy;
+    }
+
+    public synchronized void write(String uniqueDeviceIdentifier, String metricId, int instanceId, long time, double value) throws IOException {
+        append(uniqueDeviceIdentifier, metricId, instanceId, time, value);
+        afterAppend(System.currentTimeMillis());
+    }
+
+    public synchronized void write(DataSampleBatch batch) throws IOException {
+        for (int i = 0; i < batch.getCount(); i++) {
+            append(batch.getUniqueDeviceIdentifier(), batch.getMetricId(), batch.getInstanceId(), batch.getTime(i), batch.getValue(i));
+            if (maxFileSize > 0 && fileSize >= maxFileSize) {
+                rollOver();
+            }
+        }
+        afterAppend(System.currentTimeMillis());
+    }
+
+    private void append(String uniqueDeviceIdentifier, String metricId, int instanceId, long time, double value) throws IOException {
+        if (buffer.remaining() < format.maxRowSize(uniqueDeviceIdentifier, metricId)) {
+            drain();
+        }
+        fileSize += format.format(buffer, uniqueDeviceIdentifier, metricId, instanceId, time, value);
+        if (null == flushTask && flushInterval > 0) {
+            flushTask = background().scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        flushIfDue();
+                    } catch (IOException e) {
+                        log.error("flushing " + file.getAbsolutePath(), e);
+                    }
+                }
+            }, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void flushIfDue() throws IOException {
+        if (buffer.position() > 0 && System.currentTimeMillis() - lastFlush >= flushInterval) {
+            drain();
+        }
+    }
+
+    private ScheduledExecutorService background() {
+        if (null == background) {
+            background = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "CSV Writer " + file.getName());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return background;
+    }
+
+    private void afterAppend(long now) throws IOException {
+        if ((maxFileSize > 0 && fileSize >= maxFileSize) || (maxFileAge > 0 && null != channel && now - openedAt >= maxFileAge)) {
+            rollOver();
+        } else if (now - lastFlush >= flushInterval) {
+            drain();
+        }
+    }
+
+    /**
+     * Writes out whatever is buffered
+     */
+    public synchronized void flush() throws IOException {
+        drain();
+    }
+
+    private void drain() throws IOException {
+        lastFlush = System.currentTimeMillis();
+        if (0 == buffer.position()) {
+            return;
+        }
+        if (null == channel) {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            openedAt = lastFlush;
+            fileSize = channel.size() + buffer.position();
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        if (SyncPolicy.Flush.equals(syncPolicy)) {
+            channel.force(false);
+        }
+    }
+
+    private void closeChannel() throws IOException {
+        drain();
+        if (null != channel) {
+            if (SyncPolicy.Rotate.equals(syncPolicy)) {
+                channel.force(false);
+            }
+            channel.close();
+            channel = null;
+        }
+        fileSize = 0L;
+    }
+
+    /**
+     * Closes the current file and hands it to the background thread to be
+     * shifted into the backups; the next row starts a new file.
+     */
+    public synchronized void rollOver() throws IOException {
+        closeChannel();
+        if (!file.exists()) {
+            return;
+        }
+        final File rolledFile = new File(file.getPath() + "." + (++rolled) + ".roll");
+        if (!file.renameTo(rolledFile)) {
+            log.warn("Unable to roll over " + file.getAbsolutePath());
+            return;
+        }
+        final int maxBackupIndex = this.maxBackupIndex;
+        final boolean gzip = this.gzip;
+        background().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    shiftBackups(file, rolledFile, maxBackupIndex, gzip);
+                } catch (IOException e) {
+                    log.error("rolling over " + rolledFile.getAbsolutePath(), e);
+                }
+            }
+        });
+    }
+
+    static File backup(File file, int index, boolean gzip) {
+        return new File(file.getPath() + "." + index + (gzip ? ".gz" : ""));
+    }
+
+    static void shiftBackups(File file, File rolledFile, int maxBackupIndex, boolean gzip) throws IOException {
+        if (maxBackupIndex <= 0) {
+            Files.deleteIfExists(rolledFile.toPath());
+            return;
+        }
+        Files.deleteIfExists(backup(file, maxBackupIndex, gzip).toPath());
+        for (int i = maxBackupIndex - 1; i >= 1; i--) {
+            File from = backup(file, i, gzip);
+            if (from.exists()) {
+                from.renameTo(backup(file, i + 1, gzip));
+            }
+        }
+        File target = backup(file, 1, gzip);
+        if (gzip) {
+            try (OutputStream os = new GZIPOutputStream(new FileOutputStream(target), 65536)) {
+                Files.copy(rolledFile.toPath(), os);
+            }
+            Files.delete(rolledFile.toPath());
+        } else {
+            rolledFile.renameTo(target);
+        }
+    }
+
+    /**
+     * Writes out what is buffered and closes the file, waiting for any
+     * roll over still in progress
+     */
+    public void close() throws IOException {
+        final ScheduledExecutorService background;
+        synchronized (this) {
+            closeChannel();
+            if (null != flushTask) {
+                flushTask.cancel(false);
+                flushTask = null;
+            }
+            background = this.background;
+            this.background = null;
+        }
+        // waited for without the lock, which a flush in progress may need
+        if (null != background) {
+            background.shutdown();
+            try {
+                if (!background.awaitTermination(1, TimeUnit.MINUTES)) {
+                    log.warn("Timed out waiting for roll over of " + file.getAbsolutePath());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @param size as in log4j; a number optionally followed by KB, MB or GB
+     */
+    public static long parseFileSize(String size) {
+        String s = size.trim().toUpperCase();
+        long multiplier = 1L;
+        if (s.endsWith("KB")) {
+            multiplier = 1024L;
+        } else if (s.endsWith("MB")) {
+            multiplier = 1024L * 1024L;
+        } else if (s.endsWith("GB")) {
+            multiplier = 1024L * 1024L * 1024L;
+        }
+        if (multiplier > 1L) {
+            s = s.substring(0, s.length() - 2).trim();
+        }
+        return Long.parseLong(s) * multiplier;
+    }
+}
@@ -0,0 +1,159 @@
+package org.mdpnp.apps.testapp.export;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javafx.event.ActionEvent;
+import javafx.fxml.FXML;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.Label;
+
+import org.mdpnp.timeseries.TimeSeriesStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records numerics and waveforms into the shared {@link TimeSeriesStore} so
+ * that charts and waveform panels can look back over them.
+ */
+public class TimeSeriesPersister extends FileAdapterApplicationFactory.PersisterUIController implements DataCollector.DataSampleEventListener, DataCollector.DataSampleBatchListener  {
+
+    private static final Logger log = LoggerFactory.getLogger(TimeSeriesPersister.class);
+
+    // How often filling blocks are written out and old segments dropped
+    private long flushInterval = Long.getLong("mdpnp.timeseries.flushInterval", 1000L);
+    private long expireInterval = Long.getLong("mdpnp.timeseries.expireInterval", 60000L);
+
+    private TimeSeriesStore store;
+    private volatile boolean running;
+    // flushing forces the mapped segments to disk and expiring deletes files so neither runs on the caller's thread
+    private ScheduledExecutorService housekeeping;
+
+    @FXML Label rootLabel;
+    @FXML ComboBox<String> fRetention;
+
+    public void setStore(TimeSeriesStore store) {
+        this.store = store;
+        if(null != rootLabel && null != store) {
+            rootLabel.setText(store.getRoot().getAbsolutePath());
+        }
+    }
+
+    public TimeSeriesStore getStore() {
+        return store;
+    }
+
+    @Override
+    public String getName() {
+        return "history";
+    }
+
+    @Override
+    public synchronized boolean start() throws Exception {
+        if(null == store) {
+            throw new IllegalStateException("No time series store is configured");
+        }
+        final TimeSeriesStore store = this.store;
+        housekeeping = Executors.newSingleThreadScheduledExecutor((r) -> {
+            Thread t = new Thread(r, "TimeSeries Housekeeping");
+            t.setDaemon(true);
+            return t;
+        });
+        housekeeping.scheduleWithFixedDelay(() -> {
+            try {
+                store.flush();
+            } catch (Throwable t) {
+                log.error("Unable to flush " + store.getRoot().getAbsolutePath(), t);
+            }
+        }, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        housekeeping.scheduleWithFixedDelay(() -> {
+            try {
+                store.expire();
+            } catch (Throwable t) {
+                log.error("Unable to expire " + store.getRoot().getAbsolutePath(), t);
+            }
+        }, expireInterval, expireInterval, TimeUnit.MILLISECONDS);
+        running = true;
+        return true;
+    }
+
+    @Override
+    public synchronized void stop() throws Exception {
+        running = false;
+        if(null != housekeeping) {
+            housekeeping.shutdown();
+            housekeeping.awaitTermination(5000L, TimeUnit.MILLISECONDS);
+            housekeeping = null;
+        }
+        if(null != store) {
+            store.flush();
+        }
+    }
+
+    @Override
+    public void handleDataSampleEvent(DataCollector.DataSampleEvent evt) throws Exception {
+        if(running) {
+            Value vital = (Value)evt.getSource();
+            store.append(vital.getUniqueDeviceIdentifier(), vital.getMetricId(), vital.getInstanceId(),
+                         vital.getDevTime(), (float) vital.getValue());
+        }
+    }
+
+    @Override
+    public void handleDataSampleBatch(DataSampleBatch batch) throws Exception {
+        if(running) {
+            store.append(batch.getUniqueDeviceIdentifier(), batch.getMetricId(), batch.getInstanceId(),
+                         batch.getBaseTime(), batch.getSamplePeriod(), batch.getValues(), 0, batch.getCount());
+        }
+    }
+
+    @FXML public void clickRetention(ActionEvent evt) {
+        String s = fRetention.getSelectionModel().getSelectedItem();
+        if(null != store && null != s) {
+            store.setRetention(parseRetention(s));
+        }
+    }
+
+    /**
+     * @param retention a number of hours or days such as "24 hours" or "7 days"; "forever" to keep everything
+     * @return ms
+     */
+    static long parseRetention(String retention) {
+        String s = retention.trim().toLowerCase();
+        if("forever".equals(s)) {
+            return 0L;
+        }
+        String[] parts = s.split("\\s+");
+        long n = Long.parseLong(parts[0]);
+        if(parts.length > 1 && parts[1].startsWith("day")) {
+            return n * 24L * 60L * 60L * 1000L;
+        }
+        return n * 60L * 60L * 1000L;
+    }
+
+    public void setFlushInterval(long flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    public void setExpireInterval(long expireInterval) {
+        this.expireInterval = expireInterval;
+    }
+
+    @Override
+    public void setup() {
+        rootLabel.setText(null == store ? "" : store.getRoot().getAbsolutePath());
+        // show whatever the store was configured with rather than imposing a choice on it
+        if(null != store) {
+            for(String s : fRetention.getItems()) {
+                if(parseRetention(s) == store.getRetention()) {
+                    fRetention.getSelectionModel().select(s);
+                }
+            }
+        }
+    }
+
+    public TimeSeriesPersister() {
+        super();
+    }
+}
@@ -5,11 +5,14 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import javafx.fxml.FXML;
@@ -28,7 +31,7 @@ import org.slf4j.LoggerFactory;
  * is included with the source of the project.
  *
  **/
-public class VerilogVCDPersister extends FileAdapterApplicationFactory.PersisterUIController implements DataCollector.DataSampleEventListener {
+public class VerilogVCDPersister extends FileAdapterApplicationFactory.PersisterUIController implements DataCollector.DataSampleEventListener, DataCollector.DataSampleBatchListener {
 
     private static final Logger log = LoggerFactory.getLogger(VerilogVCDPersister.class);
 
@@ -49,7 +52,7 @@ public class VerilogVCDPersister extends FileAdapterApplicationFactory.Persister
     public static final long FZ_1MB =1000000L;
     public static final long FZ_10MB=10000000L;
 
-    OneWavePerVCD controller = null;
+    volatile OneWavePerVCD controller = null;
     @FXML TextField filePathLabel, maxSizeLabel;
 
     public VerilogVCDPersister() {
@@ -65,7 +68,16 @@ public class VerilogVCDPersister extends FileAdapterApplicationFactory.Persister
     @Override
     public void handleDataSampleEvent(DataCollector.DataSampleEvent evt) throws Exception {
         Value vital = (Value)evt.getSource();
-        controller.persist(vital);
+        OneWavePerVCD controller = this.controller;
+        if(controller != null)
+            controller.persist(vital);
+    }
+
+    @Override
+    public void handleDataSampleBatch(DataSampleBatch batch) throws Exception {
+        OneWavePerVCD controller = this.controller;
+        if(controller != null)
+            controller.persist(batch);
     }
 
     @Override
@@ -92,116 +104,349 @@ public class VerilogVCDPersister extends FileAdapterApplicationFactory.Persister
         return true;
     }
 
+    /**
+     * One file per device/metric/instance. Each file is written through its own
+     * buffer; at most maxOpenFiles are held open at once and the least recently
+     * used is closed to make room, to be reopened for append when its wave
+     * next has data. The handlers of at most maxClosedFiles closed files are
+     * remembered; a wave whose handler has been forgotten starts a new file
+     * (key.1.vcd, key.2.vcd, ...) should it have data again.
+     */
     static class OneWavePerVCD {
 
         final File baseDir;
         final long maxFileSize;
 
-        Map<String, VCDFileHandler> cache = new HashMap<>();
+        private int maxOpenFiles = atLeast("mdpnp.vcd.maxOpenFiles", Integer.getInteger("mdpnp.vcd.maxOpenFiles", 64), 1);
+        private int maxClosedFiles = atLeast("mdpnp.vcd.maxClosedFiles", Integer.getInteger("mdpnp.vcd.maxClosedFiles", 1024), 0);
+        private int bufferSize = Integer.getInteger("mdpnp.vcd.bufferSize", 16 * 1024);
+        private long flushInterval = Long.getLong("mdpnp.vcd.flushInterval", 1000L);
+
+        // least recently closed first
+        private final LinkedHashMap<String, VCDFileHandler> closed = new LinkedHashMap<String, VCDFileHandler>() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, VCDFileHandler> eldest) {
+                if (size() > maxClosedFiles) {
+                    log.debug("Forgetting " + eldest.getKey());
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        // access ordered so that the eldest entry is the least recently written
+        private final LinkedHashMap<String, VCDFileHandler> open = new LinkedHashMap<String, VCDFileHandler>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, VCDFileHandler> eldest) {
+                if (size() > maxOpenFiles) {
+                    try {
+                        eldest.getValue().close();
+                    } catch (IOException e) {
+                        log.error("closing " + eldest.getKey(), e);
+                    }
+                    closed.put(eldest.getKey(), eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
 
         public OneWavePerVCD(File f, long sz) {
             baseDir = f;
             maxFileSize = sz;
         }
 
+        private static int atLeast(String name, int value, int min) {
+            if (value < min) {
+                throw new IllegalArgumentException(name + " must be at least " + min + " but is " + value);
+            }
+            return value;
+        }
+
+        /**
+         * @param maxOpenFiles at least 1, the file being written to
+         */
+        public void setMaxOpenFiles(int maxOpenFiles) {
+            this.maxOpenFiles = atLeast("maxOpenFiles", maxOpenFiles, 1);
+        }
+
+        /**
+         * @param maxClosedFiles 0 to start a new file whenever a wave's file has been closed
+         */
+        public void setMaxClosedFiles(int maxClosedFiles) {
+            this.maxClosedFiles = atLeast("maxClosedFiles", maxClosedFiles, 0);
+        }
+
+        public void setBufferSize(int bufferSize) {
+            this.bufferSize = bufferSize;
+        }
+
+        public void setFlushInterval(long flushInterval) {
+            this.flushInterval = flushInterval;
+        }
+
         public boolean start() throws Exception {
             return true;
         }
 
-        public void stop() throws Exception {
-            for(VCDFileHandler swh : cache.values()) {
-                swh.stop();
+        public synchronized void stop() throws Exception {
+            for(VCDFileHandler swh : open.values()) {
+                swh.close();
             }
+            open.clear();
+            closed.clear();
         }
 
-        public void persist(Value vital) throws Exception {
+        public synchronized void persist(Value vital) throws Exception {
 
-            String key = vital.getUniqueDeviceIdentifier() + "-" + vital.getMetricId() + "-" + vital.getInstanceId();
+            VCDFileHandler fileHandler = ensureHandler(vital.getUniqueDeviceIdentifier(), vital.getMetricId(), vital.getInstanceId(), vital.getDevTime());
 
-            VCDFileHandler fileHandler = cache.get(key);
-            if (fileHandler == null) {
+            if(fileHandler.getSize()<maxFileSize) {
+                fileHandler.persist(vital.getDevTime(), (float) vital.getValue());
+                fileHandler.flushIfStale();
+            }
+        }
+
+        public synchronized void persist(DataSampleBatch batch) throws Exception {
+
+            if(batch.getCount() == 0)
+                return;
 
-                OutputStream os = makeStream(key);
+            VCDFileHandler fileHandler = ensureHandler(batch.getUniqueDeviceIdentifier(), batch.getMetricId(), batch.getInstanceId(), batch.getBaseTime());
 
-                fileHandler = new VCDFileHandler(os, key, vital.getDevTime());
-                cache.put(key, fileHandler);
+            for(int i = 0; i < batch.getCount() && fileHandler.getSize()<maxFileSize; i++) {
+                fileHandler.persist(batch.getTime(i), batch.getValue(i));
             }
+            fileHandler.flushIfStale();
+        }
+
+        VCDFileHandler ensureHandler(String udi, String metricId, int instanceId, long t) throws IOException {
+
+            String key = udi + "-" + metricId + "-" + instanceId;
 
-            if(fileHandler.getSize()<maxFileSize)
-                fileHandler.persist(vital);
+            VCDFileHandler fileHandler = open.get(key);
+            if (fileHandler == null) {
+                fileHandler = closed.remove(key);
+                if (fileHandler == null) {
+                    // a file left by a forgotten handler is not added to since
+                    // what times and values it holds are no longer known
+                    String name = nameFor(key);
+                    fileHandler = new VCDFileHandler(key, name, t, bufferSize, flushInterval);
+                    fileHandler.open(makeStream(name));
+                } else {
+                    fileHandler.open(reopenStream(fileHandler.name));
+                }
+                open.put(key, fileHandler);
+            }
+            return fileHandler;
+        }
+
+        /**
+         * @return the key, suffixed if the file it names already exists
+         */
+        String nameFor(String key) {
+            if (null == baseDir) {
+                return key;
+            }
+            String name = key;
+            for (int n = 1; new File(baseDir, name + ".vcd").exists(); n++) {
+                name = key + "." + n;
+            }
+            return name;
         }
 
-        protected OutputStream makeStream(String key) throws IOException {
-            File f = new File(baseDir, key + ".vcd");
+        protected OutputStream makeStream(String name) throws IOException {
+            File f = new File(baseDir, name + ".vcd");
             log.info("Opening File " + f.getAbsolutePath());
             FileOutputStream fos = new FileOutputStream(f);
             return fos;
         }
 
+        /**
+         * @return a stream that appends to the file previously returned by {@link #makeStream(String)}
+         */
+        protected OutputStream reopenStream(String name) throws IOException {
+            File f = new File(baseDir, name + ".vcd");
+            log.debug("Reopening File " + f.getAbsolutePath());
+            return new FileOutputStream(f, true);
+        }
+
         static class VCDFileHandler {
 
-            final OutputStream os;
-            final PrintStream  ps;
+            final String key;
+            // of the file, which is the key unless an earlier file has it
+            final String name;
             final long firstTimeTic;
+            final int bufferSize;
+            final long flushInterval;
+
+            private OutputStream os;
+            private WritableByteChannel channel;
+            private ByteBuffer buffer;
+            private long size;
+            private long lastFlush;
+
+            // the last value change written, so that repeats are skipped
+            private long lastTime = Long.MIN_VALUE;
+            private int lastValueBits;
+            private boolean anyValue;
+            private boolean headerWritten;
+
+            private final byte[] digits = new byte[20];
+
+            VCDFileHandler(String key, String name, long t, int bufferSize, long flushInterval) {
+                this.key = key;
+                this.name = name;
+                this.firstTimeTic = t;
+                this.bufferSize = bufferSize;
+                this.flushInterval = flushInterval;
+            }
 
-            VCDFileHandler(OutputStream out, String key, long t) {
-
+            void open(OutputStream out) throws IOException {
                 os = out;
-                ps = new PrintStream(out);
-
-                firstTimeTic = t;
-
-                ps.println("$date");
-                ps.println("\t\t" + dateFormats.get().format(new Date(firstTimeTic)));
-                ps.println("$end");
-
-                ps.println("$version");
-                ps.println("\t\t" + "MDPNP V0.1 2015");
-                ps.println("$end");
+                channel = out instanceof FileOutputStream ? ((FileOutputStream)out).getChannel() : Channels.newChannel(out);
+                buffer = ByteBuffer.allocate(bufferSize);
+                lastFlush = System.currentTimeMillis();
+                if(!headerWritten) {
+                    writeHeader();
+                    headerWritten = true;
+                }
+            }
 
-                ps.println("$timescale");
-                ps.println("\t\t" + "1ms");
-                ps.println("$end");
+            private void writeHeader() throws IOException {
+                StringBuilder sb = new StringBuilder();
+                sb.append("$date\n");
+                sb.append("\t\t").append(dateFormats.get().format(new Date(firstTimeTic))).append("\n");
+                sb.append("$end\n");
+
+                sb.append("$version\n");
+                sb.append("\t\t").append("MDPNP V0.1 2015").append("\n");
+                sb.append("$end\n");
+
+                sb.append("$timescale\n");
+                sb.append("\t\t").append("1ms").append("\n");
+                sb.append("$end\n");
+
+                sb.append("$scope module top $end\n");
+
+                sb.append("$var real 32 ");
+                sb.append(" *");
+                sb.append(" ");
+                sb.append(key);
+                sb.append(" $end\n");
+
+                byte[] header = sb.toString().getBytes(StandardCharsets.US_ASCII);
+                ensureRoom(header.length);
+                buffer.put(header);
+                size += header.length;
+            }
 
-                ps.println("$scope module top $end");
+            void close() throws IOException {
+                if(null != channel) {
+                    flush();
+                    channel.close();
+                    os.close();
+                    channel = null;
+                    os = null;
+                    buffer = null;
+                }
+            }
 
-                ps.print("$var real 32 ");
-                ps.print(" *");
-                ps.print(" ");
-                ps.print(key);
-                ps.println(" $end");
+            /**
+             * @return bytes written to the file so far, including those still buffered
+             */
+            long getSize() {
+                return size;
             }
 
-            synchronized public void stop() throws Exception {
-                ps.flush();
-                os.flush();
-                ps.close();
-                os.close();
+            void flush() throws IOException {
+                buffer.flip();
+                while(buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                buffer.clear();
+                lastFlush = System.currentTimeMillis();
             }
 
-            synchronized long getSize() throws Exception {
-                if(os instanceof FileOutputStream) {
-                    long l = ((FileOutputStream)os).getChannel().size();
-                    return l;
+            void flushIfStale() throws IOException {
+                if(System.currentTimeMillis() - lastFlush >= flushInterval) {
+                    flush();
                 }
-                else {
-                    return 0;
+            }
+
+            private void ensureRoom(int n) throws IOException {
+                if(buffer.remaining() < n) {
+                    flush();
+                    if(buffer.capacity() < n) {
+                        buffer = ByteBuffer.allocate(n);
+                    }
                 }
             }
 
             public void persist(Value value) throws Exception {
+                persist(value.getDevTime(), (float) value.getValue());
+            }
 
-//                Time_t t = value.getNumeric().device_time;
-                long baseTime = value.getDevTime();
+            /**
+             * Only changes are recorded; a value equal to the last one written
+             * is skipped and a time is written once no matter how many changes
+             * share it.
+             */
+            void persist(long time, float value) throws IOException {
+                int bits = Float.floatToRawIntBits(value);
+                if(anyValue && bits == lastValueBits) {
+                    return;
+                }
+                ensureRoom(64);
+                int start = buffer.position();
+                if(time != lastTime) {
+                    buffer.put((byte)'#');
+                    putLong(time - firstTimeTic);
+                    buffer.put((byte)'\n');
+                    lastTime = time;
+                }
+                buffer.put((byte)'r');
+                putValue(value);
+                buffer.put((byte)' ').put((byte)'*').put((byte)'\n');
+                lastValueBits = bits;
+                anyValue = true;
+                size += buffer.position() - start;
+            }
 
-                StringBuilder sb = new StringBuilder();
-                sb.append("#").append(baseTime - firstTimeTic).append("\n");
-                float f = (float) value.getValue();
-                String s = floatFormats.get().format(f);
-                sb.append("r").append(s).append(" *").append("\n");
+            // Equivalent to floatFormats (#0.0000000) for the range a long holds
+            private void putValue(float value) {
+                double d = value;
+                if(Double.isNaN(d) || Double.isInfinite(d) || Math.abs(d) >= 1e11) {
+                    buffer.put(floatFormats.get().format(d).getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+                if(Double.doubleToRawLongBits(d) < 0) {
+                    buffer.put((byte)'-');
+                }
+                long scaled = (long) Math.rint(Math.abs(d) * 1e7);
+                putLong(scaled / 10000000L);
+                buffer.put((byte)'.');
+                long fraction = scaled % 10000000L;
+                for(long div = 1000000L; div > 0; div /= 10) {
+                    buffer.put((byte)('0' + fraction / div % 10));
+                }
+            }
 
-                ps.print(sb.toString());
-                ps.flush();
+            private void putLong(long l) {
+                if(l < 0) {
+                    buffer.put((byte)'-');
+                    l = -l;
+                }
+                int i = digits.length;
+                do {
+                    digits[--i] = (byte) ('0' + l % 10);
+                    l /= 10;
+                } while(l != 0);
+                buffer.put(digits, i, digits.length - i);
             }
         }
     }
@@ -48,6 +48,8 @@ import org.mdpnp.apps.fxbeans.InfusionStatusFx;
 import org.mdpnp.apps.fxbeans.InfusionStatusFxList;
 import org.mdpnp.apps.testapp.DeviceListModel;
 import org.mdpnp.apps.testapp.InfusionStatusFxListCell;
+import org.mdpnp.apps.testapp.vital.InterlockEngine;
+import org.mdpnp.apps.testapp.vital.InterlockEngine.Status;
 import org.mdpnp.apps.testapp.vital.Vital;
 import org.mdpnp.apps.testapp.vital.VitalModel;
 import org.mdpnp.apps.testapp.vital.VitalModel.State;
@@ -72,6 +74,20 @@ public class PCAConfig implements ListChangeListener<Vital> {
     
     private ice.InfusionObjectiveDataWriter objectiveWriter;
 
+    // the pump stopped by the interlock, mirrored from the selection for the engine's thread
+    private volatile String selectedPump;
+
+    private final InterlockEngine.Listener stopListener = new InterlockEngine.Listener() {
+
+        @Override
+        public void statusChanged(Status previous, Status status) {
+            String udi = selectedPump;
+            if (null != udi && status.isInfusionStopped() && !previous.isInfusionStopped()) {
+                setStop(udi, true);
+            }
+        }
+
+    };
     
     
     public PCAConfig set(final ScheduledExecutorService executor, final ice.InfusionObjectiveDataWriter objectiveWriter, 
@@ -98,6 +114,7 @@ public class PCAConfig implements ListChangeListener<Vital> {
 
             @Override
             public void changed(ObservableValue<? extends InfusionStatusFx> observable, InfusionStatusFx oldValue, InfusionStatusFx newValue) {
+                selectedPump = null == newValue ? null : newValue.getUnique_device_identifier();
                 infusionStatus.textProperty().unbind();
                 if(null != newValue) {
                     infusionStatus.textProperty().bind(Bindings.when(newValue.infusionActiveProperty()).then("ACTIVE").otherwise("INACTIVE"));
@@ -182,11 +199,14 @@ public class PCAConfig implements ListChangeListener<Vital> {
     public void setModel(VitalModel model) {
         if (this.model != null) {
             this.model.removeListener(this);
+            this.model.getInterlockEngine().removeListener(stopListener);
         }
         this.model = model;
         
         if (this.model != null) {
             this.model.addListener(this);
+            // the stop is sent as soon as it is decided; only the reset waits on the FX thread
+            this.model.getInterlockEngine().addListener(stopListener);
         }
         updateVitals();
         if(model != null) {
@@ -199,7 +219,7 @@ public class PCAConfig implements ListChangeListener<Vital> {
                 @Override
                 public void changed(ObservableValue<? extends Boolean> observable, Boolean oldValue, Boolean newValue) {
                     InfusionStatusFx p = pumpList.getSelectionModel().getSelectedItem();
-                    if(null != p) {
+                    if(null != p && !newValue) {
                         setStop(p, newValue);
                     }
                 }
@@ -236,9 +256,13 @@ public class PCAConfig implements ListChangeListener<Vital> {
     }
 
     public void setStop(InfusionStatusFx status, boolean stop) {
+        setStop(status.getUnique_device_identifier(), stop);
+    }
+
+    private void setStop(String unique_device_identifier, boolean stop) {
         ice.InfusionObjective obj = new ice.InfusionObjective();
         obj.requestor = "ME";
-        obj.unique_device_identifier = status.getUnique_device_identifier();
+        obj.unique_device_identifier = unique_device_identifier;
         obj.stopInfusion = stop;
         objectiveWriter.write(obj, InstanceHandle_t.HANDLE_NIL);
     }
@@ -44,9 +44,9 @@ import org.mdpnp.devices.AbstractDevice;
 import org.mdpnp.devices.DeviceClock;
 import org.mdpnp.devices.DeviceDriverProvider;
 import org.mdpnp.devices.simulation.AbstractSimulatedDevice;
-import org.mdpnp.guis.waveform.SampleArrayWaveformSource;
 import org.mdpnp.guis.waveform.WaveformCanvas;
 import org.mdpnp.guis.waveform.WaveformRenderer;
+import org.mdpnp.guis.waveform.WaveformSource;
 import org.mdpnp.guis.waveform.WaveformSource.WaveformIterator;
 import org.mdpnp.guis.waveform.javafx.JavaFXWaveformCanvas;
 import org.mdpnp.guis.waveform.javafx.JavaFXWaveformPane;
@@ -192,9 +192,7 @@ public class RapidRespiratoryRate implements Runnable {
 
                 SampleArrayFxList model = RapidRespiratoryRate.this.model;
                 if (model != null && newValue != null) {
-                    ice.SampleArray keyHolder = new ice.SampleArray();
-                    model.getReader().get_key_value(keyHolder, newValue.getHandle());
-                    source = new SampleArrayWaveformSource(model.getReader(), keyHolder);
+                    source = model.getWaveformSource(newValue.getHandle());
                 }
 //                wavePanel.getData().clear();
 //                Series<Number,Number> series = data.getSeries(newValue.getHandle());
@@ -219,7 +217,7 @@ public class RapidRespiratoryRate implements Runnable {
     private SampleArrayFxList model;
     private ObservableList<SampleArrayFx> filteredModel;
     
-    private SampleArrayWaveformSource source;
+    private WaveformSource source;
     private final WaveformRenderer renderer = new WaveformRenderer();
     private WaveformCanvas canvas;
     private Timeline waveformRender;
@@ -246,7 +244,7 @@ public class RapidRespiratoryRate implements Runnable {
     
     @Override
     public void run() {
-        SampleArrayWaveformSource source = this.source;
+        WaveformSource source = this.source;
         if(source != null) {
             source.iterate(new WaveformIterator() {
 
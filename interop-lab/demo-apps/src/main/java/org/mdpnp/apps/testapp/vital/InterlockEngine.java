@@ -0,0 +1,451 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.apps.testapp.vital;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.mdpnp.apps.testapp.vital.VitalModel.State;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Evaluates the PCA interlock rules on whichever thread delivers a value,
+ * ordinarily the EventLoop reading Numerics, so that the decision to stop an
+ * infusion does not wait on the FX application thread. The VitalModel mirrors
+ * the resulting {@link Status} into its properties.
+ * 
+ * Advisory text is only formatted when it is asked for or when an infusion is
+ * stopped.
+ */
+public class InterlockEngine {
+
+    /**
+     * Thresholds of one vital sign as of the last change to them
+     */
+    public static final class Rule {
+        private final String label, units;
+        private final String[] metricIds;
+        private final Double warningLow, warningHigh, criticalLow, criticalHigh;
+        private final boolean ignoreZero, noValueWarning;
+
+        public Rule(String label, String units, String[] metricIds, Double warningLow, Double warningHigh, Double criticalLow,
+                Double criticalHigh, boolean ignoreZero, boolean noValueWarning) {
+            this.label = label;
+            this.units = units;
+            this.metricIds = metricIds.clone();
+            this.warningLow = warningLow;
+            this.warningHigh = warningHigh;
+            this.criticalLow = criticalLow;
+            this.criticalHigh = criticalHigh;
+            this.ignoreZero = ignoreZero;
+            this.noValueWarning = noValueWarning;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        private boolean ignore(float v) {
+            return ignoreZero && Math.abs(v) <= 0.00001;
+        }
+    }
+
+    public enum Advisory {
+        NoSource, Low, High
+    }
+
+    /**
+     * The outcome of an evaluation; immutable
+     */
+    public static final class Status {
+        private final State state;
+        private final Rule[] rules;
+        // per rule the advisory, if any, and the value that raised it
+        private final Advisory[] advisories;
+        private final float[] values;
+        private final long time;
+        private final boolean infusionStopped;
+        private final String interlockText;
+        private String warningText;
+
+        private Status(State state, Rule[] rules, Advisory[] advisories, float[] values, long time, boolean infusionStopped, String interlockText) {
+            this.state = state;
+            this.rules = rules;
+            this.advisories = advisories;
+            this.values = values;
+            this.time = time;
+            this.infusionStopped = infusionStopped;
+            this.interlockText = interlockText;
+        }
+
+        private Status stopped(boolean infusionStopped, String interlockText) {
+            return new Status(state, rules, advisories, values, time, infusionStopped, interlockText);
+        }
+
+        private boolean sameAdvice(State state, Rule[] rules, Advisory[] advisories, float[] values) {
+            return this.state == state && this.rules == rules && Arrays.equals(this.advisories, advisories) && Arrays.equals(this.values, values);
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        public boolean isInfusionStopped() {
+            return infusionStopped;
+        }
+
+        public String getInterlockText() {
+            return interlockText;
+        }
+
+        /**
+         * @return the advisory for the vital sign of the rule at index i, or
+         *         null
+         */
+        public Advisory getAdvisory(int i) {
+            return advisories[i];
+        }
+
+        public synchronized String getWarningText() {
+            if (null == warningText) {
+                StringBuilder sb = new StringBuilder();
+                boolean any = false;
+                for (int i = 0; i < advisories.length; i++) {
+                    if (null != advisories[i]) {
+                        any = true;
+                        advise(sb, i);
+                    }
+                }
+                warningText = any ? sb.append("at ").append(format(time)).toString() : "";
+            }
+            return warningText;
+        }
+
+        private void advise(StringBuilder sb, int i) {
+            Rule rule = rules[i];
+            switch (advisories[i]) {
+            case NoSource:
+                sb.append("- no source of ").append(rule.label).append("\r\n");
+                break;
+            case Low:
+                sb.append("- low ").append(rule.label).append(" ").append(values[i]).append(" ").append(rule.units).append("\r\n");
+                break;
+            case High:
+                sb.append("- high ").append(rule.label).append(" ").append(values[i]).append(" ").append(rule.units).append("\r\n");
+                break;
+            }
+        }
+    }
+
+    /**
+     * Notified on the thread that caused the change, without any lock held; a
+     * stop decision is a change from a status not stopped to one stopped.
+     */
+    public interface Listener {
+        void statusChanged(Status previous, Status status);
+    }
+
+    private static final class Entry {
+        private final String metricId;
+        private float value;
+
+        Entry(String metricId) {
+            this.metricId = metricId;
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(InterlockEngine.class);
+
+    private static final DateFormat timeFormat = new SimpleDateFormat("HH:mm:ss");
+
+    private static String format(long time) {
+        synchronized (timeFormat) {
+            return timeFormat.format(new Date(time));
+        }
+    }
+
+    private static final Rule[] NO_RULES = new Rule[0];
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+    private final Map<Object, Entry> entries = new HashMap<Object, Entry>();
+    private final Map<String, List<Entry>> entriesByMetric = new HashMap<String, List<Entry>>();
+
+    private Rule[] rules = NO_RULES;
+    private int countWarningsBecomeAlarm = 2;
+    private volatile Status status = new Status(State.Normal, NO_RULES, new Advisory[0], new float[0], 0L, false, "");
+
+    // scratch for evaluations, reused until the advice changes
+    private Advisory[] advisories = new Advisory[0];
+    private float[] values = new float[0];
+
+    // ns from the arrival of a value to the end of its evaluation
+    private long evaluations, latency, maxLatency, stops, stopLatency;
+
+    // passed to evaluate when no value has arrived; System.nanoTime() may be negative
+    private static final long NOT_ARRIVED = Long.MIN_VALUE;
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setRules(Rule[] rules) {
+        Status previous, current;
+        synchronized (this) {
+            this.rules = rules.clone();
+            previous = status;
+            current = evaluate(NOT_ARRIVED);
+        }
+        fire(previous, current);
+    }
+
+    public void setCountWarningsBecomeAlarm(int countWarningsBecomeAlarm) {
+        Status previous, current;
+        synchronized (this) {
+            this.countWarningsBecomeAlarm = countWarningsBecomeAlarm;
+            previous = status;
+            current = evaluate(NOT_ARRIVED);
+        }
+        fire(previous, current);
+    }
+
+    /**
+     * Applies a value and evaluates the rules; values are applied in the order
+     * they arrive whatever their source timestamps
+     * 
+     * @param key
+     *            identifies the source of the value; retained so it must not
+     *            be changed afterward
+     * @param arrived
+     *            System.nanoTime() when the value was received
+     */
+    public void update(Object key, String metricId, float value, long arrived) {
+        apply(key, metricId, value, arrived, true);
+    }
+
+    /**
+     * As {@link #update(Object, String, float, long)} unless a value is already
+     * held for the key, for sources that may lag behind the one feeding update
+     * 
+     * @return false if a value was already held
+     */
+    public boolean addIfAbsent(Object key, String metricId, float value, long arrived) {
+        return apply(key, metricId, value, arrived, false);
+    }
+
+    private boolean apply(Object key, String metricId, float value, long arrived, boolean replace) {
+        Status previous, current;
+        synchronized (this) {
+            Entry e = entries.get(key);
+            if (null == e) {
+                e = new Entry(metricId);
+                entries.put(key, e);
+                List<Entry> list = entriesByMetric.get(metricId);
+                if (null == list) {
+                    list = new ArrayList<Entry>();
+                    entriesByMetric.put(metricId, list);
+                }
+                list.add(e);
+            } else if (!replace) {
+                return false;
+            }
+            e.value = value;
+            previous = status;
+            current = evaluate(arrived);
+        }
+        fire(previous, current);
+        return true;
+    }
+
+    public void remove(Object key) {
+        Status previous, current;
+        synchronized (this) {
+            Entry e = entries.remove(key);
+            if (null == e) {
+                return;
+            }
+            List<Entry> list = entriesByMetric.get(e.metricId);
+            list.remove(e);
+            if (list.isEmpty()) {
+                entriesByMetric.remove(e.metricId);
+            }
+            previous = status;
+            current = evaluate(NOT_ARRIVED);
+        }
+        fire(previous, current);
+    }
+
+    public void resetInfusion() {
+        Status previous, current;
+        synchronized (this) {
+            previous = status;
+            current = status = status.stopped(false, "");
+        }
+        fire(previous, current);
+    }
+
+    private void fire(Status previous, Status current) {
+        if (previous != current) {
+            for (Listener l : listeners) {
+                l.statusChanged(previous, current);
+            }
+        }
+    }
+
+    private Status evaluate(long arrived) {
+        final Rule[] rules = this.rules;
+        final int n = rules.length;
+        if (advisories.length != n) {
+            advisories = new Advisory[n];
+            values = new float[n];
+        }
+
+        int countWarnings = 0;
+        int critical = -1;
+        boolean criticalLow = false;
+        float criticalValue = 0f;
+        for (int i = 0; i < n; i++) {
+            Rule rule = rules[i];
+            advisories[i] = null;
+            values[i] = 0f;
+            boolean empty = true;
+            for (String metricId : rule.metricIds) {
+                List<Entry> list = entriesByMetric.get(metricId);
+                if (null == list) {
+                    continue;
+                }
+                for (int j = 0; j < list.size(); j++) {
+                    empty = false;
+                    float v = list.get(j).value;
+                    if (rule.ignore(v)) {
+                        continue;
+                    }
+                    if (null != rule.warningLow && v < rule.warningLow) {
+                        countWarnings++;
+                        advisories[i] = Advisory.Low;
+                        values[i] = v;
+                    }
+                    if (null != rule.warningHigh && v > rule.warningHigh) {
+                        countWarnings++;
+                        advisories[i] = Advisory.High;
+                        values[i] = v;
+                    }
+                    if (critical < 0 && null != rule.criticalLow && v < rule.criticalLow) {
+                        critical = i;
+                        criticalLow = true;
+                        criticalValue = v;
+                    } else if (critical < 0 && null != rule.criticalHigh && v > rule.criticalHigh) {
+                        critical = i;
+                        criticalLow = false;
+                        criticalValue = v;
+                    }
+                }
+            }
+            if (empty && rule.noValueWarning) {
+                countWarnings++;
+                advisories[i] = Advisory.NoSource;
+            }
+        }
+
+        boolean alarm = countWarnings >= countWarningsBecomeAlarm;
+        State state = alarm || critical >= 0 ? State.Alarm : countWarnings > 0 ? State.Warning : State.Normal;
+
+        final Status previous = status;
+        Status current = previous;
+        long now = System.currentTimeMillis();
+        if (!previous.sameAdvice(state, rules, advisories, values)) {
+            current = new Status(state, rules, advisories.clone(), values.clone(), now, previous.infusionStopped, previous.interlockText);
+        }
+        if (!current.infusionStopped) {
+            if (alarm) {
+                current = current.stopped(true, "Pump Stopped\r\n" + current.getWarningText() + "\r\nnurse alerted");
+            } else if (critical >= 0) {
+                Rule rule = rules[critical];
+                current = current.stopped(true, "Pump Stopped\r\n- " + (criticalLow ? "low " : "high ") + rule.label + " " + criticalValue + " "
+                        + rule.units + "\r\nat " + format(now) + "\r\nnurse alerted");
+            }
+        }
+        status = current;
+
+        if (NOT_ARRIVED != arrived) {
+            long l = System.nanoTime() - arrived;
+            evaluations++;
+            latency += l;
+            maxLatency = Math.max(maxLatency, l);
+            if (current.infusionStopped && !previous.infusionStopped) {
+                stops++;
+                stopLatency = l;
+                log.info("Infusion stopped {}us after the value arrived", l / 1000L);
+            }
+        }
+        return current;
+    }
+
+    /**
+     * @return the number of values evaluated since the metrics were last reset
+     */
+    public synchronized long getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * @return mean ms from the arrival of a value to the end of its evaluation
+     */
+    public synchronized double getMeanLatency() {
+        return 0L == evaluations ? 0.0 : latency / 1000000.0 / evaluations;
+    }
+
+    /**
+     * @return the most ms from the arrival of a value to the end of its
+     *         evaluation
+     */
+    public synchronized double getMaxLatency() {
+        return maxLatency / 1000000.0;
+    }
+
+    /**
+     * @return the number of decisions to stop an infusion since the metrics
+     *         were last reset
+     */
+    public synchronized long getStops() {
+        return stops;
+    }
+
+    /**
+     * @return ms from the arrival of the value that led to the latest decision
+     *         to stop an infusion until that decision
+     */
+    public synchronized double getStopLatency() {
+        return stopLatency / 1000000.0;
+    }
+
+    public synchronized void resetMetrics() {
+        evaluations = latency = maxLatency = stops = stopLatency = 0L;
+    }
+}
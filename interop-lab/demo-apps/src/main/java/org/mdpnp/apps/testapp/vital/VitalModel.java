@@ -87,6 +87,12 @@ public interface VitalModel extends ObservableList<Vital> {
     ReadOnlyStringProperty interlockTextProperty();
     String getInterlockText();
 
+    /**
+     * @return the engine that evaluates the interlock off the FX thread; the
+     *         state, warning and interlock properties mirror its status
+     */
+    InterlockEngine getInterlockEngine();
+
     void addNumeric(NumericFx numeric);
 
     void removeNumeric(NumericFx numeric);
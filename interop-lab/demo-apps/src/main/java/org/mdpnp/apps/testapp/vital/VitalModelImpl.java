@@ -13,13 +13,11 @@
 package org.mdpnp.apps.testapp.vital;
 
 import java.awt.Color;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Date;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javafx.application.Platform;
 import javafx.beans.InvalidationListener;
@@ -43,6 +41,7 @@ import javafx.util.Callback;
 import org.mdpnp.apps.device.OnListChange;
 import org.mdpnp.apps.fxbeans.ElementObserver;
 import org.mdpnp.apps.fxbeans.NumericFx;
+import org.mdpnp.apps.fxbeans.NumericFxList;
 import org.mdpnp.apps.testapp.Device;
 import org.mdpnp.apps.testapp.DeviceListModel;
 import org.mdpnp.rtiapi.data.EventLoop;
@@ -52,15 +51,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.rti.dds.domain.DomainParticipant;
+import com.rti.dds.infrastructure.InstanceHandle_t;
 import com.rti.dds.infrastructure.StatusKind;
 import com.rti.dds.publication.Publisher;
+import com.rti.dds.subscription.InstanceStateKind;
+import com.rti.dds.subscription.SampleInfo;
 import com.rti.dds.topic.Topic;
 
 /**
  * @author Jeff Plourde
  *
  */
-public class VitalModelImpl extends ModifiableObservableListBase<Vital> implements VitalModel, ListChangeListener<Value> {
+public class VitalModelImpl extends ModifiableObservableListBase<Vital> implements VitalModel {
     private final Callback<Vital, Observable[]> extractor = new Callback<Vital, Observable[]>() {
 
         @Override
@@ -92,8 +94,28 @@ public class VitalModelImpl extends ModifiableObservableListBase<Vital> implemen
     @SuppressWarnings("unused")
     private static final Logger log = LoggerFactory.getLogger(VitalModelImpl.class);
 
+    // Numerics from the reader are keyed by instance handle, others by their identifying fields
+    private static Object interlockKey(NumericFx numeric) {
+        InstanceHandle_t handle = numeric.getHandle();
+        if (null != handle && !handle.is_nil()) {
+            return handle;
+        } else {
+            return numeric.getUnique_device_identifier() + " " + numeric.getMetric_id() + " " + numeric.getInstance_id();
+        }
+    }
+
+    private void numericSample(ice.Numeric numeric, SampleInfo sampleInfo) {
+        long arrived = System.nanoTime();
+        if (0 != (sampleInfo.instance_state & InstanceStateKind.NOT_ALIVE_INSTANCE_STATE)) {
+            engine.remove(sampleInfo.instance_handle);
+        } else if (sampleInfo.valid_data) {
+            engine.update(new InstanceHandle_t(sampleInfo.instance_handle), numeric.metric_id, numeric.value, arrived);
+        }
+    }
+
     @Override
     public void removeNumeric(NumericFx numeric) {
+        engine.remove(interlockKey(numeric));
         final String metric_id = numeric.getMetric_id();
         for (Vital v : this) {
             if (v != null) {
@@ -125,6 +147,8 @@ public class VitalModelImpl extends ModifiableObservableListBase<Vital> implemen
 
     @Override
     public void addNumeric(final NumericFx numeric) {
+        // the reader has ordinarily delivered this instance to the engine already
+        engine.addIfAbsent(interlockKey(numeric), numeric.getMetric_id(), numeric.getValue(), System.nanoTime());
         final String metric_id = numeric.getMetric_id();
         final String udi = numeric.getUnique_device_identifier();
         final String unit_id = numeric.getUnit_id();
@@ -192,10 +216,8 @@ public class VitalModelImpl extends ModifiableObservableListBase<Vital> implemen
 
     private static final String DEFAULT_INTERLOCK_TEXT = "";
 
-    private static final DateFormat timeFormat = new SimpleDateFormat("HH:mm:ss");
-    private String[] advisories = new String[0];
-    private final Date now = new Date();
-    private final StringBuilder warningTextBuilder = new StringBuilder();
+    private final InterlockEngine engine = new InterlockEngine();
+    private final AtomicBoolean mirrorScheduled = new AtomicBoolean(false);
     private StringProperty warningText = new SimpleStringProperty(this, "warningText", "");
     private StringProperty interlockText = new SimpleStringProperty(this, "interlockText", DEFAULT_INTERLOCK_TEXT);
     private BooleanProperty interlock = new SimpleBooleanProperty(this, "interlock", false);
@@ -205,90 +227,45 @@ public class VitalModelImpl extends ModifiableObservableListBase<Vital> implemen
         return interlock;
     }
 
+    @Override
+    public InterlockEngine getInterlockEngine() {
+        return engine;
+    }
 
-    private final void updateState() {
-        // This used to be synchronized but now we do this instead
+    /**
+     * Hands the thresholds of the vitals to the engine
+     */
+    private final void updateRules() {
         if(!Platform.isFxApplicationThread()) {
             throw new IllegalThreadStateException("Must be on the Fx App Thread");
         }
-        
-        int N = size();
-
-        while (advisories.length < N) {
-            advisories = new String[2 * N + 1];
-        }
-        now.setTime(System.currentTimeMillis());
-        String time = timeFormat.format(now);
-
-        int countWarnings = 0;
-
+        final int N = size();
+        InterlockEngine.Rule[] rules = new InterlockEngine.Rule[N];
         for (int i = 0; i < N; i++) {
-            Vital vital = get(i);
-            advisories[i] = null;
-            if (vital.isNoValueWarning() && vital.isEmpty()) {
-                countWarnings++;
-                advisories[i] = "- no source of " + vital.getLabel() + "\r\n";
-            } else {
-                for (Value val : vital) {
-                    if (val.isAtOrBelowLow()) {
-                        countWarnings++;
-                        advisories[i] = "- low " + vital.getLabel() + " " + val.getValue() + " " + vital.getUnits() + "\r\n";
-                    }
-                    if (val.isAtOrAboveHigh()) {
-                        countWarnings++;
-                        advisories[i] = "- high " + vital.getLabel() + " " + val.getValue() + " " + vital.getUnits() + "\r\n";
-                    }
-                }
-            }
+            Vital v = get(i);
+            rules[i] = new InterlockEngine.Rule(v.getLabel(), v.getUnits(), v.getMetricIds(), v.getWarningLow(), v.getWarningHigh(),
+                    v.getCriticalLow(), v.getCriticalHigh(), v.isIgnoreZero(), v.isNoValueWarning());
         }
-
-        // Advisory processing
-        if (countWarnings > 0) {
-            warningTextBuilder.delete(0, warningTextBuilder.length());
-            for (int i = 0; i < N; i++) {
-                if (null != advisories[i]) {
-                    warningTextBuilder.append(advisories[i]);
-                }
-            }
-            warningTextBuilder.append("at ").append(time);
-            warningText.set(warningTextBuilder.toString());
-            state.set(State.Warning);
-        } else {
-            warningText.set("");
-            state.set(State.Normal);
-        }
-
-        if (countWarnings >= getCountWarningsBecomeAlarm()) {
-            state.set(State.Alarm);
-            stopInfusion("Pump Stopped\r\n" + warningText.get() + "\r\nnurse alerted");
-        } else {
-            for (int i = 0; i < N; i++) {
-                Vital vital = get(i);
-                for (Value val : vital) {
-                    if (val.isAtOrBelowCriticalLow()) {
-                        state.set(State.Alarm);
-                        stopInfusion("Pump Stopped\r\n- low " + vital.getLabel() + " " + val.getValue() + " " + vital.getUnits() + "\r\nat "
-                                + time + "\r\nnurse alerted");
-                        break;
-                    } else if (val.isAtOrAboveCriticalHigh()) {
-                        state.set(State.Alarm);
-                        stopInfusion("Pump Stopped\r\n- high " + vital.getLabel() + " " + +val.getValue() + " " + vital.getUnits()
-                                + "\r\nat " + time + "\r\nnurse alerted");
-                        break;
-                    }
-                }
-            }
-        }
-
+        engine.setRules(rules);
     }
 
-    private final void stopInfusion(String str) {
-        if (!interlock.get()) {
-            interlock.set(true);
-            interlockText.set(str);
+    /**
+     * Copies the engine status into the properties, at most once per pulse
+     * when the change came from another thread
+     */
+    private void mirrorState() {
+        if (Platform.isFxApplicationThread()) {
+            mirrorScheduled.set(false);
+            InterlockEngine.Status s = engine.getStatus();
+            warningText.set(s.getWarningText());
+            state.set(s.getState());
+            interlock.set(s.isInfusionStopped());
+            interlockText.set(s.getInterlockText());
+        } else if (mirrorScheduled.compareAndSet(false, true)) {
+            Platform.runLater(this::mirrorState);
         }
     }
-    
+
     @Override
     public ReadOnlyObjectProperty<State> stateProperty() {
         return state;
@@ -296,7 +273,7 @@ public class VitalModelImpl extends ModifiableObservableListBase<Vital> implemen
 
     @Override
     public State getState() {
-        return state.get();
+        return engine.getStatus().getState();
     }
     
     @Override
@@ -306,7 +283,7 @@ public class VitalModelImpl extends ModifiableObservableListBase<Vital> implemen
 
     @Override
     public String getInterlockText() {
-        return interlockText.get();
+        return engine.getStatus().getInterlockText();
     }
 
     @Override
@@ -315,18 +292,17 @@ public class VitalModelImpl extends ModifiableObservableListBase<Vital> implemen
     }
     @Override
     public String getWarningText() {
-        return warningText.get();
+        return engine.getStatus().getWarningText();
     }
 
     @Override
     public void resetInfusion() {
-        interlock.set(false);
-        interlockText.set(DEFAULT_INTERLOCK_TEXT);
+        engine.resetInfusion();
     }
 
     @Override
     public boolean isInfusionStopped() {
-        return interlock.get();
+        return engine.getStatus().isInfusionStopped();
     }
 
     private IntegerProperty countWarningsBecomeAlarm = new SimpleIntegerProperty(this, "countWarningsBecomeAlarm", 2);
@@ -353,6 +329,14 @@ public class VitalModelImpl extends ModifiableObservableListBase<Vital> implemen
     public VitalModelImpl(DeviceListModel deviceListModel, ObservableList<NumericFx> numericList) {
         this.deviceListModel = deviceListModel;
         this.numericList = numericList;
+
+        engine.addListener((previous, status) -> mirrorState());
+        countWarningsBecomeAlarm.addListener((observable, oldValue, newValue) -> engine.setCountWarningsBecomeAlarm(newValue.intValue()));
+        engine.setCountWarningsBecomeAlarm(getCountWarningsBecomeAlarm());
+        if (numericList instanceof NumericFxList) {
+            // the engine sees each Numeric as it is read rather than after it reaches the FX thread
+            ((NumericFxList) numericList).addSampleListener(this::numericSample);
+        }
         
         numericList.addListener(new OnListChange<>((fx)->addNumeric(fx), null, (fx)->removeNumeric(fx)));
         numericList.forEach((fx)->addNumeric(fx));
@@ -383,7 +367,7 @@ public class VitalModelImpl extends ModifiableObservableListBase<Vital> implemen
 
             @Override
             public void onChanged(javafx.collections.ListChangeListener.Change<? extends Vital> c) {
-                updateState();
+                updateRules();
             }
             
         });
@@ -401,7 +385,6 @@ public class VitalModelImpl extends ModifiableObservableListBase<Vital> implemen
 
     @Override
     protected void doAdd(int index, Vital element) {
-        element.addListener(this);
         elementObserver.attachListener(element);
         vitals.add(index, element);
         numericList.forEach((fx)->addNumeric(fx));
@@ -410,10 +393,8 @@ public class VitalModelImpl extends ModifiableObservableListBase<Vital> implemen
     @Override
     protected Vital doSet(int index, Vital element) {
         Vital removed =  vitals.set(index, element);
-        removed.removeListener(this);
         elementObserver.detachListener(removed);
         elementObserver.attachListener(element);
-        removed.addListener(this);
         numericList.forEach((fx)->addNumeric(fx));
         return removed;
     }
@@ -422,7 +403,6 @@ public class VitalModelImpl extends ModifiableObservableListBase<Vital> implemen
     protected Vital doRemove(int index) {
         Vital v = vitals.remove(index);
         elementObserver.detachListener(v);
-        v.removeListener(this);
         if(null != v) {
             v.destroy();
         }
@@ -433,7 +413,6 @@ public class VitalModelImpl extends ModifiableObservableListBase<Vital> implemen
         if (elementObserver != null) {
             final int sz = size();
             for (int i = 0; i < sz; ++i) {
-                get(i).removeListener(this);
                 elementObserver.detachListener(get(i));
                 
             }
@@ -449,9 +428,4 @@ public class VitalModelImpl extends ModifiableObservableListBase<Vital> implemen
         }
     }
 
-    @Override
-    public void onChanged(javafx.collections.ListChangeListener.Change<? extends Value> c) {
-        updateState();
-    }
-
 }
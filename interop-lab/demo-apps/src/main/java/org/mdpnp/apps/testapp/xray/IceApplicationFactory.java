@@ -10,6 +10,7 @@ import org.mdpnp.apps.fxbeans.SampleArrayFxList;
 import org.mdpnp.apps.testapp.DeviceListModel;
 import org.mdpnp.apps.testapp.IceApplicationProvider;
 import org.mdpnp.rtiapi.data.EventLoop;
+import org.mdpnp.timeseries.TimeSeriesStore;
 import org.springframework.context.ApplicationContext;
 
 import com.rti.dds.subscription.Subscriber;
@@ -30,13 +31,16 @@ public class IceApplicationFactory implements IceApplicationProvider {
         final DeviceListModel deviceListModel = parentContext.getBean("deviceListModel", DeviceListModel.class);
         final NumericFxList numericList = parentContext.getBean("numericList", NumericFxList.class);
         final SampleArrayFxList sampleArrayList = parentContext.getBean("sampleArrayList", SampleArrayFxList.class);
+        // the flow around an exposure can only be reviewed if the application context provides a store
+        final TimeSeriesStore history = parentContext.containsBean("timeSeriesStore") ?
+                parentContext.getBean("timeSeriesStore", TimeSeriesStore.class) : null;
         FXMLLoader loader = new FXMLLoader(XRayVentPanel.class.getResource("XRayVentPanel.fxml"));
         
         final Parent ui = loader.load();
         
         final XRayVentPanel controller = ((XRayVentPanel)loader.getController());
 
-        controller.set(deviceListModel, numericList, sampleArrayList);
+        controller.set(deviceListModel, numericList, sampleArrayList, history);
 
         return new IceApplicationProvider.IceApp() {
 
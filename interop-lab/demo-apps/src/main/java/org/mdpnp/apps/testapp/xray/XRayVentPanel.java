@@ -19,6 +19,7 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 
+import javafx.application.Platform;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import javafx.collections.ListChangeListener;
@@ -47,9 +48,12 @@ import org.mdpnp.apps.fxbeans.SampleArrayFx;
 import org.mdpnp.apps.fxbeans.SampleArrayFxList;
 import org.mdpnp.apps.testapp.DeviceListModel;
 import org.mdpnp.apps.testapp.NumericFxListCell;
-import org.mdpnp.guis.waveform.SampleArrayWaveformSource;
+import org.mdpnp.guis.waveform.TimeSeriesWaveformSource;
+import org.mdpnp.guis.waveform.WaveformSource;
 import org.mdpnp.guis.waveform.javafx.JavaFXWaveformPane;
 import org.mdpnp.rtiapi.data.EventLoop;
+import org.mdpnp.timeseries.SeriesKey;
+import org.mdpnp.timeseries.TimeSeriesStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -92,16 +96,28 @@ public class XRayVentPanel {
     private ObservableList<NumericFx> startOfBreathModel, deviceNumericModel;
     private ObservableList<SampleArrayFx> deviceFlowModel;
     
-    private SampleArrayWaveformSource source;
+    private WaveformSource source;
+    // the recorded flow around an exposure; null without a store to read it from
+    private TimeSeriesStore history;
+    private TimeSeriesWaveformSource historySource;
+    // the live pane shows the 10s ending 2s before its end time
+    private static final long REVIEW_WINDOW = 12000L, REVIEW_LAG = 2000L;
     
     protected void add(SampleArrayFx data) {
-        XRayVentPanel.this.source = new SampleArrayWaveformSource(sampleArrayList.getReader(), data.getHandle());
+        XRayVentPanel.this.source = sampleArrayList.getWaveformSource(data.getHandle());
+        if(null != history) {
+            historySource = new TimeSeriesWaveformSource(history,
+                    new SeriesKey(data.getUnique_device_identifier(), data.getMetric_id(), data.getInstance_id()), REVIEW_WINDOW);
+        }
+        waveformPanel.setEndTime(0L);
         waveformPanel.setSource(source);
         waveformPanel.start();
     }
     
     protected void remove(SampleArrayFx data) {
-        XRayVentPanel.this.source = new SampleArrayWaveformSource(sampleArrayList.getReader(), data.getHandle());
+        XRayVentPanel.this.source = null;
+        historySource = null;
+        waveformPanel.setEndTime(0L);
         waveformPanel.setSource(null);
         waveformPanel.stop();
     }
@@ -182,6 +198,7 @@ public class XRayVentPanel {
     
     public void changeSource(final String source) {
         this.source = null;
+        this.historySource = null;
         
         if(null != deviceNumericModel) {
             deviceNumericModel.removeListener(numericListener);
@@ -217,8 +234,13 @@ public class XRayVentPanel {
 
     private boolean imageButtonDown = false;
 
-    public XRayVentPanel set(final DeviceListModel deviceListModel, final NumericFxList numericList, final SampleArrayFxList sampleArrayList) {
+    /**
+     * @param history recorded waveforms to review the flow around an exposure; may be null
+     */
+    public XRayVentPanel set(final DeviceListModel deviceListModel, final NumericFxList numericList, final SampleArrayFxList sampleArrayList,
+            final TimeSeriesStore history) {
         this.numericList = numericList;
+        this.history = history;
         startOfBreathModel = new FilteredList<>(numericList, new Predicate<NumericFx>() {
             @Override
             public boolean test(NumericFx t) {
@@ -292,6 +314,26 @@ public class XRayVentPanel {
 
     @FXML public void clickReset(ActionEvent evt) {
         cameraPanel.unfreeze();
+        waveformPanel.setEndTime(0L);
+        waveformPanel.setSource(source);
+    }
+
+    /**
+     * Holds the waveform panel on the recorded flow leading up to an exposure
+     * that is about to be taken, until reset
+     */
+    private void review(long exposureTime) {
+        final TimeSeriesWaveformSource historySource = this.historySource;
+        if(null != historySource) {
+            final long endTime = System.currentTimeMillis() + exposureTime + REVIEW_LAG;
+            historySource.setEndTime(endTime);
+            Platform.runLater(new Runnable() {
+                public void run() {
+                    waveformPanel.setEndTime(endTime);
+                    waveformPanel.setSource(historySource);
+                }
+            });
+        }
     }
     
     public void stop() {
@@ -370,7 +412,9 @@ public class XRayVentPanel {
         @Override
         public Void call() throws Exception {
             if (imageButtonDown) {
-                cameraPanel.freeze((long)(1000.0*exposureTime.getValue()));
+                long exposure = (long)(1000.0*exposureTime.getValue());
+                cameraPanel.freeze(exposure);
+                review(exposure);
             }
             return null;
         }
@@ -379,7 +423,9 @@ public class XRayVentPanel {
     @FXML protected Slider exposureTime;
 
     private final void noSync() {
-        cameraPanel.freeze((long)(1000.0*exposureTime.getValue()));
+        long exposure = (long)(1000.0*exposureTime.getValue());
+        cameraPanel.freeze(exposure);
+        review(exposure);
 
     }
 
@@ -0,0 +1,223 @@
+package org.mdpnp.apps.fxbeans;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javafx.collections.ObservableList;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.rti.dds.infrastructure.InstanceHandle_t;
+import com.rti.dds.subscription.SampleInfo;
+
+/**
+ * Drives the list as its EventLoop handler and FX pulses would, without DDS
+ * or the FX thread; samples are submitted and each flush is one pulse.
+ */
+public class NumericFxListTest {
+
+    private NumericFxList list;
+
+    @Before
+    public void setUp() {
+        list = new NumericFxList(ice.NumericTopic.VALUE);
+        list.setCoalesce(true);
+    }
+
+    static InstanceHandle_t handle(int n) {
+        InstanceHandle_t handle = new InstanceHandle_t();
+        handle.value[0] = (byte) n;
+        return handle;
+    }
+
+    static ice.Numeric numeric(String udi, float value) {
+        ice.Numeric numeric = new ice.Numeric();
+        numeric.unique_device_identifier = udi;
+        numeric.metric_id = "MDC_PULS_OXIM_SAT_O2";
+        numeric.value = value;
+        return numeric;
+    }
+
+    static SampleInfo info(InstanceHandle_t handle) {
+        SampleInfo sampleInfo = new SampleInfo();
+        sampleInfo.instance_handle.copy_from(handle);
+        sampleInfo.valid_data = true;
+        return sampleInfo;
+    }
+
+    private void submit(int handle, String udi, float value) {
+        list.submit(handle(handle), numeric(udi, value), info(handle(handle)));
+    }
+
+    private void dispose(int handle) {
+        list.submit(handle(handle), null, null);
+    }
+
+    private NumericFx row(int handle) {
+        for (NumericFx fx : list) {
+            if (fx.getHandle().equals(handle(handle))) {
+                return fx;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testHandleIndex() {
+        submit(1, "A", 1f);
+        submit(2, "B", 2f);
+        list.flush();
+        Assert.assertEquals(2, list.size());
+        // new rows go to the front
+        Assert.assertSame(row(2), list.get(0));
+        NumericFx first = row(1);
+
+        // a later sample updates the row already indexed for the handle
+        submit(1, "A", 5f);
+        list.flush();
+        Assert.assertEquals(2, list.size());
+        Assert.assertSame(first, row(1));
+        Assert.assertEquals(5f, first.getValue(), 0f);
+
+        dispose(1);
+        list.flush();
+        Assert.assertEquals(1, list.size());
+        Assert.assertNull(row(1));
+
+        // a row set in place of another takes over the index from it
+        NumericFx replacement = new NumericFx();
+        replacement.update(numeric("C", 3f), info(handle(3)));
+        NumericFx replaced = list.set(0, replacement);
+        Assert.assertEquals(2f, replaced.getValue(), 0f);
+        submit(3, "C", 4f);
+        submit(2, "B", 6f);
+        list.flush();
+        Assert.assertEquals(2, list.size());
+        Assert.assertEquals(4f, replacement.getValue(), 0f);
+        Assert.assertNotSame(replaced, row(2));
+        Assert.assertEquals(6f, row(2).getValue(), 0f);
+        // the replaced row is not updated once it has left the list
+        Assert.assertEquals(2f, replaced.getValue(), 0f);
+    }
+
+    @Test
+    public void testLatestValueWins() {
+        submit(1, "A", 1f);
+        submit(1, "A", 2f);
+        submit(1, "A", 3f);
+        list.flush();
+        Assert.assertEquals(1, list.size());
+        Assert.assertEquals(3f, row(1).getValue(), 0f);
+        Assert.assertEquals(2L, list.getDroppedUpdates());
+        // the one that survived had its pulse to itself
+        Assert.assertEquals(0L, list.getCoalescedUpdates());
+
+        submit(1, "A", 4f);
+        submit(2, "B", 1f);
+        list.flush();
+        Assert.assertEquals(4f, row(1).getValue(), 0f);
+        Assert.assertEquals(2L, list.getDroppedUpdates());
+        Assert.assertEquals(2L, list.getCoalescedUpdates());
+    }
+
+    @Test
+    public void testDisposeThenRealiveInOneBatch() {
+        submit(1, "A", 1f);
+        list.flush();
+        NumericFx fx = row(1);
+
+        dispose(1);
+        submit(1, "A", 9f);
+        list.flush();
+        // the instance came back before the FX thread saw it go
+        Assert.assertEquals(1, list.size());
+        Assert.assertSame(fx, row(1));
+        Assert.assertEquals(9f, fx.getValue(), 0f);
+        Assert.assertEquals(1L, list.getDroppedUpdates());
+
+        submit(1, "A", 10f);
+        dispose(1);
+        list.flush();
+        Assert.assertEquals(0, list.size());
+        Assert.assertEquals(2L, list.getDroppedUpdates());
+    }
+
+    @Test
+    public void testKeepHistoryIsNotCoalesced() {
+        list.setKeepHistory(true);
+        submit(1, "A", 1f);
+        submit(1, "A", 2f);
+        list.flush();
+        Assert.assertEquals(2, list.size());
+        Assert.assertEquals(0L, list.getDroppedUpdates());
+        Assert.assertEquals(2L, list.getCoalescedUpdates());
+    }
+
+    private NumericFx fx(int handle, String udi, float value) {
+        NumericFx fx = new NumericFx();
+        fx.update(numeric(udi, value), info(handle(handle)));
+        return fx;
+    }
+
+    private List<NumericFx> rowsOf(String udi) {
+        List<NumericFx> rows = new ArrayList<NumericFx>();
+        for (NumericFx fx : list) {
+            if (udi.equals(fx.getUnique_device_identifier())) {
+                rows.add(fx);
+            }
+        }
+        return rows;
+    }
+
+    @Test
+    public void testPartitionOrder() {
+        for (int i = 1; i <= 6; i++) {
+            submit(i, 0 == i % 2 ? "A" : "B", i);
+        }
+        list.flush();
+        ObservableList<NumericFx> a = list.getByUniqueDeviceIdentifier("A");
+        Assert.assertEquals(rowsOf("A"), a);
+
+        // at the front, at the end and nearer either end
+        list.add(0, fx(7, "A", 7f));
+        list.add(list.size(), fx(8, "A", 8f));
+        list.add(2, fx(9, "A", 9f));
+        list.add(list.size() - 2, fx(10, "A", 10f));
+        list.add(3, fx(11, "B", 11f));
+        Assert.assertEquals(rowsOf("A"), a);
+
+        // a row set in place of one of another device moves between partitions
+        list.set(1, fx(12, "B", 12f));
+        list.set(list.indexOf(row(1)), fx(13, "A", 13f));
+        Assert.assertEquals(rowsOf("A"), a);
+
+        list.remove(row(2));
+        dispose(4);
+        submit(14, "A", 14f);
+        list.flush();
+        Assert.assertEquals(rowsOf("A"), a);
+        Assert.assertEquals(rowsOf("B"), list.getByUniqueDeviceIdentifier("B"));
+    }
+
+    @Test
+    public void testUnviewedPartitionIsDropped() throws Exception {
+        submit(1, "A", 1f);
+        list.flush();
+        ObservableList<NumericFx> a = list.getByUniqueDeviceIdentifier("A");
+        for (int i = 2; i < 100; i++) {
+            list.getByUniqueDeviceIdentifier("B" + i);
+        }
+        // only the view still held keeps its partition
+        for (int i = 0; i < 50 && list.getPartitionCount() > 1; i++) {
+            System.gc();
+            Thread.sleep(10L);
+            list.getByUniqueDeviceIdentifier("A");
+        }
+        Assert.assertEquals(1, list.getPartitionCount());
+        submit(2, "A", 2f);
+        list.flush();
+        Assert.assertEquals(2, a.size());
+    }
+}
@@ -0,0 +1,192 @@
+package org.mdpnp.apps.testapp;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import javafx.application.Platform;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mdpnp.devices.DomainParticipantFactory;
+import org.mdpnp.devices.DomainParticipantFactoryFactory;
+import org.mdpnp.devices.IceQos;
+import org.mdpnp.devices.PublisherFactory;
+import org.mdpnp.devices.SubscriberFactory;
+import org.mdpnp.devices.TimeManager;
+import org.mdpnp.rtiapi.data.EventLoop;
+
+import com.rti.dds.infrastructure.Duration_t;
+
+/**
+ * Drives the model as the TimeManager would, from the FX thread, applying each
+ * pulse with an explicit flush. The readers are never started.
+ */
+public class DeviceListModelImplTest {
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        FxRuntimeSupport.initialize();
+    }
+
+    private DomainParticipantFactoryFactory ff;
+    private DomainParticipantFactory dpf;
+    private SubscriberFactory s;
+    private PublisherFactory p;
+    private ScheduledExecutorService executor;
+    private DeviceListModelImpl model;
+
+    @Before
+    public void setUp() throws Exception {
+        IceQos.loadAndSetIceQos();
+        ff = new DomainParticipantFactoryFactory();
+        ff.getObject();
+        dpf = new DomainParticipantFactory(0);
+        s = new SubscriberFactory(dpf.getObject(), "*");
+        p = new PublisherFactory(dpf.getObject(), "*");
+        executor = Executors.newSingleThreadScheduledExecutor();
+        TimeManager timeManager = new TimeManager(executor, new EventLoop(), p.getObject(), s.getObject(), "DeviceListModelImplTest", "Supervisor");
+        model = new DeviceListModelImpl(s.getObject(), new EventLoop(), timeManager);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        p.destroy();
+        s.destroy();
+        dpf.destroy();
+        ff.destroy();
+    }
+
+    protected Error t;
+    private void testOnFxThread(Runnable run) throws InterruptedException {
+        t = null;
+        final CountDownLatch latch = new CountDownLatch(1);
+        Platform.runLater(new Runnable() {
+            public void run() {
+                try {
+                    run.run();
+                } catch (Error t1) {
+                    t = t1;
+                }
+                latch.countDown();
+            }
+        });
+        latch.await();
+        if(null != t) {
+            throw t;
+        }
+    }
+
+    private void alive(String udi) {
+        model.aliveHeartbeat(udi, "Device", "host-" + udi);
+    }
+
+    private void notAlive(String udi) {
+        model.notAliveHeartbeat(udi, "Device");
+    }
+
+    @Test
+    public void testAddAndRemove() throws InterruptedException {
+        testOnFxThread(() -> {
+            alive("A");
+            model.synchronization("A", new Duration_t(0, 5000000), new Duration_t(1, 0));
+            alive("A");
+            model.flush();
+            Assert.assertEquals(1, model.getContents().size());
+            Device a = model.getContents().get(0);
+            Assert.assertSame(a, model.getByUniqueDeviceIdentifier("A"));
+            Assert.assertEquals("host-A", a.getHostname());
+            Assert.assertEquals(1000L, a.getClockDifference());
+            Assert.assertEquals(5L, a.getRoundtripLatency());
+
+            notAlive("A");
+            model.flush();
+            Assert.assertTrue(model.getContents().isEmpty());
+            Assert.assertSame(a, model.recycledContents.get("A"));
+            // the placeholder is still found by its UDI
+            Assert.assertSame(a, model.getByUniqueDeviceIdentifier("A"));
+        });
+    }
+
+    @Test
+    public void testLastUpdateOfThePulseWins() throws InterruptedException {
+        testOnFxThread(() -> {
+            alive("A");
+            notAlive("A");
+            alive("B");
+            model.flush();
+            Assert.assertEquals(1, model.getContents().size());
+            Assert.assertEquals("B", model.getContents().get(0).getUDI());
+            Assert.assertTrue(model.recycledContents.containsKey("A"));
+
+            notAlive("B");
+            alive("B");
+            model.flush();
+            Assert.assertEquals(1, model.getContents().size());
+            Assert.assertFalse(model.recycledContents.containsKey("B"));
+        });
+    }
+
+    @Test
+    public void testResurrect() throws InterruptedException {
+        testOnFxThread(() -> {
+            alive("A");
+            alive("B");
+            model.flush();
+            Device a = model.getByUniqueDeviceIdentifier("A");
+            for (int i = 0; i < 3; i++) {
+                notAlive("A");
+                model.flush();
+                Assert.assertEquals(1, model.getContents().size());
+                Assert.assertEquals(1, model.recycledContents.size());
+
+                alive("A");
+                model.flush();
+                // the same device comes back to the front, once, and is no longer recycled
+                Assert.assertEquals(2, model.getContents().size());
+                Assert.assertSame(a, model.getContents().get(0));
+                Assert.assertTrue(model.recycledContents.isEmpty());
+            }
+        });
+    }
+
+    @Test
+    public void testEvictionAtMaxRecycled() throws InterruptedException {
+        testOnFxThread(() -> {
+            model.setMaxRecycled(2);
+            alive("A");
+            alive("B");
+            alive("C");
+            model.flush();
+            Device a = model.getByUniqueDeviceIdentifier("A");
+            Device c = model.getByUniqueDeviceIdentifier("C");
+
+            notAlive("A");
+            notAlive("B");
+            notAlive("C");
+            model.flush();
+            Assert.assertTrue(model.getContents().isEmpty());
+            // the least recently recycled is forgotten
+            Assert.assertEquals(2, model.recycledContents.size());
+            Assert.assertFalse(model.recycledContents.containsKey("A"));
+            Assert.assertNotSame(a, model.getByUniqueDeviceIdentifier("A"));
+            Assert.assertSame(c, model.getByUniqueDeviceIdentifier("C"));
+
+            // looking up A made a placeholder for it, which pushed out B
+            Assert.assertEquals(2, model.recycledContents.size());
+            Assert.assertFalse(model.recycledContents.containsKey("B"));
+
+            // a device seen again is recycled afresh rather than counted twice
+            alive("C");
+            model.flush();
+            notAlive("C");
+            model.flush();
+            Assert.assertEquals(2, model.recycledContents.size());
+            Assert.assertSame(c, model.recycledContents.get("C"));
+        });
+    }
+}
@@ -0,0 +1,131 @@
+package org.mdpnp.apps.testapp.chart;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DownsampledSeriesTest {
+
+    /**
+     * Plots into a list as the chart would
+     */
+    static class Plot implements DownsampledSeries.Sink {
+        final List<long[]> points = new ArrayList<long[]>();
+
+        @Override
+        public void clear() {
+            points.clear();
+        }
+
+        @Override
+        public void removeFirst(int n) {
+            points.subList(0, n).clear();
+        }
+
+        @Override
+        public void removeLast(int n) {
+            points.subList(points.size() - n, points.size()).clear();
+        }
+
+        @Override
+        public void add(long time, float value) {
+            points.add(new long[] { time, (long) value });
+        }
+
+        float max() {
+            long max = Long.MIN_VALUE;
+            for (long[] p : points) {
+                max = Math.max(max, p[1]);
+            }
+            return max;
+        }
+    }
+
+    private static final long T0 = 1400000000000L;
+
+    @Test
+    public void testBucketWidth() {
+        Assert.assertEquals(50000L, DownsampledSeries.bucketWidth(6 * 60 * 60 * 1000L, 800));
+        Assert.assertEquals(20L, DownsampledSeries.bucketWidth(10000L, 800));
+        Assert.assertEquals(1L, DownsampledSeries.bucketWidth(100L, 800));
+        Assert.assertEquals(100L, DownsampledSeries.bucketWidth(80000L, 800));
+    }
+
+    @Test
+    public void testKeepsSpikes() {
+        DownsampledSeries s = new DownsampledSeries(100000);
+        // two hours at 1Hz with a single spike
+        for (int i = 0; i < 7200; i++) {
+            s.add(T0 + i * 1000L, 3617 == i ? 1000f : (float) (60.0 + 5.0 * Math.sin(i / 30.0)));
+        }
+        Plot plot = new Plot();
+        s.update(T0, T0 + 7200 * 1000L, 400, plot);
+        Assert.assertEquals(20000L, s.getWidth());
+        Assert.assertTrue(plot.points.size() + " points", plot.points.size() <= 400);
+        Assert.assertEquals(1000f, plot.max(), 0f);
+    }
+
+    @Test
+    public void testSlidingAxis() {
+        DownsampledSeries s = new DownsampledSeries(100000);
+        Plot plot = new Plot();
+        long span = 10 * 60 * 1000L;
+        int value = 0;
+        // ten minutes shown, advancing a second at a time with two new values each second
+        for (long now = T0; now < T0 + 3 * span; now += 1000L) {
+            s.add(now - 500L, value++ % 50);
+            s.add(now, value++ % 50);
+            s.update(now - span, now, 300, plot);
+
+            long w = s.getWidth();
+            Assert.assertTrue(plot.points.size() + " points", plot.points.size() <= 300 + 4 * 2 + 1);
+            long last = Long.MIN_VALUE;
+            for (long[] p : plot.points) {
+                Assert.assertTrue(p[0] >= now - span - 2 * w);
+                Assert.assertTrue(p[0] > last);
+                last = p[0];
+            }
+            Assert.assertEquals(now, last);
+        }
+    }
+
+    @Test
+    public void testCapacity() {
+        DownsampledSeries s = new DownsampledSeries(1000);
+        for (int i = 0; i < 5000; i++) {
+            s.add(T0 + i, i);
+        }
+        Assert.assertTrue(s.size() <= 1000);
+        Plot plot = new Plot();
+        s.update(T0, T0 + 5000L, 100, plot);
+        Assert.assertEquals(4999L, plot.points.get(plot.points.size() - 1)[1]);
+        // out of order values are not taken
+        s.add(T0, 0f);
+        Assert.assertTrue(s.size() <= 1000);
+    }
+
+    @Test
+    public void testAddAll() {
+        DownsampledSeries history = new DownsampledSeries(1000);
+        for (int i = 0; i < 100; i++) {
+            history.add(T0 + i, i);
+        }
+        // live values overlapping the end of the history
+        DownsampledSeries live = new DownsampledSeries(1000);
+        for (int i = 90; i < 120; i++) {
+            live.add(T0 + i, i);
+        }
+        history.addAll(live);
+        Assert.assertEquals(120, history.size());
+        Plot plot = new Plot();
+        history.update(T0, T0 + 1000L, 1000, plot);
+        long last = Long.MIN_VALUE;
+        for (long[] p : plot.points) {
+            Assert.assertTrue(p[0] > last);
+            last = p[0];
+        }
+        Assert.assertEquals(T0 + 119L, last);
+    }
+}
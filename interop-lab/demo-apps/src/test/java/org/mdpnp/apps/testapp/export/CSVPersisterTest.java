@@ -8,9 +8,13 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.List;
 
 public class CSVPersisterTest {
 
@@ -31,7 +35,11 @@ public class CSVPersisterTest {
     @Test
     public void testPersistValue() throws Exception {
 
+        File dir = Files.createTempDirectory("CSVPersisterTest").toFile();
+        File f = new File(dir, "test.csv");
+
         CSVPersister p = new CSVPersister();
+        p.configure(f, 1, "10MB");
         p.start();
 
         Calendar calendar = Calendar.getInstance();
@@ -49,5 +57,22 @@ public class CSVPersisterTest {
             calendar.add(Calendar.MINUTE, 1);
 
         }
+
+        float[] values = new float[] { 1.0f, -2.5f, 3.25f };
+        p.handleDataSampleBatch(new DataSampleBatch("DEVICE0", "METRIC1", 1, calendar.getTimeInMillis(), 4, values, values.length));
+
+        // stopping rolls the file over to test.csv.1
+        p.stop();
+
+        List<String> lines = Files.readAllLines(new File(dir, "test.csv.1").toPath(), StandardCharsets.UTF_8);
+        Assert.assertEquals(23, lines.size());
+        Assert.assertTrue(lines.get(0), lines.get(0).startsWith("DEVICE0,METRIC0,0,"));
+        Assert.assertTrue(lines.get(21), lines.get(21).startsWith("DEVICE0,METRIC1,1,"));
+        Assert.assertTrue(lines.get(21), lines.get(21).endsWith(",-2.50"));
+
+        for(File c : dir.listFiles()) {
+            c.delete();
+        }
+        dir.delete();
     }
 }
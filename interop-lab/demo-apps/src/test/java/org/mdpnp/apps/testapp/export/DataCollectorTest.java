@@ -2,8 +2,11 @@ package org.mdpnp.apps.testapp.export;
 
 
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
+import org.junit.Assert;
 import org.junit.Test;
 
 public class DataCollectorTest {
@@ -24,4 +27,29 @@ public class DataCollectorTest {
 //        Assert.assertEquals("Invalid round-trip", s, "20150203.235809.985-0500");
 
     }
+
+    @Test
+    public void testExplodeBatch() throws Exception {
+
+        // 4 points at 250Hz presented at t=1000 were sampled at 984, 988, 992, 996
+        float[] values = new float[] { 1.0f, 2.0f, 3.0f, 4.0f, -1.0f };
+        DataSampleBatch batch = new DataSampleBatch("D0", "M0", 0, 1000L - 4 * 4, 4, values, 4);
+
+        final List<Value> seen = new ArrayList<>();
+        DataSampleBatch.explode(batch, new DataCollector.DataSampleEventListener() {
+            @Override
+            public void handleDataSampleEvent(DataCollector.DataSampleEvent evt) throws Exception {
+                seen.add((Value) evt.getSource());
+            }
+        });
+
+        Assert.assertEquals(4, seen.size());
+        for (int j = 0; j < 4; j++) {
+            Value v = seen.get(j);
+            Assert.assertEquals("D0", v.getUniqueDeviceIdentifier());
+            Assert.assertEquals("M0", v.getMetricId());
+            Assert.assertEquals(1000L - (4 - j) * 4, v.getDevTime());
+            Assert.assertEquals(values[j], v.getValue(), 0.0);
+        }
+    }
 }
@@ -3,8 +3,11 @@ package org.mdpnp.apps.testapp.export;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.lang.reflect.Proxy;
 import java.sql.*;
 import java.util.Calendar;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 public class JdbcPersisterTest {
 
@@ -43,6 +46,9 @@ public class JdbcPersisterTest {
         }
 
 
+        // rows are written asynchronously
+        p.flush();
+
         Connection conn = p.getConnection();
 
         try {
@@ -73,5 +79,154 @@ public class JdbcPersisterTest {
 
         p.stop();
     }
-}
 
+    @Test
+    public void testGroupCommit() throws Exception {
+        Connection c = DriverManager.getConnection("jdbc:hsqldb:mem:groupCommit", "sa", "");
+        JdbcPersister.createSchema(c);
+
+        JdbcBatchWriter w = new JdbcBatchWriter(c, 1000, JdbcBatchWriter.OverflowPolicy.Block);
+        w.setBatchSize(100);
+        w.setCommitSize(1000);
+        w.setCommitIntervalMilliseconds(60000L);
+        w.start();
+        try {
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < 10000; i++) {
+                Assert.assertTrue(w.offer("DEVICE", "METRIC", 0, now + i, i));
+            }
+            w.flush();
+
+            ResultSet rs = c.createStatement().executeQuery("select count(*), sum(VITAL_VALUE) from VITAL_VALUES");
+            Assert.assertTrue(rs.next());
+            Assert.assertEquals(10000, rs.getInt(1));
+            Assert.assertEquals(9999.0 * 10000 / 2, rs.getDouble(2), 0.0001);
+            Assert.assertEquals(10000, w.getRowsWritten());
+            Assert.assertEquals(0, w.getRowsDropped());
+            Assert.assertEquals(0, w.getQueueDepth());
+            // at least one commit per commitSize rows, and far fewer than one per row
+            Assert.assertTrue(w.getCommits() >= 10 && w.getCommits() < 100);
+        } finally {
+            w.stop();
+            c.createStatement().execute("SHUTDOWN");
+            c.close();
+        }
+    }
+
+    @Test
+    public void testDropWhenFull() throws Exception {
+        Connection c = DriverManager.getConnection("jdbc:hsqldb:mem:dropWhenFull", "sa", "");
+        JdbcPersister.createSchema(c);
+
+        // not started so nothing drains the queue
+        JdbcBatchWriter w = new JdbcBatchWriter(c, 10, JdbcBatchWriter.OverflowPolicy.Drop);
+        for (int i = 0; i < 25; i++) {
+            w.offer("DEVICE", "METRIC", 0, i, i);
+        }
+        Assert.assertEquals(10, w.getQueueDepth());
+        Assert.assertEquals(15, w.getRowsDropped());
+
+        w.start();
+        w.flush();
+        w.stop();
+
+        ResultSet rs = c.createStatement().executeQuery("select count(*) from VITAL_VALUES");
+        Assert.assertTrue(rs.next());
+        Assert.assertEquals(10, rs.getInt(1));
+        c.createStatement().execute("SHUTDOWN");
+        c.close();
+    }
+
+    @Test
+    public void testTryOfferNeverBlocks() throws Exception {
+        // a database that holds the writer in its first batch until released
+        final CountDownLatch release = new CountDownLatch(1);
+        final PreparedStatement ps = (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { PreparedStatement.class }, (proxy, method, args) -> {
+                    if ("executeBatch".equals(method.getName())) {
+                        release.await();
+                        return new int[0];
+                    }
+                    return null;
+                });
+        Connection c = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { Connection.class }, (proxy, method, args) -> "prepareStatement".equals(method.getName()) ? ps : null);
+
+        JdbcBatchWriter w = new JdbcBatchWriter(c, 10, JdbcBatchWriter.OverflowPolicy.Block);
+        w.start();
+        try {
+            Assert.assertTrue(w.tryOffer("DEVICE", "METRIC", 0, 0L, 0.0));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5L);
+            while (w.getQueueDepth() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(1L);
+            }
+            Assert.assertEquals(0, w.getQueueDepth());
+
+            // the writer is stuck so offer() would wait; tryOffer drops instead
+            int accepted = 0;
+            for (int i = 1; i <= 100; i++) {
+                if (w.tryOffer("DEVICE", "METRIC", 0, i, i)) {
+                    accepted++;
+                }
+            }
+            Assert.assertEquals(10, accepted);
+            Assert.assertEquals(90, w.getRowsDropped());
+        } finally {
+            release.countDown();
+            w.stop();
+        }
+        Assert.assertEquals(11, w.getRowsWritten());
+    }
+
+    @Test(timeout = 10000L)
+    public void testWriterFailureReleasesCallers() throws Exception {
+        // a driver that fails with something other than an SQLException
+        final PreparedStatement ps = (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { PreparedStatement.class }, (proxy, method, args) -> {
+                    if ("executeBatch".equals(method.getName())) {
+                        throw new IllegalStateException("driver bug");
+                    }
+                    return null;
+                });
+        Connection c = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { Connection.class }, (proxy, method, args) -> "prepareStatement".equals(method.getName()) ? ps : null);
+
+        JdbcBatchWriter w = new JdbcBatchWriter(c, 10, JdbcBatchWriter.OverflowPolicy.Block);
+        w.start();
+        // once the writer has died offer() drops rather than waiting for room forever
+        int accepted = 0;
+        for (int i = 0; i < 100; i++) {
+            if (w.offer("DEVICE", "METRIC", 0, i, i)) {
+                accepted++;
+            }
+        }
+        Assert.assertTrue(accepted + " accepted", accepted < 100);
+        Assert.assertEquals(100 - accepted, w.getRowsDropped());
+        w.flush();
+        w.stop();
+    }
+
+    @Test
+    public void testRowsPerSecondWhenIdle() throws Exception {
+        final PreparedStatement ps = (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { PreparedStatement.class }, (proxy, method, args) ->
+                        "executeBatch".equals(method.getName()) ? new int[0] : null);
+        Connection c = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { Connection.class }, (proxy, method, args) -> "prepareStatement".equals(method.getName()) ? ps : null);
+        JdbcBatchWriter w = new JdbcBatchWriter(c, 100, JdbcBatchWriter.OverflowPolicy.Block);
+        w.start();
+        try {
+            for (int i = 0; i < 100; i++) {
+                w.offer("DEVICE", "METRIC", 0, i, i);
+            }
+            w.flush();
+            Thread.sleep(1100L);
+            Assert.assertTrue(w.getRowsPerSecond() > 0.0);
+            // nothing has been written since so the rate falls rather than going stale
+            Thread.sleep(1100L);
+            Assert.assertEquals(0.0, w.getRowsPerSecond(), 0.0);
+        } finally {
+            w.stop();
+        }
+    }
+}
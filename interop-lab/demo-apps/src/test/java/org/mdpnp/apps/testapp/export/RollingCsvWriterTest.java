@@ -0,0 +1,101 @@
+package org.mdpnp.apps.testapp.export;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RollingCsvWriterTest {
+
+    @Test
+    public void testFormatValues() throws Exception {
+        CsvRowFormat format = new CsvRowFormat();
+        ByteBuffer bb = ByteBuffer.allocate(1024);
+
+        double[] values = new double[] { 0.0, 13.31, -0.5, 1234567.891, -0.001, 99.999 };
+        String[] expected = new String[] { "0.00", "13.31", "-0.50", "1234567.89", "0.00", "100.00" };
+        for (int i = 0; i < values.length; i++) {
+            bb.clear();
+            int n = format.format(bb, "D", "M", -3, 0L, values[i]);
+            String line = new String(bb.array(), 0, n, StandardCharsets.UTF_8);
+            Assert.assertTrue(line, line.startsWith("D,M,-3,"));
+            Assert.assertTrue(line, line.endsWith("," + expected[i] + "\n"));
+        }
+    }
+
+    @Test
+    public void testRollOverBySize() throws Exception {
+        File dir = Files.createTempDirectory("RollingCsvWriterTest").toFile();
+        File f = new File(dir, "test.csv");
+
+        RollingCsvWriter w = new RollingCsvWriter(f, 4096);
+        w.setMaxFileSize(10000);
+        w.setMaxBackupIndex(2);
+        w.setGzip(true);
+
+        long t = System.currentTimeMillis();
+        for (int i = 0; i < 2000; i++) {
+            w.write("DEVICE0", "METRIC0", 0, t + i, i);
+        }
+        w.close();
+
+        // the oldest files were pushed past the backup index and deleted
+        Assert.assertTrue(RollingCsvWriter.backup(f, 1, true).exists());
+        Assert.assertTrue(RollingCsvWriter.backup(f, 2, true).exists());
+        Assert.assertFalse(RollingCsvWriter.backup(f, 3, true).exists());
+
+        // rows are never split across files
+        String last = null;
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new FileInputStream(RollingCsvWriter.backup(f, 1, true))), StandardCharsets.UTF_8))) {
+            String line;
+            while (null != (line = r.readLine())) {
+                Assert.assertTrue(line, line.startsWith("DEVICE0,METRIC0,0,"));
+                last = line;
+            }
+        }
+        String current = new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8);
+        Assert.assertTrue(current.startsWith("DEVICE0,METRIC0,0,"));
+        Assert.assertTrue(current.endsWith(",1999.00\n"));
+        Assert.assertNotNull(last);
+
+        for (File c : dir.listFiles()) {
+            c.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void testTimedFlush() throws Exception {
+        File dir = Files.createTempDirectory("RollingCsvWriterTest").toFile();
+        File f = new File(dir, "test.csv");
+
+        RollingCsvWriter w = new RollingCsvWriter(f, 4096);
+        w.setFlushInterval(50L);
+        w.write("DEVICE0", "METRIC0", 0, System.currentTimeMillis(), 1.0);
+        // no further row arrives to write it out
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (f.length() == 0L && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        Assert.assertTrue(f.length() > 0L);
+        Assert.assertEquals(1, Files.readAllLines(f.toPath(), StandardCharsets.UTF_8).size());
+        w.close();
+        f.delete();
+        dir.delete();
+    }
+
+    @Test
+    public void testParseFileSize() {
+        Assert.assertEquals(500L, RollingCsvWriter.parseFileSize("500"));
+        Assert.assertEquals(5L * 1024L * 1024L, RollingCsvWriter.parseFileSize("5MB"));
+        Assert.assertEquals(1000L * 1024L * 1024L * 1024L, RollingCsvWriter.parseFileSize("1000GB"));
+    }
+}
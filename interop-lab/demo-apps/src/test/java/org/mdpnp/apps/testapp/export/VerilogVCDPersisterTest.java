@@ -139,6 +139,102 @@ public class VerilogVCDPersisterTest {
         }
     }
 
+    @Test
+    public void testReopenEvictedFiles() throws Exception {
+
+        File root = File.createTempFile("VCD-", "-TEST");
+        root.delete();
+        root.mkdirs();
+
+        try {
+            VerilogVCDPersister.OneWavePerVCD p = new VerilogVCDPersister.OneWavePerVCD(root, VerilogVCDPersister.FZ_1MB);
+            // fewer open files than waves so that every wave is closed and reopened
+            p.setMaxOpenFiles(2);
+            p.start();
+
+            long now = System.currentTimeMillis();
+            float[] values = new float[10];
+
+            for (int n = 0; n < 20; n++) {
+                for (int m = 0; m < 5; m++) {
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = (float) mockData(n * values.length + i);
+                    }
+                    p.persist(new DataSampleBatch("DEVICE0", "METRIC" + m, 0, now + n * 40L, 4L, values, values.length));
+                }
+            }
+
+            p.stop();
+
+            for (int m = 0; m < 5; m++) {
+                File f = new File(root, "DEVICE0-METRIC" + m + "-0.vcd");
+                int headers = 0, changes = 0;
+                BufferedReader r = new BufferedReader(new FileReader(f));
+                try {
+                    String line;
+                    while ((line = r.readLine()) != null) {
+                        if (line.startsWith("$date")) headers++;
+                        if (line.startsWith("r")) changes++;
+                    }
+                } finally {
+                    r.close();
+                }
+                Assert.assertEquals("Header written more than once", 1, headers);
+                Assert.assertEquals("Lost values across reopen", 200, changes);
+            }
+        }
+        finally {
+            File files[] = root.listFiles();
+            for (File f : files) {
+                f.delete();
+            }
+            root.delete();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoOpenFilesIsRejected() throws Exception {
+        // the file just opened would be closed at once
+        new VerilogVCDPersister.OneWavePerVCD(null, VerilogVCDPersister.FZ_1MB).setMaxOpenFiles(0);
+    }
+
+    @Test
+    public void testForgottenWaveStartsNewFile() throws Exception {
+
+        File root = File.createTempFile("VCD-", "-TEST");
+        root.delete();
+        root.mkdirs();
+
+        try {
+            VerilogVCDPersister.OneWavePerVCD p = new VerilogVCDPersister.OneWavePerVCD(root, VerilogVCDPersister.FZ_1MB);
+            p.setMaxOpenFiles(1);
+            p.setMaxClosedFiles(1);
+            p.start();
+
+            long now = System.currentTimeMillis();
+            // METRIC0 is closed by METRIC1 and forgotten once METRIC2 closes METRIC1
+            for (int m = 0; m < 3; m++) {
+                p.persist(DataCollector.toValue("DEVICE0", "METRIC" + m, 0, now, 1.0));
+            }
+            // METRIC1 was remembered so its file is appended to
+            p.persist(DataCollector.toValue("DEVICE0", "METRIC1", 0, now + 1000L, 2.0));
+            p.persist(DataCollector.toValue("DEVICE0", "METRIC0", 0, now + 1000L, 2.0));
+            p.stop();
+
+            Assert.assertTrue(new File(root, "DEVICE0-METRIC0-0.vcd").exists());
+            Assert.assertTrue(new File(root, "DEVICE0-METRIC0-0.1.vcd").exists());
+            Assert.assertFalse(new File(root, "DEVICE0-METRIC1-0.1.vcd").exists());
+            Assert.assertEquals(4, root.listFiles().length);
+        }
+        finally {
+            File files[] = root.listFiles();
+            for (File f : files) {
+                f.delete();
+            }
+            root.delete();
+        }
+    }
+
     private static double mockData(int n)
     {
         double v = Math.sin(Math.toRadians(n))*10;
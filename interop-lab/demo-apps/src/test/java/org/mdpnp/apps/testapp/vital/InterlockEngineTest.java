@@ -0,0 +1,196 @@
+package org.mdpnp.apps.testapp.vital;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mdpnp.apps.testapp.vital.InterlockEngine.Advisory;
+import org.mdpnp.apps.testapp.vital.InterlockEngine.Rule;
+import org.mdpnp.apps.testapp.vital.InterlockEngine.Status;
+import org.mdpnp.apps.testapp.vital.VitalModel.State;
+
+public class InterlockEngineTest {
+
+    private InterlockEngine engine;
+
+    @Before
+    public void setUp() {
+        engine = new InterlockEngine();
+        engine.setRules(new Rule[] {
+                new Rule("Heart Rate", "bpm", new String[] { "HR" }, 50.0, 120.0, 40.0, 140.0, true, false),
+                new Rule("SpO2", "%", new String[] { "SPO2" }, 90.0, null, 80.0, null, true, false) });
+    }
+
+    @Test
+    public void testWarningsBecomeAlarm() {
+        engine.update("hr", "HR", 60f, System.nanoTime());
+        engine.update("spo2", "SPO2", 98f, System.nanoTime());
+        assertEquals(State.Normal, engine.getStatus().getState());
+        assertEquals("", engine.getStatus().getWarningText());
+
+        engine.update("hr", "HR", 45f, System.nanoTime());
+        Status status = engine.getStatus();
+        assertEquals(State.Warning, status.getState());
+        assertEquals(Advisory.Low, status.getAdvisory(0));
+        assertNull(status.getAdvisory(1));
+        assertTrue(status.getWarningText().startsWith("- low Heart Rate 45.0 bpm\r\nat "));
+        assertFalse(status.isInfusionStopped());
+
+        engine.update("spo2", "SPO2", 85f, System.nanoTime());
+        status = engine.getStatus();
+        assertEquals(State.Alarm, status.getState());
+        assertTrue(status.isInfusionStopped());
+        assertTrue(status.getInterlockText().startsWith("Pump Stopped\r\n- low Heart Rate 45.0 bpm\r\n- low SpO2 85.0 %\r\nat "));
+        assertEquals(1L, engine.getStops());
+
+        engine.resetInfusion();
+        assertFalse(engine.getStatus().isInfusionStopped());
+        assertEquals("", engine.getStatus().getInterlockText());
+
+        engine.setCountWarningsBecomeAlarm(3);
+        engine.update("spo2", "SPO2", 86f, System.nanoTime());
+        assertEquals(State.Warning, engine.getStatus().getState());
+        assertFalse(engine.getStatus().isInfusionStopped());
+    }
+
+    @Test
+    public void testCritical() {
+        engine.update("hr", "HR", 150f, System.nanoTime());
+        Status status = engine.getStatus();
+        assertEquals(State.Alarm, status.getState());
+        assertTrue(status.isInfusionStopped());
+        assertTrue(status.getInterlockText().startsWith("Pump Stopped\r\n- high Heart Rate 150.0 bpm\r\nat "));
+    }
+
+    @Test
+    public void testIgnoredValues() {
+        engine.update("hr", "HR", 0f, System.nanoTime());
+        assertEquals(State.Normal, engine.getStatus().getState());
+
+        engine.update("hr", "HR", 45f, System.nanoTime());
+        assertEquals(State.Warning, engine.getStatus().getState());
+
+        engine.remove("hr");
+        assertEquals(State.Normal, engine.getStatus().getState());
+
+        engine.setRules(new Rule[] { new Rule("Heart Rate", "bpm", new String[] { "HR" }, 50.0, 120.0, null, null, true, true) });
+        assertEquals(State.Warning, engine.getStatus().getState());
+        assertEquals(Advisory.NoSource, engine.getStatus().getAdvisory(0));
+        assertTrue(engine.getStatus().getWarningText().startsWith("- no source of Heart Rate\r\n"));
+    }
+
+    @Test
+    public void testClockStepBackThenCritical() {
+        // as the reader delivers them: a device that resets its clock keeps its instance
+        engine.update("hr", "HR", 60f, System.nanoTime());
+        engine.update("hr", "HR", 62f, System.nanoTime());
+        assertEquals(State.Normal, engine.getStatus().getState());
+        // stamped earlier than the values before it
+        engine.update("hr", "HR", 30f, System.nanoTime());
+        assertEquals(State.Alarm, engine.getStatus().getState());
+        assertTrue(engine.getStatus().isInfusionStopped());
+        assertTrue(engine.getStatus().getInterlockText().startsWith("Pump Stopped\r\n- low Heart Rate 30.0 bpm\r\nat "));
+    }
+
+    @Test
+    public void testLateCopyDoesNotReplaceValue() {
+        engine.update("hr", "HR", 30f, System.nanoTime());
+        assertTrue(engine.getStatus().isInfusionStopped());
+        engine.resetInfusion();
+        // the FX copy of an earlier sample of the same instance
+        assertFalse(engine.addIfAbsent("hr", "HR", 60f, System.nanoTime()));
+        engine.update("spo2", "SPO2", 98f, System.nanoTime());
+        assertEquals(State.Alarm, engine.getStatus().getState());
+
+        assertTrue(engine.addIfAbsent("hr2", "HR", 45f, System.nanoTime()));
+        assertEquals(Advisory.Low, engine.getStatus().getAdvisory(0));
+    }
+
+    @Test
+    public void testUnchangedAdviceKeepsStatus() {
+        engine.update("hr", "HR", 60f, System.nanoTime());
+        Status status = engine.getStatus();
+        for (int i = 0; i < 100; i++) {
+            engine.update("hr", "HR", 60f + i % 10, System.nanoTime());
+        }
+        assertSame(status, engine.getStatus());
+        assertEquals(101L, engine.getEvaluations());
+    }
+
+    @Test
+    public void testNegativeArrivalIsMeasured() {
+        // System.nanoTime() has an arbitrary origin so may well be negative
+        engine.update("hr", "HR", 60f, -1000L);
+        engine.update("hr", "HR", 30f, -2000000000L);
+        assertEquals(2L, engine.getEvaluations());
+        assertEquals(1L, engine.getStops());
+        // changing the rules evaluates without a value having arrived
+        engine.setCountWarningsBecomeAlarm(3);
+        assertEquals(2L, engine.getEvaluations());
+    }
+
+    @Test
+    public void testStopLatencyUnderUiLoad() throws InterruptedException {
+        // a UI thread that falls further behind with every change it is asked to mirror
+        final ExecutorService ui = Executors.newSingleThreadExecutor();
+        final AtomicLong mirrored = new AtomicLong();
+        final AtomicReference<Thread> stopThread = new AtomicReference<Thread>();
+        final CountDownLatch stopped = new CountDownLatch(1);
+        engine.addListener((previous, status) -> {
+            if (status.isInfusionStopped() && !previous.isInfusionStopped()) {
+                stopThread.set(Thread.currentThread());
+                stopped.countDown();
+            }
+            ui.execute(() -> {
+                try {
+                    Thread.sleep(20L);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                mirrored.incrementAndGet();
+            });
+        });
+        // busy work queued ahead of any mirroring
+        for (int i = 0; i < 50; i++) {
+            ui.execute(() -> {
+                long until = System.nanoTime() + 10000000L;
+                while (System.nanoTime() < until) {
+                }
+            });
+        }
+
+        try {
+            // heart rate falling through the warning low while SpO2 recovers and falls
+            for (int i = 0; i < 200; i++) {
+                engine.update("hr", "HR", 80f - i * 0.1f, System.nanoTime());
+                engine.update("spo2", "SPO2", 95f + (i % 3), System.nanoTime());
+            }
+            assertFalse(engine.getStatus().isInfusionStopped());
+            engine.resetMetrics();
+
+            engine.update("hr", "HR", 48f, System.nanoTime());
+            engine.update("spo2", "SPO2", 89f, System.nanoTime());
+
+            assertTrue(stopped.await(0L, TimeUnit.MILLISECONDS));
+            assertSame(Thread.currentThread(), stopThread.get());
+            assertEquals(1L, engine.getStops());
+            // decided well before the UI has caught up
+            assertTrue("stop latency " + engine.getStopLatency() + "ms", engine.getStopLatency() < 50.0);
+            assertTrue(engine.getMaxLatency() < 50.0);
+            assertTrue(mirrored.get() < 10L);
+        } finally {
+            ui.shutdownNow();
+        }
+    }
+}
@@ -24,6 +24,7 @@ import ice.SampleArray;
 import ice.SampleArrayDataWriter;
 import ice.SampleArrayTypeSupport;
 
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -47,6 +48,7 @@ import org.springframework.jmx.export.annotation.ManagedResource;
 
 import com.rti.dds.domain.DomainParticipant;
 import com.rti.dds.infrastructure.Condition;
+import com.rti.dds.infrastructure.FloatSeq;
 import com.rti.dds.infrastructure.InstanceHandle_t;
 import com.rti.dds.infrastructure.RETCODE_NO_DATA;
 import com.rti.dds.infrastructure.ResourceLimitsQosPolicy;
@@ -541,21 +543,80 @@ public abstract class AbstractDevice {
         return sampleArraySample(holder, new CollectionContainer<>(newValues), metric_id, vendor_metric_id, instance_id, unit_id, frequency, timestamp);
     }
 
+    /**
+     * Publishes {@code length} samples of {@code newValues} starting at {@code offset}.  Unlike the {@link Number}
+     * based variants no intermediate objects are created so a driver that reuses its own buffer publishes
+     * waveforms without allocation once the underlying sequence has grown to the required size.
+     * A null {@code newValues} unregisters the instance.
+     */
+    protected InstanceHolder<ice.SampleArray> sampleArraySample(InstanceHolder<ice.SampleArray> holder,
+                                                                float[] newValues, int offset, int length,
+                                                                String metric_id, String vendor_metric_id, int instance_id, String unit_id, int frequency,
+                                                                DeviceClock.Reading timestamp) {
+        if (null != newValues) {
+            // Call this now so that resolution of instance registration timestamp
+            // is reduced
+            timestamp = timestamp.refineResolutionForFrequency(frequency, length);
+        }
+        holder = ensureSampleArrayInstance(holder, null != newValues, metric_id, vendor_metric_id, instance_id, unit_id, frequency);
+        if (null != newValues) {
+            sampleArraySample(holder, newValues, offset, length, timestamp);
+        }
+        return holder;
+    }
+
+    protected InstanceHolder<ice.SampleArray> sampleArraySample(InstanceHolder<ice.SampleArray> holder,
+                                                                float[] newValues,
+                                                                String metric_id, String vendor_metric_id, int instance_id, String unit_id, int frequency,
+                                                                DeviceClock.Reading timestamp) {
+        return sampleArraySample(holder, newValues, 0, null == newValues ? 0 : newValues.length, metric_id, vendor_metric_id, instance_id, unit_id, frequency, timestamp);
+    }
+
+    /**
+     * Publishes the remaining elements of {@code newValues}; the position of the buffer is not modified.
+     * A null {@code newValues} unregisters the instance.
+     */
+    protected InstanceHolder<ice.SampleArray> sampleArraySample(InstanceHolder<ice.SampleArray> holder,
+                                                                FloatBuffer newValues,
+                                                                String metric_id, String vendor_metric_id, int instance_id, String unit_id, int frequency,
+                                                                DeviceClock.Reading timestamp) {
+        if (null != newValues) {
+            // Call this now so that resolution of instance registration timestamp
+            // is reduced
+            timestamp = timestamp.refineResolutionForFrequency(frequency, newValues.remaining());
+        }
+        holder = ensureSampleArrayInstance(holder, null != newValues, metric_id, vendor_metric_id, instance_id, unit_id, frequency);
+        if (null != newValues) {
+            sampleArraySample(holder, newValues, timestamp);
+        }
+        return holder;
+    }
+
     private InstanceHolder<SampleArray> sampleArraySample(InstanceHolder<SampleArray> holder,
                                                           NullSaveContainer<Number> newValues,
                                                           String metric_id, String vendor_metric_id, int instance_id, String unit_id, int frequency,
                                                           DeviceClock.Reading timestamp) {
-
-        holder = ensureHolderConsistency(holder, metric_id, vendor_metric_id, instance_id, unit_id, frequency);
-
         if (!newValues.isNull()) {
             // Call this now so that resolution of instance registration timestamp
             // is reduced
             timestamp = timestamp.refineResolutionForFrequency(frequency, newValues.size());
+        }
+        holder = ensureSampleArrayInstance(holder, !newValues.isNull(), metric_id, vendor_metric_id, instance_id, unit_id, frequency);
+        if (!newValues.isNull()) {
+            sampleArraySample(holder, newValues, timestamp);
+        }
+        return holder;
+    }
+
+    private InstanceHolder<SampleArray> ensureSampleArrayInstance(InstanceHolder<SampleArray> holder, boolean hasValues,
+                                                                  String metric_id, String vendor_metric_id, int instance_id, String unit_id, int frequency) {
+
+        holder = ensureHolderConsistency(holder, metric_id, vendor_metric_id, instance_id, unit_id, frequency);
+
+        if (hasValues) {
             if (null == holder) {
                 holder = createSampleArrayInstance(metric_id, vendor_metric_id, instance_id, unit_id, frequency);
             }
-            sampleArraySample(holder, newValues, timestamp);
         } else {
             if (holder != null) {
                 unregisterSampleArrayInstance(holder);
@@ -573,6 +634,32 @@ public abstract class AbstractDevice {
         sampleArraySample(holder, new CollectionContainer<>(newValues), timestamp);
     }
 
+    protected void sampleArraySample(InstanceHolder<SampleArray> holder, float[] newValues, DeviceClock.Reading timestamp) {
+        sampleArraySample(holder, newValues, 0, null == newValues ? 0 : newValues.length, timestamp);
+    }
+
+    protected void sampleArraySample(InstanceHolder<SampleArray> holder, float[] newValues, int offset, int length, DeviceClock.Reading timestamp) {
+        FloatSeq values = holder.data.values.userData;
+        values.clear();
+        if (null != newValues) {
+            for (int i = offset, end = offset + length; i < end; i++) {
+                values.addFloat(newValues[i]);
+            }
+        }
+        publish(holder, timestamp);
+    }
+
+    protected void sampleArraySample(InstanceHolder<SampleArray> holder, FloatBuffer newValues, DeviceClock.Reading timestamp) {
+        FloatSeq values = holder.data.values.userData;
+        values.clear();
+        if (null != newValues) {
+            for (int i = newValues.position(), end = newValues.limit(); i < end; i++) {
+                values.addFloat(newValues.get(i));
+            }
+        }
+        publish(holder, timestamp);
+    }
+
     private void sampleArraySample(InstanceHolder<ice.SampleArray> holder, NullSaveContainer<Number> newValues, DeviceClock.Reading deviceTimestamp) {
         fill(holder, newValues);
         publish(holder, deviceTimestamp);
@@ -592,9 +679,7 @@ public abstract class AbstractDevice {
     private void publish(InstanceHolder<ice.SampleArray> holder, DeviceClock.Reading deviceTimestamp) {
 
         if (deviceTimestamp.hasDeviceTime()) {
-            Time_t t = DomainClock.toDDSTime(deviceTimestamp.getDeviceTime());
-            holder.data.device_time.sec = t.sec;
-            holder.data.device_time.nanosec = t.nanosec;
+            DomainClock.toDDSTime(deviceTimestamp.getDeviceTime(), holder.data.device_time);
         } else {
 
             holder.data.device_time.sec = 0;
@@ -23,7 +23,6 @@ import java.io.OutputStream;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -106,11 +105,42 @@ public abstract class AbstractDraegerVent extends AbstractDelegatingSerialDevice
 
     private static final int BUFFER_SAMPLES = 25;
 
+    /**
+     * Retains the most recent BUFFER_SAMPLES realtime values of one stream
+     * in primitive form so they can be published without boxing.
+     */
+    private static final class RealtimeBuffer {
+        private final float[] samples = new float[BUFFER_SAMPLES];
+        private final float[] window = new float[BUFFER_SAMPLES];
+        private int next, size;
+
+        public synchronized void add(float value) {
+            samples[next] = value;
+            next = ++next == samples.length ? 0 : next;
+            if (size < samples.length) {
+                size++;
+            }
+        }
+
+        public synchronized boolean isFull() {
+            return size == samples.length;
+        }
+
+        /**
+         * @return the buffered samples, oldest first, in an array owned by this buffer
+         */
+        public synchronized float[] window() {
+            int tail = samples.length - next;
+            System.arraycopy(samples, next, window, 0, tail);
+            System.arraycopy(samples, 0, window, tail, next);
+            return window;
+        }
+    }
+
     // Theoretical maximum 16 streams, practical limit seems to be 3
     // Buffering ten points is for testing, size of this buffer might be
     // a function of the sampling rate
-    @SuppressWarnings("unchecked")
-    private final List<Number>[] realtimeBuffer = new List[16];
+    private final RealtimeBuffer[] realtimeBuffer = new RealtimeBuffer[16];
     private final RTMedibus.RTDataConfig[] realtimeConfig = new RTMedibus.RTDataConfig[16];
     private final int[] realtimeUpsample = new int[16];
     private final int[] realtimeFrequency = new int[16];
@@ -140,7 +170,7 @@ public abstract class AbstractDraegerVent extends AbstractDelegatingSerialDevice
             realtimeFrequency[streamIndex] = 1000000 / (config.interval*multiplier/realtimeUpsample[streamIndex]);
         }
         for(int i = 0; i < realtimeUpsample[streamIndex]; i++) {
-            realtimeBuffer[streamIndex].add(value);
+            realtimeBuffer[streamIndex].add((float) value);
         }
         startEmitFastData(realtimeFrequency[streamIndex]);
     }
@@ -258,7 +288,7 @@ public abstract class AbstractDraegerVent extends AbstractDelegatingSerialDevice
             markOldTechnicalAlertInstances();
             for (Data d : data) {
                 if (null != d) {
-                    writeTechnicalAlert(d.code.toString(), d.data);
+                    writeTechnicalAlert(d.code.toString(), d.data.toString());
                 }
             }
             clearOldTechnicalAlertInstances();
@@ -272,10 +302,9 @@ public abstract class AbstractDraegerVent extends AbstractDelegatingSerialDevice
                     // custom types in the ice package
                     String metric = numerics.get(d.code);
                     metric = metricOrCode(metric, d.code, "SETTING");
-                    String s = null == d.data ? null : d.data.toString().trim();
                     Float f = null;
                     try {
-                        f = Float.parseFloat(s);
+                        f = d.data.floatValue();
                     } catch (NumberFormatException nfe) {
                         // Stack traces here are too noisy
                         // on our EvitaXL 
@@ -293,10 +322,9 @@ public abstract class AbstractDraegerVent extends AbstractDelegatingSerialDevice
                 if (null != d) {
                     String metric = numerics.get(d.code);
                     metric = metricOrCode(metric, d.code, "MEASURED_CP"+codepage);
-                    String s = null == d.data ? null : d.data.toString().trim();
                     Float f = null;
                     try {
-                        f = Float.parseFloat(s);
+                        f = d.data.floatValue();
                     } catch (NumberFormatException nfe) {
                         log.error("Bad measured data number format " + d.code + " " + nfe.getMessage());
                     }
@@ -341,7 +369,7 @@ public abstract class AbstractDraegerVent extends AbstractDelegatingSerialDevice
                 if (null != d) {
                     Float f = null;
                     try {
-                        f = Float.parseFloat(d.data);
+                        f = d.data.floatValue();
                     } catch (NumberFormatException nfe) {
                         log.error("Bad number format for low alarm " + d.code + " " + nfe.getMessage());
                     }
@@ -359,7 +387,7 @@ public abstract class AbstractDraegerVent extends AbstractDelegatingSerialDevice
                 if (null != d) {
                     Float f = null;
                     try {
-                        f = Float.parseFloat(d.data);
+                        f = d.data.floatValue();
                     } catch (NumberFormatException nfe) {
                         log.error("Bad number format for high alarm " + d.code + " " + nfe.getMessage());
                     }
@@ -490,11 +518,8 @@ public abstract class AbstractDraegerVent extends AbstractDelegatingSerialDevice
                             // requested realtime data; so we
                             // expedite here using the same preregistered instance
                             synchronized (realtimeBuffer[i]) {
-                                if (realtimeBuffer[i].size() >= BUFFER_SAMPLES) {
-                                    if (realtimeBuffer[i].size() > BUFFER_SAMPLES) {
-                                        realtimeBuffer[i].subList(0, realtimeBuffer[i].size() - BUFFER_SAMPLES).clear();
-                                    }
-                                    sampleArraySample(sa, realtimeBuffer[i], deviceClock.instant());
+                                if (realtimeBuffer[i].isFull()) {
+                                    sampleArraySample(sa, realtimeBuffer[i].window(), deviceClock.instant());
                                 }
                             }
                         } else {
@@ -516,12 +541,9 @@ public abstract class AbstractDraegerVent extends AbstractDelegatingSerialDevice
     
                             metric_id = metricOrCode(metric_id, code, "RT");
                             synchronized (realtimeBuffer[i]) {
-                                if (realtimeBuffer[i].size() >= BUFFER_SAMPLES) {
-                                    if (realtimeBuffer[i].size() > BUFFER_SAMPLES) {
-                                        realtimeBuffer[i].subList(0, realtimeBuffer[i].size() - BUFFER_SAMPLES).clear();
-                                    }
+                                if (realtimeBuffer[i].isFull()) {
                                     sampleArrayUpdates.put(code,
-                                            sampleArraySample(sa, realtimeBuffer[i], metric_id, codeToString(code), 0, units(code), realtimeFrequency[i], deviceClock.instant()));
+                                            sampleArraySample(sa, realtimeBuffer[i].window(), metric_id, codeToString(code), 0, units(code), realtimeFrequency[i], deviceClock.instant()));
                                 }
                             }
                         }
@@ -751,7 +773,7 @@ public abstract class AbstractDraegerVent extends AbstractDelegatingSerialDevice
     public AbstractDraegerVent(final Subscriber subscriber, final Publisher publisher, EventLoop eventLoop) {
         super(subscriber, publisher, eventLoop, RTMedibus.class);
         for (int i = 0; i < realtimeBuffer.length; i++) {
-            realtimeBuffer[i] = Collections.synchronizedList(new ArrayList<Number>());
+            realtimeBuffer[i] = new RealtimeBuffer();
         }
         loadMap(numerics, waveforms);
     }
@@ -20,28 +20,32 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.*;
+import java.nio.ByteBuffer;
 import java.nio.channels.DatagramChannel;
 import java.nio.channels.SelectionKey;
 import java.text.Normalizer;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.mdpnp.devices.AbstractDevice;
 import org.mdpnp.devices.DeviceClock;
 import org.mdpnp.devices.connected.AbstractConnectedDevice;
+import org.mdpnp.devices.io.util.IntMap;
 import org.mdpnp.devices.io.util.StateMachine;
 import org.mdpnp.devices.net.NetworkLoop;
+import org.mdpnp.devices.net.NetworkLoopGroup;
 import org.mdpnp.devices.net.TaskQueue;
 import org.mdpnp.devices.philips.intellivue.action.ExtendedPollDataResult;
+import org.mdpnp.devices.philips.intellivue.action.ExtendedPollDataVisitor;
 import org.mdpnp.devices.philips.intellivue.action.ObservationPoll;
 import org.mdpnp.devices.philips.intellivue.action.SingleContextPoll;
 import org.mdpnp.devices.philips.intellivue.action.SinglePollDataResult;
@@ -100,6 +104,7 @@ import org.mdpnp.devices.simulation.AbstractSimulatedDevice;
 import org.mdpnp.rtiapi.data.EventLoop;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
 
 import com.rti.dds.infrastructure.Time_t;
 import com.rti.dds.publication.Publisher;
@@ -108,7 +113,7 @@ import com.rti.dds.subscription.Subscriber;
 public abstract class AbstractDemoIntellivue extends AbstractConnectedDevice {
 
     protected final InstanceHolder<SampleArray> getSampleArrayUpdate(ObservedValue ov, int handle) {
-        Map<Integer, InstanceHolder<SampleArray>> forObservedValue = sampleArrayUpdates.get(ov);
+        IntMap<InstanceHolder<SampleArray>> forObservedValue = sampleArrayUpdates.get(ov);
         if (null == forObservedValue) {
             return null;
         } else {
@@ -117,9 +122,9 @@ public abstract class AbstractDemoIntellivue extends AbstractConnectedDevice {
     }
     
     protected final void putSampleArrayUpdate(ObservedValue ov, int handle, InstanceHolder<SampleArray> value) {
-        Map<Integer, InstanceHolder<SampleArray>> forObservedValue = sampleArrayUpdates.get(ov);
+        IntMap<InstanceHolder<SampleArray>> forObservedValue = sampleArrayUpdates.get(ov);
         if (null == forObservedValue) {
-            forObservedValue = new HashMap<Integer, InstanceHolder<SampleArray>>();
+            forObservedValue = new IntMap<InstanceHolder<SampleArray>>();
             sampleArrayUpdates.put(ov, forObservedValue);
         }
         if(null == value) {
@@ -255,7 +260,7 @@ public abstract class AbstractDemoIntellivue extends AbstractConnectedDevice {
         }
     }
 
-    private class IntellivueExt extends Intellivue {
+    private class IntellivueExt extends Intellivue implements ExtendedPollDataVisitor {
 
         private final Logger log = LoggerFactory.getLogger(IntellivueExt.class);
 
@@ -264,6 +269,53 @@ public abstract class AbstractDemoIntellivue extends AbstractConnectedDevice {
         public IntellivueExt(DeviceClock referenceClock) {
             super();
             deviceClock = new DemoIntellivueClock(referenceClock);
+            if (!Boolean.getBoolean("mdpnp.intellivue.fullparse")) {
+                // real time sample arrays are decoded in place
+                setExtendedPollDataVisitor(this);
+            }
+        }
+
+        @Override
+        public boolean accept(int polledObjectClass, int polledAttributeGroup) {
+            return ObjectClass.NOM_MOC_VMO_METRIC_SA_RT.asInt() == polledObjectClass;
+        }
+
+        @Override
+        public void begin(int pollNumber, int sequenceNumber, long relativeTime) {
+            lastMessageReceived = System.currentTimeMillis();
+        }
+
+        @Override
+        public void sampleArray(int handle, int physioId, int measurementState, ByteBuffer bb, int offset, int length) {
+            ObservedValue ov = sampleArrayObservedValue(physioId);
+            if (null != ov) {
+                MySampleArray w = prepareSampleArray(ov, handle, length);
+                if (null != w) {
+                    w.applyValues(bb, offset, length);
+                    addSamples(ov, handle, w);
+                }
+            }
+        }
+
+        @Override
+        public void attribute(int handle, int oid, ByteBuffer bb) {
+            if (oid == AbstractDemoIntellivue.this.period.getOid().getType()) {
+                AbstractDemoIntellivue.this.period.parse(bb);
+                handle(handle, AbstractDemoIntellivue.this.period.getValue());
+            } else if (oid == AbstractDemoIntellivue.this.sar.getOid().getType()) {
+                AbstractDemoIntellivue.this.sar.parse(bb);
+                handle(handle, AbstractDemoIntellivue.this.sar.getValue());
+            } else if (oid == AbstractDemoIntellivue.this.spec.getOid().getType()) {
+                AbstractDemoIntellivue.this.spec.parse(bb);
+                handle(handle, AbstractDemoIntellivue.this.spec.getValue());
+            } else if (oid == AbstractDemoIntellivue.this.unitCode.getOid().getType()) {
+                AbstractDemoIntellivue.this.unitCode.parse(bb);
+                handle(handle, AbstractDemoIntellivue.this.unitCode.getValue().getEnum());
+            }
+        }
+
+        @Override
+        public void end() {
         }
 
         @Override
@@ -657,7 +709,7 @@ public abstract class AbstractDemoIntellivue extends AbstractConnectedDevice {
 
 
         private final InstanceHolder<ice.Numeric> getNumericUpdate(ObservedValue ov, int handle) {
-            Map<Integer, InstanceHolder<ice.Numeric>> forObservedValue = numericUpdates.get(ov);
+            IntMap<InstanceHolder<ice.Numeric>> forObservedValue = numericUpdates.get(ov);
             if (null == forObservedValue) {
                 return null;
             } else {
@@ -668,9 +720,9 @@ public abstract class AbstractDemoIntellivue extends AbstractConnectedDevice {
 
 
         private final void putNumericUpdate(ObservedValue ov, int handle, InstanceHolder<ice.Numeric> value) {
-            Map<Integer, InstanceHolder<ice.Numeric>> forObservedValue = numericUpdates.get(ov);
+            IntMap<InstanceHolder<ice.Numeric>> forObservedValue = numericUpdates.get(ov);
             if (null == forObservedValue) {
-                forObservedValue = new HashMap<Integer, InstanceHolder<ice.Numeric>>();
+                forObservedValue = new IntMap<InstanceHolder<ice.Numeric>>();
                 numericUpdates.put(ov, forObservedValue);
             }
             forObservedValue.put(handle, value);
@@ -679,67 +731,90 @@ public abstract class AbstractDemoIntellivue extends AbstractConnectedDevice {
 
 
         protected void handle(int handle, DeviceClock.Reading time, SampleArrayObservedValue v, long now) {
-            short[] bytes = v.getValue();
-            ObservedValue ov = ObservedValue.valueOf(v.getPhysioId().getType());
+            ObservedValue ov = sampleArrayObservedValue(v.getPhysioId().getType());
+            if (null != ov) {
+                MySampleArray w = prepareSampleArray(ov, handle, v.getLength());
+                if (null != w) {
+                    short[] bytes = v.getValue();
+                    for (int i = 0; i < w.getArraySize(); i++) {
+                        w.applyValue(i, bytes);
+                    }
+                    addSamples(ov, handle, w);
+                }
+            }
+        }
+
+        private ObservedValue sampleArrayObservedValue(int physioId) {
+            ObservedValue ov = ObservedValue.valueOf(physioId);
             if (null == ov) {
-                log.warn("No ObservedValue for " + v.getPhysioId().getType());
+                log.warn("No ObservedValue for " + physioId);
+                return null;
+            } else if (null == sampleArrayMetricIds.get(ov)) {
+                log.warn("No metricId for " + ov);
+                return null;
             } else {
-                String metricId = sampleArrayMetricIds.get(ov);
-                if (null == metricId) {
-                    log.warn("No metricId for " + ov);
-                } else {
-                    SampleArraySpecification sas = handleToSampleArraySpecification.get(handle);
-                    ScaleAndRangeSpecification sar = handleToScaleAndRangeSpecification.get(handle);
-                    UnitCode unitCode = handleToUnitCode.get(handle);
-                    RelativeTime rt = handleToUpdatePeriod.get(handle);
-                    if (null == sas || null == rt || null == sar || null == unitCode) {
-                        log.warn("No SampleArraySpecification or RelativeTime for handle=" + handle + " rt=" + rt + " sas=" + sas + " sar="+sar+ " unitCode="+unitCode);
-                    } else {
-                        int cnt = sas.getArraySize();
-                        // TODO these were once cached, no?
-                        MySampleArray w = new MySampleArray();
-                        
-                        w.setSampleArraySpecification(sas);
-                        w.setScaleAndRangeSpecification(sar);
-                        
-                        int cnt_sa = v.getLength() / (sas.getSampleSize() / Byte.SIZE);
+                return ov;
+            }
+        }
 
-                        if (cnt_sa < cnt) {
-                            log.warn("Ignoring insufficient data (" + cnt_sa + ") in the samplearray observation when " + cnt + " expected for " + ov
-                                    + " " + handle + " v.getLength()=" + v.getLength() + " sampleSize=" + sas.getSampleSize());
-                            return;
-                        } else {
-                            if (cnt < cnt_sa) {
-//                                log.info("Expanding to accomodate " + cnt_sa + " samples where only " + cnt + " were expected");
-                                w.setArraySize(cnt_sa);
-                                cnt = cnt_sa;
-                            }
-                            if (w.getArraySize() < cnt) {
-//                                log.info("Expanding to accomodate " + cnt + " samples where " + w.getArraySize() + " were expected");
-                                w.setArraySize(cnt);
-                            }
-                            
-                            // 
-                            for (int i = 0; i < cnt; i++) {
-                                w.applyValue(i, bytes);
-                            }
-                            
-                            Map<Integer, SampleCache> handleToSampleCache = sampleArrayCache.get(ov);
-                            if(null == handleToSampleCache) {
-                                handleToSampleCache = Collections.synchronizedMap( new HashMap<Integer, SampleCache>() );
-                                sampleArrayCache.put(ov, handleToSampleCache);
-                            }
-                            SampleCache sampleCache = handleToSampleCache.get(handle);
-                            if(null == sampleCache) {
-                                sampleCache = new SampleCache();
-                                handleToSampleCache.put(handle, sampleCache);
-                            }
-                            
-                            sampleCache.addNewSamples(w.getNumbers());
-                        }
-                    }
+        /**
+         * @return the decoder for this handle sized for length bytes of
+         *         samples, or null if the handle is not fully described yet
+         */
+        private MySampleArray prepareSampleArray(ObservedValue ov, int handle, int length) {
+            SampleArraySpecification sas = handleToSampleArraySpecification.get(handle);
+            ScaleAndRangeSpecification sar = handleToScaleAndRangeSpecification.get(handle);
+            UnitCode unitCode = handleToUnitCode.get(handle);
+            RelativeTime rt = handleToUpdatePeriod.get(handle);
+            if (null == sas || null == rt || null == sar || null == unitCode) {
+                log.warn("No SampleArraySpecification or RelativeTime for handle=" + handle + " rt=" + rt + " sas=" + sas + " sar="+sar+ " unitCode="+unitCode);
+                return null;
+            }
+            int cnt = sas.getArraySize();
+            int cnt_sa = length / (sas.getSampleSize() / Byte.SIZE);
+
+            if (cnt_sa < cnt) {
+                log.warn("Ignoring insufficient data (" + cnt_sa + ") in the samplearray observation when " + cnt + " expected for " + ov
+                        + " " + handle + " length=" + length + " sampleSize=" + sas.getSampleSize());
+                return null;
+            }
+
+            MySampleArray w = handleToSampleArray.get(handle);
+            if (null == w) {
+                w = new MySampleArray();
+                handleToSampleArray.put(handle, w);
+            }
+            w.setSampleArraySpecification(sas);
+            w.setScaleAndRangeSpecification(sar);
+            if (cnt < cnt_sa) {
+                // Expand to accomodate more samples than were expected
+                w.setArraySize(cnt_sa);
+            }
+            return w;
+        }
+
+        private void addSamples(ObservedValue ov, int handle, MySampleArray w) {
+            IntMap<SampleCache> handleToSampleCache = sampleArrayCache.get(ov);
+            if(null == handleToSampleCache) {
+                handleToSampleCache = new IntMap<SampleCache>();
+                sampleArrayCache.put(ov, handleToSampleCache);
+            }
+            long periodMs = handleToUpdatePeriod.get(handle).toMilliseconds();
+            int samplesPerEmission = (int) (PERIOD / periodMs);
+            SampleCache sampleCache = handleToSampleCache.get(handle);
+            if(null == sampleCache || !sampleCache.isLargeEnoughFor(samplesPerEmission + w.getArraySize())) {
+                // New wave, or one whose rate has outgrown its ring
+                SampleCache old = sampleCache;
+                sampleCache = new SampleCache(ov, handle, samplesPerEmission + w.getArraySize());
+                handleToSampleCache.put(handle, sampleCache);
+                if(null != old) {
+                    sampleCaches.remove(old);
                 }
+                sampleCaches.add(sampleCache);
             }
+            sampleCache.setPeriodMilliseconds(periodMs);
+            sampleCache.setUnitCode(handleToUnitCode.get(handle));
+            sampleCache.addNewSamples(w.getValues(), w.getArraySize());
         }
 
 
@@ -778,55 +853,39 @@ public abstract class AbstractDemoIntellivue extends AbstractConnectedDevice {
         public EmitFastData() {
         }
 
-        private ObservedValue[] observedValues = new ObservedValue[10];
-        private Integer[] handles = new Integer[10];
-        
         @Override
         public void run() {
             try {
-                observedValues = sampleArrayCache.keySet().toArray(observedValues);
                 DeviceClock.Reading fakeSampleTime = getClockProvider().instant();
-                
-                for(ObservedValue ov : observedValues) {
-                    if(null == ov) {
-                        break;
+
+                for(SampleCache sampleCache : sampleCaches) {
+                    ObservedValue ov = sampleCache.getObservedValue();
+                    int handle = sampleCache.getHandle();
+                    long periodMs = sampleCache.getPeriodMilliseconds();
+                    UnitCode unitCode = sampleCache.getUnitCode();
+                    if (periodMs <= 0L || null == unitCode) {
+                        log.warn("No RelativeTime for handle=" + handle + " periodMs=" + periodMs + " unitCode="+unitCode);
+                        continue;
                     }
-                    Map<Integer, SampleCache> sampleCacheByHandle = sampleArrayCache.get(ov);
-                    handles = sampleCacheByHandle.keySet().toArray(handles);
-                    for(Integer handle : handles) {
-                        if(null == handle) {
-                            break;
-                        }
-                        SampleCache sampleCache = sampleCacheByHandle.get(handle);
-                        InstanceHolder<ice.SampleArray> sa = getSampleArrayUpdate(ov, handle);
-                        RelativeTime rt = handleToUpdatePeriod.get(handle);
-                        if (null == rt || null == sampleCache || null == unitCode) {
-                            log.warn("No RelativeTime for handle=" + handle + " rt=" + rt + " sampleCache=" + sampleCache + " unitCode="+unitCode);
-                            continue;
-                        }
-                        int samples = (int) (PERIOD / rt.toMilliseconds());
-
-                        if(null != sa) {
-                            synchronized(sampleCache) {
-                                Collection<Number> c = sampleCache.emitSamples(samples, sa.data.metric_id+" "+sa.data.instance_id);
-                                if(null == c) {
-                                    putSampleArrayUpdate(ov, handle, null);
-                                } else {
-                                    sampleArraySample(sa, c, fakeSampleTime);
-                                }
-                            }
+                    int samples = (int) (PERIOD / periodMs);
+                    InstanceHolder<ice.SampleArray> sa = getSampleArrayUpdate(ov, handle);
+                    boolean emitted = sampleCache.emitSamples(samples);
+
+                    // The emitted window is published straight out of the ring
+                    if(null != sa) {
+                        if(!emitted) {
+                            putSampleArrayUpdate(ov, handle, null);
                         } else {
-                            String metric_id = sampleArrayMetricIds.get(ov);
-                            UnitCode unitCode = handleToUnitCode.get(handle);
-                            synchronized(sampleCache) {
-                                putSampleArrayUpdate(
-                                        ov, handle,
-                                        sampleArraySample(getSampleArrayUpdate(ov, handle), sampleCache.emitSamples(samples, metric_id+" "+handle),
-                                        metric_id, ov.toString(), handle, 
-                                        RosettaUnits.units(unitCode),
-                                        (int)(1000L / rt.toMilliseconds()), fakeSampleTime));
-                            }
+                            sampleArraySample(sa, sampleCache.getRing(), sampleCache.getEmittedOffset(), samples, fakeSampleTime);
                         }
+                    } else {
+                        String metric_id = sampleArrayMetricIds.get(ov);
+                        putSampleArrayUpdate(
+                                ov, handle,
+                                sampleArraySample(null, emitted ? sampleCache.getRing() : null, sampleCache.getEmittedOffset(), samples,
+                                metric_id, ov.toString(), handle,
+                                RosettaUnits.units(unitCode),
+                                (int)(1000L / periodMs), fakeSampleTime));
                     }
                 }
 
@@ -857,50 +916,167 @@ public abstract class AbstractDemoIntellivue extends AbstractConnectedDevice {
     protected final Map<ObservedValue, Label> sampleArrayLabels = new HashMap<ObservedValue, Label>();
 
     
+    /**
+     * Single producer (the receive thread) single consumer (the emitter) ring
+     * of decoded samples for one wave. Every sample is written twice, at i and
+     * i + capacity, so that any window of up to capacity samples is contiguous
+     * in the backing array and can be published without copying it out first.
+     * The producer never overwrites the most recently emitted window since
+     * those samples are repeated when the monitor falls behind.
+     */
     private static final class SampleCache {
-        private final List<Number> newSamples = Collections.synchronizedList(new ArrayList<Number>());
-        private final List<Number> oldSamples = Collections.synchronizedList(new ArrayList<Number>());
-        
-        public void addNewSamples(Collection<Number> coll) {
-            newSamples.addAll(coll);
-        }
-        
-        public Collection<Number> emitSamples(int n, String s) {
-            synchronized(newSamples) {
-                if(newSamples.isEmpty()) {
-                    log.warn(s+" no new samples to emit");
-                    return null;
-                }
-                
-                if(newSamples.size() < n) {
-                    log.warn(s+" will repeat " + (n - newSamples.size()) + " old samples to make up a shortfall");
-                }
-                // Move up to n samples from the old list to the new
-                List<Number> oldestNewSamples = newSamples.subList(0, n > newSamples.size() ? newSamples.size() : n);
-                
-                oldSamples.addAll(oldestNewSamples);
-                oldestNewSamples.clear();
+        private final ObservedValue observedValue;
+        private final int handle;
+        private final float[] ring;
+        private final int capacity;
+        private final int mask;
+
+        // written by the producer
+        private volatile long head;
+        private volatile long periodMilliseconds;
+        private volatile UnitCode unitCode;
+        // written by the consumer
+        private volatile long tail;
+        private volatile int window;
+        private int emittedOffset;
+
+        private final AtomicLong emissions = new AtomicLong();
+        private final AtomicLong underruns = new AtomicLong();
+        private final AtomicLong repeatedSamples = new AtomicLong();
+        private final AtomicLong overruns = new AtomicLong();
+        private final AtomicLong droppedSamples = new AtomicLong();
+
+        /**
+         * @param samples
+         *            the greatest number of samples expected to be buffered
+         *            at once; one emission window plus one observation
+         */
+        public SampleCache(ObservedValue observedValue, int handle, int samples) {
+            this.observedValue = observedValue;
+            this.handle = handle;
+            this.capacity = Integer.highestOneBit(Math.max(MINIMUM_CAPACITY, 4 * samples) - 1) << 1;
+            this.mask = capacity - 1;
+            this.ring = new float[2 * capacity];
+        }
+
+        private static final int MINIMUM_CAPACITY = 256;
+
+        public boolean isLargeEnoughFor(int samples) {
+            return capacity >= 2 * samples;
+        }
+
+        public void addNewSamples(float[] values, int count) {
+            long head = this.head;
+            // The last emitted window must survive as it may be repeated
+            long free = capacity - (head - (tail - window));
+            if(count > free) {
+                overruns.incrementAndGet();
+                droppedSamples.addAndGet(count);
+                return;
             }
-            synchronized(oldSamples) {
-                // If we have insufficient oldSamples (shouldn't happen except maybe at initialization) fill in values
-                if(oldSamples.size() < n) {
-                    log.warn(s+" filling in " + (n - oldSamples.size()) + " zeros; this should not continue happening");
-                    while(oldSamples.size() < n) {
-                        oldSamples.add(0, 0);
-                    }
+            for(int i = 0; i < count; i++) {
+                int idx = (int) ((head + i) & mask);
+                ring[idx] = values[i];
+                ring[idx + capacity] = values[i];
+            }
+            this.head = head + count;
+        }
+
+        /**
+         * Consumes up to n of the oldest new samples; the emitted window is then
+         * the n samples ending with the last one consumed, available at
+         * {@link #getEmittedOffset()} in {@link #getRing()}. When fewer than n
+         * new samples are available the window begins with samples that were
+         * already emitted (zeros before any were received).
+         * @return false if there were no new samples to emit
+         */
+        public boolean emitSamples(int n) {
+            if(n > capacity) {
+                throw new IllegalArgumentException("Cannot emit " + n + " samples from a ring of " + capacity);
+            }
+            window = n;
+            long tail = this.tail;
+            long available = head - tail;
+            if(0L == available) {
+                underruns.incrementAndGet();
+                if(log.isDebugEnabled()) {
+                    log.debug(observedValue + " " + handle + " no new samples to emit");
                 }
-                // If we have extra oldSamples then remove them
-                if(oldSamples.size() > n) {
-                    oldSamples.subList(0, oldSamples.size()-n).clear();
+                return false;
+            }
+            int moved = (int) Math.min(n, available);
+            if(moved < n) {
+                repeatedSamples.addAndGet(n - moved);
+                if(log.isDebugEnabled()) {
+                    log.debug(observedValue + " " + handle + " will repeat " + (n - moved) + " old samples to make up a shortfall");
                 }
             }
-            return oldSamples;
+            tail += moved;
+            emittedOffset = (int) ((tail - n) & mask);
+            emissions.incrementAndGet();
+            this.tail = tail;
+            return true;
+        }
+
+        public float[] getRing() {
+            return ring;
+        }
+
+        public int getEmittedOffset() {
+            return emittedOffset;
+        }
+
+        public ObservedValue getObservedValue() {
+            return observedValue;
+        }
+
+        public int getHandle() {
+            return handle;
+        }
+
+        public long getPeriodMilliseconds() {
+            return periodMilliseconds;
+        }
+
+        public void setPeriodMilliseconds(long periodMilliseconds) {
+            this.periodMilliseconds = periodMilliseconds;
+        }
+
+        public UnitCode getUnitCode() {
+            return unitCode;
+        }
+
+        public void setUnitCode(UnitCode unitCode) {
+            this.unitCode = unitCode;
+        }
+
+        @Override
+        public String toString() {
+            return observedValue + " handle=" + handle + " buffered=" + (head - tail) + " capacity=" + capacity + " emissions=" + emissions.get()
+                    + " underruns=" + underruns.get() + " repeatedSamples=" + repeatedSamples.get() + " overruns=" + overruns.get()
+                    + " droppedSamples=" + droppedSamples.get();
         }
     }
-    
-    protected final Map<ObservedValue, Map<Integer, InstanceHolder<ice.Numeric>>> numericUpdates = new HashMap<ObservedValue, Map<Integer, InstanceHolder<ice.Numeric>>>();
-    protected final Map<ObservedValue, Map<Integer, InstanceHolder<ice.SampleArray>>> sampleArrayUpdates = new HashMap<ObservedValue, Map<Integer, InstanceHolder<ice.SampleArray>>>();
-    protected final Map<ObservedValue, Map<Integer, SampleCache>> sampleArrayCache = Collections.synchronizedMap(new HashMap<ObservedValue, Map<Integer, SampleCache>>());
+
+    /**
+     * Per wave accounting of the fast data emission; emissions with no new
+     * samples (underruns), samples repeated to fill a short window, and
+     * observations dropped because the emitter fell behind (overruns)
+     */
+    @ManagedAttribute(description="Sample array emission statistics per wave.")
+    public String[] getSampleArrayStatistics() {
+        List<String> statistics = new ArrayList<String>();
+        for(SampleCache sampleCache : sampleCaches) {
+            statistics.add(sampleCache.toString());
+        }
+        return statistics.toArray(new String[statistics.size()]);
+    }
+
+    protected final Map<ObservedValue, IntMap<InstanceHolder<ice.Numeric>>> numericUpdates = new HashMap<ObservedValue, IntMap<InstanceHolder<ice.Numeric>>>();
+    protected final Map<ObservedValue, IntMap<InstanceHolder<ice.SampleArray>>> sampleArrayUpdates = new HashMap<ObservedValue, IntMap<InstanceHolder<ice.SampleArray>>>();
+    // Only accessed by the receive thread; the emitter walks sampleCaches
+    protected final Map<ObservedValue, IntMap<SampleCache>> sampleArrayCache = new HashMap<ObservedValue, IntMap<SampleCache>>();
+    private final List<SampleCache> sampleCaches = new CopyOnWriteArrayList<SampleCache>();
 
     static void loadMap(Map<ObservedValue, String> numericMetricIds,
                         Map<ObservedValue, Label> numericLabels,
@@ -965,8 +1141,18 @@ public abstract class AbstractDemoIntellivue extends AbstractConnectedDevice {
     protected static final Logger log = LoggerFactory.getLogger(DemoEthernetIntellivue.class);
 
     protected final NetworkLoop networkLoop;
-    private final Thread networkLoopThread;
     private final TaskQueue.Task<?> watchdogTask; // ,    serviceSampleArrays;
+    private final TaskQueue.Handle watchdogHandle;
+
+    // shared by every Intellivue so that many monitors do not each need a thread
+    private static NetworkLoopGroup networkLoops;
+
+    private static synchronized NetworkLoopGroup networkLoops() throws IOException {
+        if (null == networkLoops) {
+            networkLoops = new NetworkLoopGroup(AbstractDevice.threadGroup, "Network Loop");
+        }
+        return networkLoops;
+    }
 
     public AbstractDemoIntellivue(final Subscriber subscriber, final Publisher publisher, EventLoop eventLoop) throws IOException {
         this(subscriber, publisher, eventLoop, null);
@@ -981,24 +1167,7 @@ public abstract class AbstractDemoIntellivue extends AbstractConnectedDevice {
         AbstractSimulatedDevice.randomUDI(deviceIdentity);
         writeDeviceIdentity();
 
-        if (null == loop) {
-            networkLoop = new NetworkLoop();
-            networkLoopThread = new Thread(AbstractDevice.threadGroup, new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        networkLoop.runLoop();
-                    } finally {
-                        log.info("NetworkLoop.runLoop ended");
-                    }
-                }
-            }, "Network Loop");
-            networkLoopThread.setDaemon(true);
-            networkLoopThread.start();
-        } else {
-            networkLoop = loop;
-            networkLoopThread = null;
-        }
+        networkLoop = null == loop ? networkLoops().next() : loop;
 
         myIntellivue = new IntellivueExt(getClockProvider());
 
@@ -1010,7 +1179,7 @@ public abstract class AbstractDemoIntellivue extends AbstractConnectedDevice {
             };
         };
         watchdogTask.setInterval(WATCHDOG_INTERVAL);
-        networkLoop.add(watchdogTask);
+        watchdogHandle = networkLoop.add(watchdogTask);
 
     }
 
@@ -1028,14 +1197,15 @@ public abstract class AbstractDemoIntellivue extends AbstractConnectedDevice {
         private short sampleSize, significantBits;
         private double lowerAbsoluteValue, upperAbsoluteValue;
         private int lowerScaledValue, upperScaledValue;
-        private final List<Number> numbers = new ArrayList<Number>();
+        private float[] values = new float[0];
+        private int arraySize;
 
         public MySampleArray() {
 
         }
 
-        public List<Number> getNumbers() {
-            return numbers;
+        public float[] getValues() {
+            return values;
         }
 
         private int[] mask = new int[0];
@@ -1060,8 +1230,33 @@ public abstract class AbstractDemoIntellivue extends AbstractConnectedDevice {
                     }
                 }
             }
-            if (sampleNumber >= numbers.size()) {
-                log.warn("Received sampleNumber=" + sampleNumber + " where expected size was " + numbers.size());
+            store(sampleNumber, value);
+        }
+
+        /**
+         * Decodes every sample of an observation straight from the receive
+         * buffer
+         * 
+         * @param offset
+         *            absolute index in bb of the first sample byte
+         * @param length
+         *            number of sample bytes
+         */
+        public void applyValues(ByteBuffer bb, int offset, int length) {
+            int samples = Math.min(arraySize, length / sampleSize);
+            for (int sampleNumber = 0; sampleNumber < samples; sampleNumber++) {
+                int value = 0;
+                int idx = offset + sampleNumber * sampleSize;
+                for (int i = 0; i < sampleSize; i++) {
+                    value |= (mask[i] & bb.get(idx + i)) << shift[i];
+                }
+                store(sampleNumber, value);
+            }
+        }
+
+        private void store(int sampleNumber, int value) {
+            if (sampleNumber >= arraySize) {
+                log.warn("Received sampleNumber=" + sampleNumber + " where expected size was " + arraySize);
             } else {
                 // Scale and range the value
                 
@@ -1074,11 +1269,11 @@ public abstract class AbstractDemoIntellivue extends AbstractConnectedDevice {
                             log.error("Not scaling " + value + " (proportionally " + prop+ ") between " + lowerAbsoluteValue + " and " + upperScaledValue);
                         } else {
                             prop = lowerAbsoluteValue + prop * (upperAbsoluteValue - lowerAbsoluteValue);
-                            numbers.set(sampleNumber, prop);
+                            this.values[sampleNumber] = (float) prop;
                         }
                     } 
                 } else {
-                    numbers.set(sampleNumber, value);
+                    this.values[sampleNumber] = value;
                 }
             }
         }
@@ -1105,8 +1300,10 @@ public abstract class AbstractDemoIntellivue extends AbstractConnectedDevice {
                 mask[i] = significantBits >= Byte.SIZE ? 0xFF : createMask(significantBits);
                 significantBits -= Byte.SIZE;
             }
-            log.debug("Mask:" + Arrays.toString(mask) + " Shift:" + Arrays.toString(shift) + " sampleSize=" + sampleSize + " sigBits="
-                    + this.significantBits);
+            if (log.isDebugEnabled()) {
+                log.debug("Mask:" + Arrays.toString(mask) + " Shift:" + Arrays.toString(shift) + " sampleSize=" + sampleSize + " sigBits="
+                        + this.significantBits);
+            }
         }
 
         public short getSampleSize() {
@@ -1133,25 +1330,23 @@ public abstract class AbstractDemoIntellivue extends AbstractConnectedDevice {
         }
 
         public int getArraySize() {
-            return numbers.size();
+            return arraySize;
         }
 
         public void setArraySize(int size) {
-            if (size != numbers.size()) {
-                while (numbers.size() < size) {
-                    numbers.add(0);
-                }
-                while (numbers.size() > size) {
-                    numbers.remove(0);
-                }
+            if (size > values.length) {
+                values = Arrays.copyOf(values, size);
+            }
+            if (size > arraySize) {
+                Arrays.fill(values, arraySize, size, 0f);
             }
+            arraySize = size;
         }
 
         public void setSampleArraySpecification(SampleArraySpecification sas) {
             setSampleSize(sas.getSampleSize());
             setSignificantBits(sas.getSignificantBits());
             setArraySize(sas.getArraySize());
-            buildMaskAndShift();
         }
         
         public void setScaleAndRangeSpecification(ScaleAndRangeSpecification sar) {
@@ -1174,10 +1369,11 @@ public abstract class AbstractDemoIntellivue extends AbstractConnectedDevice {
         setConnectionInfo(connectionInfo);
     }
 
-    protected final Map<Integer, RelativeTime> handleToUpdatePeriod = new HashMap<Integer, RelativeTime>();
-    protected final Map<Integer, SampleArraySpecification> handleToSampleArraySpecification = new HashMap<Integer, SampleArraySpecification>();
-    protected final Map<Integer, ScaleAndRangeSpecification> handleToScaleAndRangeSpecification = new HashMap<Integer, ScaleAndRangeSpecification>();
-    protected final Map<Integer, UnitCode> handleToUnitCode = new HashMap<Integer, UnitCode>();
+    protected final IntMap<RelativeTime> handleToUpdatePeriod = new IntMap<RelativeTime>();
+    protected final IntMap<SampleArraySpecification> handleToSampleArraySpecification = new IntMap<SampleArraySpecification>();
+    protected final IntMap<ScaleAndRangeSpecification> handleToScaleAndRangeSpecification = new IntMap<ScaleAndRangeSpecification>();
+    protected final IntMap<UnitCode> handleToUnitCode = new IntMap<UnitCode>();
+    private final IntMap<MySampleArray> handleToSampleArray = new IntMap<MySampleArray>();
 
     
 
@@ -1220,9 +1416,22 @@ public abstract class AbstractDemoIntellivue extends AbstractConnectedDevice {
 
     protected Set<SelectionKey> registrationKeys = new HashSet<SelectionKey>();
 
+    /**
+     * Removes this device's channels from the shared loop and closes them
+     */
     protected void unregisterAll() {
         for (SelectionKey key : registrationKeys) {
-            networkLoop.unregister(key, myIntellivue);
+            try {
+                networkLoop.unregister(key, myIntellivue);
+            } catch (IllegalStateException e) {
+                // closing the channel below cancels the key all the same
+                log.warn("Unable to unregister from " + networkLoop, e);
+            }
+            try {
+                key.channel().close();
+            } catch (IOException e) {
+                log.error("Unable to close channel", e);
+            }
         }
         registrationKeys.clear();
     }
@@ -1304,16 +1513,9 @@ public abstract class AbstractDemoIntellivue extends AbstractConnectedDevice {
 
     @Override
     public void shutdown() {
-        networkLoop.clearTasks();
-        networkLoop.cancelThread();
-        if (null != networkLoopThread) {
-            try {
-                networkLoopThread.join();
-            } catch (InterruptedException e) {
-                log.error("Interrupted", e);
-            }
-        }
-
+        // the loop is shared so only this device's task and channels are removed from it
+        watchdogHandle.cancel();
+        unregisterAll();
 
         super.shutdown();
     }
@@ -0,0 +1,272 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.replay;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.mdpnp.devices.EventLoopHandler;
+import org.mdpnp.devices.IceQos;
+import org.mdpnp.devices.PublisherFactory;
+import org.mdpnp.devices.SubscriberFactory;
+import org.mdpnp.rtiapi.data.EventLoop;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.rti.dds.publication.Publisher;
+import com.rti.dds.subscription.Subscriber;
+
+/**
+ * Publishes a capture back onto the bus through one {@link ReplayDevice} per
+ * recorded device, or several per recorded device when cloned so that a
+ * handful of real monitors can stand in for a full unit under load.
+ *
+ * With a speed of 1 records are published as far apart as they were
+ * recorded, N is N times faster and 0 publishes as fast as possible.
+ */
+public class CapturePlayer implements CaptureReader.Handler, Runnable {
+    private static final Logger log = LoggerFactory.getLogger(CapturePlayer.class);
+
+    private static final int MAX_UDI_LENGTH = 64;
+    private static final int UDI_LENGTH = 36;
+
+    private final Subscriber subscriber;
+    private final Publisher publisher;
+    private final EventLoop eventLoop;
+    private final File file;
+
+    private double speed = 1.0;
+    private int clones = 1;
+    private boolean loop;
+
+    private Thread thread;
+    private volatile boolean running;
+    private volatile long published;
+
+    // Recorded UDI to a device for each clone
+    private final Map<String, ReplayDevice[]> devices = new HashMap<String, ReplayDevice[]>();
+
+    // Wall clock and capture time at which the current pass started
+    private long wallStart, captureStart;
+    // Added to recorded device times so that they read as now
+    private long shift;
+
+    public CapturePlayer(final Subscriber subscriber, final Publisher publisher, final EventLoop eventLoop, final File file) {
+        this.subscriber = subscriber;
+        this.publisher = publisher;
+        this.eventLoop = eventLoop;
+        this.file = file;
+    }
+
+    /**
+     * A UDI for the given clone of a recorded device; clone 0 is the recorded
+     * device itself. Full length UDIs keep their length so that they look like
+     * any other.
+     */
+    static String cloneUDI(String udi, int clone) {
+        if (0 == clone) {
+            return udi;
+        }
+        String suffix = "-" + clone;
+        if (udi.length() >= UDI_LENGTH) {
+            udi = udi.substring(0, udi.length() - suffix.length());
+        }
+        String s = udi + suffix;
+        return s.length() > MAX_UDI_LENGTH ? s.substring(s.length() - MAX_UDI_LENGTH) : s;
+    }
+
+    public synchronized void start() {
+        if (null != thread) {
+            throw new IllegalStateException("Already playing " + file.getAbsolutePath());
+        }
+        running = true;
+        thread = new Thread(this, "Capture Player");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public synchronized void stop() throws InterruptedException {
+        running = false;
+        if (null != thread) {
+            thread.interrupt();
+            thread.join();
+            thread = null;
+        }
+        for (ReplayDevice[] d : devices.values()) {
+            for (ReplayDevice device : d) {
+                device.shutdown();
+            }
+        }
+        devices.clear();
+    }
+
+    @Override
+    public void run() {
+        try (CaptureReader reader = new CaptureReader(file)) {
+            reader.open();
+            log.info("Playing " + file.getAbsolutePath() + " from " + reader.getStartTime() + " to " + reader.getEndTime() + " at " + speed
+                    + "x with " + clones + " clone(s)");
+            do {
+                reader.rewind();
+                wallStart = System.currentTimeMillis();
+                captureStart = reader.getStartTime();
+                while (running && reader.next(this)) {
+                }
+            } while (running && loop);
+        } catch (InterruptedException e) {
+            log.debug("Stopped playing " + file.getAbsolutePath());
+        } catch (IOException e) {
+            log.error("Unable to play " + file.getAbsolutePath(), e);
+        } catch (RuntimeException e) {
+            if (!(e.getCause() instanceof InterruptedException)) {
+                throw e;
+            }
+        }
+        log.info("Published " + published + " samples from " + file.getAbsolutePath());
+    }
+
+    // Holds off until the record at time is due
+    private void pace(long time) {
+        long now = System.currentTimeMillis();
+        if (speed > 0.0) {
+            long due = wallStart + (long) ((time - captureStart) / speed);
+            if (due > now) {
+                try {
+                    Thread.sleep(due - now);
+                } catch (InterruptedException e) {
+                    running = false;
+                    throw new RuntimeException(e);
+                }
+                now = due;
+            }
+        }
+        shift = now - time;
+    }
+
+    private ReplayDevice[] devices(String udi) {
+        ReplayDevice[] d = devices.get(udi);
+        if (null == d) {
+            d = new ReplayDevice[clones];
+            for (int i = 0; i < clones; i++) {
+                d[i] = new ReplayDevice(subscriber, publisher, eventLoop, cloneUDI(udi, i));
+            }
+            devices.put(udi, d);
+        }
+        return d;
+    }
+
+    @Override
+    public void deviceIdentity(long time, String udi, String manufacturer, String model, String serialNumber, String build, String operatingSystem) {
+        pace(time);
+        for (ReplayDevice device : devices(udi)) {
+            device.identity(manufacturer, model, serialNumber, build, operatingSystem);
+        }
+    }
+
+    @Override
+    public void numeric(long time, String udi, String metricId, String vendorMetricId, int instanceId, String unitId, float value, long deviceTime) {
+        pace(time);
+        for (ReplayDevice device : devices(udi)) {
+            device.numeric(metricId, vendorMetricId, instanceId, unitId, value, device.reading(0L == deviceTime ? 0L : deviceTime + shift));
+            published++;
+        }
+    }
+
+    @Override
+    public void sampleArray(long time, String udi, String metricId, String vendorMetricId, int instanceId, String unitId, int frequency,
+            long deviceTime, float[] values, int count) {
+        pace(time);
+        for (ReplayDevice device : devices(udi)) {
+            device.sampleArray(metricId, vendorMetricId, instanceId, unitId, frequency, values, count,
+                    device.reading(0L == deviceTime ? 0L : deviceTime + shift));
+            published++;
+        }
+    }
+
+    @Override
+    public void alarmLimit(long time, String udi, String metricId, String unitId, int limitType, float value) {
+        pace(time);
+        for (ReplayDevice device : devices(udi)) {
+            device.alarmLimit(metricId, unitId, ice.LimitType.valueOf(limitType), value);
+            published++;
+        }
+    }
+
+    @Override
+    public void alert(long time, boolean patient, String udi, String identifier, String text) {
+        pace(time);
+        for (ReplayDevice device : devices(udi)) {
+            device.alert(patient, identifier, text);
+            published++;
+        }
+    }
+
+    /**
+     * @param speed multiple of the recorded rate; 0 for as fast as possible
+     */
+    public void setSpeed(double speed) {
+        this.speed = speed;
+    }
+
+    /**
+     * @param clones number of devices to publish each recorded device as
+     */
+    public void setClones(int clones) {
+        this.clones = Math.max(1, clones);
+    }
+
+    /**
+     * @param loop start over at the end of the capture until stopped
+     */
+    public void setLoop(boolean loop) {
+        this.loop = loop;
+    }
+
+    public long getPublished() {
+        return published;
+    }
+
+    /**
+     * capture [speed] [clones] [domain]
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: CapturePlayer capture [speed] [clones] [domain]");
+            return;
+        }
+        double speed = args.length > 1 ? Double.parseDouble(args[1]) : 1.0;
+        int clones = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        int domainId = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+
+        IceQos.loadAndSetIceQos();
+        EventLoop eventLoop = new EventLoop();
+        EventLoopHandler handler = new EventLoopHandler(eventLoop);
+        org.mdpnp.devices.DomainParticipantFactory dpf = new org.mdpnp.devices.DomainParticipantFactory(domainId);
+        SubscriberFactory sf = new SubscriberFactory(dpf.getObject());
+        PublisherFactory pf = new PublisherFactory(dpf.getObject());
+
+        final CapturePlayer player = new CapturePlayer(sf.getObject(), pf.getObject(), eventLoop, new File(args[0]));
+        player.setSpeed(speed);
+        player.setClones(clones);
+        player.start();
+        player.thread.join();
+        player.stop();
+
+        handler.shutdown();
+        sf.destroy();
+        pf.destroy();
+        dpf.destroy();
+    }
+}
@@ -0,0 +1,342 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.replay;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads back a capture written by {@link CaptureWriter}, from the start or
+ * from any point in time, handing each record to a {@link Handler}.
+ *
+ * The capture is mapped a window at a time so that captures larger than
+ * the address space of a single mapping can be read.
+ */
+public class CaptureReader implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(CaptureReader.class);
+
+    public interface Handler {
+        void deviceIdentity(long time, String udi, String manufacturer, String model, String serialNumber, String build, String operatingSystem);
+
+        void numeric(long time, String udi, String metricId, String vendorMetricId, int instanceId, String unitId, float value, long deviceTime);
+
+        /**
+         * @param values only the first count are valid and only for the duration of the call
+         */
+        void sampleArray(long time, String udi, String metricId, String vendorMetricId, int instanceId, String unitId, int frequency,
+                long deviceTime, float[] values, int count);
+
+        void alarmLimit(long time, String udi, String metricId, String unitId, int limitType, float value);
+
+        /**
+         * @param text null when the alert is cleared
+         */
+        void alert(long time, boolean patient, String udi, String identifier, String text);
+    }
+
+    private final File file;
+    private int windowSize = 16 * 1024 * 1024;
+
+    private FileChannel channel;
+    private long size;
+    private ByteBuffer window;
+    private long windowStart;
+    private long position;
+
+    private final List<String> strings = new ArrayList<String>();
+    private long[] indexTimes = new long[0], indexOffsets = new long[0];
+    private int indexSize;
+    private long startTime = Long.MIN_VALUE, endTime = Long.MIN_VALUE;
+
+    private float[] values = new float[0];
+
+    public CaptureReader(File file) {
+        this.file = file;
+    }
+
+    public void open() throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        size = channel.size();
+        if (size < CaptureWriter.HEADER || CaptureWriter.MAGIC != window(0L, CaptureWriter.HEADER).getInt(0)) {
+            close();
+            throw new IOException(file.getAbsolutePath() + " is not a capture");
+        }
+        File indexFile = CaptureWriter.indexFile(file);
+        if (!indexFile.exists() || !loadIndex(indexFile)) {
+            log.info("Rebuilding the index of " + file.getAbsolutePath());
+            rebuildIndex();
+        }
+        rewind();
+    }
+
+    private boolean loadIndex(File indexFile) throws IOException {
+        strings.clear();
+        indexSize = 0;
+        boolean complete = false;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile), 8192))) {
+            for (;;) {
+                byte kind;
+                try {
+                    kind = in.readByte();
+                } catch (EOFException eof) {
+                    break;
+                }
+                switch (kind) {
+                case CaptureWriter.INDEX_STRING:
+                    int id = in.readInt();
+                    byte[] b = new byte[in.readUnsignedShort()];
+                    in.readFully(b);
+                    defineString(id, new String(b, StandardCharsets.UTF_8));
+                    break;
+                case CaptureWriter.INDEX_TIME:
+                    addIndex(in.readLong(), in.readLong());
+                    break;
+                case CaptureWriter.INDEX_END:
+                    endTime = in.readLong();
+                    long end = in.readLong();
+                    complete = end <= size;
+                    if (complete) {
+                        // the rest of the file is unused mapping
+                        size = end;
+                    }
+                    break;
+                default:
+                    return false;
+                }
+            }
+        } catch (EOFException eof) {
+            // the capture was not closed cleanly
+            return false;
+        }
+        startTime = indexSize > 0 ? indexTimes[0] : Long.MIN_VALUE;
+        return complete;
+    }
+
+    // Reads every record once to recover the strings and times
+    private void rebuildIndex() throws IOException {
+        strings.clear();
+        indexSize = 0;
+        long lastIndexTime = Long.MIN_VALUE;
+        position = CaptureWriter.HEADER;
+        for (;;) {
+            long offset = position;
+            ByteBuffer b = record();
+            if (null == b) {
+                break;
+            }
+            int at = b.position();
+            byte type = b.get(at + 4);
+            long time = b.getLong(at + 5);
+            if (CaptureWriter.STRING == type) {
+                readString(b, at + CaptureWriter.RECORD_HEADER);
+            } else {
+                if (Long.MIN_VALUE == lastIndexTime || time - lastIndexTime >= 1000L) {
+                    addIndex(time, offset);
+                    lastIndexTime = time;
+                }
+                endTime = time;
+            }
+        }
+        startTime = indexSize > 0 ? indexTimes[0] : Long.MIN_VALUE;
+    }
+
+    private void addIndex(long time, long offset) {
+        if (indexSize == indexTimes.length) {
+            indexTimes = Arrays.copyOf(indexTimes, Math.max(16, indexSize * 2));
+            indexOffsets = Arrays.copyOf(indexOffsets, indexTimes.length);
+        }
+        indexTimes[indexSize] = time;
+        indexOffsets[indexSize] = offset;
+        indexSize++;
+    }
+
+    private void defineString(int id, String s) {
+        while (strings.size() <= id) {
+            strings.add(null);
+        }
+        strings.set(id, s);
+    }
+
+    private void readString(ByteBuffer b, int at) {
+        int id = b.getInt(at);
+        int length = b.getShort(at + 4) & 0xFFFF;
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = b.get(at + 6 + i);
+        }
+        defineString(id, new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    private String string(int id) throws IOException {
+        if (id < 0) {
+            return null;
+        }
+        if (id >= strings.size() || null == strings.get(id)) {
+            throw new IOException("Undefined string " + id + " in " + file.getAbsolutePath());
+        }
+        return strings.get(id);
+    }
+
+    private ByteBuffer window(long offset, int needed) throws IOException {
+        if (null == window || offset < windowStart || offset + needed > windowStart + window.capacity()) {
+            windowStart = offset;
+            long length = Math.min(size - offset, Math.max(windowSize, needed));
+            window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, length);
+        }
+        window.position((int) (offset - windowStart));
+        return window;
+    }
+
+    // the buffer positioned at the record at position which is then skipped;
+    // null at the end of the capture
+    private ByteBuffer record() throws IOException {
+        if (position + 4 > size) {
+            return null;
+        }
+        int length = window(position, 4).getInt((int) (position - windowStart));
+        if (length < CaptureWriter.RECORD_HEADER || position + length > size) {
+            return null;
+        }
+        ByteBuffer b = window(position, length);
+        position += length;
+        return b;
+    }
+
+    /**
+     * Positions the reader at the start of the capture
+     */
+    public void rewind() {
+        position = CaptureWriter.HEADER;
+    }
+
+    /**
+     * Positions the reader so that the next record is the first at or before
+     * the index entry for time; records up to indexInterval ms before time
+     * may be read
+     */
+    public void seek(long time) {
+        int lo = 0, hi = indexSize - 1, found = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (indexTimes[mid] <= time) {
+                found = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        position = found < 0 ? CaptureWriter.HEADER : indexOffsets[found];
+    }
+
+    /**
+     * Reads the next record
+     * @return false at the end of the capture
+     */
+    public boolean next(Handler handler) throws IOException {
+        for (;;) {
+            ByteBuffer b = record();
+            if (null == b) {
+                return false;
+            }
+            int at = b.position();
+            byte type = b.get(at + 4);
+            long time = b.getLong(at + 5);
+            b.position(at + CaptureWriter.RECORD_HEADER);
+            switch (type) {
+            case CaptureWriter.STRING:
+                readString(b, b.position());
+                continue;
+            case CaptureWriter.DEVICE_IDENTITY:
+                handler.deviceIdentity(time, string(b.getInt()), string(b.getInt()), string(b.getInt()), string(b.getInt()), string(b.getInt()),
+                        string(b.getInt()));
+                return true;
+            case CaptureWriter.NUMERIC: {
+                String udi = string(b.getInt()), metricId = string(b.getInt()), vendorMetricId = string(b.getInt()), unitId = string(b.getInt());
+                int instanceId = b.getInt();
+                float value = b.getFloat();
+                handler.numeric(time, udi, metricId, vendorMetricId, instanceId, unitId, value, b.getLong());
+                return true;
+            }
+            case CaptureWriter.SAMPLE_ARRAY: {
+                String udi = string(b.getInt()), metricId = string(b.getInt()), vendorMetricId = string(b.getInt()), unitId = string(b.getInt());
+                int instanceId = b.getInt(), frequency = b.getInt();
+                long deviceTime = b.getLong();
+                int count = b.getInt();
+                if (values.length < count) {
+                    values = new float[count];
+                }
+                for (int i = 0; i < count; i++) {
+                    values[i] = b.getFloat();
+                }
+                handler.sampleArray(time, udi, metricId, vendorMetricId, instanceId, unitId, frequency, deviceTime, values, count);
+                return true;
+            }
+            case CaptureWriter.ALARM_LIMIT:
+                handler.alarmLimit(time, string(b.getInt()), string(b.getInt()), string(b.getInt()), b.getInt(), b.getFloat());
+                return true;
+            case CaptureWriter.PATIENT_ALERT:
+            case CaptureWriter.TECHNICAL_ALERT:
+                handler.alert(time, CaptureWriter.PATIENT_ALERT == type, string(b.getInt()), string(b.getInt()), string(b.getInt()));
+                return true;
+            default:
+                log.warn("Skipping record of unknown type " + type + " in " + file.getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * @return time of the first record or Long.MIN_VALUE if there is none
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return time of the last record or Long.MIN_VALUE if there is none
+     */
+    public long getEndTime() {
+        return endTime;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public void setWindowSize(int windowSize) {
+        this.windowSize = windowSize;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        if (null != channel) {
+            channel.close();
+            channel = null;
+        }
+    }
+}
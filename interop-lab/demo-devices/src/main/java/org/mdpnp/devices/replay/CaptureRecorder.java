@@ -0,0 +1,282 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.replay;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+
+import org.mdpnp.devices.EventLoopHandler;
+import org.mdpnp.devices.IceQos;
+import org.mdpnp.devices.SubscriberFactory;
+import org.mdpnp.rtiapi.data.AlarmLimitInstanceModel;
+import org.mdpnp.rtiapi.data.AlarmLimitInstanceModelImpl;
+import org.mdpnp.rtiapi.data.AlarmLimitInstanceModelListener;
+import org.mdpnp.rtiapi.data.AlertInstanceModel;
+import org.mdpnp.rtiapi.data.AlertInstanceModelImpl;
+import org.mdpnp.rtiapi.data.AlertInstanceModelListener;
+import org.mdpnp.rtiapi.data.DeviceIdentityInstanceModel;
+import org.mdpnp.rtiapi.data.DeviceIdentityInstanceModelImpl;
+import org.mdpnp.rtiapi.data.DeviceIdentityInstanceModelListener;
+import org.mdpnp.rtiapi.data.EventLoop;
+import org.mdpnp.rtiapi.data.NumericInstanceModel;
+import org.mdpnp.rtiapi.data.NumericInstanceModelImpl;
+import org.mdpnp.rtiapi.data.NumericInstanceModelListener;
+import org.mdpnp.rtiapi.data.QosProfiles;
+import org.mdpnp.rtiapi.data.ReaderInstanceModel;
+import org.mdpnp.rtiapi.data.SampleArrayInstanceModel;
+import org.mdpnp.rtiapi.data.SampleArrayInstanceModelImpl;
+import org.mdpnp.rtiapi.data.SampleArrayInstanceModelListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.rti.dds.infrastructure.Time_t;
+import com.rti.dds.subscription.SampleInfo;
+import com.rti.dds.subscription.Subscriber;
+
+/**
+ * Writes everything devices publish on the bus to a {@link CaptureWriter} so
+ * that it can be played back later by a {@link CapturePlayer}.
+ *
+ * Samples are stamped with the time they were received; listeners are called
+ * on the event loop so the writer is only ever used from one thread.
+ */
+public class CaptureRecorder {
+    private static final Logger log = LoggerFactory.getLogger(CaptureRecorder.class);
+
+    private final Subscriber subscriber;
+    private final EventLoop eventLoop;
+    private final CaptureWriter writer;
+
+    private final NumericInstanceModel numericModel = new NumericInstanceModelImpl(ice.NumericTopic.VALUE);
+    private final SampleArrayInstanceModel sampleArrayModel = new SampleArrayInstanceModelImpl(ice.SampleArrayTopic.VALUE);
+    private final AlarmLimitInstanceModel alarmLimitModel = new AlarmLimitInstanceModelImpl(ice.AlarmLimitTopic.VALUE);
+    private final AlertInstanceModel patientAlertModel = new AlertInstanceModelImpl(ice.PatientAlertTopic.VALUE);
+    private final AlertInstanceModel technicalAlertModel = new AlertInstanceModelImpl(ice.TechnicalAlertTopic.VALUE);
+    private final DeviceIdentityInstanceModel deviceIdentityModel = new DeviceIdentityInstanceModelImpl(ice.DeviceIdentityTopic.VALUE);
+
+    private float[] values = new float[0];
+
+    public CaptureRecorder(final Subscriber subscriber, final EventLoop eventLoop, final CaptureWriter writer) {
+        this.subscriber = subscriber;
+        this.eventLoop = eventLoop;
+        this.writer = writer;
+    }
+
+    private static long ms(Time_t t) {
+        return t.sec * 1000L + t.nanosec / 1000000L;
+    }
+
+    private static long ms(ice.Time_t t) {
+        return t.sec * 1000L + t.nanosec / 1000000L;
+    }
+
+    private void failed(IOException e) {
+        log.error("Unable to record to " + writer.getFile().getAbsolutePath(), e);
+    }
+
+    public void start() throws IOException {
+        writer.open();
+
+        numericModel.addListener(new NumericInstanceModelListener() {
+            @Override
+            public void instanceAlive(ReaderInstanceModel<ice.Numeric, ice.NumericDataReader> model, ice.NumericDataReader reader, ice.Numeric data,
+                    SampleInfo sampleInfo) {
+            }
+
+            @Override
+            public void instanceNotAlive(ReaderInstanceModel<ice.Numeric, ice.NumericDataReader> model, ice.NumericDataReader reader,
+                    ice.Numeric keyHolder, SampleInfo sampleInfo) {
+            }
+
+            @Override
+            public void instanceSample(ReaderInstanceModel<ice.Numeric, ice.NumericDataReader> model, ice.NumericDataReader reader, ice.Numeric data,
+                    SampleInfo sampleInfo) {
+                try {
+                    writer.writeNumeric(ms(sampleInfo.reception_timestamp), data.unique_device_identifier, data.metric_id, data.vendor_metric_id,
+                            data.instance_id, data.unit_id, data.value, ms(data.device_time));
+                } catch (IOException e) {
+                    failed(e);
+                }
+            }
+        });
+
+        sampleArrayModel.addListener(new SampleArrayInstanceModelListener() {
+            @Override
+            public void instanceAlive(ReaderInstanceModel<ice.SampleArray, ice.SampleArrayDataReader> model, ice.SampleArrayDataReader reader,
+                    ice.SampleArray data, SampleInfo sampleInfo) {
+            }
+
+            @Override
+            public void instanceNotAlive(ReaderInstanceModel<ice.SampleArray, ice.SampleArrayDataReader> model, ice.SampleArrayDataReader reader,
+                    ice.SampleArray keyHolder, SampleInfo sampleInfo) {
+            }
+
+            @Override
+            public void instanceSample(ReaderInstanceModel<ice.SampleArray, ice.SampleArrayDataReader> model, ice.SampleArrayDataReader reader,
+                    ice.SampleArray data, SampleInfo sampleInfo) {
+                int count = data.values.userData.size();
+                if (values.length < count) {
+                    values = new float[count];
+                }
+                for (int i = 0; i < count; i++) {
+                    values[i] = data.values.userData.getFloat(i);
+                }
+                try {
+                    writer.writeSampleArray(ms(sampleInfo.reception_timestamp), data.unique_device_identifier, data.metric_id, data.vendor_metric_id,
+                            data.instance_id, data.unit_id, data.frequency, ms(data.device_time), values, 0, count);
+                } catch (IOException e) {
+                    failed(e);
+                }
+            }
+        });
+
+        alarmLimitModel.addListener(new AlarmLimitInstanceModelListener() {
+            @Override
+            public void instanceAlive(ReaderInstanceModel<ice.AlarmLimit, ice.AlarmLimitDataReader> model, ice.AlarmLimitDataReader reader,
+                    ice.AlarmLimit data, SampleInfo sampleInfo) {
+            }
+
+            @Override
+            public void instanceNotAlive(ReaderInstanceModel<ice.AlarmLimit, ice.AlarmLimitDataReader> model, ice.AlarmLimitDataReader reader,
+                    ice.AlarmLimit keyHolder, SampleInfo sampleInfo) {
+            }
+
+            @Override
+            public void instanceSample(ReaderInstanceModel<ice.AlarmLimit, ice.AlarmLimitDataReader> model, ice.AlarmLimitDataReader reader,
+                    ice.AlarmLimit data, SampleInfo sampleInfo) {
+                try {
+                    writer.writeAlarmLimit(ms(sampleInfo.reception_timestamp), data.unique_device_identifier, data.metric_id, data.unit_identifier,
+                            data.limit_type.ordinal(), data.value);
+                } catch (IOException e) {
+                    failed(e);
+                }
+            }
+        });
+
+        patientAlertModel.addListener(new AlertListener(true));
+        technicalAlertModel.addListener(new AlertListener(false));
+
+        deviceIdentityModel.addListener(new DeviceIdentityInstanceModelListener() {
+            @Override
+            public void instanceAlive(ReaderInstanceModel<ice.DeviceIdentity, ice.DeviceIdentityDataReader> model,
+                    ice.DeviceIdentityDataReader reader, ice.DeviceIdentity data, SampleInfo sampleInfo) {
+            }
+
+            @Override
+            public void instanceNotAlive(ReaderInstanceModel<ice.DeviceIdentity, ice.DeviceIdentityDataReader> model,
+                    ice.DeviceIdentityDataReader reader, ice.DeviceIdentity keyHolder, SampleInfo sampleInfo) {
+            }
+
+            @Override
+            public void instanceSample(ReaderInstanceModel<ice.DeviceIdentity, ice.DeviceIdentityDataReader> model,
+                    ice.DeviceIdentityDataReader reader, ice.DeviceIdentity data, SampleInfo sampleInfo) {
+                try {
+                    writer.writeDeviceIdentity(ms(sampleInfo.reception_timestamp), data.unique_device_identifier, data.manufacturer, data.model,
+                            data.serial_number, data.build, data.operating_system);
+                } catch (IOException e) {
+                    failed(e);
+                }
+            }
+        });
+
+        deviceIdentityModel.startReader(subscriber, eventLoop, QosProfiles.ice_library, QosProfiles.device_identity);
+        numericModel.startReader(subscriber, eventLoop, QosProfiles.ice_library, QosProfiles.numeric_data);
+        sampleArrayModel.startReader(subscriber, eventLoop, QosProfiles.ice_library, QosProfiles.waveform_data);
+        alarmLimitModel.startReader(subscriber, eventLoop, QosProfiles.ice_library, QosProfiles.state);
+        patientAlertModel.startReader(subscriber, eventLoop, QosProfiles.ice_library, QosProfiles.state);
+        technicalAlertModel.startReader(subscriber, eventLoop, QosProfiles.ice_library, QosProfiles.state);
+        log.info("Recording to " + writer.getFile().getAbsolutePath());
+    }
+
+    public void stop() throws IOException {
+        numericModel.stopReader();
+        sampleArrayModel.stopReader();
+        alarmLimitModel.stopReader();
+        patientAlertModel.stopReader();
+        technicalAlertModel.stopReader();
+        deviceIdentityModel.stopReader();
+        writer.close();
+        log.info("Recorded " + writer.getRecords() + " records to " + writer.getFile().getAbsolutePath());
+    }
+
+    private class AlertListener implements AlertInstanceModelListener {
+        private final boolean patient;
+
+        AlertListener(boolean patient) {
+            this.patient = patient;
+        }
+
+        @Override
+        public void instanceAlive(ReaderInstanceModel<ice.Alert, ice.AlertDataReader> model, ice.AlertDataReader reader, ice.Alert data,
+                SampleInfo sampleInfo) {
+        }
+
+        @Override
+        public void instanceNotAlive(ReaderInstanceModel<ice.Alert, ice.AlertDataReader> model, ice.AlertDataReader reader, ice.Alert keyHolder,
+                SampleInfo sampleInfo) {
+            // a device clears an alert by unregistering it
+            try {
+                writer.writeAlert(ms(sampleInfo.reception_timestamp), patient, keyHolder.unique_device_identifier, keyHolder.identifier, null);
+            } catch (IOException e) {
+                failed(e);
+            }
+        }
+
+        @Override
+        public void instanceSample(ReaderInstanceModel<ice.Alert, ice.AlertDataReader> model, ice.AlertDataReader reader, ice.Alert data,
+                SampleInfo sampleInfo) {
+            try {
+                writer.writeAlert(ms(sampleInfo.reception_timestamp), patient, data.unique_device_identifier, data.identifier, data.text);
+            } catch (IOException e) {
+                failed(e);
+            }
+        }
+    }
+
+    /**
+     * capture [domain]; records until interrupted
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: CaptureRecorder capture [domain]");
+            return;
+        }
+        int domainId = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+
+        IceQos.loadAndSetIceQos();
+        final EventLoop eventLoop = new EventLoop();
+        final EventLoopHandler handler = new EventLoopHandler(eventLoop);
+        final org.mdpnp.devices.DomainParticipantFactory dpf = new org.mdpnp.devices.DomainParticipantFactory(domainId);
+        final SubscriberFactory sf = new SubscriberFactory(dpf.getObject());
+
+        final CaptureRecorder recorder = new CaptureRecorder(sf.getObject(), eventLoop, new CaptureWriter(new File(args[0])));
+        final CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            public void run() {
+                try {
+                    recorder.stop();
+                    handler.shutdown();
+                    sf.destroy();
+                    dpf.destroy();
+                } catch (Exception e) {
+                    log.error("Unable to stop recording", e);
+                } finally {
+                    stopped.countDown();
+                }
+            }
+        }));
+        recorder.start();
+        stopped.await();
+    }
+}
@@ -0,0 +1,257 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.replay;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes a capture of ICE data bus traffic to a memory-mapped file.
+ *
+ * <pre>
+ * header  int magic, short version, short reserved, long created
+ * record  int length, byte type, long time, payload
+ * </pre>
+ *
+ * Identifiers are written once as STRING records and referred to thereafter
+ * by an int id (-1 for null), so a waveform record is little more than its
+ * float samples. The length of a record is written last; an unwritten or
+ * torn record reads back as length 0 which marks the end of the capture.
+ * The file is left at its mapped length, since it cannot portably be
+ * shortened while a mapping may still be live; the trailer of the index
+ * records where a closed capture ends.
+ *
+ * Alongside the capture an index file (capture.idx) holds every string and
+ * the offset of the first record in each indexInterval ms of capture time so
+ * a reader may begin anywhere without scanning.
+ */
+public class CaptureWriter implements Closeable {
+    static final int MAGIC = 0x49434543; // ICEC
+    static final short VERSION = 1;
+    static final int HEADER = 16;
+    static final int RECORD_HEADER = 13;
+
+    static final byte STRING = 1, DEVICE_IDENTITY = 2, NUMERIC = 3, SAMPLE_ARRAY = 4, ALARM_LIMIT = 5, PATIENT_ALERT = 6,
+            TECHNICAL_ALERT = 7;
+
+    static final byte INDEX_STRING = 'S', INDEX_TIME = 'T', INDEX_END = 'E';
+
+    private final File file;
+    private int regionSize = 16 * 1024 * 1024;
+    private long indexInterval = 1000L;
+
+    private FileChannel channel;
+    private MappedByteBuffer region;
+    private long regionStart;
+    private long position;
+    private DataOutputStream index;
+
+    private final Map<String, Integer> strings = new HashMap<String, Integer>();
+    private long lastIndexTime = Long.MIN_VALUE;
+    private long lastTime = Long.MIN_VALUE;
+    private long records;
+
+    public CaptureWriter(File file) {
+        this.file = file;
+    }
+
+    public static File indexFile(File file) {
+        return new File(file.getPath() + ".idx");
+    }
+
+    /**
+     * Creates the capture, replacing any existing one
+     */
+    public synchronized void open() throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        index = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile(file)), 8192));
+        strings.clear();
+        lastIndexTime = lastTime = Long.MIN_VALUE;
+        records = 0L;
+        position = 0L;
+        region = null;
+        ensure(HEADER);
+        region.putInt(0, MAGIC);
+        region.putShort(4, VERSION);
+        region.putLong(8, System.currentTimeMillis());
+        position = HEADER;
+    }
+
+    public synchronized void writeDeviceIdentity(long time, String udi, String manufacturer, String model, String serialNumber, String build,
+            String operatingSystem) throws IOException {
+        int u = string(udi), m = string(manufacturer), mo = string(model), s = string(serialNumber), b = string(build), o = string(operatingSystem);
+        int start = begin(DEVICE_IDENTITY, time, 24);
+        region.putInt(u).putInt(m).putInt(mo).putInt(s).putInt(b).putInt(o);
+        end(start);
+    }
+
+    public synchronized void writeNumeric(long time, String udi, String metricId, String vendorMetricId, int instanceId, String unitId, float value,
+            long deviceTime) throws IOException {
+        int u = string(udi), m = string(metricId), v = string(vendorMetricId), un = string(unitId);
+        int start = begin(NUMERIC, time, 32);
+        region.putInt(u).putInt(m).putInt(v).putInt(un).putInt(instanceId).putFloat(value).putLong(deviceTime);
+        end(start);
+    }
+
+    public synchronized void writeSampleArray(long time, String udi, String metricId, String vendorMetricId, int instanceId, String unitId,
+            int frequency, long deviceTime, float[] values, int offset, int count) throws IOException {
+        int u = string(udi), m = string(metricId), v = string(vendorMetricId), un = string(unitId);
+        int start = begin(SAMPLE_ARRAY, time, 36 + 4 * count);
+        region.putInt(u).putInt(m).putInt(v).putInt(un).putInt(instanceId).putInt(frequency).putLong(deviceTime).putInt(count);
+        for (int i = offset, end = offset + count; i < end; i++) {
+            region.putFloat(values[i]);
+        }
+        end(start);
+    }
+
+    /**
+     * @param limitType ordinal of ice.LimitType
+     */
+    public synchronized void writeAlarmLimit(long time, String udi, String metricId, String unitId, int limitType, float value) throws IOException {
+        int u = string(udi), m = string(metricId), un = string(unitId);
+        int start = begin(ALARM_LIMIT, time, 20);
+        region.putInt(u).putInt(m).putInt(un).putInt(limitType).putFloat(value);
+        end(start);
+    }
+
+    /**
+     * @param text null when the alert is cleared
+     */
+    public synchronized void writeAlert(long time, boolean patient, String udi, String identifier, String text) throws IOException {
+        int u = string(udi), i = string(identifier), t = string(text);
+        int start = begin(patient ? PATIENT_ALERT : TECHNICAL_ALERT, time, 12);
+        region.putInt(u).putInt(i).putInt(t);
+        end(start);
+    }
+
+    private int string(String s) throws IOException {
+        if (null == s) {
+            return -1;
+        }
+        Integer id = strings.get(s);
+        if (null == id) {
+            id = strings.size();
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            int start = begin(STRING, lastTime == Long.MIN_VALUE ? 0L : lastTime, 6 + b.length);
+            region.putInt(id).putShort((short) b.length).put(b);
+            end(start);
+            strings.put(s, id);
+            index.writeByte(INDEX_STRING);
+            index.writeInt(id);
+            index.writeShort(b.length);
+            index.write(b);
+        }
+        return id;
+    }
+
+    // positions the region just past the header of a new record and returns
+    // the offset of the record within the region
+    private int begin(byte type, long time, int payload) throws IOException {
+        int length = RECORD_HEADER + payload;
+        ensure(length);
+        if (STRING != type) {
+            if (Long.MIN_VALUE == lastIndexTime || time - lastIndexTime >= indexInterval) {
+                index.writeByte(INDEX_TIME);
+                index.writeLong(time);
+                index.writeLong(position);
+                lastIndexTime = time;
+            }
+            lastTime = time;
+        }
+        int start = (int) (position - regionStart);
+        region.position(start + 4);
+        region.put(type).putLong(time);
+        return start;
+    }
+
+    private void end(int start) {
+        int length = region.position() - start;
+        region.putInt(start, length);
+        position += length;
+        records++;
+    }
+
+    private void ensure(int length) throws IOException {
+        // leaves room for the zero length that terminates the capture
+        if (null == region || position + length + 4 > regionStart + region.capacity()) {
+            regionStart = position;
+            region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, Math.max(regionSize, length + 4));
+        }
+    }
+
+    /**
+     * Forces what has been captured so far to disk
+     */
+    public synchronized void flush() throws IOException {
+        if (null != region) {
+            region.force();
+            index.flush();
+        }
+    }
+
+    /**
+     * @return records written, including string definitions
+     */
+    public synchronized long getRecords() {
+        return records;
+    }
+
+    /**
+     * @return bytes of capture written
+     */
+    public synchronized long getPosition() {
+        return position;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public void setRegionSize(int regionSize) {
+        this.regionSize = regionSize;
+    }
+
+    /**
+     * @param indexInterval ms of capture time between index entries
+     */
+    public void setIndexInterval(long indexInterval) {
+        this.indexInterval = indexInterval;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (null == channel) {
+            return;
+        }
+        region.force();
+        region = null;
+        index.writeByte(INDEX_END);
+        index.writeLong(lastTime);
+        index.writeLong(position);
+        index.close();
+        index = null;
+        channel.close();
+        channel = null;
+    }
+}
@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.devices.replay;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.mdpnp.devices.AbstractDevice;
+import org.mdpnp.devices.DeviceClock;
+import org.mdpnp.rtiapi.data.EventLoop;
+
+import com.rti.dds.publication.Publisher;
+import com.rti.dds.subscription.Subscriber;
+
+/**
+ * Publishes what a recorded device published, under a UDI of its own. Driven
+ * by a {@link CapturePlayer}; samples are stamped with the current time and
+ * any device time is carried forward by the same amount.
+ */
+public class ReplayDevice extends AbstractDevice {
+
+    private final Map<String, InstanceHolder<ice.Numeric>> numerics = new HashMap<String, InstanceHolder<ice.Numeric>>();
+    private final Map<String, InstanceHolder<ice.SampleArray>> sampleArrays = new HashMap<String, InstanceHolder<ice.SampleArray>>();
+    private final Map<String, InstanceHolder<ice.AlarmLimit>> alarmLimits = new HashMap<String, InstanceHolder<ice.AlarmLimit>>();
+
+    public ReplayDevice(final Subscriber subscriber, final Publisher publisher, final EventLoop eventLoop, final String udi) {
+        super(subscriber, publisher, eventLoop);
+        deviceIdentity.unique_device_identifier = udi;
+    }
+
+    /**
+     * Publishes the recorded identity; empty fields keep those of this process
+     */
+    public void identity(String manufacturer, String model, String serialNumber, String build, String operatingSystem) {
+        deviceIdentity.manufacturer = nonNull(manufacturer);
+        deviceIdentity.model = nonNull(model);
+        deviceIdentity.serial_number = nonNull(serialNumber);
+        if (null != build && !build.isEmpty()) {
+            deviceIdentity.build = build;
+        }
+        if (null != operatingSystem && !operatingSystem.isEmpty()) {
+            deviceIdentity.operating_system = operatingSystem;
+        }
+        writeDeviceIdentity();
+    }
+
+    private static String nonNull(String s) {
+        return null == s ? "" : s;
+    }
+
+    /**
+     * @param deviceTime ms or 0 if the recorded device had no clock of its own
+     */
+    DeviceClock.Reading reading(long deviceTime) {
+        DeviceClock.Reading now = getClockProvider().instant();
+        return 0L == deviceTime ? now : new DeviceClock.CombinedReading(now, new DeviceClock.ReadingImpl(deviceTime));
+    }
+
+    public void numeric(String metricId, String vendorMetricId, int instanceId, String unitId, float value, DeviceClock.Reading time) {
+        String key = metricId + '/' + vendorMetricId + '/' + instanceId + '/' + unitId;
+        InstanceHolder<ice.Numeric> holder = numerics.get(key);
+        if (null == holder) {
+            holder = createNumericInstance(metricId, nonNull(vendorMetricId), instanceId, unitId);
+            numerics.put(key, holder);
+        }
+        numericSample(holder, value, time);
+    }
+
+    public void sampleArray(String metricId, String vendorMetricId, int instanceId, String unitId, int frequency, float[] values, int count,
+            DeviceClock.Reading time) {
+        String key = metricId + '/' + vendorMetricId + '/' + instanceId + '/' + unitId + '/' + frequency;
+        InstanceHolder<ice.SampleArray> holder = sampleArrays.get(key);
+        holder = sampleArraySample(holder, values, 0, count, metricId, nonNull(vendorMetricId), instanceId, unitId, frequency, time);
+        sampleArrays.put(key, holder);
+    }
+
+    public void alarmLimit(String metricId, String unitId, ice.LimitType limitType, float value) {
+        String key = metricId + '/' + limitType;
+        alarmLimits.put(key, alarmLimitSample(alarmLimits.get(key), unitId, value, metricId, limitType));
+    }
+
+    /**
+     * @param text null to clear the alert
+     */
+    public void alert(boolean patient, String identifier, String text) {
+        if (patient) {
+            writePatientAlert(identifier, text);
+        } else {
+            writeTechnicalAlert(identifier, text);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        unregisterAllInstances();
+        numerics.clear();
+        sampleArrays.clear();
+        alarmLimits.clear();
+        super.shutdown();
+    }
+}
@@ -39,7 +39,7 @@ public class SimCapnometer extends AbstractSimulatedConnectedDevice {
         }
 
         @Override
-        protected void receiveCO2(DeviceClock.Reading sampleTime, Number[] co2Values, int respiratoryRateValue, int etCO2Value, int frequency) {
+        protected void receiveCO2(DeviceClock.Reading sampleTime, float[] co2Values, int respiratoryRateValue, int etCO2Value, int frequency) {
             co2 = sampleArraySample(co2, co2Values, rosetta.MDC_AWAY_CO2.VALUE, "", 0, 
                     rosetta.MDC_DIM_MMHG.VALUE, frequency, sampleTime);
             numericSample(respiratoryRate, respiratoryRateValue, sampleTime);
@@ -0,0 +1,156 @@
+package org.mdpnp.devices.replay;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CaptureTest {
+
+    private File dir, file;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("CaptureTest").toFile();
+        file = new File(dir, "capture.bin");
+    }
+
+    @After
+    public void tearDown() {
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    static class Recording implements CaptureReader.Handler {
+        final List<String> records = new ArrayList<String>();
+
+        @Override
+        public void deviceIdentity(long time, String udi, String manufacturer, String model, String serialNumber, String build, String operatingSystem) {
+            records.add(time + " identity " + udi + " " + manufacturer + " " + model + " " + serialNumber + " " + build + " " + operatingSystem);
+        }
+
+        @Override
+        public void numeric(long time, String udi, String metricId, String vendorMetricId, int instanceId, String unitId, float value, long deviceTime) {
+            records.add(time + " numeric " + udi + " " + metricId + " " + vendorMetricId + " " + instanceId + " " + unitId + " " + value + " " + deviceTime);
+        }
+
+        @Override
+        public void sampleArray(long time, String udi, String metricId, String vendorMetricId, int instanceId, String unitId, int frequency,
+                long deviceTime, float[] values, int count) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < count; i++) {
+                sb.append(' ').append(values[i]);
+            }
+            records.add(time + " sampleArray " + udi + " " + metricId + " " + vendorMetricId + " " + instanceId + " " + unitId + " " + frequency + " "
+                    + deviceTime + sb);
+        }
+
+        @Override
+        public void alarmLimit(long time, String udi, String metricId, String unitId, int limitType, float value) {
+            records.add(time + " alarmLimit " + udi + " " + metricId + " " + unitId + " " + limitType + " " + value);
+        }
+
+        @Override
+        public void alert(long time, boolean patient, String udi, String identifier, String text) {
+            records.add(time + " alert " + patient + " " + udi + " " + identifier + " " + text);
+        }
+    }
+
+    private List<String> write(CaptureWriter w) throws Exception {
+        Recording expected = new Recording();
+        w.open();
+        w.writeDeviceIdentity(1000L, "UDI0", "Acme", "Monitor", null, "1.0", "Linux");
+        expected.deviceIdentity(1000L, "UDI0", "Acme", "Monitor", null, "1.0", "Linux");
+        float[] wave = new float[50];
+        for (int t = 0; t < 600; t++) {
+            long time = 1000L + t * 100L;
+            w.writeNumeric(time, "UDI0", "MDC_PULS_OXIM_PULS_RATE", "", 0, "MDC_DIM_BEAT_PER_MIN", 60 + t % 5, time - 3L);
+            expected.numeric(time, "UDI0", "MDC_PULS_OXIM_PULS_RATE", "", 0, "MDC_DIM_BEAT_PER_MIN", 60 + t % 5, time - 3L);
+            for (int i = 0; i < wave.length; i++) {
+                wave[i] = (float) Math.sin((t * wave.length + i) / 10.0);
+            }
+            w.writeSampleArray(time, "UDI0", "MDC_PULS_OXIM_PLETH", "", 0, "MDC_DIM_DIMLESS", 500, 0L, wave, 10, 40);
+            float[] copy = new float[40];
+            System.arraycopy(wave, 10, copy, 0, 40);
+            expected.sampleArray(time, "UDI0", "MDC_PULS_OXIM_PLETH", "", 0, "MDC_DIM_DIMLESS", 500, 0L, copy, 40);
+            if (0 == t % 100) {
+                w.writeAlarmLimit(time, "UDI0", "MDC_PULS_OXIM_PULS_RATE", "MDC_DIM_BEAT_PER_MIN", 1, 120f + t);
+                expected.alarmLimit(time, "UDI0", "MDC_PULS_OXIM_PULS_RATE", "MDC_DIM_BEAT_PER_MIN", 1, 120f + t);
+                w.writeAlert(time, 0 == t % 200, "UDI0", "HIGH_HR", 0 == t % 300 ? null : "Heart rate high " + t);
+                expected.alert(time, 0 == t % 200, "UDI0", "HIGH_HR", 0 == t % 300 ? null : "Heart rate high " + t);
+            }
+        }
+        w.close();
+        return expected.records;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        CaptureWriter w = new CaptureWriter(file);
+        // small regions so that records are written across several mappings
+        w.setRegionSize(4096);
+        List<String> expected = write(w);
+
+        CaptureReader r = new CaptureReader(file);
+        r.setWindowSize(4096);
+        r.open();
+        Assert.assertEquals(1000L, r.getStartTime());
+        Assert.assertEquals(1000L + 599 * 100L, r.getEndTime());
+        Recording actual = new Recording();
+        while (r.next(actual)) {
+        }
+        r.close();
+        Assert.assertEquals(expected, actual.records);
+    }
+
+    @Test
+    public void testSeek() throws Exception {
+        List<String> expected = write(new CaptureWriter(file));
+
+        CaptureReader r = new CaptureReader(file);
+        r.open();
+        r.seek(31050L);
+        Recording actual = new Recording();
+        while (r.next(actual)) {
+        }
+        r.close();
+
+        // index entries are a second apart so the reader starts at 31000
+        Assert.assertTrue(actual.records.get(0), actual.records.get(0).startsWith("31000 numeric"));
+        Assert.assertEquals(expected.subList(expected.size() - actual.records.size(), expected.size()), actual.records);
+        Assert.assertEquals(2 * 300 + 3 * 2, actual.records.size());
+    }
+
+    @Test
+    public void testRebuildIndex() throws Exception {
+        List<String> expected = write(new CaptureWriter(file));
+        Assert.assertTrue(CaptureWriter.indexFile(file).delete());
+
+        CaptureReader r = new CaptureReader(file);
+        r.open();
+        Assert.assertEquals(1000L + 599 * 100L, r.getEndTime());
+        r.seek(59000L);
+        Recording actual = new Recording();
+        while (r.next(actual)) {
+        }
+        r.close();
+        Assert.assertEquals(expected.subList(expected.size() - actual.records.size(), expected.size()), actual.records);
+        Assert.assertTrue(actual.records.get(0).startsWith("59000 "));
+    }
+
+    @Test
+    public void testCloneUDI() {
+        String udi = "abcdefghijklmnopqrstuvwxyz0123456789";
+        Assert.assertEquals(udi, CapturePlayer.cloneUDI(udi, 0));
+        Assert.assertEquals(udi.length(), CapturePlayer.cloneUDI(udi, 7).length());
+        Assert.assertNotEquals(CapturePlayer.cloneUDI(udi, 1), CapturePlayer.cloneUDI(udi, 2));
+        Assert.assertEquals("x-12", CapturePlayer.cloneUDI("x", 12));
+    }
+}
@@ -24,6 +24,7 @@ public class JavaFXWaveformPane extends BorderPane implements WaveformPanel {
     private WaveformSource source; 
     private final JavaFXWaveformCanvas waveformCanvas;
     private Timeline waveformRender;
+    private volatile long endTime;
  
     public ResizableCanvas getCanvas() {
         return canvas;
@@ -80,6 +81,17 @@ public class JavaFXWaveformPane extends BorderPane implements WaveformPanel {
         return source;
     }
 
+    /**
+     * @param endTime time the rendered window is anchored to; 0 to follow the present
+     */
+    public void setEndTime(long endTime) {
+        this.endTime = endTime;
+    }
+
+    public long getEndTime() {
+        return endTime;
+    }
+
     @Override
     public void setOutOfTrack(boolean outOfTrack) {
         // TODO Auto-generated method stub
@@ -92,7 +104,10 @@ public class JavaFXWaveformPane extends BorderPane implements WaveformPanel {
             waveformRender = new Timeline(new KeyFrame(Duration.millis(100), new EventHandler<ActionEvent>() {
                 @Override
                 public void handle(ActionEvent event) {
-                    long tm = System.currentTimeMillis();
+                    long tm = endTime;
+                    if(0L == tm) {
+                        tm = System.currentTimeMillis();
+                    }
                     if(null != source) {
                         renderer.render(source, waveformCanvas, tm-12000L, tm-2000L);
                     }
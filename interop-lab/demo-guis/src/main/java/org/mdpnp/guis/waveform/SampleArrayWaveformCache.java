@@ -0,0 +1,257 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.guis.waveform;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.mdpnp.rtiapi.data.ReaderInstanceModel;
+import org.mdpnp.rtiapi.data.SampleArrayInstanceModelListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.rti.dds.infrastructure.InstanceHandle_t;
+import com.rti.dds.infrastructure.RETCODE_NO_DATA;
+import com.rti.dds.infrastructure.ResourceLimitsQosPolicy;
+import com.rti.dds.subscription.InstanceStateKind;
+import com.rti.dds.subscription.SampleInfo;
+import com.rti.dds.subscription.SampleInfoSeq;
+import com.rti.dds.subscription.SampleStateKind;
+import com.rti.dds.subscription.ViewStateKind;
+
+/**
+ * Keeps the recent samples of each viewed wave in a {@link WaveformRing} so
+ * that a repaint visits only the visible window rather than reading and
+ * walking the entire DDS history of the instance as
+ * {@link SampleArrayWaveformSource} does. Every view of the same instance
+ * shares one ring.
+ *
+ * The cache is fed on the EventLoop, either as a listener of a
+ * SampleArrayInstanceModel or by whoever reads the samples calling
+ * {@link #sample(ice.SampleArray, SampleInfo)}. Only instances for which a
+ * source has been requested are kept; their history is read from DDS once
+ * when the first source is requested. An entry outlives its instance so that
+ * views already holding it pick up again when the instance comes back.
+ */
+public class SampleArrayWaveformCache implements SampleArrayInstanceModelListener {
+    private static final Logger log = LoggerFactory.getLogger(SampleArrayWaveformCache.class);
+
+    // ms of samples visited by a source and (with a second to spare) kept by each ring
+    private final long window = Long.getLong("mdpnp.waveform.cacheWindow", 15000L);
+
+    private final Map<InstanceHandle_t, Entry> entries = new HashMap<InstanceHandle_t, Entry>();
+
+    // a live sample delivered while its entry was being seeded
+    private static final class Pending {
+        private final ice.SampleArray data = new ice.SampleArray();
+        private final long received;
+
+        Pending(ice.SampleArray data, long received) {
+            this.data.copy_from(data);
+            this.received = received;
+        }
+    }
+
+    private final class Entry implements WaveformSource {
+        private final String identifier;
+        private volatile WaveformRing ring;
+        // reception time (ns) of the newest sample read while seeding; live
+        // samples received no later than this are already in the ring
+        private long seededThrough = Long.MIN_VALUE;
+        // non null while seeding; guarded by the cache
+        private List<Pending> pending;
+
+        Entry(String identifier) {
+            this.identifier = identifier;
+        }
+
+        // EventLoop (or the requesting thread while seeding)
+        void append(ice.SampleArray sampleArray) {
+            final int sz = sampleArray.values.userData.size();
+            if (sampleArray.frequency <= 0) {
+                log.warn("Invalid frequency " + sampleArray.frequency + " for " + identifier);
+                return;
+            }
+            int msPerSample = 1000 / sampleArray.frequency;
+            ice.Time_t t = sampleArray.presentation_time;
+            long baseTime = t.sec * 1000L + t.nanosec / 1000000L;
+
+            int needed = (int) (sampleArray.frequency * (window + 1000L) / 1000L);
+            WaveformRing ring = this.ring;
+            if (null == ring || ring.capacity() < needed) {
+                ring = new WaveformRing(needed);
+                this.ring = ring;
+            }
+            // same timing as SampleArrayWaveformSource
+            for (int j = 0; j < sz; j++) {
+                ring.append(baseTime - (sz - j) * msPerSample, sampleArray.values.userData.getFloat(j));
+            }
+        }
+
+        // the instance is gone; what it had should not be shown as current
+        void clear() {
+            WaveformRing ring = this.ring;
+            if (null != ring) {
+                ring.clear();
+            }
+        }
+
+        @Override
+        public void iterate(WaveformIterator itr) {
+            itr.begin();
+            try {
+                WaveformRing ring = this.ring;
+                if (null != ring) {
+                    ring.iterate(window, itr);
+                }
+            } finally {
+                itr.end();
+            }
+        }
+
+        @Override
+        public String getIdentifier() {
+            return identifier;
+        }
+
+        @Override
+        public boolean loadingHistoricalData() {
+            return false;
+        }
+    }
+
+    /**
+     * A source for one instance; every source for the same instance shares
+     * the same samples
+     *
+     * @param reader from which the history of the instance is read when it is
+     *            first requested; may be null
+     */
+    public WaveformSource getSource(ice.SampleArrayDataReader reader, InstanceHandle_t handle) {
+        final Entry entry;
+        synchronized (this) {
+            Entry existing = entries.get(handle);
+            if (null != existing) {
+                return existing;
+            }
+            ice.SampleArray keyHolder = new ice.SampleArray();
+            if (null != reader) {
+                reader.get_key_value(keyHolder, handle);
+            }
+            entry = new Entry(keyHolder.instance_id + "-" + keyHolder.metric_id + "-" + keyHolder.unique_device_identifier);
+            // registered before the history is read so that nothing delivered
+            // in between is missed; it is held back until the seed is in
+            entries.put(new InstanceHandle_t(handle), entry);
+            if (null == reader) {
+                return entry;
+            }
+            entry.pending = new ArrayList<Pending>();
+        }
+        // read without the lock so the EventLoop is not held up
+        seed(entry, reader, handle);
+        synchronized (this) {
+            for (Pending p : entry.pending) {
+                if (p.received > entry.seededThrough) {
+                    entry.append(p.data);
+                }
+            }
+            entry.pending = null;
+        }
+        return entry;
+    }
+
+    private void seed(Entry entry, ice.SampleArrayDataReader reader, InstanceHandle_t handle) {
+        // local since more than one instance may be seeded at a time
+        SampleInfoSeq sampleInfoSeq = new SampleInfoSeq();
+        ice.SampleArraySeq sampleArraySeq = new ice.SampleArraySeq();
+        try {
+            reader.read_instance(sampleArraySeq, sampleInfoSeq, ResourceLimitsQosPolicy.LENGTH_UNLIMITED, handle, SampleStateKind.ANY_SAMPLE_STATE,
+                    ViewStateKind.ANY_VIEW_STATE, InstanceStateKind.ANY_INSTANCE_STATE);
+            for (int i = 0; i < sampleInfoSeq.size(); i++) {
+                SampleInfo sampleInfo = (SampleInfo) sampleInfoSeq.get(i);
+                if (sampleInfo.valid_data) {
+                    entry.append((ice.SampleArray) sampleArraySeq.get(i));
+                }
+                entry.seededThrough = Math.max(entry.seededThrough, received(sampleInfo));
+            }
+        } catch (RETCODE_NO_DATA noData) {
+
+        } finally {
+            reader.return_loan(sampleArraySeq, sampleInfoSeq);
+        }
+    }
+
+    /**
+     * Called on the EventLoop for each sample read
+     */
+    public void sample(ice.SampleArray data, SampleInfo sampleInfo) {
+        if (0 != (sampleInfo.instance_state & InstanceStateKind.NOT_ALIVE_INSTANCE_STATE)) {
+            notAlive(sampleInfo.instance_handle);
+            return;
+        }
+        if (!sampleInfo.valid_data) {
+            return;
+        }
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(sampleInfo.instance_handle);
+            if (null != entry && null != entry.pending) {
+                entry.pending.add(new Pending(data, received(sampleInfo)));
+                return;
+            }
+        }
+        // the EventLoop may still deliver samples that were read while seeding;
+        // judged by our own reception clock since the device's may step back
+        if (null != entry && received(sampleInfo) > entry.seededThrough) {
+            entry.append(data);
+        }
+    }
+
+    private static long received(SampleInfo sampleInfo) {
+        return sampleInfo.reception_timestamp.sec * 1000000000L + sampleInfo.reception_timestamp.nanosec;
+    }
+
+    /**
+     * Empties the entry of an instance that is no longer alive. The entry is
+     * kept, so sources already handed out fill again if the instance comes
+     * back under the same handle.
+     */
+    public synchronized void notAlive(InstanceHandle_t handle) {
+        Entry entry = entries.get(handle);
+        if (null != entry) {
+            if (null != entry.pending) {
+                entry.pending.clear();
+            }
+            entry.clear();
+        }
+    }
+
+    @Override
+    public void instanceAlive(ReaderInstanceModel<ice.SampleArray, ice.SampleArrayDataReader> model, ice.SampleArrayDataReader reader,
+            ice.SampleArray data, SampleInfo sampleInfo) {
+    }
+
+    @Override
+    public void instanceNotAlive(ReaderInstanceModel<ice.SampleArray, ice.SampleArrayDataReader> model, ice.SampleArrayDataReader reader,
+            ice.SampleArray keyHolder, SampleInfo sampleInfo) {
+        notAlive(sampleInfo.instance_handle);
+    }
+
+    @Override
+    public void instanceSample(ReaderInstanceModel<ice.SampleArray, ice.SampleArrayDataReader> model, ice.SampleArrayDataReader reader,
+            ice.SampleArray data, SampleInfo sampleInfo) {
+        sample(data, sampleInfo);
+    }
+}
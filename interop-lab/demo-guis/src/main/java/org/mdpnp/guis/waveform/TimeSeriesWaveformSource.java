@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.guis.waveform;
+
+import org.mdpnp.timeseries.SeriesKey;
+import org.mdpnp.timeseries.TimeSeriesStore;
+
+/**
+ * Replays a recorded series from a {@link TimeSeriesStore}; each iteration
+ * visits the points of the last window ms (or of the window ending at a fixed
+ * time when reviewing).
+ */
+public class TimeSeriesWaveformSource implements WaveformSource {
+    private final TimeSeriesStore store;
+    private final SeriesKey key;
+    private final long window;
+    private volatile long endTime;
+
+    public TimeSeriesWaveformSource(final TimeSeriesStore store, final SeriesKey key, final long window) {
+        this.store = store;
+        this.key = key;
+        this.window = window;
+    }
+
+    /**
+     * @param endTime end of the window to show; 0 to follow the present
+     */
+    public void setEndTime(long endTime) {
+        this.endTime = endTime;
+    }
+
+    public long getEndTime() {
+        return endTime;
+    }
+
+    @Override
+    public void iterate(final WaveformIterator itr) {
+        long to = endTime;
+        if(0L == to) {
+            to = System.currentTimeMillis();
+        }
+        itr.begin();
+        try {
+            store.query(key, to - window, to, new TimeSeriesStore.Visitor() {
+                @Override
+                public void sample(long time, float value) {
+                    itr.sample(time, value);
+                }
+            });
+        } finally {
+            itr.end();
+        }
+    }
+
+    @Override
+    public String getIdentifier() {
+        return key.getInstanceId() + "-" + key.getMetricId() + "-" + key.getUniqueDeviceIdentifier();
+    }
+
+    @Override
+    public boolean loadingHistoricalData() {
+        return false;
+    }
+}
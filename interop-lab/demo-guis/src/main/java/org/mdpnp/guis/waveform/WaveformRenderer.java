@@ -36,9 +36,24 @@ public class WaveformRenderer implements WaveformSource.WaveformIterator {
     boolean aged_segment = true;
     boolean rendering = false;
 
+    // Samples that fall in the same pixel column are drawn as one vertical
+    // span from their minimum to their maximum rather than a line apiece
+    private boolean decimate = Boolean.parseBoolean(System.getProperty("mdpnp.waveform.decimate", "true"));
+    private boolean column_pending = false;
+    private int column = -1;
+    private double column_x, column_min_y, column_max_y;
+
     public void setOverwrite(boolean overwrite) {
         this.overwrite = overwrite;
     }
+
+    public void setDecimate(boolean decimate) {
+        this.decimate = decimate;
+    }
+
+    public boolean getDecimate() {
+        return decimate;
+    }
     
     public void setGapSize(double gapSize) {
         this.gapSize = gapSize;
@@ -82,6 +97,7 @@ public class WaveformRenderer implements WaveformSource.WaveformIterator {
             if(time >= t0 && time < t2) {
                 // the newer data (left)
                 if(aged_segment) {
+                    flushColumn();
                     last_x = -1;
                     last_y = -1;
                     aged_segment = false;
@@ -110,6 +126,21 @@ public class WaveformRenderer implements WaveformSource.WaveformIterator {
         double y = extent.getMinY() + y_prop * (extent.getMaxY()-extent.getMinY());
         
         if(x_prop>=0.0&&x_prop<1.0&&y_prop>=0.0&&y_prop<1.0) {
+            if(decimate) {
+                int c = (int) x;
+                if(column_pending && c == column) {
+                    column_min_y = Math.min(y, column_min_y);
+                    column_max_y = Math.max(y, column_max_y);
+                    last_x = x;
+                    last_y = y;
+                    return;
+                }
+                flushColumn();
+                column_pending = true;
+                column = c;
+                column_x = x;
+                column_min_y = column_max_y = y;
+            }
             if(last_x>=0.0||last_y>=0.0&&x>last_x) {
                 count++;
                 canvas.drawLine(last_x, last_y, x, y);
@@ -124,6 +155,18 @@ public class WaveformRenderer implements WaveformSource.WaveformIterator {
         
     }
     
+    // The connector into a column is drawn when its first sample arrives; the
+    // span of the column is only known once the next column begins
+    private void flushColumn() {
+        if(column_pending) {
+            column_pending = false;
+            if(column_max_y > column_min_y) {
+                count++;
+                canvas.drawLine(column_x, column_min_y, column_x, column_max_y);
+            }
+        }
+    }
+
     public void render(WaveformSource source, WaveformCanvas canvas, long t1, long t2) {
         synchronized(this) {
             this.rendering = true;
@@ -161,8 +204,10 @@ public class WaveformRenderer implements WaveformSource.WaveformIterator {
     
             this.last_x = -1;
             this.last_y = -1;
+            this.column_pending = false;
             
             source.iterate(this);
+            flushColumn();
         } finally {
             synchronized(this) {
                 rendering = false;
@@ -191,6 +236,7 @@ public class WaveformRenderer implements WaveformSource.WaveformIterator {
 
     @Override
     public void end() {
+        flushColumn();
 //        System.err.println(count + " points");
 //        System.err.println(count + " points rendered most recent " + new Date(mostRecent));
     }
@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.guis.waveform;
+
+/**
+ * Fixed capacity ring of time stamped samples for one wave. Times are
+ * expected to be non-decreasing; a sample older than the newest clears the
+ * ring since the source has evidently restarted its clock.
+ */
+public class WaveformRing {
+    private final long[] times;
+    private final float[] values;
+    // index of the oldest sample and number of samples held
+    private int head, size;
+
+    // per painting thread copy of a window so the sink is called without the lock held
+    private static final class Window {
+        long[] times = new long[0];
+        float[] values = new float[0];
+        int size;
+    }
+
+    private static final ThreadLocal<Window> windows = new ThreadLocal<Window>() {
+        @Override
+        protected Window initialValue() {
+            return new Window();
+        }
+    };
+
+    public WaveformRing(int capacity) {
+        times = new long[capacity];
+        values = new float[capacity];
+    }
+
+    public synchronized void append(long time, float value) {
+        if (size > 0 && time < times[index(size - 1)]) {
+            clear();
+        }
+        int tail = index(size);
+        times[tail] = time;
+        values[tail] = value;
+        if (size < times.length) {
+            size++;
+        } else {
+            head = index(1);
+        }
+    }
+
+    public synchronized void clear() {
+        head = size = 0;
+    }
+
+    private int index(int i) {
+        int idx = head + i;
+        return idx >= times.length ? idx - times.length : idx;
+    }
+
+    // position (0 is oldest) of the first sample at or after time
+    private int firstAtOrAfter(long time) {
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (times[index(mid)] < time) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Visits the samples of the last window ms, measured back from the newest
+     * sample, oldest first. The window is copied out under the lock so the
+     * iterator never holds up {@link #append(long, float)}.
+     */
+    public void iterate(long window, WaveformSource.WaveformIterator itr) {
+        Window w = windows.get();
+        copy(window, w);
+        for (int i = 0; i < w.size; i++) {
+            itr.sample(w.times[i], w.values[i]);
+        }
+    }
+
+    private synchronized void copy(long window, Window w) {
+        int first = 0 == size ? 0 : firstAtOrAfter(times[index(size - 1)] - window);
+        int n = size - first;
+        if (w.times.length < n) {
+            w.times = new long[times.length];
+            w.values = new float[values.length];
+        }
+        int start = index(first);
+        int wrapped = Math.min(n, times.length - start);
+        System.arraycopy(times, start, w.times, 0, wrapped);
+        System.arraycopy(values, start, w.values, 0, wrapped);
+        System.arraycopy(times, 0, w.times, wrapped, n - wrapped);
+        System.arraycopy(values, 0, w.values, wrapped, n - wrapped);
+        w.size = n;
+    }
+
+    /**
+     * @return time of the newest sample or Long.MIN_VALUE if there is none
+     */
+    public synchronized long getNewestTime() {
+        return 0 == size ? Long.MIN_VALUE : times[index(size - 1)];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return times.length;
+    }
+}
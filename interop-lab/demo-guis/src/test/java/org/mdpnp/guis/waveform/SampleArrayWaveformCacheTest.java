@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.guis.waveform;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.rti.dds.infrastructure.InstanceHandle_t;
+import com.rti.dds.subscription.InstanceStateKind;
+import com.rti.dds.subscription.SampleInfo;
+
+public class SampleArrayWaveformCacheTest {
+
+    // every SampleInfo starts out with the same handle
+    private final InstanceHandle_t handle = new SampleInfo().instance_handle;
+
+    private static ice.SampleArray wave(long time, float... values) {
+        ice.SampleArray sampleArray = new ice.SampleArray();
+        sampleArray.unique_device_identifier = "udi";
+        sampleArray.metric_id = "MDC_PRESS_BLD";
+        sampleArray.frequency = 100;
+        sampleArray.presentation_time.sec = (int) (time / 1000L);
+        sampleArray.presentation_time.nanosec = (int) (time % 1000L * 1000000L);
+        for (float v : values) {
+            sampleArray.values.userData.addFloat(v);
+        }
+        return sampleArray;
+    }
+
+    private static SampleInfo info(int instanceState, long received) {
+        SampleInfo sampleInfo = new SampleInfo();
+        sampleInfo.instance_state = instanceState;
+        sampleInfo.valid_data = InstanceStateKind.ALIVE_INSTANCE_STATE == instanceState;
+        sampleInfo.reception_timestamp.sec = (int) (received / 1000000000L);
+        sampleInfo.reception_timestamp.nanosec = (int) (received % 1000000000L);
+        return sampleInfo;
+    }
+
+    private static WaveformRingTest.Samples iterate(WaveformSource source) {
+        WaveformRingTest.Samples samples = new WaveformRingTest.Samples();
+        source.iterate(samples);
+        Assert.assertEquals(1, samples.begun);
+        Assert.assertEquals(1, samples.ended);
+        return samples;
+    }
+
+    @Test
+    public void testSharedSource() {
+        SampleArrayWaveformCache cache = new SampleArrayWaveformCache();
+        WaveformSource source = cache.getSource(null, handle);
+        Assert.assertSame(source, cache.getSource(null, handle));
+        Assert.assertTrue(iterate(source).times.isEmpty());
+
+        cache.sample(wave(1000L, 1f, 2f, 3f), info(InstanceStateKind.ALIVE_INSTANCE_STATE, 1L));
+        WaveformRingTest.Samples samples = iterate(source);
+        Assert.assertEquals(3, samples.times.size());
+        // spaced by the sample period and ending at the presentation time
+        Assert.assertEquals(970L, (long) samples.times.get(0));
+        Assert.assertEquals(990L, (long) samples.times.get(2));
+        Assert.assertEquals(3f, samples.values.get(2), 0f);
+    }
+
+    @Test
+    public void testDisposeAndRealive() {
+        SampleArrayWaveformCache cache = new SampleArrayWaveformCache();
+        WaveformSource source = cache.getSource(null, handle);
+        cache.sample(wave(1000L, 1f, 2f, 3f), info(InstanceStateKind.ALIVE_INSTANCE_STATE, 1L));
+        Assert.assertEquals(3, iterate(source).times.size());
+
+        cache.sample(wave(0L), info(InstanceStateKind.NOT_ALIVE_DISPOSED_INSTANCE_STATE, 2L));
+        // what the instance last had is not shown as current
+        Assert.assertTrue(iterate(source).times.isEmpty());
+        // but the entry is kept for the views that already have it
+        Assert.assertSame(source, cache.getSource(null, handle));
+
+        cache.sample(wave(5000L, 4f, 5f), info(InstanceStateKind.ALIVE_INSTANCE_STATE, 3L));
+        WaveformRingTest.Samples samples = iterate(source);
+        Assert.assertEquals(2, samples.times.size());
+        Assert.assertEquals(4f, samples.values.get(0), 0f);
+        Assert.assertEquals(5f, samples.values.get(1), 0f);
+    }
+
+    @Test
+    public void testInstanceNotAlive() {
+        SampleArrayWaveformCache cache = new SampleArrayWaveformCache();
+        WaveformSource source = cache.getSource(null, handle);
+        cache.sample(wave(1000L, 1f), info(InstanceStateKind.ALIVE_INSTANCE_STATE, 1L));
+        cache.instanceNotAlive(null, null, wave(0L), info(InstanceStateKind.NOT_ALIVE_NO_WRITERS_INSTANCE_STATE, 2L));
+        Assert.assertTrue(iterate(source).times.isEmpty());
+        cache.instanceSample(null, null, wave(2000L, 2f), info(InstanceStateKind.ALIVE_INSTANCE_STATE, 3L));
+        Assert.assertEquals(1, iterate(source).times.size());
+    }
+}
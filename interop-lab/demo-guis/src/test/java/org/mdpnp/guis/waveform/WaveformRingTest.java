@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.guis.waveform;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class WaveformRingTest {
+
+    /**
+     * Collects what a source visits
+     */
+    static class Samples implements WaveformSource.WaveformIterator {
+        final List<Long> times = new ArrayList<Long>();
+        final List<Float> values = new ArrayList<Float>();
+        int begun, ended;
+
+        @Override
+        public void begin() {
+            begun++;
+        }
+
+        @Override
+        public void sample(long time, float value) {
+            times.add(time);
+            values.add(value);
+        }
+
+        @Override
+        public void end() {
+            ended++;
+        }
+    }
+
+    @Test
+    public void testWraparound() {
+        WaveformRing ring = new WaveformRing(10);
+        for (int i = 0; i < 25; i++) {
+            ring.append(1000L + i, i);
+        }
+        Assert.assertEquals(10, ring.size());
+        Assert.assertEquals(1024L, ring.getNewestTime());
+
+        Samples samples = new Samples();
+        ring.iterate(Long.MAX_VALUE / 2, samples);
+        Assert.assertEquals(10, samples.times.size());
+        // the oldest fifteen were overwritten and the rest come out oldest first
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(1015L + i, (long) samples.times.get(i));
+            Assert.assertEquals(15f + i, samples.values.get(i), 0f);
+        }
+    }
+
+    @Test
+    public void testWindow() {
+        WaveformRing ring = new WaveformRing(8);
+        // wrapped so that the window starts in the second half of the arrays
+        for (int i = 0; i < 13; i++) {
+            ring.append(10L * i, i);
+        }
+        Samples samples = new Samples();
+        // measured back from the newest at 120 the window starts at 95
+        ring.iterate(25L, samples);
+        Assert.assertEquals(3, samples.times.size());
+        Assert.assertEquals(100L, (long) samples.times.get(0));
+        Assert.assertEquals(120L, (long) samples.times.get(2));
+
+        // a window starting exactly on a sample includes it
+        samples = new Samples();
+        ring.iterate(30L, samples);
+        Assert.assertEquals(4, samples.times.size());
+        Assert.assertEquals(90L, (long) samples.times.get(0));
+
+        samples = new Samples();
+        ring.iterate(0L, samples);
+        Assert.assertEquals(1, samples.times.size());
+        Assert.assertEquals(120L, (long) samples.times.get(0));
+    }
+
+    @Test
+    public void testEqualTimes() {
+        WaveformRing ring = new WaveformRing(16);
+        for (int i = 0; i < 12; i++) {
+            ring.append(100L * (i / 4), i);
+        }
+        Samples samples = new Samples();
+        // all of the samples at the start of the window are visited
+        ring.iterate(100L, samples);
+        Assert.assertEquals(8, samples.times.size());
+        Assert.assertEquals(4f, samples.values.get(0), 0f);
+    }
+
+    @Test
+    public void testClockStepsBack() {
+        WaveformRing ring = new WaveformRing(10);
+        for (int i = 0; i < 5; i++) {
+            ring.append(1000L + i, i);
+        }
+        ring.append(10L, 99f);
+        Assert.assertEquals(1, ring.size());
+        Assert.assertEquals(10L, ring.getNewestTime());
+    }
+
+    @Test
+    public void testEmpty() {
+        WaveformRing ring = new WaveformRing(10);
+        Assert.assertEquals(Long.MIN_VALUE, ring.getNewestTime());
+        Samples samples = new Samples();
+        ring.iterate(1000L, samples);
+        Assert.assertTrue(samples.times.isEmpty());
+
+        ring.append(5L, 1f);
+        ring.clear();
+        ring.iterate(1000L, samples);
+        Assert.assertTrue(samples.times.isEmpty());
+    }
+}
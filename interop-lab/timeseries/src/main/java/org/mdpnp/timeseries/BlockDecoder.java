@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.timeseries;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes blocks written by {@link BlockEncoder} using absolute reads so that
+ * many threads may decode from the same (mapped) buffer.
+ */
+final class BlockDecoder {
+    private ByteBuffer buf;
+    private long bitPos;
+
+    private long prevTime, prevDelta;
+    private int prevBits;
+    private int prevLeading, prevTrailing;
+
+    /**
+     * Visits the points of the block with times in [from, to)
+     * @return the number of points visited
+     */
+    int decode(ByteBuffer buf, int offset, int count, long from, long to, TimeSeriesStore.Visitor visitor) {
+        this.buf = buf;
+        this.bitPos = (long) offset << 3;
+        int visited = 0;
+        for (int i = 0; i < count; i++) {
+            if (0 == i) {
+                prevTime = readBits(64);
+                prevBits = (int) readBits(32);
+                prevDelta = 0L;
+                prevLeading = prevTrailing = 0;
+            } else {
+                prevDelta += readDeltaOfDelta();
+                prevTime += prevDelta;
+                prevBits ^= readValue();
+            }
+            if (prevTime >= from && prevTime < to) {
+                visitor.sample(prevTime, Float.intBitsToFloat(prevBits));
+                visited++;
+            }
+        }
+        this.buf = null;
+        return visited;
+    }
+
+    private long readDeltaOfDelta() {
+        if (0 == readBits(1)) {
+            return 0L;
+        }
+        if (0 == readBits(1)) {
+            return readBits(7) - 63L;
+        }
+        if (0 == readBits(1)) {
+            return readBits(9) - 255L;
+        }
+        if (0 == readBits(1)) {
+            return readBits(12) - 2047L;
+        }
+        return readBits(64);
+    }
+
+    private int readValue() {
+        if (0 == readBits(1)) {
+            return 0;
+        }
+        if (1 == readBits(1)) {
+            prevLeading = (int) readBits(5);
+            int significant = (int) readBits(5) + 1;
+            prevTrailing = 32 - prevLeading - significant;
+        }
+        int significant = 32 - prevLeading - prevTrailing;
+        return (int) readBits(significant) << prevTrailing;
+    }
+
+    private long readBits(int n) {
+        long value = 0L;
+        while (n > 0) {
+            int index = (int) (bitPos >>> 3);
+            int available = 8 - (int) (bitPos & 7);
+            int take = Math.min(available, n);
+            int b = buf.get(index) & 0xFF;
+            int chunk = (b >>> (available - take)) & ((1 << take) - 1);
+            value = (value << take) | chunk;
+            bitPos += take;
+            n -= take;
+        }
+        return value;
+    }
+}
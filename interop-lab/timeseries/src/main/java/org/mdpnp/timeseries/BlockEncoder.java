@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.timeseries;
+
+import java.util.Arrays;
+
+/**
+ * Compresses a block of (time, value) points in the manner of Facebook's
+ * Gorilla: times as delta-of-deltas in variable length buckets, so that a
+ * regularly sampled wave costs a single bit per timestamp, and values as the
+ * XOR with the previous value, storing only its meaningful bits.
+ *
+ * The first point is stored in full so that every block decodes on its own;
+ * see {@link BlockDecoder}.
+ */
+final class BlockEncoder {
+    private byte[] buf = new byte[256];
+    private int bitPos;
+
+    private int count;
+    private long minTime, maxTime;
+
+    private long prevTime, prevDelta;
+    private int prevBits;
+    private int prevLeading = -1, prevTrailing;
+
+    void add(long time, float value) {
+        int bits = Float.floatToRawIntBits(value);
+        if (0 == count) {
+            writeBits(time, 64);
+            writeBits(bits, 32);
+            prevDelta = 0L;
+            minTime = maxTime = time;
+        } else {
+            long delta = time - prevTime;
+            writeDeltaOfDelta(delta - prevDelta);
+            prevDelta = delta;
+            writeValue(bits ^ prevBits);
+            minTime = Math.min(minTime, time);
+            maxTime = Math.max(maxTime, time);
+        }
+        prevTime = time;
+        prevBits = bits;
+        count++;
+    }
+
+    private void writeDeltaOfDelta(long dod) {
+        if (0L == dod) {
+            writeBits(0, 1);
+        } else if (dod >= -63L && dod <= 64L) {
+            writeBits(0x2, 2);
+            writeBits(dod + 63L, 7);
+        } else if (dod >= -255L && dod <= 256L) {
+            writeBits(0x6, 3);
+            writeBits(dod + 255L, 9);
+        } else if (dod >= -2047L && dod <= 2048L) {
+            writeBits(0xE, 4);
+            writeBits(dod + 2047L, 12);
+        } else {
+            writeBits(0xF, 4);
+            writeBits(dod, 64);
+        }
+    }
+
+    private void writeValue(int xor) {
+        if (0 == xor) {
+            writeBits(0, 1);
+            return;
+        }
+        int leading = Integer.numberOfLeadingZeros(xor);
+        int trailing = Integer.numberOfTrailingZeros(xor);
+        if (prevLeading >= 0 && leading >= prevLeading && trailing >= prevTrailing) {
+            // fits in the window of the previous value
+            writeBits(0x2, 2);
+            writeBits(xor >>> prevTrailing, 32 - prevLeading - prevTrailing);
+        } else {
+            int significant = 32 - leading - trailing;
+            writeBits(0x3, 2);
+            writeBits(leading, 5);
+            writeBits(significant - 1, 5);
+            writeBits(xor >>> trailing, significant);
+            prevLeading = leading;
+            prevTrailing = trailing;
+        }
+    }
+
+    private void writeBits(long value, int n) {
+        while (n > 0) {
+            int index = bitPos >>> 3;
+            if (index >= buf.length) {
+                buf = Arrays.copyOf(buf, buf.length * 2);
+            }
+            int free = 8 - (bitPos & 7);
+            int take = Math.min(free, n);
+            int chunk = (int) ((value >>> (n - take)) & ((1 << take) - 1));
+            buf[index] |= chunk << (free - take);
+            bitPos += take;
+            n -= take;
+        }
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    long getMinTime() {
+        return minTime;
+    }
+
+    long getMaxTime() {
+        return maxTime;
+    }
+
+    /**
+     * @return the encoded length in whole bytes
+     */
+    int getLength() {
+        return (bitPos + 7) >>> 3;
+    }
+
+    /**
+     * @return the encoded bytes; only the first {@link #getLength()} are valid
+     */
+    byte[] getBuffer() {
+        return buf;
+    }
+
+    void reset() {
+        Arrays.fill(buf, 0, getLength(), (byte) 0);
+        bitPos = 0;
+        count = 0;
+        prevLeading = -1;
+    }
+}
@@ -0,0 +1,235 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.timeseries;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One memory-mapped file of compressed blocks for a single series.
+ *
+ * <pre>
+ * header  int magic, short version, short reserved, int end, int blocks,
+ *         long minTime, long maxTime, int instanceId,
+ *         short length + UTF-8 unique_device_identifier, short length + UTF-8 metric_id
+ * block   long minTime, long maxTime, int count, int length, byte[length]
+ * </pre>
+ *
+ * end is the offset just past the last complete block and is only advanced
+ * once a block is fully written, so a torn write is never read back.
+ */
+final class Segment {
+    static final int MAGIC = 0x4D445453; // MDTS
+    static final short VERSION = 1;
+
+    private static final int END = 8, BLOCKS = 12, MIN_TIME = 16, MAX_TIME = 24, INSTANCE_ID = 32, KEY = 36;
+    static final int BLOCK_HEADER = 24;
+
+    private final File file;
+    private final SeriesKey key;
+    private final int dataStart;
+    private final int maxSize;
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+
+    private volatile int end;
+    private int blocks;
+    private long minTime = Long.MAX_VALUE, maxTime = Long.MIN_VALUE;
+
+    private Segment(File file, SeriesKey key, int dataStart, int maxSize) {
+        this.file = file;
+        this.key = key;
+        this.dataStart = dataStart;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Creates a new segment open for append
+     */
+    static Segment create(File file, SeriesKey key, int initialSize, int maxSize) throws IOException {
+        byte[] udi = key.getUniqueDeviceIdentifier().getBytes(StandardCharsets.UTF_8);
+        byte[] metric = key.getMetricId().getBytes(StandardCharsets.UTF_8);
+        int dataStart = KEY + 2 + udi.length + 2 + metric.length;
+
+        Segment s = new Segment(file, key, dataStart, Math.max(maxSize, dataStart + BLOCK_HEADER));
+        s.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        s.buffer = s.channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(initialSize, dataStart));
+        ByteBuffer b = s.buffer;
+        b.putInt(0, MAGIC);
+        b.putShort(4, VERSION);
+        b.putInt(INSTANCE_ID, key.getInstanceId());
+        b.putLong(MIN_TIME, s.minTime);
+        b.putLong(MAX_TIME, s.maxTime);
+        b.position(KEY);
+        b.putShort((short) udi.length).put(udi).putShort((short) metric.length).put(metric);
+        b.position(0);
+        s.end = dataStart;
+        b.putInt(END, s.end);
+        return s;
+    }
+
+    /**
+     * Maps an existing segment read only
+     * @return null if the file is not a segment
+     */
+    static Segment open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < KEY + 4 || channel.size() > Integer.MAX_VALUE) {
+                return null;
+            }
+            MappedByteBuffer b = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (MAGIC != b.getInt(0) || VERSION != b.getShort(4)) {
+                return null;
+            }
+            b.position(KEY);
+            byte[] udi = new byte[b.getShort()];
+            b.get(udi);
+            byte[] metric = new byte[b.getShort()];
+            b.get(metric);
+            int dataStart = b.position();
+            b.position(0);
+            SeriesKey key = new SeriesKey(new String(udi, StandardCharsets.UTF_8), new String(metric, StandardCharsets.UTF_8), b.getInt(INSTANCE_ID));
+
+            int end = b.getInt(END);
+            if (end < dataStart || end > b.capacity()) {
+                return null;
+            }
+            Segment s = new Segment(file, key, dataStart, b.capacity());
+            s.buffer = b;
+            s.end = end;
+            s.blocks = b.getInt(BLOCKS);
+            s.minTime = b.getLong(MIN_TIME);
+            s.maxTime = b.getLong(MAX_TIME);
+            return s;
+        }
+    }
+
+    /**
+     * @return false if the block does not fit and a new segment is needed
+     */
+    boolean append(BlockEncoder block) throws IOException {
+        int length = block.getLength();
+        int required = end + BLOCK_HEADER + length;
+        if (required > maxSize) {
+            return false;
+        }
+        if (required > buffer.capacity()) {
+            // grow by doubling; the old mapping is released with the garbage
+            int size = buffer.capacity();
+            while (size < required) {
+                size = (int) Math.min((long) size * 2L, maxSize);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        MappedByteBuffer b = buffer;
+        b.putLong(end, block.getMinTime());
+        b.putLong(end + 8, block.getMaxTime());
+        b.putInt(end + 16, block.getCount());
+        b.putInt(end + 20, length);
+        ByteBuffer d = b.duplicate();
+        d.position(end + BLOCK_HEADER);
+        d.put(block.getBuffer(), 0, length);
+        minTime = Math.min(minTime, block.getMinTime());
+        maxTime = Math.max(maxTime, block.getMaxTime());
+        blocks++;
+        b.putLong(MIN_TIME, minTime);
+        b.putLong(MAX_TIME, maxTime);
+        b.putInt(BLOCKS, blocks);
+        // commit
+        b.putInt(END, required);
+        end = required;
+        return true;
+    }
+
+    int query(long from, long to, BlockDecoder decoder, TimeSeriesStore.Visitor visitor) {
+        // reads are bounded by end as it was when the query began
+        int end = this.end;
+        ByteBuffer b = buffer;
+        int visited = 0;
+        int pos = dataStart;
+        while (pos < end) {
+            long blockMin = b.getLong(pos);
+            long blockMax = b.getLong(pos + 8);
+            int count = b.getInt(pos + 16);
+            int length = b.getInt(pos + 20);
+            if (blockMax >= from && blockMin < to) {
+                visited += decoder.decode(b, pos + BLOCK_HEADER, count, from, to, visitor);
+            }
+            pos += BLOCK_HEADER + length;
+        }
+        return visited;
+    }
+
+    boolean overlaps(long from, long to) {
+        return blocks > 0 && maxTime >= from && minTime < to;
+    }
+
+    /**
+     * Writes the mapped pages out to the file
+     */
+    void force() {
+        if (null != channel) {
+            buffer.force();
+        }
+    }
+
+    /**
+     * No more appends
+     */
+    void seal() throws IOException {
+        if (null != channel) {
+            buffer.force();
+            channel.close();
+            channel = null;
+        }
+    }
+
+    boolean delete() throws IOException {
+        seal();
+        buffer = null;
+        return file.delete();
+    }
+
+    SeriesKey getKey() {
+        return key;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    int getBlocks() {
+        return blocks;
+    }
+
+    long getMinTime() {
+        return minTime;
+    }
+
+    long getMaxTime() {
+        return maxTime;
+    }
+
+    /**
+     * @return bytes in use
+     */
+    int getSize() {
+        return end;
+    }
+}
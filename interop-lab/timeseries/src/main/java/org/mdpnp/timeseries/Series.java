@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.timeseries;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The segments of one series, oldest first, and the block being filled.
+ * Appends and queries are serialized on the series.
+ */
+final class Series {
+    private static final Logger log = LoggerFactory.getLogger(Series.class);
+
+    private final SeriesKey key;
+    private final File dir;
+    private final TimeSeriesStore store;
+
+    private final List<Segment> segments = new ArrayList<Segment>();
+    private Segment head;
+
+    private final BlockEncoder block = new BlockEncoder();
+    private long blockStarted;
+
+    private final BlockDecoder decoder = new BlockDecoder();
+
+    Series(SeriesKey key, File dir, TimeSeriesStore store) {
+        this.key = key;
+        this.dir = dir;
+        this.store = store;
+    }
+
+    SeriesKey getKey() {
+        return key;
+    }
+
+    /**
+     * Adds a segment found on disk; those are never appended to
+     */
+    synchronized void load(Segment segment) {
+        int i = segments.size();
+        while (i > 0 && segments.get(i - 1).getMinTime() > segment.getMinTime()) {
+            i--;
+        }
+        segments.add(i, segment);
+    }
+
+    synchronized void append(long time, float value, long now) throws IOException {
+        if (0 == block.getCount()) {
+            blockStarted = now;
+        }
+        block.add(time, value);
+        if (block.getCount() >= store.getBlockPoints()) {
+            writeBlock();
+        }
+    }
+
+    synchronized void append(long baseTime, long period, float[] values, int offset, int count, long now) throws IOException {
+        for (int i = 0; i < count; i++) {
+            if (0 == block.getCount()) {
+                blockStarted = now;
+            }
+            block.add(baseTime + i * period, values[offset + i]);
+            if (block.getCount() >= store.getBlockPoints()) {
+                writeBlock();
+            }
+        }
+    }
+
+    /**
+     * Writes out the block being filled if it has been open longer than maxAge
+     */
+    synchronized void flush(long now, long maxAge, boolean force) throws IOException {
+        if (block.getCount() > 0 && now - blockStarted >= maxAge) {
+            writeBlock();
+        }
+        if (force && null != head) {
+            head.force();
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        if (null == head || (head.getBlocks() > 0 && block.getMaxTime() - head.getMinTime() >= store.getSegmentDuration()) || !head.append(block)) {
+            if (null != head) {
+                head.seal();
+            }
+            head = newSegment();
+            if (!head.append(block)) {
+                log.warn("Dropping a block of " + block.getCount() + " points for " + key + " larger than a segment");
+            }
+            segments.add(head);
+        }
+        block.reset();
+    }
+
+    private Segment newSegment() throws IOException {
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Unable to create " + dir.getAbsolutePath());
+        }
+        long t = block.getMinTime();
+        File f = new File(dir, t + ".seg");
+        for (int i = 1; f.exists(); i++) {
+            f = new File(dir, t + "-" + i + ".seg");
+        }
+        return Segment.create(f, key, store.getInitialSegmentSize(), store.getMaxSegmentSize());
+    }
+
+    /**
+     * Visits points with times in [from, to); stored blocks first then those
+     * not yet written
+     */
+    synchronized int query(long from, long to, TimeSeriesStore.Visitor visitor) {
+        int visited = 0;
+        for (Segment s : segments) {
+            if (s.overlaps(from, to)) {
+                visited += s.query(from, to, decoder, visitor);
+            }
+        }
+        if (block.getCount() > 0 && block.getMaxTime() >= from && block.getMinTime() < to) {
+            visited += decoder.decode(ByteBuffer.wrap(block.getBuffer()), 0, block.getCount(), from, to, visitor);
+        }
+        return visited;
+    }
+
+    /**
+     * Deletes the segments entirely older than the given time
+     * @return bytes released
+     */
+    synchronized long expire(long olderThan) {
+        long released = 0L;
+        Iterator<Segment> itr = segments.iterator();
+        while (itr.hasNext()) {
+            Segment s = itr.next();
+            if (s != head && s.getMaxTime() < olderThan) {
+                int size = s.getSize();
+                try {
+                    if (s.delete()) {
+                        released += size;
+                        itr.remove();
+                    } else {
+                        // a mapping still open on some platforms; try again next time
+                        log.debug("Unable to delete " + s.getFile().getAbsolutePath());
+                    }
+                } catch (IOException e) {
+                    log.warn("Unable to delete " + s.getFile().getAbsolutePath(), e);
+                }
+            }
+        }
+        return released;
+    }
+
+    synchronized void close() throws IOException {
+        if (block.getCount() > 0) {
+            writeBlock();
+        }
+        if (null != head) {
+            head.seal();
+            head = null;
+        }
+    }
+
+    synchronized long getMinTime() {
+        long t = Long.MAX_VALUE;
+        for (Segment s : segments) {
+            t = Math.min(t, s.getMinTime());
+        }
+        return block.getCount() > 0 ? Math.min(t, block.getMinTime()) : t;
+    }
+
+    synchronized long getMaxTime() {
+        long t = Long.MIN_VALUE;
+        for (Segment s : segments) {
+            t = Math.max(t, s.getMaxTime());
+        }
+        return block.getCount() > 0 ? Math.max(t, block.getMaxTime()) : t;
+    }
+
+    synchronized long getSize() {
+        long size = block.getLength();
+        for (Segment s : segments) {
+            size += s.getSize();
+        }
+        return size;
+    }
+}
@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.timeseries;
+
+/**
+ * Identifies one series of the store; a metric of a device as published in
+ * ice.Numeric and ice.SampleArray
+ */
+public final class SeriesKey {
+    private final String uniqueDeviceIdentifier, metricId;
+    private final int instanceId;
+    private final int hashCode;
+
+    public SeriesKey(final String uniqueDeviceIdentifier, final String metricId, final int instanceId) {
+        if (null == uniqueDeviceIdentifier || null == metricId) {
+            throw new IllegalArgumentException("unique_device_identifier and metric_id are required");
+        }
+        this.uniqueDeviceIdentifier = uniqueDeviceIdentifier;
+        this.metricId = metricId;
+        this.instanceId = instanceId;
+        this.hashCode = 31 * (31 * uniqueDeviceIdentifier.hashCode() + metricId.hashCode()) + instanceId;
+    }
+
+    public String getUniqueDeviceIdentifier() {
+        return uniqueDeviceIdentifier;
+    }
+
+    public String getMetricId() {
+        return metricId;
+    }
+
+    public int getInstanceId() {
+        return instanceId;
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof SeriesKey)) {
+            return false;
+        }
+        SeriesKey other = (SeriesKey) obj;
+        return hashCode == other.hashCode && instanceId == other.instanceId && uniqueDeviceIdentifier.equals(other.uniqueDeviceIdentifier)
+                && metricId.equals(other.metricId);
+    }
+
+    @Override
+    public String toString() {
+        return uniqueDeviceIdentifier + "/" + metricId + "/" + instanceId;
+    }
+}
@@ -0,0 +1,266 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.timeseries;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append only history of Numeric and SampleArray values keyed by
+ * (unique_device_identifier, metric_id, instance_id).
+ *
+ * Each series is a directory of memory-mapped segment files. Points are
+ * gathered into blocks of up to blockPoints, compressed (see
+ * {@link BlockEncoder}) and appended to the newest segment; a segment is
+ * sealed once it reaches maxSegmentSize or spans segmentDuration ms of data.
+ * Retention drops whole segments whose newest point is older than the
+ * retention period.
+ *
+ * Appends for a series are expected in time order from a single thread;
+ * queries may run concurrently from any thread.
+ */
+public class TimeSeriesStore {
+
+    private static final Logger log = LoggerFactory.getLogger(TimeSeriesStore.class);
+
+    public interface Visitor {
+        void sample(long time, float value);
+    }
+
+    private final File root;
+    private final ConcurrentMap<SeriesKey, Series> series = new ConcurrentHashMap<SeriesKey, Series>();
+
+    private int blockPoints = 1024;
+    private long blockAge = 5000L;
+    private int initialSegmentSize = 64 * 1024;
+    private int maxSegmentSize = 16 * 1024 * 1024;
+    private long segmentDuration = 60L * 60L * 1000L;
+    private long retention = 24L * 60L * 60L * 1000L;
+
+    public TimeSeriesStore(File root) {
+        this.root = root;
+    }
+
+    /**
+     * Loads whatever segments are already under the root directory
+     */
+    public void open() throws IOException {
+        if (!root.exists() && !root.mkdirs()) {
+            throw new IOException("Unable to create " + root.getAbsolutePath());
+        }
+        File[] dirs = root.listFiles();
+        if (null == dirs) {
+            return;
+        }
+        int loaded = 0;
+        for (File dir : dirs) {
+            File[] files = dir.isDirectory() ? dir.listFiles() : null;
+            if (null == files) {
+                continue;
+            }
+            for (File f : files) {
+                if (!f.getName().endsWith(".seg")) {
+                    continue;
+                }
+                Segment s = Segment.open(f);
+                if (null == s) {
+                    log.warn("Ignoring " + f.getAbsolutePath() + "; not a segment or not intact");
+                    continue;
+                }
+                series(s.getKey()).load(s);
+                loaded++;
+            }
+        }
+        log.info("Loaded " + loaded + " segments of " + series.size() + " series from " + root.getAbsolutePath());
+        expire();
+    }
+
+    private Series series(SeriesKey key) {
+        Series s = series.get(key);
+        if (null == s) {
+            Series n = new Series(key, new File(root, directoryName(key)), this);
+            s = series.putIfAbsent(key, n);
+            if (null == s) {
+                s = n;
+            }
+        }
+        return s;
+    }
+
+    static String directoryName(SeriesKey key) {
+        String name = key.getUniqueDeviceIdentifier() + "-" + key.getMetricId() + "-" + key.getInstanceId();
+        return name.replaceAll("[^A-Za-z0-9_.-]", "_");
+    }
+
+    public void append(String uniqueDeviceIdentifier, String metricId, int instanceId, long time, float value) throws IOException {
+        series(new SeriesKey(uniqueDeviceIdentifier, metricId, instanceId)).append(time, value, System.currentTimeMillis());
+    }
+
+    /**
+     * Appends count regularly spaced points; point i is at baseTime + i * period
+     */
+    public void append(String uniqueDeviceIdentifier, String metricId, int instanceId, long baseTime, long period, float[] values, int offset, int count)
+            throws IOException {
+        series(new SeriesKey(uniqueDeviceIdentifier, metricId, instanceId)).append(baseTime, period, values, offset, count, System.currentTimeMillis());
+    }
+
+    /**
+     * Visits the points of the series with times in [from, to) in the order
+     * they were appended
+     * @return the number of points visited
+     */
+    public int query(String uniqueDeviceIdentifier, String metricId, int instanceId, long from, long to, Visitor visitor) {
+        return query(new SeriesKey(uniqueDeviceIdentifier, metricId, instanceId), from, to, visitor);
+    }
+
+    public int query(SeriesKey key, long from, long to, Visitor visitor) {
+        Series s = series.get(key);
+        return null == s ? 0 : s.query(from, to, visitor);
+    }
+
+    public List<SeriesKey> getKeys() {
+        List<SeriesKey> keys = new ArrayList<SeriesKey>();
+        for (Series s : series.values()) {
+            keys.add(s.getKey());
+        }
+        return keys;
+    }
+
+    /**
+     * @return the time of the oldest point of the series or Long.MAX_VALUE if none
+     */
+    public long getMinTime(SeriesKey key) {
+        Series s = series.get(key);
+        return null == s ? Long.MAX_VALUE : s.getMinTime();
+    }
+
+    /**
+     * @return the time of the newest point of the series or Long.MIN_VALUE if none
+     */
+    public long getMaxTime(SeriesKey key) {
+        Series s = series.get(key);
+        return null == s ? Long.MIN_VALUE : s.getMaxTime();
+    }
+
+    /**
+     * @return bytes used by all series
+     */
+    public long getSize() {
+        long size = 0L;
+        for (Series s : series.values()) {
+            size += s.getSize();
+        }
+        return size;
+    }
+
+    /**
+     * Writes out blocks that have been filling for longer than blockAge and
+     * forces the mapped segments to disk. Intended to be called periodically.
+     */
+    public void flush() throws IOException {
+        long now = System.currentTimeMillis();
+        for (Series s : series.values()) {
+            s.flush(now, blockAge, true);
+        }
+    }
+
+    /**
+     * Deletes segments that are past the retention period
+     * @return bytes released
+     */
+    public long expire() {
+        if (retention <= 0L) {
+            return 0L;
+        }
+        long olderThan = System.currentTimeMillis() - retention;
+        long released = 0L;
+        for (Series s : series.values()) {
+            released += s.expire(olderThan);
+        }
+        if (released > 0L) {
+            log.debug("Released " + released + " bytes of history older than " + retention + "ms");
+        }
+        return released;
+    }
+
+    public void close() throws IOException {
+        for (Series s : series.values()) {
+            s.close();
+        }
+    }
+
+    public File getRoot() {
+        return root;
+    }
+
+    public int getBlockPoints() {
+        return blockPoints;
+    }
+
+    public void setBlockPoints(int blockPoints) {
+        this.blockPoints = blockPoints;
+    }
+
+    public long getBlockAge() {
+        return blockAge;
+    }
+
+    /**
+     * @param blockAge ms after which {@link #flush()} writes out a partially filled block
+     */
+    public void setBlockAge(long blockAge) {
+        this.blockAge = blockAge;
+    }
+
+    public int getInitialSegmentSize() {
+        return initialSegmentSize;
+    }
+
+    public void setInitialSegmentSize(int initialSegmentSize) {
+        this.initialSegmentSize = initialSegmentSize;
+    }
+
+    public int getMaxSegmentSize() {
+        return maxSegmentSize;
+    }
+
+    public void setMaxSegmentSize(int maxSegmentSize) {
+        this.maxSegmentSize = maxSegmentSize;
+    }
+
+    public long getSegmentDuration() {
+        return segmentDuration;
+    }
+
+    public void setSegmentDuration(long segmentDuration) {
+        this.segmentDuration = segmentDuration;
+    }
+
+    public long getRetention() {
+        return retention;
+    }
+
+    /**
+     * @param retention ms of history to keep, by the wall clock; 0 to keep everything
+     */
+    public void setRetention(long retention) {
+        this.retention = retention;
+    }
+}
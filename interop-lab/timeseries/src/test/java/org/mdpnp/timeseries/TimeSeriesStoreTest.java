@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Copyright (c) 2014, MD PnP Program
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.mdpnp.timeseries;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TimeSeriesStoreTest {
+
+    private File root;
+
+    @Before
+    public void setUp() throws Exception {
+        root = Files.createTempDirectory("TimeSeriesStoreTest").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        delete(root);
+    }
+
+    private static void delete(File f) {
+        File[] children = f.listFiles();
+        if (null != children) {
+            for (File c : children) {
+                delete(c);
+            }
+        }
+        f.delete();
+    }
+
+    private static class Collector implements TimeSeriesStore.Visitor {
+        final List<Long> times = new ArrayList<Long>();
+        final List<Float> values = new ArrayList<Float>();
+
+        @Override
+        public void sample(long time, float value) {
+            times.add(time);
+            values.add(value);
+        }
+    }
+
+    private static float wave(int i) {
+        return (float) (Math.sin(i * 2.0 * Math.PI / 125.0) * 1.5);
+    }
+
+    private static final long T0 = 1430000000000L;
+
+    private void appendWave(TimeSeriesStore store, int seconds) throws Exception {
+        // 250Hz in arrays of 64
+        float[] values = new float[64];
+        int n = 0;
+        for (int a = 0; a < seconds * 250 / 64; a++) {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = wave(n + i);
+            }
+            store.append("DEVICE0", "ECG", 0, T0 + n * 4L, 4L, values, 0, values.length);
+            n += values.length;
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        TimeSeriesStore store = new TimeSeriesStore(root);
+        store.open();
+        appendWave(store, 60);
+        // an irregular numeric in the same store
+        for (int i = 0; i < 100; i++) {
+            store.append("DEVICE0", "HR", 0, T0 + i * 1000L + (i % 7) * 13L, 60 + (i % 5));
+        }
+
+        Collector c = new Collector();
+        int visited = store.query("DEVICE0", "ECG", 0, T0 + 10000L, T0 + 20000L, c);
+        Assert.assertEquals(2500, visited);
+        for (int j = 0; j < visited; j++) {
+            int n = 2500 + j;
+            Assert.assertEquals(T0 + n * 4L, (long) c.times.get(j));
+            Assert.assertEquals(wave(n), c.values.get(j), 0.0f);
+        }
+
+        c = new Collector();
+        Assert.assertEquals(100, store.query("DEVICE0", "HR", 0, Long.MIN_VALUE, Long.MAX_VALUE, c));
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(T0 + i * 1000L + (i % 7) * 13L, (long) c.times.get(i));
+            Assert.assertEquals(60 + (i % 5), c.values.get(i), 0.0f);
+        }
+
+        Assert.assertEquals(0, store.query("DEVICE1", "HR", 0, Long.MIN_VALUE, Long.MAX_VALUE, new Collector()));
+        store.close();
+    }
+
+    @Test
+    public void testCompression() throws Exception {
+        TimeSeriesStore store = new TimeSeriesStore(root);
+        store.open();
+        appendWave(store, 600);
+        store.close();
+        int points = 600 * 250 / 64 * 64;
+        // raw the points take 12 bytes each; the times here cost next to
+        // nothing and the values, full precision floats, about half
+        double bytesPerPoint = 1.0 * store.getSize() / points;
+        Assert.assertTrue("bytes per point " + bytesPerPoint, bytesPerPoint < 6.0);
+    }
+
+    @Test
+    public void testReopen() throws Exception {
+        TimeSeriesStore store = new TimeSeriesStore(root);
+        // many small segments
+        store.setMaxSegmentSize(8 * 1024);
+        store.setInitialSegmentSize(1024);
+        store.setRetention(0L);
+        store.open();
+        appendWave(store, 120);
+        store.close();
+
+        store = new TimeSeriesStore(root);
+        store.setRetention(0L);
+        store.open();
+        SeriesKey key = new SeriesKey("DEVICE0", "ECG", 0);
+        Assert.assertEquals(1, store.getKeys().size());
+        Assert.assertEquals(key, store.getKeys().get(0));
+        Assert.assertEquals(T0, store.getMinTime(key));
+
+        Collector c = new Collector();
+        int visited = store.query(key, T0, T0 + 120000L, c);
+        Assert.assertEquals(120 * 250 / 64 * 64, visited);
+        for (int j = 1; j < visited; j++) {
+            Assert.assertEquals(c.times.get(j - 1) + 4L, (long) c.times.get(j));
+        }
+
+        // appends after reopening go to new segments
+        store.append("DEVICE0", "ECG", 0, T0 + 200000L, 1.0f);
+        Assert.assertEquals(1, store.query(key, T0 + 200000L, T0 + 200001L, new Collector()));
+        store.close();
+    }
+
+    @Test
+    public void testRetention() throws Exception {
+        long now = System.currentTimeMillis();
+        TimeSeriesStore store = new TimeSeriesStore(root);
+        store.setSegmentDuration(60000L);
+        store.setBlockPoints(16);
+        store.setRetention(10L * 60000L);
+        store.open();
+        // an hour of one point a second ending now
+        for (int i = 3600; i >= 0; i--) {
+            store.append("DEVICE0", "SPO2", 0, now - i * 1000L, 97.0f);
+        }
+        store.close();
+
+        Assert.assertTrue(store.expire() > 0L);
+        SeriesKey key = new SeriesKey("DEVICE0", "SPO2", 0);
+        long oldest = store.getMinTime(key);
+        Assert.assertTrue(oldest >= now - 11L * 60000L);
+        Assert.assertEquals(0, store.query(key, now - 3600000L, now - 11L * 60000L, new Collector()));
+        Assert.assertTrue(store.query(key, now - 60000L, now + 1L, new Collector()) > 0);
+    }
+}